@@ -0,0 +1,83 @@
+package com.echelon.hermes.broker;
+
+/**
+ * 描述：broker相关的配置项
+ *
+ * @author jorelwang
+ * @create 2026-10-16 23:55
+ */
+public class BrokerConfig {
+
+    // 处理发送消息请求的线程数。写入CommitLog要竞争写锁，线程过多只会增加竞争
+    private int sendMessageThreadPoolNums = Math.min(Runtime.getRuntime().availableProcessors(), 4);
+
+    // 处理拉取消息请求的线程数，读取可能触发缺页，需要更多的线程
+    private int pullMessageThreadPoolNums = 16 + Runtime.getRuntime().availableProcessors() * 2;
+
+    // 处理管理请求的线程数
+    private int adminBrokerThreadPoolNums = 16;
+
+    // 各个线程池的队列容量，队列满时直接回复SYSTEM_BUSY，不再排队
+    private int sendThreadPoolQueueCapacity = 10000;
+    private int pullThreadPoolQueueCapacity = 100000;
+    private int adminBrokerThreadPoolQueueCapacity = 10000;
+
+    // 打印线程池队列水位的间隔，单位毫秒
+    private int printWaterMarkInterval = 10 * 1000;
+
+    public int getSendMessageThreadPoolNums() {
+        return sendMessageThreadPoolNums;
+    }
+
+    public void setSendMessageThreadPoolNums(int sendMessageThreadPoolNums) {
+        this.sendMessageThreadPoolNums = sendMessageThreadPoolNums;
+    }
+
+    public int getPullMessageThreadPoolNums() {
+        return pullMessageThreadPoolNums;
+    }
+
+    public void setPullMessageThreadPoolNums(int pullMessageThreadPoolNums) {
+        this.pullMessageThreadPoolNums = pullMessageThreadPoolNums;
+    }
+
+    public int getAdminBrokerThreadPoolNums() {
+        return adminBrokerThreadPoolNums;
+    }
+
+    public void setAdminBrokerThreadPoolNums(int adminBrokerThreadPoolNums) {
+        this.adminBrokerThreadPoolNums = adminBrokerThreadPoolNums;
+    }
+
+    public int getSendThreadPoolQueueCapacity() {
+        return sendThreadPoolQueueCapacity;
+    }
+
+    public void setSendThreadPoolQueueCapacity(int sendThreadPoolQueueCapacity) {
+        this.sendThreadPoolQueueCapacity = sendThreadPoolQueueCapacity;
+    }
+
+    public int getPullThreadPoolQueueCapacity() {
+        return pullThreadPoolQueueCapacity;
+    }
+
+    public void setPullThreadPoolQueueCapacity(int pullThreadPoolQueueCapacity) {
+        this.pullThreadPoolQueueCapacity = pullThreadPoolQueueCapacity;
+    }
+
+    public int getAdminBrokerThreadPoolQueueCapacity() {
+        return adminBrokerThreadPoolQueueCapacity;
+    }
+
+    public void setAdminBrokerThreadPoolQueueCapacity(int adminBrokerThreadPoolQueueCapacity) {
+        this.adminBrokerThreadPoolQueueCapacity = adminBrokerThreadPoolQueueCapacity;
+    }
+
+    public int getPrintWaterMarkInterval() {
+        return printWaterMarkInterval;
+    }
+
+    public void setPrintWaterMarkInterval(int printWaterMarkInterval) {
+        this.printWaterMarkInterval = printWaterMarkInterval;
+    }
+}
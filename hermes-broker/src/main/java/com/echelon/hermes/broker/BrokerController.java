@@ -0,0 +1,203 @@
+package com.echelon.hermes.broker;
+
+import com.echelon.hermes.broker.processor.SendMessageProcessor;
+import com.echelon.hermes.common.RemotingCommandCode;
+import com.echelon.hermes.remoting.NettyRemotingServer;
+import com.echelon.hermes.remoting.NettyServerConfig;
+import com.echelon.hermes.store.DefaultMessageStore;
+import com.echelon.hermes.store.MessageStoreConfig;
+import io.netty.util.concurrent.DefaultThreadFactory;
+import java.io.IOException;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.RejectedExecutionHandler;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * 描述：broker的控制器，组装消息存储、网络服务端和处理请求的线程池，负责它们的启动和关闭。
+ * 发送、拉取、管理请求各自使用一个有界线程池，某一类请求堆积时不会拖慢其他请求；
+ * 队列满时网络服务端直接回复SYSTEM_BUSY，客户端可以立即重试其他broker，而不是等到超时
+ *
+ * @author jorelwang
+ * @create 2026-10-16 23:55
+ */
+public class BrokerController {
+    private static final Logger log = LoggerFactory.getLogger(BrokerController.class);
+
+    private final BrokerConfig brokerConfig;
+    private final NettyServerConfig nettyServerConfig;
+    private final MessageStoreConfig messageStoreConfig;
+
+    private DefaultMessageStore messageStore;
+    private NettyRemotingServer remotingServer;
+
+    private ThreadPoolExecutor sendMessageExecutor;
+    private ThreadPoolExecutor pullMessageExecutor;
+    private ThreadPoolExecutor adminBrokerExecutor;
+
+    // 定时打印线程池水位
+    private final ScheduledExecutorService scheduledExecutorService =
+            Executors.newSingleThreadScheduledExecutor(new DefaultThreadFactory("BrokerControllerScheduledThread"));
+
+    public BrokerController(final BrokerConfig brokerConfig, final NettyServerConfig nettyServerConfig,
+            final MessageStoreConfig messageStoreConfig) {
+        this.brokerConfig = brokerConfig;
+        this.nettyServerConfig = nettyServerConfig;
+        this.messageStoreConfig = messageStoreConfig;
+    }
+
+    /**
+     * 加载消息存储，创建网络服务端和线程池
+     *
+     * @return 是否初始化成功
+     */
+    public boolean initialize() {
+        try {
+            this.messageStore = new DefaultMessageStore(this.messageStoreConfig);
+        } catch (IOException e) {
+            log.error("Create message store failed", e);
+            return false;
+        }
+        if (!this.messageStore.load()) {
+            return false;
+        }
+
+        this.remotingServer = new NettyRemotingServer(this.nettyServerConfig);
+        this.sendMessageExecutor = newRequestExecutor("SendMessageThread",
+                this.brokerConfig.getSendMessageThreadPoolNums(), this.brokerConfig.getSendThreadPoolQueueCapacity());
+        this.pullMessageExecutor = newRequestExecutor("PullMessageThread",
+                this.brokerConfig.getPullMessageThreadPoolNums(), this.brokerConfig.getPullThreadPoolQueueCapacity());
+        this.adminBrokerExecutor = newRequestExecutor("AdminBrokerThread",
+                this.brokerConfig.getAdminBrokerThreadPoolNums(),
+                this.brokerConfig.getAdminBrokerThreadPoolQueueCapacity());
+        this.registerProcessor();
+
+        this.scheduledExecutorService.scheduleAtFixedRate(this::printWaterMark,
+                this.brokerConfig.getPrintWaterMarkInterval(), this.brokerConfig.getPrintWaterMarkInterval(),
+                TimeUnit.MILLISECONDS);
+        return true;
+    }
+
+    /**
+     * 按请求类型把处理器注册到对应的线程池上，拉取和管理请求的处理器注册到pullMessageExecutor和adminBrokerExecutor
+     */
+    private void registerProcessor() {
+        SendMessageProcessor sendMessageProcessor = new SendMessageProcessor(this);
+        this.remotingServer.registerProcessor(RemotingCommandCode.SEND_MESSAGE, sendMessageProcessor,
+                this.sendMessageExecutor);
+    }
+
+    /**
+     * 创建固定线程数、有界队列的线程池，队列满时抛出RejectedExecutionException并计数
+     */
+    static ThreadPoolExecutor newRequestExecutor(final String name, final int threads, final int capacity) {
+        return new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS, new LinkedBlockingQueue<>(capacity),
+                new DefaultThreadFactory(name), new CountingAbortPolicy());
+    }
+
+    public void start() {
+        this.messageStore.start();
+        this.remotingServer.start();
+        log.info("Broker controller started");
+    }
+
+    public void shutdown() {
+        this.scheduledExecutorService.shutdown();
+        if (this.remotingServer != null) {
+            this.remotingServer.shutdown();
+        }
+        // 等待已经接收的请求处理完成后再关闭存储
+        shutdownExecutor(this.sendMessageExecutor);
+        shutdownExecutor(this.pullMessageExecutor);
+        shutdownExecutor(this.adminBrokerExecutor);
+        if (this.messageStore != null) {
+            this.messageStore.shutdown();
+        }
+        log.info("Broker controller shutdown");
+    }
+
+    private static void shutdownExecutor(final ThreadPoolExecutor executor) {
+        if (executor == null) {
+            return;
+        }
+        executor.shutdown();
+        try {
+            if (!executor.awaitTermination(5, TimeUnit.SECONDS)) {
+                executor.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * 打印各个线程池的队列深度，队列持续增长说明这类请求的处理能力不足
+     */
+    private void printWaterMark() {
+        printWaterMark("Send", this.sendMessageExecutor);
+        printWaterMark("Pull", this.pullMessageExecutor);
+        printWaterMark("Admin", this.adminBrokerExecutor);
+    }
+
+    private static void printWaterMark(final String name, final ThreadPoolExecutor executor) {
+        BlockingQueue<Runnable> queue = executor.getQueue();
+        log.info("[WATERMARK] {} Queue Size: {}, Capacity: {}, Active: {}, Completed: {}, Rejected: {}",
+                name, queue.size(), queue.size() + queue.remainingCapacity(), executor.getActiveCount(),
+                executor.getCompletedTaskCount(), getRejectedCount(executor));
+    }
+
+    /**
+     * 线程池因为队列已满拒绝的任务数
+     */
+    public static long getRejectedCount(final ThreadPoolExecutor executor) {
+        if (executor.getRejectedExecutionHandler() instanceof CountingAbortPolicy) {
+            return ((CountingAbortPolicy) executor.getRejectedExecutionHandler()).rejectedCount.get();
+        }
+        return 0;
+    }
+
+    public BrokerConfig getBrokerConfig() {
+        return brokerConfig;
+    }
+
+    public DefaultMessageStore getMessageStore() {
+        return messageStore;
+    }
+
+    public NettyRemotingServer getRemotingServer() {
+        return remotingServer;
+    }
+
+    public ThreadPoolExecutor getSendMessageExecutor() {
+        return sendMessageExecutor;
+    }
+
+    public ThreadPoolExecutor getPullMessageExecutor() {
+        return pullMessageExecutor;
+    }
+
+    public ThreadPoolExecutor getAdminBrokerExecutor() {
+        return adminBrokerExecutor;
+    }
+
+    /**
+     * 拒绝任务时计数，然后和AbortPolicy一样抛出RejectedExecutionException，由网络服务端回复SYSTEM_BUSY
+     */
+    private static final class CountingAbortPolicy implements RejectedExecutionHandler {
+        private final AtomicLong rejectedCount = new AtomicLong(0);
+
+        @Override
+        public void rejectedExecution(Runnable r, ThreadPoolExecutor executor) {
+            this.rejectedCount.incrementAndGet();
+            throw new RejectedExecutionException("Task rejected from " + executor);
+        }
+    }
+}
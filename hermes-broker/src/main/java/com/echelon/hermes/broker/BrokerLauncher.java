@@ -1,7 +1,7 @@
 package com.echelon.hermes.broker;
 
-import com.echelon.hermes.remoting.NettyRemotingClient;
-import com.echelon.hermes.remoting.NettyRemotingServer;
+import com.echelon.hermes.remoting.NettyServerConfig;
+import com.echelon.hermes.store.MessageStoreConfig;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -15,12 +15,20 @@ public class BrokerLauncher {
     private static final Logger log = LoggerFactory.getLogger(BrokerLauncher.class);
 
     public static void main(String[] args) {
+        NettyServerConfig nettyServerConfig = new NettyServerConfig();
+        nettyServerConfig.setListenPort(8888);
+        BrokerController controller = new BrokerController(new BrokerConfig(), nettyServerConfig,
+                new MessageStoreConfig());
+        if (!controller.initialize()) {
+            controller.shutdown();
+            System.exit(-3);
+        }
+
         // 创建并启动服务器
-        NettyRemotingServer server = new NettyRemotingServer(8888);
-        server.start();
+        controller.start();
 
         // 添加一个关闭钩子，确保程序退出时能优雅地关闭服务器
-        Runtime.getRuntime().addShutdownHook(new Thread(server::shutdown));
+        Runtime.getRuntime().addShutdownHook(new Thread(controller::shutdown));
         log.info("Broker started");
     }
 
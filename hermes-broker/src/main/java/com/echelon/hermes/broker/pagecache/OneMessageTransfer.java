@@ -0,0 +1,109 @@
+package com.echelon.hermes.broker.pagecache;
+
+import com.echelon.hermes.store.SelectMappedBufferResult;
+import io.netty.channel.FileRegion;
+import io.netty.util.AbstractReferenceCounted;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+
+/**
+ * 描述：把一条消息从CommitLog的映射缓冲区直接写入Socket的FileRegion。
+ * 先写帧头，再写SelectMappedBufferResult指向的映射缓冲区，消息内容不经过堆内存，也不拷贝到Netty的ByteBuf中。
+ * 通过channel.writeAndFlush(transfer)发送，FileRegion会跳过CommandEncoder直接交给传输层，
+ * Netty在写完或者写失败后释放FileRegion，这时才释放对映射文件的引用，保证发送过程中文件不会被unmap。
+ * 不方便使用FileRegion的地方（例如需要经过SslHandler），也可以用Unpooled.wrappedBuffer包装映射缓冲区，同样不拷贝数据。
+ *
+ * @author jorelwang
+ * @create 2026-10-16 17:50
+ */
+public class OneMessageTransfer extends AbstractReferenceCounted implements FileRegion {
+
+    // 帧头：总长度 + Header长度 + Header内容，见RemotingCommand#encodeHeader(int)
+    private final ByteBuffer byteBufferHeader;
+
+    private final SelectMappedBufferResult selectMappedBufferResult;
+
+    // 已经写出的字节数
+    private long transferred;
+
+    public OneMessageTransfer(ByteBuffer byteBufferHeader, SelectMappedBufferResult selectMappedBufferResult) {
+        this.byteBufferHeader = byteBufferHeader;
+        this.selectMappedBufferResult = selectMappedBufferResult;
+    }
+
+    @Override
+    public long position() {
+        int pos = this.byteBufferHeader.position();
+        pos += this.selectMappedBufferResult.getByteBuffer().position();
+        return pos;
+    }
+
+    @Override
+    @Deprecated
+    public long transfered() {
+        return this.transferred;
+    }
+
+    @Override
+    public long transferred() {
+        return this.transferred;
+    }
+
+    @Override
+    public long count() {
+        return this.byteBufferHeader.limit() + this.selectMappedBufferResult.getSize();
+    }
+
+    /**
+     * 每次调用尽量写出剩余的数据，返回本次写出的字节数；Socket缓冲区满时返回0，由Netty在可写后继续调用
+     */
+    @Override
+    public long transferTo(WritableByteChannel target, long position) throws IOException {
+        long written = 0;
+        if (this.byteBufferHeader.hasRemaining()) {
+            written += target.write(this.byteBufferHeader);
+            if (this.byteBufferHeader.hasRemaining()) {
+                this.transferred += written;
+                return written;
+            }
+        }
+
+        ByteBuffer body = this.selectMappedBufferResult.getByteBuffer();
+        if (body.hasRemaining()) {
+            written += target.write(body);
+        }
+        this.transferred += written;
+        return written;
+    }
+
+    @Override
+    public FileRegion retain() {
+        super.retain();
+        return this;
+    }
+
+    @Override
+    public FileRegion retain(int increment) {
+        super.retain(increment);
+        return this;
+    }
+
+    @Override
+    public FileRegion touch() {
+        return this;
+    }
+
+    @Override
+    public FileRegion touch(Object hint) {
+        return this;
+    }
+
+    /**
+     * 发送完成后释放对映射文件的引用
+     */
+    @Override
+    protected void deallocate() {
+        this.selectMappedBufferResult.release();
+    }
+}
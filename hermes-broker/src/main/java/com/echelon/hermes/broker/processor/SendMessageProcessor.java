@@ -1,8 +1,152 @@
 package com.echelon.hermes.broker.processor;
+
+import com.echelon.hermes.broker.BrokerController;
+import com.echelon.hermes.common.RemotingCommandCode;
+import com.echelon.hermes.common.message.MessageProperties;
+import com.echelon.hermes.common.utils.TopicValidator;
+import com.echelon.hermes.remoting.NettyRequestProcessor;
+import com.echelon.hermes.remoting.protocol.RemotingCommand;
+import com.echelon.hermes.remoting.protocol.header.SendMessageRequestHeader;
+import com.echelon.hermes.remoting.protocol.header.SendMessageResponseHeader;
+import com.echelon.hermes.store.CommitLog.PutMessageResult;
+import com.echelon.hermes.store.MessageExt;
+import com.echelon.hermes.store.MessageSysFlag;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufUtil;
+import io.netty.channel.ChannelHandlerContext;
+import java.util.Arrays;
+import java.util.concurrent.CompletableFuture;
+
 /**
- * 描述：TODO...
+ * 描述：处理发送消息请求，在发送线程池中执行。消息异步写入存储，按刷盘策略落盘后才回复写入结果，
+ * 同步刷盘时发送线程也不会阻塞，少量线程就可以同时处理大量等待刷盘的请求
+ *
  * @author jorelwang
  * @create 2025-09-25 22:49
  */
-public class SendMessageProcessor {
+public class SendMessageProcessor implements NettyRequestProcessor {
+
+    // 只能由存储设置的SYSFLAG标记位
+    private static final int STORE_SYS_FLAGS = MessageSysFlag.COMPRESSED_FLAG | MessageSysFlag.BATCH_FLAG
+            | MessageSysFlag.COMPRESSION_TYPE_COMPARATOR;
+
+    private final BrokerController brokerController;
+
+    public SendMessageProcessor(final BrokerController brokerController) {
+        this.brokerController = brokerController;
+    }
+
+    @Override
+    public RemotingCommand processRequest(ChannelHandlerContext ctx, RemotingCommand request) throws Exception {
+        return asyncProcessRequest(ctx, request).join();
+    }
+
+    /**
+     * 构建消息后提交给存储立即返回，写入结果在刷盘完成后转换为响应，发送线程不等待刷盘
+     */
+    @Override
+    public CompletableFuture<RemotingCommand> asyncProcessRequest(ChannelHandlerContext ctx,
+            RemotingCommand request) {
+        final int requestId = request.getRequestId();
+        SendMessageRequestHeader requestHeader = SendMessageRequestHeader.decode(request);
+        if (requestHeader == null || requestHeader.getPropertiesLength() < 0
+                || requestHeader.getPropertiesLength() > request.getBodyLength()) {
+            return illegalResponse("illegal send message request header", requestId);
+        }
+        // 主题名会作为ConsumeQueue的目录名，不能包含路径分隔符等字符
+        if (!TopicValidator.isValid(requestHeader.getTopic())) {
+            return illegalResponse("illegal topic: " + requestHeader.getTopic()
+                    + ", only ^[%|a-zA-Z0-9_-]+$ is allowed and length must not exceed "
+                    + TopicValidator.TOPIC_MAX_LENGTH, requestId);
+        }
+        if (requestHeader.getQueueId() < 0) {
+            return illegalResponse("illegal queueId: " + requestHeader.getQueueId(), requestId);
+        }
+        // 压缩和批量标记由存储设置，客户端设置后读取时会按错误的格式解析消息体
+        if ((requestHeader.getSysFlag() & STORE_SYS_FLAGS) != 0) {
+            return illegalResponse("illegal sysFlag: " + requestHeader.getSysFlag()
+                    + ", compression and batch flags are reserved for the store", requestId);
+        }
+
+        // 消息中的属性和消息体都是拷贝，方法返回后释放请求的body不影响写入
+        MessageExt msg = buildMessage(requestHeader, request);
+        if (msg == null) {
+            return illegalResponse("illegal message properties", requestId);
+        }
+        return this.brokerController.getMessageStore().asyncPutMessage(msg)
+                .thenApply(putMessageResult -> handlePutMessageResult(putMessageResult, msg, requestId));
+    }
+
+    /**
+     * 用请求参数和body构建内部消息，body中的属性块和消息体各拷贝一次。
+     * 属性块在这里检查一次格式，存储和读取时都直接使用
+     *
+     * @return 内部消息，属性块格式错误时返回null
+     */
+    private MessageExt buildMessage(final SendMessageRequestHeader requestHeader, final RemotingCommand request) {
+        final int propertiesLength = requestHeader.getPropertiesLength();
+        final int bodyLength = request.getBodyLength();
+        byte[] properties;
+        byte[] body;
+        ByteBuf bodyBuf = request.getBodyBuf();
+        if (bodyBuf != null) {
+            // 直接从入站缓冲区的切片中拷贝，不经过完整的byte[]
+            properties = ByteBufUtil.getBytes(bodyBuf, bodyBuf.readerIndex(), propertiesLength);
+            body = ByteBufUtil.getBytes(bodyBuf, bodyBuf.readerIndex() + propertiesLength,
+                    bodyLength - propertiesLength);
+        } else {
+            byte[] data = request.getBody() == null ? new byte[0] : request.getBody();
+            properties = Arrays.copyOfRange(data, 0, propertiesLength);
+            body = Arrays.copyOfRange(data, propertiesLength, bodyLength);
+        }
+        if (!MessageProperties.isValid(properties)) {
+            return null;
+        }
+
+        MessageExt msg = new MessageExt();
+        msg.setTopic(requestHeader.getTopic());
+        msg.setQueueId(requestHeader.getQueueId());
+        msg.setSysFlag(requestHeader.getSysFlag());
+        msg.setBornTimestamp(requestHeader.getBornTimestamp());
+        msg.setPropertiesData(properties);
+        msg.setBody(body);
+        return msg;
+    }
+
+    private static CompletableFuture<RemotingCommand> illegalResponse(final String remark, final int requestId) {
+        return CompletableFuture.completedFuture(
+                RemotingCommand.createResponseCommand(RemotingCommandCode.MESSAGE_ILLEGAL, remark, requestId));
+    }
+
+    private RemotingCommand handlePutMessageResult(final PutMessageResult putMessageResult, final MessageExt msg,
+            final int requestId) {
+        switch (putMessageResult.getStatus()) {
+            case PUT_OK:
+                return createSendResponse(RemotingCommandCode.SUCCESS, null, msg, requestId);
+            case FLUSH_DISK_TIMEOUT:
+                // 消息已经写入，只是没有在超时时间内落盘，客户端仍然可以拿到消息ID
+                return createSendResponse(RemotingCommandCode.FLUSH_DISK_TIMEOUT, "flush disk timeout", msg,
+                        requestId);
+            case MESSAGE_ILLEGAL:
+                return RemotingCommand.createResponseCommand(RemotingCommandCode.MESSAGE_ILLEGAL,
+                        "the message is illegal, maybe topic or properties length too long", requestId);
+            case CREATE_MAP_FILE_FAILED:
+                return RemotingCommand.createResponseCommand(RemotingCommandCode.SYSTEM_ERROR,
+                        "create mapped file failed, server is busy or broken", requestId);
+            default:
+                return RemotingCommand.createResponseCommand(RemotingCommandCode.SYSTEM_ERROR,
+                        "put message failed: " + putMessageResult.getStatus(), requestId);
+        }
+    }
+
+    private static RemotingCommand createSendResponse(final short code, final String remark, final MessageExt msg,
+            final int requestId) {
+        RemotingCommand response = RemotingCommand.createResponseCommand(code, remark, requestId);
+        SendMessageResponseHeader responseHeader = new SendMessageResponseHeader();
+        responseHeader.setMsgId(msg.getMsgId());
+        responseHeader.setQueueId(msg.getQueueId());
+        responseHeader.setQueueOffset(msg.getQueueOffset());
+        responseHeader.writeTo(response);
+        return response;
+    }
 }
@@ -0,0 +1,50 @@
+package com.echelon.hermes.broker;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.Test;
+
+/**
+ * 描述：BrokerController测试类
+ *
+ * @author jorelwang
+ * @create 2026-10-17 10:10
+ */
+public class BrokerControllerTest {
+
+    @Test
+    public void testRejectedCount() throws Exception {
+        ThreadPoolExecutor executor = BrokerController.newRequestExecutor("RejectTestThread", 1, 1);
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch unblock = new CountDownLatch(1);
+        try {
+            executor.execute(() -> {
+                started.countDown();
+                try {
+                    unblock.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            });
+            assertTrue(started.await(5, TimeUnit.SECONDS));
+            // 线程被占用，第一个任务进入队列，之后的任务都被拒绝
+            executor.execute(() -> { });
+            assertEquals(0, BrokerController.getRejectedCount(executor));
+
+            assertThrows(RejectedExecutionException.class, () -> executor.execute(() -> { }));
+            assertThrows(RejectedExecutionException.class, () -> executor.execute(() -> { }));
+            assertEquals(2, BrokerController.getRejectedCount(executor));
+        } finally {
+            unblock.countDown();
+            executor.shutdown();
+        }
+        assertTrue(executor.awaitTermination(5, TimeUnit.SECONDS));
+        assertEquals(2, executor.getCompletedTaskCount());
+    }
+}
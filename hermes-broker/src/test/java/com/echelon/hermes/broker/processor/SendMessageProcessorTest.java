@@ -0,0 +1,96 @@
+package com.echelon.hermes.broker.processor;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.echelon.hermes.common.RemotingCommandCode;
+import com.echelon.hermes.common.message.MessageProperties;
+import com.echelon.hermes.common.utils.TopicValidator;
+import com.echelon.hermes.remoting.protocol.RemotingCommand;
+import com.echelon.hermes.remoting.protocol.header.SendMessageRequestHeader;
+import com.echelon.hermes.store.MessageSysFlag;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import org.junit.jupiter.api.Test;
+
+/**
+ * 描述：发送消息请求的参数校验，非法请求在写入存储之前被拒绝，不需要启动broker
+ *
+ * @author jorelwang
+ * @create 2026-10-16 11:30
+ */
+public class SendMessageProcessorTest {
+
+    private final SendMessageProcessor processor = new SendMessageProcessor(null);
+
+    @Test
+    public void testRejectIllegalTopic() {
+        assertTrue(TopicValidator.isValid("Topic_Test-1%a|b"));
+        assertFalse(TopicValidator.isValid(""));
+        assertFalse(TopicValidator.isValid("../../x"));
+        assertFalse(TopicValidator.isValid("a/b"));
+        assertFalse(TopicValidator.isValid("主题"));
+        assertFalse(TopicValidator.isValid(new String(new char[TopicValidator.TOPIC_MAX_LENGTH + 1])
+                .replace('\0', 'a')));
+
+        assertIllegal(createRequest("../../x", 0, 0, new byte[0]));
+        assertIllegal(createRequest("a/b", 0, 0, new byte[0]));
+    }
+
+    @Test
+    public void testRejectNegativeQueueId() {
+        assertIllegal(createRequest("TopicTest", -1, 0, new byte[0]));
+    }
+
+    @Test
+    public void testRejectStoreSysFlag() {
+        assertIllegal(createRequest("TopicTest", 0, MessageSysFlag.COMPRESSED_FLAG, new byte[0]));
+        assertIllegal(createRequest("TopicTest", 0, MessageSysFlag.BATCH_FLAG, new byte[0]));
+        assertIllegal(createRequest("TopicTest", 0, 0x7 << 8, new byte[0]));
+    }
+
+    @Test
+    public void testRejectMalformedProperties() {
+        assertTrue(MessageProperties.isValid(new byte[0]));
+        MessageProperties valid = new MessageProperties();
+        valid.put("TAGS", "tagA");
+        assertTrue(MessageProperties.isValid(valid.encode()));
+
+        // keyLength为0xFFFE
+        byte[] loop = new byte[]{(byte) 0xFF, (byte) 0xFE, 0, 0};
+        assertFalse(MessageProperties.isValid(loop));
+        assertIllegal(createRequest("TopicTest", 0, 0, loop));
+
+        // 只有key没有value
+        ByteBuffer buffer = ByteBuffer.allocate(2 + 4);
+        buffer.putShort((short) 4).put("TAGS".getBytes(StandardCharsets.UTF_8));
+        assertFalse(MessageProperties.isValid(buffer.array()));
+        assertIllegal(createRequest("TopicTest", 0, 0, buffer.array()));
+    }
+
+    private void assertIllegal(final RemotingCommand request) {
+        RemotingCommand response = processor.asyncProcessRequest(null, request).join();
+        assertEquals(RemotingCommandCode.MESSAGE_ILLEGAL, response.getCode());
+        assertEquals(request.getRequestId(), response.getRequestId());
+    }
+
+    private static RemotingCommand createRequest(final String topic, final int queueId, final int sysFlag,
+            final byte[] properties) {
+        byte[] body = "hello".getBytes(StandardCharsets.UTF_8);
+        byte[] data = new byte[properties.length + body.length];
+        System.arraycopy(properties, 0, data, 0, properties.length);
+        System.arraycopy(body, 0, data, properties.length, body.length);
+
+        SendMessageRequestHeader header = new SendMessageRequestHeader();
+        header.setTopic(topic);
+        header.setQueueId(queueId);
+        header.setSysFlag(sysFlag);
+        header.setBornTimestamp(System.currentTimeMillis());
+        header.setPropertiesLength(properties.length);
+        RemotingCommand request = RemotingCommand.createRequestCommand(RemotingCommandCode.SEND_MESSAGE);
+        header.writeTo(request);
+        request.setBody(data);
+        return request;
+    }
+}
@@ -8,7 +8,14 @@ public class RemotingCommandCode {
 
     // 响应类型
     public static final short SUCCESS = 200;
+    public static final short MESSAGE_ILLEGAL = 400;
     public static final short SYSTEM_ERROR = 500;
+    // 服务端没有注册这个请求码的处理器
+    public static final short REQUEST_CODE_NOT_SUPPORTED = 501;
+    // 处理请求的线程池已满，客户端应当稍后重试或换一个broker
+    public static final short SYSTEM_BUSY = 503;
+    // 消息已写入，但在超时时间内没有落盘
+    public static final short FLUSH_DISK_TIMEOUT = 504;
     
     // 我们测试用的心跳或Ping/Pong
     public static final short PING = 99;
@@ -0,0 +1,113 @@
+package com.echelon.hermes.common;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * 描述：后台服务线程的基类，刷盘、文件预分配等服务都基于它实现。
+ * 子类在run()中循环调用waitForRunning()，其他线程通过wakeup()提前唤醒。
+ *
+ * @author jorelwang
+ * @create 2026-10-16 11:02
+ */
+public abstract class ServiceThread implements Runnable {
+    private static final Logger log = LoggerFactory.getLogger(ServiceThread.class);
+
+    // shutdown时等待线程退出的最长时间
+    private static final long JOIN_TIME = 90 * 1000;
+
+    private Thread thread;
+
+    // 是否已经被唤醒，用于避免丢失唤醒信号
+    protected final AtomicBoolean hasNotified = new AtomicBoolean(false);
+    private final Object waitLock = new Object();
+
+    protected volatile boolean stopped = false;
+    private final AtomicBoolean started = new AtomicBoolean(false);
+
+    public abstract String getServiceName();
+
+    public void start() {
+        if (!started.compareAndSet(false, true)) {
+            return;
+        }
+        log.info("Try to start service thread: {}", getServiceName());
+        this.stopped = false;
+        this.thread = new Thread(this, getServiceName());
+        this.thread.setDaemon(true);
+        this.thread.start();
+    }
+
+    public void shutdown() {
+        if (!started.compareAndSet(true, false)) {
+            return;
+        }
+        this.stopped = true;
+        log.info("Shutdown service thread: {}", getServiceName());
+        wakeup();
+
+        try {
+            long beginTime = System.currentTimeMillis();
+            this.thread.join(JOIN_TIME);
+            log.info("Join service thread {} elapsed time(ms) {}", getServiceName(),
+                    System.currentTimeMillis() - beginTime);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            log.error("Interrupted when shutting down service thread {}", getServiceName(), e);
+        }
+    }
+
+    /**
+     * 唤醒正在waitForRunning的服务线程
+     */
+    public void wakeup() {
+        if (hasNotified.compareAndSet(false, true)) {
+            synchronized (this.waitLock) {
+                this.waitLock.notify();
+            }
+        }
+    }
+
+    /**
+     * 等待interval毫秒，或者被wakeup()提前唤醒
+     */
+    protected void waitForRunning(long interval) {
+        if (hasNotified.compareAndSet(true, false)) {
+            this.onWaitEnd();
+            return;
+        }
+
+        synchronized (this.waitLock) {
+            try {
+                // 在锁内再检查一次，wakeup()先设置标记再notify，所以不会丢失唤醒
+                if (!hasNotified.get()) {
+                    this.waitLock.wait(interval);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                log.error("Interrupted when waiting, service: {}", getServiceName(), e);
+            } finally {
+                hasNotified.set(false);
+                this.onWaitEnd();
+            }
+        }
+    }
+
+    /**
+     * 每次等待结束后的回调
+     */
+    protected void onWaitEnd() {
+    }
+
+    public boolean isStopped() {
+        return stopped;
+    }
+
+    /**
+     * 服务线程是否已经启动并且没有被关闭
+     */
+    public boolean isRunning() {
+        return started.get() && !stopped;
+    }
+}
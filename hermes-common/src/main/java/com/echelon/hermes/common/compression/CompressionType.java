@@ -0,0 +1,50 @@
+package com.echelon.hermes.common.compression;
+
+/**
+ * 描述：消息体的压缩算法。
+ * value写入记录SYSFLAG的第8到10位，0表示未压缩，因此取值从1开始
+ *
+ * @author jorelwang
+ * @create 2026-10-16 19:40
+ */
+public enum CompressionType {
+    // 压缩率一般，速度最快，适合对延迟敏感的场景
+    LZ4(1),
+    // 压缩率和速度比较均衡，适合冗长的JSON消息体
+    ZSTD(2),
+    // JDK自带，不依赖第三方库
+    ZLIB(3);
+
+    // 压缩算法在SYSFLAG中的偏移位数
+    public static final int COMPRESSION_TYPE_SHIFT = 8;
+
+    private final int value;
+
+    CompressionType(int value) {
+        this.value = value;
+    }
+
+    public int getValue() {
+        return value;
+    }
+
+    /**
+     * 压缩算法在SYSFLAG中对应的标记位
+     */
+    public int getCompressionFlag() {
+        return this.value << COMPRESSION_TYPE_SHIFT;
+    }
+
+    public static CompressionType findByValue(final int value) {
+        for (CompressionType type : values()) {
+            if (type.value == value) {
+                return type;
+            }
+        }
+        throw new IllegalArgumentException("Unknown compression type value: " + value);
+    }
+
+    public static CompressionType of(final String name) {
+        return valueOf(name.trim().toUpperCase());
+    }
+}
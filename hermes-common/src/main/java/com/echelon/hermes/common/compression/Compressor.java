@@ -0,0 +1,34 @@
+package com.echelon.hermes.common.compression;
+
+import java.io.IOException;
+
+/**
+ * 描述：消息体压缩器，实现必须是线程安全的
+ *
+ * @author jorelwang
+ * @create 2026-10-16 19:40
+ */
+public interface Compressor {
+
+    /**
+     * 解压后的最大长度，和CommitLog默认的文件大小一致，单条消息不会超过它。
+     * 压缩数据来自客户端和磁盘，超过这个长度的一定是损坏或恶意的数据
+     */
+    int MAX_DECOMPRESSED_LENGTH = 1024 * 1024 * 1024;
+
+    /**
+     * 压缩数据
+     * @param src   原始数据
+     * @param level 压缩级别，不支持级别的算法会忽略
+     * @return  压缩后的数据
+     */
+    byte[] compress(byte[] src, int level) throws IOException;
+
+    /**
+     * 解压数据
+     * @param src   压缩后的数据
+     * @return  原始数据
+     * @throws IOException 数据损坏、被截断，或者解压后超过MAX_DECOMPRESSED_LENGTH
+     */
+    byte[] decompress(byte[] src) throws IOException;
+}
@@ -0,0 +1,27 @@
+package com.echelon.hermes.common.compression;
+
+import java.util.EnumMap;
+
+/**
+ * 描述：按压缩算法获取压缩器，压缩器都是无状态的，全局共享一个实例
+ *
+ * @author jorelwang
+ * @create 2026-10-16 19:40
+ */
+public class CompressorFactory {
+
+    private static final EnumMap<CompressionType, Compressor> COMPRESSORS = new EnumMap<>(CompressionType.class);
+
+    static {
+        COMPRESSORS.put(CompressionType.LZ4, new Lz4Compressor());
+        COMPRESSORS.put(CompressionType.ZSTD, new ZstdCompressor());
+        COMPRESSORS.put(CompressionType.ZLIB, new ZlibCompressor());
+    }
+
+    private CompressorFactory() {
+    }
+
+    public static Compressor getCompressor(final CompressionType type) {
+        return COMPRESSORS.get(type);
+    }
+}
@@ -0,0 +1,71 @@
+package com.echelon.hermes.common.compression;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import net.jpountz.lz4.LZ4Compressor;
+import net.jpountz.lz4.LZ4Exception;
+import net.jpountz.lz4.LZ4Factory;
+import net.jpountz.lz4.LZ4SafeDecompressor;
+
+/**
+ * 描述：LZ4块压缩。块格式不记录原始长度，所以在压缩数据前写入4个字节的原始长度。
+ * LZ4没有压缩级别，level被忽略。
+ * 压缩数据来自磁盘和客户端，不能信任长度前缀，解压时使用会做边界检查的safeDecompressor
+ *
+ * @author jorelwang
+ * @create 2026-10-16 19:40
+ */
+public class Lz4Compressor implements Compressor {
+
+    private static final int LENGTH_PREFIX_SIZE = 4;
+
+    // LZ4块格式的最大压缩比，长度前缀超过压缩数据长度的这个倍数时一定是损坏的数据
+    private static final int MAX_COMPRESSION_RATIO = 255;
+
+    private final LZ4Compressor compressor;
+    private final LZ4SafeDecompressor decompressor;
+
+    public Lz4Compressor() {
+        LZ4Factory factory = LZ4Factory.fastestInstance();
+        this.compressor = factory.fastCompressor();
+        this.decompressor = factory.safeDecompressor();
+    }
+
+    @Override
+    public byte[] compress(byte[] src, int level) throws IOException {
+        byte[] dest = new byte[LENGTH_PREFIX_SIZE + this.compressor.maxCompressedLength(src.length)];
+        ByteBuffer.wrap(dest).putInt(src.length);
+        try {
+            int compressedLength = this.compressor.compress(src, 0, src.length, dest, LENGTH_PREFIX_SIZE);
+            byte[] result = new byte[LENGTH_PREFIX_SIZE + compressedLength];
+            System.arraycopy(dest, 0, result, 0, result.length);
+            return result;
+        } catch (LZ4Exception e) {
+            throw new IOException("LZ4 compress failed", e);
+        }
+    }
+
+    @Override
+    public byte[] decompress(byte[] src) throws IOException {
+        if (src.length < LENGTH_PREFIX_SIZE) {
+            throw new IOException("LZ4 data too short, length: " + src.length);
+        }
+        int originalLength = ByteBuffer.wrap(src).getInt();
+        int compressedLength = src.length - LENGTH_PREFIX_SIZE;
+        if (originalLength < 0 || originalLength > MAX_DECOMPRESSED_LENGTH
+                || originalLength > (long) compressedLength * MAX_COMPRESSION_RATIO) {
+            throw new IOException("Illegal LZ4 original length: " + originalLength);
+        }
+        byte[] dest = new byte[originalLength];
+        try {
+            int length = this.decompressor.decompress(src, LENGTH_PREFIX_SIZE, compressedLength, dest, 0,
+                    originalLength);
+            if (length != originalLength) {
+                throw new IOException("LZ4 decompressed length " + length + " not equal to " + originalLength);
+            }
+            return dest;
+        } catch (LZ4Exception e) {
+            throw new IOException("LZ4 decompress failed", e);
+        }
+    }
+}
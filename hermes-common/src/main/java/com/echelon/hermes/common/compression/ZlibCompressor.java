@@ -0,0 +1,74 @@
+package com.echelon.hermes.common.compression;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * 描述：JDK自带的zlib压缩，level取值0到9。
+ * zlib格式不记录原始长度，解压时边解压边检查输出长度，超过上限立即停止，避免很小的压缩数据解压出大量数据
+ *
+ * @author jorelwang
+ * @create 2026-10-16 19:40
+ */
+public class ZlibCompressor implements Compressor {
+
+    private static final int BUFFER_SIZE = 4096;
+
+    private final int maxDecompressedLength;
+
+    public ZlibCompressor() {
+        this(MAX_DECOMPRESSED_LENGTH);
+    }
+
+    public ZlibCompressor(final int maxDecompressedLength) {
+        this.maxDecompressedLength = maxDecompressedLength;
+    }
+
+    @Override
+    public byte[] compress(byte[] src, int level) throws IOException {
+        Deflater deflater = new Deflater(level);
+        try {
+            deflater.setInput(src);
+            deflater.finish();
+            ByteArrayOutputStream out = new ByteArrayOutputStream(Math.max(src.length / 2, 64));
+            byte[] buffer = new byte[BUFFER_SIZE];
+            while (!deflater.finished()) {
+                int length = deflater.deflate(buffer);
+                out.write(buffer, 0, length);
+            }
+            return out.toByteArray();
+        } finally {
+            // Deflater持有堆外内存，必须显式释放
+            deflater.end();
+        }
+    }
+
+    @Override
+    public byte[] decompress(byte[] src) throws IOException {
+        Inflater inflater = new Inflater();
+        try {
+            inflater.setInput(src);
+            ByteArrayOutputStream out = new ByteArrayOutputStream(
+                    Math.min(src.length * 2, this.maxDecompressedLength));
+            byte[] buffer = new byte[BUFFER_SIZE];
+            while (!inflater.finished()) {
+                int length = inflater.inflate(buffer);
+                if (length == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                    throw new IOException("Zlib data truncated");
+                }
+                if (length > this.maxDecompressedLength - out.size()) {
+                    throw new IOException("Zlib decompressed length exceeds " + this.maxDecompressedLength);
+                }
+                out.write(buffer, 0, length);
+            }
+            return out.toByteArray();
+        } catch (DataFormatException e) {
+            throw new IOException("Zlib decompress failed", e);
+        } finally {
+            inflater.end();
+        }
+    }
+}
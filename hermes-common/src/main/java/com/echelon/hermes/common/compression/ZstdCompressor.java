@@ -0,0 +1,45 @@
+package com.echelon.hermes.common.compression;
+
+import com.github.luben.zstd.Zstd;
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * 描述：Zstd压缩，压缩帧中记录了原始长度。
+ * 解压前按帧头中的原始长度分配内存，帧头来自客户端和磁盘，没有原始长度或者超过MAX_DECOMPRESSED_LENGTH时拒绝解压
+ *
+ * @author jorelwang
+ * @create 2026-10-16 19:40
+ */
+public class ZstdCompressor implements Compressor {
+
+    @Override
+    public byte[] compress(byte[] src, int level) throws IOException {
+        byte[] dest = new byte[(int) Zstd.compressBound(src.length)];
+        long compressedLength = Zstd.compress(dest, src, level);
+        if (Zstd.isError(compressedLength)) {
+            throw new IOException("Zstd compress failed: " + Zstd.getErrorName(compressedLength));
+        }
+        byte[] result = new byte[(int) compressedLength];
+        System.arraycopy(dest, 0, result, 0, result.length);
+        return result;
+    }
+
+    @Override
+    public byte[] decompress(byte[] src) throws IOException {
+        // 帧头中没有原始长度时返回负数，不能当作空消息处理
+        long originalLength = Zstd.getFrameContentSize(src);
+        if (originalLength < 0 || originalLength > MAX_DECOMPRESSED_LENGTH) {
+            throw new IOException("Illegal Zstd original length: " + originalLength);
+        }
+        byte[] dest = new byte[(int) originalLength];
+        long decompressedLength = Zstd.decompress(dest, src);
+        if (Zstd.isError(decompressedLength)) {
+            throw new IOException("Zstd decompress failed: " + Zstd.getErrorName(decompressedLength));
+        }
+        if (decompressedLength < originalLength) {
+            return Arrays.copyOf(dest, (int) decompressedLength);
+        }
+        return dest;
+    }
+}
@@ -0,0 +1,274 @@
+package com.echelon.hermes.common.message;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * 描述：消息的用户属性，以编码后的属性块保存，客户端、broker和存储使用同一种格式。
+ * 属性块格式：[keyLength(2) + key + valueLength(2) + value]*，key和value都是UTF-8编码，长度按无符号数读取。
+ * 按key读取时直接在属性块上比较，不创建Map；只有调用方需要Map时才解码，之后以Map为准，编码时重新生成属性块。
+ * 非线程安全，和所属的消息一样由一个线程使用
+ *
+ * @author jorelwang
+ * @create 2026-10-16 22:00
+ */
+public class MessageProperties {
+
+    private static final byte[] EMPTY = new byte[0];
+
+    // 长度字段为2字节无符号数，key和value编码后最长65535字节
+    public static final int MAX_KEY_VALUE_LENGTH = 0xFFFF;
+
+    // 编码后的属性块，map不为null时不再使用
+    private byte[] data;
+
+    // 解码后的属性，调用方通过toMap()取得后可能直接修改
+    private Map<String, String> map;
+
+    public MessageProperties() {
+        this.data = EMPTY;
+    }
+
+    private MessageProperties(final byte[] data) {
+        this.data = data;
+    }
+
+    /**
+     * 包装一个已经编码好的属性块，不拷贝数据，调用方之后不能再修改data
+     */
+    public static MessageProperties wrap(final byte[] data) {
+        return new MessageProperties(data == null ? EMPTY : data);
+    }
+
+    public static MessageProperties of(final Map<String, String> properties) {
+        MessageProperties messageProperties = new MessageProperties();
+        if (properties != null) {
+            messageProperties.map = properties;
+        }
+        return messageProperties;
+    }
+
+    /**
+     * 读取一个属性，不存在时返回null
+     */
+    public String get(final String key) {
+        if (this.map != null) {
+            return this.map.get(key);
+        }
+        return getProperty(ByteBuffer.wrap(this.data), 0, this.data.length, key);
+    }
+
+    /**
+     * 设置一个属性。key不存在时直接追加到属性块末尾，已经存在时解码为Map后修改
+     */
+    public void put(final String key, final String value) {
+        if (this.map == null && indexOf(ByteBuffer.wrap(this.data), 0, this.data.length, key) < 0) {
+            byte[] keyData = checkLength(key.getBytes(StandardCharsets.UTF_8));
+            byte[] valueData = value == null ? EMPTY : checkLength(value.getBytes(StandardCharsets.UTF_8));
+            ByteBuffer buffer = ByteBuffer.allocate(this.data.length + 2 + keyData.length + 2 + valueData.length);
+            buffer.put(this.data);
+            buffer.putShort((short) keyData.length);
+            buffer.put(keyData);
+            buffer.putShort((short) valueData.length);
+            buffer.put(valueData);
+            this.data = buffer.array();
+            return;
+        }
+        this.toMap().put(key, value);
+    }
+
+    /**
+     * 解码为Map，返回的Map就是属性本身，对它的修改会反映到之后的编码结果中
+     */
+    public Map<String, String> toMap() {
+        if (this.map == null) {
+            this.map = decode(ByteBuffer.wrap(this.data), this.data.length);
+            this.data = null;
+        }
+        return this.map;
+    }
+
+    /**
+     * 编码后的属性块。没有解码过时直接返回原来的属性块，不能修改返回的数组
+     */
+    public byte[] encode() {
+        return this.map != null ? encode(this.map) : this.data;
+    }
+
+    public boolean isEmpty() {
+        return this.map != null ? this.map.isEmpty() : this.data.length == 0;
+    }
+
+    /**
+     * 把Map编码为属性块
+     */
+    public static byte[] encode(final Map<String, String> properties) {
+        if (properties == null || properties.isEmpty()) {
+            return EMPTY;
+        }
+
+        int length = 0;
+        byte[][] encoded = new byte[properties.size() * 2][];
+        int i = 0;
+        for (Map.Entry<String, String> entry : properties.entrySet()) {
+            byte[] key = checkLength(entry.getKey().getBytes(StandardCharsets.UTF_8));
+            byte[] value = entry.getValue() == null
+                    ? EMPTY : checkLength(entry.getValue().getBytes(StandardCharsets.UTF_8));
+            encoded[i++] = key;
+            encoded[i++] = value;
+            length += 2 + key.length + 2 + value.length;
+        }
+
+        ByteBuffer buffer = ByteBuffer.allocate(length);
+        for (byte[] data : encoded) {
+            buffer.putShort((short) data.length);
+            buffer.put(data);
+        }
+        return buffer.array();
+    }
+
+    /**
+     * 从byteBuffer的当前位置解码长度为length的属性块，解码完成后position位于属性块末尾
+     *
+     * @throws IllegalArgumentException 属性块格式错误，某个长度超出了属性块的范围
+     */
+    public static Map<String, String> decode(final ByteBuffer byteBuffer, final int length) {
+        Map<String, String> properties = new HashMap<>();
+        int end = byteBuffer.position() + length;
+        while (byteBuffer.position() < end) {
+            String key = readString(byteBuffer, end);
+            String value = readString(byteBuffer, end);
+            properties.put(key, value);
+        }
+        return properties;
+    }
+
+    /**
+     * 检查属性块的格式：每个长度都在属性块范围内，最后一个value正好结束在属性块末尾。
+     * 属性块来自客户端时在写入存储之前检查一次，之后读取时不会遇到格式错误
+     */
+    public static boolean isValid(final byte[] data) {
+        int pos = 0;
+        while (pos < data.length) {
+            for (int i = 0; i < 2; i++) {
+                if (pos + 2 > data.length) {
+                    return false;
+                }
+                pos += 2 + (((data[pos] & 0xFF) << 8) | (data[pos + 1] & 0xFF));
+            }
+        }
+        return pos == data.length;
+    }
+
+    /**
+     * 直接在byteBuffer中从start开始、长度为length的属性块上查找一个属性，不影响position，
+     * 只有找到时才为value创建字符串，可以用在映射缓冲区上
+     *
+     * @return 属性值，不存在时返回null
+     */
+    public static String getProperty(final ByteBuffer byteBuffer, final int start, final int length,
+            final String key) {
+        int pos = indexOf(byteBuffer, start, length, key);
+        if (pos < 0) {
+            return null;
+        }
+        int valueLength = byteBuffer.getShort(pos) & 0xFFFF;
+        if (valueLength == 0) {
+            return "";
+        }
+        byte[] value = new byte[valueLength];
+        for (int i = 0; i < valueLength; i++) {
+            value[i] = byteBuffer.get(pos + 2 + i);
+        }
+        return new String(value, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * 查找key，返回它的valueLength所在的位置，不存在时返回-1。
+     * 长度按无符号数读取，每次至少前进4字节；任何长度超出属性块范围时视为格式错误，同样返回-1
+     */
+    private static int indexOf(final ByteBuffer byteBuffer, final int start, final int length, final String key) {
+        final int end = start + length;
+        int pos = start;
+        while (pos + 2 <= end) {
+            final int keyLength = byteBuffer.getShort(pos) & 0xFFFF;
+            final int valuePos = pos + 2 + keyLength;
+            if (valuePos + 2 > end) {
+                break;
+            }
+            final int nextPos = valuePos + 2 + (byteBuffer.getShort(valuePos) & 0xFFFF);
+            if (nextPos > end) {
+                break;
+            }
+            if (keyEquals(byteBuffer, pos + 2, keyLength, key)) {
+                return valuePos;
+            }
+            pos = nextPos;
+        }
+        return -1;
+    }
+
+    /**
+     * 比较属性块中的key和给定的key。属性名通常是ASCII，逐个字符比较不需要编码；含有非ASCII字符时才编码后比较
+     */
+    private static boolean keyEquals(final ByteBuffer byteBuffer, final int pos, final int keyLength,
+            final String key) {
+        final int length = key.length();
+        for (int i = 0; i < length; i++) {
+            if (key.charAt(i) >= 0x80) {
+                byte[] keyData = new byte[keyLength];
+                for (int j = 0; j < keyLength; j++) {
+                    keyData[j] = byteBuffer.get(pos + j);
+                }
+                return Arrays.equals(keyData, key.getBytes(StandardCharsets.UTF_8));
+            }
+        }
+        if (keyLength != length) {
+            return false;
+        }
+        for (int i = 0; i < length; i++) {
+            if (byteBuffer.get(pos + i) != (byte) key.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * 读取一个长度字段和它后面的字符串，超出end时抛出异常
+     */
+    private static String readString(final ByteBuffer byteBuffer, final int end) {
+        if (byteBuffer.position() + 2 > end) {
+            throw new IllegalArgumentException("Illegal properties, length field out of range, position: "
+                    + byteBuffer.position());
+        }
+        final int length = byteBuffer.getShort() & 0xFFFF;
+        if (byteBuffer.position() + length > end) {
+            throw new IllegalArgumentException("Illegal properties, length: " + length + " out of range, position: "
+                    + byteBuffer.position());
+        }
+        if (length == 0) {
+            return "";
+        }
+        byte[] data = new byte[length];
+        byteBuffer.get(data);
+        return new String(data, StandardCharsets.UTF_8);
+    }
+
+    private static byte[] checkLength(final byte[] data) {
+        if (data.length > MAX_KEY_VALUE_LENGTH) {
+            throw new IllegalArgumentException("Property key or value too long, length: " + data.length);
+        }
+        return data;
+    }
+
+    @Override
+    public String toString() {
+        Map<String, String> properties = this.map != null ? this.map
+                : decode(ByteBuffer.wrap(this.data), this.data.length);
+        return properties.toString();
+    }
+}
@@ -1,5 +1,7 @@
 package com.echelon.hermes.common.utils;
 
+import java.io.File;
+
 /**
  * 描述：存储相关的工具类
  *
@@ -30,4 +32,31 @@ public class StoreUtil {
         return String.format(format, offset);
     }
 
+    /**
+     * 获取path所在磁盘分区的使用率
+     * @param path  目录路径，不存在时会创建
+     * @return  0到1之间的使用率，获取失败时返回-1
+     */
+    public static double getDiskPartitionSpaceUsedPercent(final String path) {
+        if (path == null || path.isEmpty()) {
+            return -1;
+        }
+
+        try {
+            File file = new File(path);
+            if (!file.exists()) {
+                file.mkdirs();
+            }
+
+            long totalSpace = file.getTotalSpace();
+            if (totalSpace > 0) {
+                long freeSpace = file.getFreeSpace();
+                return (totalSpace - freeSpace) / (double) totalSpace;
+            }
+        } catch (Exception e) {
+            return -1;
+        }
+        return -1;
+    }
+
 }
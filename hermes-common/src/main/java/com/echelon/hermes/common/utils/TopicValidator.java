@@ -0,0 +1,54 @@
+package com.echelon.hermes.common.utils;
+
+/**
+ * 描述：主题名称校验。主题名会作为ConsumeQueue的目录名，只允许字母、数字和 %|_- ，
+ * 不能包含路径分隔符或"."，避免在存储目录之外创建文件
+ *
+ * @author jorelwang
+ * @create 2026-10-16 11:10
+ */
+public class TopicValidator {
+
+    /**
+     * 主题名编码后的最大长度，记录中用1个字节保存
+     */
+    public static final int TOPIC_MAX_LENGTH = Byte.MAX_VALUE;
+
+    // 按字符查表，比正则表达式 ^[%|a-zA-Z0-9_-]+$ 快，发送路径上每条消息都要校验
+    private static final boolean[] VALID_CHAR = new boolean[128];
+
+    static {
+        for (char c = 'a'; c <= 'z'; c++) {
+            VALID_CHAR[c] = true;
+        }
+        for (char c = 'A'; c <= 'Z'; c++) {
+            VALID_CHAR[c] = true;
+        }
+        for (char c = '0'; c <= '9'; c++) {
+            VALID_CHAR[c] = true;
+        }
+        VALID_CHAR['%'] = true;
+        VALID_CHAR['|'] = true;
+        VALID_CHAR['_'] = true;
+        VALID_CHAR['-'] = true;
+    }
+
+    private TopicValidator() {
+    }
+
+    /**
+     * @return 主题名不为空、长度不超过TOPIC_MAX_LENGTH并且只包含允许的字符时返回true
+     */
+    public static boolean isValid(final String topic) {
+        if (topic == null || topic.isEmpty() || topic.length() > TOPIC_MAX_LENGTH) {
+            return false;
+        }
+        for (int i = 0; i < topic.length(); i++) {
+            char c = topic.charAt(i);
+            if (c >= VALID_CHAR.length || !VALID_CHAR[c]) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
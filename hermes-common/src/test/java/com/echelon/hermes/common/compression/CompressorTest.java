@@ -0,0 +1,82 @@
+package com.echelon.hermes.common.compression;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import org.junit.jupiter.api.Test;
+
+/**
+ * 描述：压缩器测试，解压不可信的数据时必须抛出IOException，不能按声明的长度分配内存
+ *
+ * @author jorelwang
+ * @create 2026-10-16 11:50
+ */
+public class CompressorTest {
+
+    private static final int ZSTD_MAGIC = 0xFD2FB528;
+
+    private final byte[] data = createData();
+
+    @Test
+    public void testCompressAndDecompress() throws IOException {
+        for (CompressionType type : CompressionType.values()) {
+            Compressor compressor = CompressorFactory.getCompressor(type);
+            assertArrayEquals(data, compressor.decompress(compressor.compress(data, 3)));
+        }
+    }
+
+    @Test
+    public void testTruncatedOrCorruptData() throws IOException {
+        for (CompressionType type : CompressionType.values()) {
+            Compressor compressor = CompressorFactory.getCompressor(type);
+            byte[] compressed = compressor.compress(data, 3);
+            byte[] truncated = Arrays.copyOf(compressed, compressed.length / 2);
+            assertThrows(IOException.class, () -> compressor.decompress(truncated));
+            assertThrows(IOException.class, () -> compressor.decompress(new byte[0]));
+        }
+
+        byte[] corrupt = new ZlibCompressor().compress(data, 3);
+        Arrays.fill(corrupt, 2, corrupt.length, (byte) 0xFF);
+        assertThrows(IOException.class, () -> new ZlibCompressor().decompress(corrupt));
+    }
+
+    @Test
+    public void testOversizedDeclaredLength() throws IOException {
+        // LZ4长度前缀声明2GB
+        byte[] lz4 = new byte[16];
+        ByteBuffer.wrap(lz4).putInt(Integer.MAX_VALUE);
+        assertThrows(IOException.class, () -> new Lz4Compressor().decompress(lz4));
+
+        // Zstd帧头声明2GB：Single_Segment，8字节的Frame_Content_Size，后面没有数据块
+        ByteBuffer zstd = ByteBuffer.allocate(4 + 1 + 8).order(ByteOrder.LITTLE_ENDIAN);
+        zstd.putInt(ZSTD_MAGIC).put((byte) 0xE0).putLong(1L << 31);
+        assertThrows(IOException.class, () -> new ZstdCompressor().decompress(zstd.array()));
+
+        // Zlib不声明长度，解压超过上限时停止
+        byte[] zeros = new byte[1024 * 1024];
+        byte[] bomb = new ZlibCompressor().compress(zeros, 9);
+        assertArrayEquals(zeros, new ZlibCompressor(zeros.length).decompress(bomb));
+        assertThrows(IOException.class, () -> new ZlibCompressor(zeros.length - 1).decompress(bomb));
+    }
+
+    @Test
+    public void testZstdUnknownContentSize() {
+        // 帧头没有Frame_Content_Size，只有一个长度为0的原始数据块
+        ByteBuffer zstd = ByteBuffer.allocate(4 + 1 + 1 + 3).order(ByteOrder.LITTLE_ENDIAN);
+        zstd.putInt(ZSTD_MAGIC).put((byte) 0x00).put((byte) 0x00).put(new byte[]{1, 0, 0});
+        assertThrows(IOException.class, () -> new ZstdCompressor().decompress(zstd.array()));
+    }
+
+    private static byte[] createData() {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < 1000; i++) {
+            sb.append("hermes message body ").append(i).append('\n');
+        }
+        return sb.toString().getBytes(StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,71 @@
+package com.echelon.hermes.common.message;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import org.junit.jupiter.api.Test;
+
+/**
+ * 描述：MessageProperties测试类
+ *
+ * @author jorelwang
+ * @create 2026-10-16 10:40
+ */
+public class MessagePropertiesTest {
+
+    @Test
+    public void testMalformedBlock() {
+        // keyLength为0xFFFE，按有符号数读取时查找会原地循环
+        byte[] data = new byte[]{(byte) 0xFF, (byte) 0xFE, 'a', 'b', 0, 0};
+        MessageProperties properties = MessageProperties.wrap(data);
+        assertNull(properties.get("TAGS"));
+        assertNull(MessageProperties.getProperty(ByteBuffer.wrap(data), 0, data.length, "TAGS"));
+        assertThrows(IllegalArgumentException.class, properties::toMap);
+
+        // key正常，valueLength超出属性块
+        ByteBuffer buffer = ByteBuffer.allocate(2 + 4 + 2 + 1);
+        buffer.putShort((short) 4).put("TAGS".getBytes(StandardCharsets.UTF_8)).putShort((short) 100).put((byte) 'a');
+        byte[] truncated = buffer.array();
+        assertNull(MessageProperties.wrap(truncated).get("TAGS"));
+        assertThrows(IllegalArgumentException.class, () -> MessageProperties.wrap(truncated).toMap());
+
+        // 只剩一个字节的长度字段
+        assertThrows(IllegalArgumentException.class, () -> MessageProperties.wrap(new byte[]{1}).toMap());
+    }
+
+    @Test
+    public void testLongValue() {
+        char[] chars = new char[40000];
+        Arrays.fill(chars, 'v');
+        String value = new String(chars);
+
+        MessageProperties properties = new MessageProperties();
+        properties.put("KEYS", value);
+        properties.put("TAGS", "tagA");
+        byte[] data = properties.encode();
+
+        MessageProperties decoded = MessageProperties.wrap(data);
+        assertEquals(value, decoded.get("KEYS"));
+        assertEquals("tagA", decoded.get("TAGS"));
+        assertEquals(value, MessageProperties.getProperty(ByteBuffer.wrap(data), 0, data.length, "KEYS"));
+        assertEquals(value, decoded.toMap().get("KEYS"));
+        assertEquals("tagA", decoded.toMap().get("TAGS"));
+
+        Map<String, String> map = new HashMap<>();
+        map.put("KEYS", value);
+        assertEquals(value, MessageProperties.wrap(MessageProperties.encode(map)).get("KEYS"));
+
+        // 超过长度字段能表示的范围
+        char[] tooLong = new char[MessageProperties.MAX_KEY_VALUE_LENGTH + 1];
+        Arrays.fill(tooLong, 'v');
+        assertThrows(IllegalArgumentException.class, () -> properties.put("BIG", new String(tooLong)));
+        map.put("BIG", new String(tooLong));
+        assertThrows(IllegalArgumentException.class, () -> MessageProperties.encode(map));
+    }
+}
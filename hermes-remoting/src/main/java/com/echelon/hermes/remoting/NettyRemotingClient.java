@@ -4,6 +4,8 @@ import com.echelon.hermes.remoting.protocol.CommandDecoder;
 import com.echelon.hermes.remoting.protocol.CommandEncoder;
 import com.echelon.hermes.remoting.protocol.RemotingCommand;
 import io.netty.bootstrap.Bootstrap;
+import io.netty.buffer.PooledByteBufAllocator;
+import io.netty.buffer.UnpooledByteBufAllocator;
 import io.netty.channel.Channel;
 import io.netty.channel.ChannelFuture;
 import io.netty.channel.ChannelHandlerContext;
@@ -12,11 +14,15 @@ import io.netty.channel.ChannelInitializer;
 import io.netty.channel.ChannelOption;
 import io.netty.channel.EventLoopGroup;
 import io.netty.channel.SimpleChannelInboundHandler;
+import io.netty.channel.WriteBufferWaterMark;
+import io.netty.channel.epoll.Epoll;
+import io.netty.channel.epoll.EpollEventLoopGroup;
+import io.netty.channel.epoll.EpollSocketChannel;
 import io.netty.channel.nio.NioEventLoopGroup;
 import io.netty.channel.socket.SocketChannel;
 import io.netty.channel.socket.nio.NioSocketChannel;
-import io.netty.handler.codec.LengthFieldBasedFrameDecoder;
 import io.netty.handler.timeout.IdleStateHandler;
+import io.netty.util.concurrent.DefaultThreadFactory;
 import java.net.SocketAddress;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
@@ -36,24 +42,60 @@ public class NettyRemotingClient {
 
     private static final Logger log = LoggerFactory.getLogger(NettyRemotingClient.class);
 
+    private final NettyClientConfig nettyClientConfig;
     private final Bootstrap bootstrap;
     private final EventLoopGroup worderGroup;
+    // 是否使用epoll，创建时根据配置和平台决定
+    private final boolean useEpoll;
     private Channel channel;
+    // 编码器没有状态，所有连接共用
+    private final CommandEncoder commandEncoder = new CommandEncoder();
 
     // 存储requestId和Future的映射
     private final ConcurrentHashMap<Integer, CompletableFuture<RemotingCommand>> responseFutures
             = new ConcurrentHashMap<>();
 
     public NettyRemotingClient() {
+        this(new NettyClientConfig());
+    }
+
+    public NettyRemotingClient(final NettyClientConfig nettyClientConfig) {
+        this.nettyClientConfig = nettyClientConfig;
         this.bootstrap = new Bootstrap();
-        this.worderGroup = new NioEventLoopGroup();
+        this.useEpoll = useEpoll();
+        if (this.useEpoll) {
+            this.worderGroup = new EpollEventLoopGroup(nettyClientConfig.getClientWorkerThreads(),
+                    new DefaultThreadFactory("NettyClientEpollWorker"));
+        } else {
+            this.worderGroup = new NioEventLoopGroup(nettyClientConfig.getClientWorkerThreads(),
+                    new DefaultThreadFactory("NettyClientNioWorker"));
+        }
+    }
+
+    /**
+     * 配置开启并且当前平台支持时使用epoll，原生库加载失败时退回NIO
+     */
+    private boolean useEpoll() {
+        if (!this.nettyClientConfig.isUseEpollNativeSelector()) {
+            return false;
+        }
+        if (!Epoll.isAvailable()) {
+            log.info("Epoll is unavailable, fall back to NIO: {}", Epoll.unavailabilityCause().toString());
+            return false;
+        }
+        return true;
     }
 
     public void start() {
         this.bootstrap.group(worderGroup)
-                .channel(NioSocketChannel.class)
+                .channel(useEpoll ? EpollSocketChannel.class : NioSocketChannel.class)
                 .option(ChannelOption.TCP_NODELAY, true)
                 .option(ChannelOption.SO_KEEPALIVE, true)
+                .option(ChannelOption.CONNECT_TIMEOUT_MILLIS, nettyClientConfig.getConnectTimeoutMillis())
+                .option(ChannelOption.ALLOCATOR, nettyClientConfig.isClientPooledByteBufAllocatorEnable()
+                        ? PooledByteBufAllocator.DEFAULT : UnpooledByteBufAllocator.DEFAULT)
+                .option(ChannelOption.WRITE_BUFFER_WATER_MARK, new WriteBufferWaterMark(
+                        nettyClientConfig.getWriteBufferLowWaterMark(), nettyClientConfig.getWriteBufferHighWaterMark()))
                 .handler(new ChannelInitializer<SocketChannel>() {
 
                     /**
@@ -73,12 +115,19 @@ public class NettyRemotingClient {
                         ch.pipeline()
                                 // 5秒没发送数据，会触发一个IdleStateEvent
                                 .addLast(new IdleStateHandler(0, 5, 0))
-                                .addLast(new LengthFieldBasedFrameDecoder(1024*1024, 0, 4, 0, 4))
-                                .addLast(new CommandEncoder())
+                                .addLast(commandEncoder)
                                 .addLast(new CommandDecoder())
                                 .addLast(new ClientHandler());
                     }
                 });
+
+        // 0表示使用系统默认值，不设置
+        if (nettyClientConfig.getClientSocketSndBufSize() > 0) {
+            this.bootstrap.option(ChannelOption.SO_SNDBUF, nettyClientConfig.getClientSocketSndBufSize());
+        }
+        if (nettyClientConfig.getClientSocketRcvBufSize() > 0) {
+            this.bootstrap.option(ChannelOption.SO_RCVBUF, nettyClientConfig.getClientSocketRcvBufSize());
+        }
     }
 
     public void connect(SocketAddress address) throws InterruptedException {
@@ -121,6 +170,8 @@ public class NettyRemotingClient {
         protected void channelRead0(ChannelHandlerContext ctx, RemotingCommand response) throws Exception {
             CompletableFuture<RemotingCommand> future = responseFutures.remove(response.getRequestId());
             if (future != null) {
+                // 响应交给调用方线程使用，先把body拷贝到堆内并释放入站缓冲区
+                response.setBody(response.getBody());
                 future.complete(response);
             } else {
                 log.error("Received unexpected response: {}", response);
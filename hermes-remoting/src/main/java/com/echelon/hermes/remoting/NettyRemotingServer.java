@@ -5,6 +5,10 @@ import com.echelon.hermes.remoting.protocol.CommandDecoder;
 import com.echelon.hermes.remoting.protocol.CommandEncoder;
 import com.echelon.hermes.remoting.protocol.RemotingCommand;
 import io.netty.bootstrap.ServerBootstrap;
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.buffer.PooledByteBufAllocator;
+import io.netty.buffer.UnpooledByteBufAllocator;
+import io.netty.channel.Channel;
 import io.netty.channel.ChannelFuture;
 import io.netty.channel.ChannelHandler.Sharable;
 import io.netty.channel.ChannelHandlerContext;
@@ -13,14 +17,26 @@ import io.netty.channel.ChannelInitializer;
 import io.netty.channel.ChannelOption;
 import io.netty.channel.EventLoopGroup;
 import io.netty.channel.SimpleChannelInboundHandler;
+import io.netty.channel.WriteBufferWaterMark;
+import io.netty.channel.epoll.Epoll;
+import io.netty.channel.epoll.EpollChannelOption;
+import io.netty.channel.epoll.EpollEventLoopGroup;
+import io.netty.channel.epoll.EpollServerSocketChannel;
 import io.netty.channel.nio.NioEventLoopGroup;
 import io.netty.channel.socket.SocketChannel;
 import io.netty.channel.socket.nio.NioServerSocketChannel;
-import io.netty.handler.codec.LengthFieldBasedFrameDecoder;
 import io.netty.handler.logging.LogLevel;
 import io.netty.handler.logging.LoggingHandler;
+import io.netty.util.concurrent.DefaultThreadFactory;
 import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
 import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -35,61 +51,204 @@ public class NettyRemotingServer {
     private static final Logger log = LoggerFactory.getLogger(NettyRemotingServer.class);
 
 
+    private final NettyServerConfig nettyServerConfig;
     // netty服务端启动对象
     private final ServerBootstrap serverBootstrap;
-    // netty boss 组线程池 一般只有一个线程。
+    // netty boss 组线程池，开启SO_REUSEPORT时每个线程持有一个监听socket，否则只有一个线程
     private final EventLoopGroup bossGroup;
     // netty worker 组线程池
     private final EventLoopGroup workerGroup;
-    // 服务器绑定的端口，启动之后会改为config设置的端口
-    private int port = 0;
+    // 是否使用epoll，启动时根据配置和平台决定
+    private final boolean useEpoll;
+    // 绑定端口后得到的监听channel
+    private final List<Channel> serverChannels = new ArrayList<>();
+    // 编码器没有状态，所有连接共用
+    private final CommandEncoder commandEncoder = new CommandEncoder();
+    // 请求码 -> 处理器和执行它的线程池，启动前注册，之后只读
+    private final HashMap<Short, ProcessorPair> processorTable = new HashMap<>(64);
+    // 因为线程池已满回复SYSTEM_BUSY的次数，用于限制日志数量
+    private final AtomicLong busyCount = new AtomicLong(0);
 
-    public NettyRemotingServer(int port) {
-        this.port = port;
+    public NettyRemotingServer(final NettyServerConfig nettyServerConfig) {
+        this.nettyServerConfig = nettyServerConfig;
         this.serverBootstrap = new ServerBootstrap();
-        this.bossGroup = new NioEventLoopGroup(1); // 负责处理连接
-        this.workerGroup = new NioEventLoopGroup(); // 负责处理IO事件
+        this.useEpoll = useEpoll();
+        int bossThreads = this.useReusePort() ? Math.max(nettyServerConfig.getServerBossThreads(), 1) : 1;
+        if (this.useEpoll) {
+            this.bossGroup = new EpollEventLoopGroup(bossThreads, new DefaultThreadFactory("NettyEpollBoss"));
+            this.workerGroup = new EpollEventLoopGroup(nettyServerConfig.getServerWorkerThreads(),
+                    new DefaultThreadFactory("NettyServerEpollWorker"));
+        } else {
+            this.bossGroup = new NioEventLoopGroup(bossThreads, new DefaultThreadFactory("NettyNioBoss"));
+            this.workerGroup = new NioEventLoopGroup(nettyServerConfig.getServerWorkerThreads(),
+                    new DefaultThreadFactory("NettyServerNioWorker"));
+        }
+    }
+
+    /**
+     * 配置开启并且当前平台支持时使用epoll，原生库加载失败时退回NIO
+     */
+    private boolean useEpoll() {
+        if (!this.nettyServerConfig.isUseEpollNativeSelector()) {
+            return false;
+        }
+        if (!Epoll.isAvailable()) {
+            log.info("Epoll is unavailable, fall back to NIO: {}", Epoll.unavailabilityCause().toString());
+            return false;
+        }
+        return true;
+    }
+
+    private boolean useReusePort() {
+        return this.useEpoll && this.nettyServerConfig.isUseReusePort();
+    }
+
+    /**
+     * 注册请求处理器，必须在start()之前调用。
+     * 不同类型的请求使用不同的有界线程池，一类请求堆积时不会影响其他请求，也不会阻塞IO线程
+     *
+     * @param code      请求码
+     * @param processor 处理器
+     * @param executor  执行处理器的线程池，队列满时应当抛出RejectedExecutionException
+     */
+    public void registerProcessor(final short code, final NettyRequestProcessor processor,
+            final ExecutorService executor) {
+        this.processorTable.put(code, new ProcessorPair(processor, executor));
     }
 
     public void start() {
+        ByteBufAllocator allocator = nettyServerConfig.isServerPooledByteBufAllocatorEnable()
+                ? PooledByteBufAllocator.DEFAULT : UnpooledByteBufAllocator.DEFAULT;
         this.serverBootstrap.group(bossGroup, workerGroup)
-                .channel(NioServerSocketChannel.class)
+                .channel(useEpoll ? EpollServerSocketChannel.class : NioServerSocketChannel.class)
                 .option(ChannelOption.SO_BACKLOG, 1024)
                 .option(ChannelOption.SO_REUSEADDR, true)
+                .option(ChannelOption.ALLOCATOR, allocator)
                 .childOption(ChannelOption.SO_KEEPALIVE, true) // 客户端ch选项
-                .localAddress(new InetSocketAddress(port))  // 设置服务器端口
+                .childOption(ChannelOption.TCP_NODELAY, true)
+                .childOption(ChannelOption.ALLOCATOR, allocator)
+                .childOption(ChannelOption.WRITE_BUFFER_WATER_MARK, new WriteBufferWaterMark(
+                        nettyServerConfig.getWriteBufferLowWaterMark(), nettyServerConfig.getWriteBufferHighWaterMark()))
+                .localAddress(new InetSocketAddress(nettyServerConfig.getListenPort()))  // 设置服务器端口
                 .handler(new LoggingHandler(LogLevel.INFO)) // BossGroup的日志
                 .childHandler(new ChannelInitializer<SocketChannel>() {
                     @Override
                     public void initChannel(SocketChannel ch) throws Exception {
                         // 初始化客户端 ch pipeline的逻辑
                         ch.pipeline()
-                                .addLast(new LengthFieldBasedFrameDecoder(
-                                        1024 * 1024,
-                                        0,      // lengthFieldOffset: 总长度字段的偏移量
-                                        4,                    // lengthFieldLength: 总长度字段的长度
-                                        0,                    // lengthAdjustment
-                                        4                     // initialBytesToStrip: 剥离掉总长度字段
-                                ))
-                                .addLast(new CommandEncoder())
+                                .addLast(commandEncoder)
+                                // 拆帧和解码在CommandDecoder中一起完成
                                 .addLast(new CommandDecoder())
                                 .addLast(new ServerHandler()); // 自己的业务处理器
                     }
                 });
 
+        // 0表示使用系统默认值，不设置
+        if (nettyServerConfig.getServerSocketSndBufSize() > 0) {
+            this.serverBootstrap.childOption(ChannelOption.SO_SNDBUF, nettyServerConfig.getServerSocketSndBufSize());
+        }
+        if (nettyServerConfig.getServerSocketRcvBufSize() > 0) {
+            this.serverBootstrap.childOption(ChannelOption.SO_RCVBUF, nettyServerConfig.getServerSocketRcvBufSize());
+        }
+        if (useEpoll && nettyServerConfig.isTcpQuickAck()) {
+            this.serverBootstrap.childOption(EpollChannelOption.TCP_QUICKACK, true);
+        }
+
+        // 开启SO_REUSEPORT时在每个boss线程上各绑定一次，内核把新连接分散到这些监听socket上
+        int bindTimes = 1;
+        if (useReusePort()) {
+            this.serverBootstrap.option(EpollChannelOption.SO_REUSEPORT, true);
+            bindTimes = Math.max(nettyServerConfig.getServerBossThreads(), 1);
+        }
+
         try {
-            ChannelFuture future = serverBootstrap.bind().sync();
-            log.info("NettyRemotingServer started and listen on port: {}", port);
+            for (int i = 0; i < bindTimes; i++) {
+                ChannelFuture future = serverBootstrap.bind().sync();
+                this.serverChannels.add(future.channel());
+            }
+            log.info("NettyRemotingServer started and listen on port: {}, transport: {}, listeners: {}",
+                    nettyServerConfig.getListenPort(), useEpoll ? "epoll" : "nio", bindTimes);
         } catch (InterruptedException e) {
             throw new RuntimeException("Start server failed", e);
         }
     }
 
     public void shutdown() {
+        for (Channel channel : serverChannels) {
+            channel.close();
+        }
         bossGroup.shutdownGracefully();
         workerGroup.shutdownGracefully();
     }
 
+    /**
+     * 把请求交给注册的处理器，在处理器的线程池中执行
+     */
+    private void processRequestCommand(final ChannelHandlerContext ctx, final RemotingCommand request) {
+        final ProcessorPair pair = this.processorTable.get(request.getCode());
+        final int requestId = request.getRequestId();
+        if (pair == null) {
+            log.warn("Request code {} not supported, from {}", request.getCode(), ctx.channel().remoteAddress());
+            writeResponse(ctx, request, RemotingCommand.createResponseCommand(
+                    RemotingCommandCode.REQUEST_CODE_NOT_SUPPORTED,
+                    "request code " + request.getCode() + " not supported", requestId));
+            return;
+        }
+
+        if (pair.getProcessor().rejectRequest()) {
+            writeResponse(ctx, request, RemotingCommand.createResponseCommand(RemotingCommandCode.SYSTEM_BUSY,
+                    "[REJECTREQUEST]system busy, start flow control for a while", requestId));
+            return;
+        }
+
+        // channelRead0返回后body会被释放，交给线程池之前增加一次引用，处理完成后释放
+        request.retain();
+        Runnable task = () -> {
+            CompletableFuture<RemotingCommand> responseFuture;
+            try {
+                responseFuture = pair.getProcessor().asyncProcessRequest(ctx, request);
+            } catch (Throwable e) {
+                responseFuture = new CompletableFuture<>();
+                responseFuture.completeExceptionally(e);
+            } finally {
+                request.release();
+            }
+            // 异步处理器的future可能在其他线程中完成，writeAndFlush会把写操作交给channel所在的IO线程
+            responseFuture.whenComplete((response, e) -> {
+                if (e != null) {
+                    log.error("Process request failed, code: {}, requestId: {}", request.getCode(), requestId, e);
+                    writeResponse(ctx, request, RemotingCommand.createResponseCommand(
+                            RemotingCommandCode.SYSTEM_ERROR, e.toString(), requestId));
+                } else if (response != null) {
+                    writeResponse(ctx, request, response);
+                }
+            });
+        };
+
+        try {
+            pair.getExecutor().execute(task);
+        } catch (RejectedExecutionException e) {
+            request.release();
+            // 过载时每次都打印会让日志成为新的瓶颈
+            if (this.busyCount.getAndIncrement() % 10000 == 0) {
+                log.warn("{} too many requests and system thread pool busy, RejectedExecutionException, "
+                        + "request code: {}", ctx.channel().remoteAddress(), request.getCode());
+            }
+            writeResponse(ctx, request, RemotingCommand.createResponseCommand(RemotingCommandCode.SYSTEM_BUSY,
+                    "[OVERLOAD]system busy, start flow control for a while", requestId));
+        }
+    }
+
+    /**
+     * 写回响应。响应使用和请求相同的序列化方式，客户端只需要支持自己发出请求时使用的格式
+     */
+    private static void writeResponse(final ChannelHandlerContext ctx, final RemotingCommand request,
+            final RemotingCommand response) {
+        response.setRequestId(request.getRequestId());
+        response.setSerializeTypeCurrentRPC(request.getSerializeTypeCurrentRPC());
+        ctx.writeAndFlush(response);
+    }
+
     @Sharable
     class ServerHandler extends SimpleChannelInboundHandler<RemotingCommand> {
 
@@ -103,13 +262,13 @@ public class NettyRemotingServer {
          */
         @Override
         protected void channelRead0(ChannelHandlerContext ctx, RemotingCommand request) throws Exception {
-            log.info("Server received command: {}", request);
+            log.debug("Server received command: {}", request);
             if (Objects.equals(request.getCode(), RemotingCommandCode.PING)) {
-                // 如果是PING请求，回复一个PONG响应
+                // PING不需要访问存储，直接在IO线程中回复PONG
                 RemotingCommand response = RemotingCommand.createPongResponse(request.getRequestId());
-                ctx.writeAndFlush(response);
+                writeResponse(ctx, request, response);
             } else {
-                log.info("Server received unknown command: {}", request);
+                processRequestCommand(ctx, request);
             }
         }
 
@@ -120,4 +279,21 @@ public class NettyRemotingServer {
         }
     }
 
+    private static final class ProcessorPair {
+        private final NettyRequestProcessor processor;
+        private final ExecutorService executor;
+
+        ProcessorPair(NettyRequestProcessor processor, ExecutorService executor) {
+            this.processor = processor;
+            this.executor = executor;
+        }
+
+        NettyRequestProcessor getProcessor() {
+            return processor;
+        }
+
+        ExecutorService getExecutor() {
+            return executor;
+        }
+    }
 }
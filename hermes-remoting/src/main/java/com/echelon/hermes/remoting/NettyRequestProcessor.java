@@ -0,0 +1,41 @@
+package com.echelon.hermes.remoting;
+
+import com.echelon.hermes.remoting.protocol.RemotingCommand;
+import io.netty.channel.ChannelHandlerContext;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * 描述：请求处理器，按请求码注册到NettyRemotingServer上，在注册时指定的线程池中执行，不占用IO线程。
+ * 需要等待IO的处理器（例如等待刷盘的写入）实现asyncProcessRequest，处理线程提交后立即返回
+ *
+ * @author jorelwang
+ * @create 2026-10-16 23:40
+ */
+public interface NettyRequestProcessor {
+
+    /**
+     * 处理一个请求。request的body在方法返回后会被释放，需要在返回后继续使用时先调用retain()
+     *
+     * @return 响应，由服务端写回并设置requestId和请求的序列化方式；返回null表示处理器自己负责写回响应
+     * @throws Exception 处理失败时服务端回复SYSTEM_ERROR
+     */
+    RemotingCommand processRequest(ChannelHandlerContext ctx, RemotingCommand request) throws Exception;
+
+    /**
+     * 异步处理一个请求，服务端在future完成时写回响应，处理线程不需要等待。
+     * 默认在当前线程调用processRequest；body同样只在方法返回之前有效
+     *
+     * @return 响应的future，完成值为null时不写回响应，异常完成时服务端回复SYSTEM_ERROR
+     */
+    default CompletableFuture<RemotingCommand> asyncProcessRequest(ChannelHandlerContext ctx,
+            RemotingCommand request) throws Exception {
+        return CompletableFuture.completedFuture(processRequest(ctx, request));
+    }
+
+    /**
+     * 是否暂时拒绝新的请求，返回true时服务端直接回复SYSTEM_BUSY，请求不会进入线程池
+     */
+    default boolean rejectRequest() {
+        return false;
+    }
+}
@@ -0,0 +1,127 @@
+package com.echelon.hermes.remoting;
+
+/**
+ * 描述：网络服务端相关的配置项
+ *
+ * @author jorelwang
+ * @create 2026-10-16 23:10
+ */
+public class NettyServerConfig {
+
+    // 服务端监听的端口
+    private int listenPort = 8888;
+
+    // 接收连接的线程数，只有开启SO_REUSEPORT时才会在多个线程上各绑定一次端口，否则只使用一个线程
+    private int serverBossThreads = 1;
+
+    // 处理IO事件的线程数
+    private int serverWorkerThreads = Runtime.getRuntime().availableProcessors() * 2;
+
+    // Linux上可用时使用epoll，否则使用NIO
+    private boolean useEpollNativeSelector = true;
+
+    // 开启后多个boss线程各自持有一个监听socket，由内核在它们之间分配新连接，只在epoll下生效
+    private boolean useReusePort = false;
+
+    // 收到数据后立即回复ACK，不等待延迟确认，只在epoll下生效
+    private boolean tcpQuickAck = false;
+
+    // 连接的发送、接收缓冲区大小，0表示使用系统默认值（由内核自动调整）
+    private int serverSocketSndBufSize = 0;
+    private int serverSocketRcvBufSize = 0;
+
+    // 连接的写缓冲区水位，超过高水位后channel变为不可写，降到低水位以下后恢复
+    private int writeBufferLowWaterMark = 32 * 1024;
+    private int writeBufferHighWaterMark = 64 * 1024;
+
+    // 是否使用池化的ByteBuf分配器
+    private boolean serverPooledByteBufAllocatorEnable = true;
+
+    public int getListenPort() {
+        return listenPort;
+    }
+
+    public void setListenPort(int listenPort) {
+        this.listenPort = listenPort;
+    }
+
+    public int getServerBossThreads() {
+        return serverBossThreads;
+    }
+
+    public void setServerBossThreads(int serverBossThreads) {
+        this.serverBossThreads = serverBossThreads;
+    }
+
+    public int getServerWorkerThreads() {
+        return serverWorkerThreads;
+    }
+
+    public void setServerWorkerThreads(int serverWorkerThreads) {
+        this.serverWorkerThreads = serverWorkerThreads;
+    }
+
+    public boolean isUseEpollNativeSelector() {
+        return useEpollNativeSelector;
+    }
+
+    public void setUseEpollNativeSelector(boolean useEpollNativeSelector) {
+        this.useEpollNativeSelector = useEpollNativeSelector;
+    }
+
+    public boolean isUseReusePort() {
+        return useReusePort;
+    }
+
+    public void setUseReusePort(boolean useReusePort) {
+        this.useReusePort = useReusePort;
+    }
+
+    public boolean isTcpQuickAck() {
+        return tcpQuickAck;
+    }
+
+    public void setTcpQuickAck(boolean tcpQuickAck) {
+        this.tcpQuickAck = tcpQuickAck;
+    }
+
+    public int getServerSocketSndBufSize() {
+        return serverSocketSndBufSize;
+    }
+
+    public void setServerSocketSndBufSize(int serverSocketSndBufSize) {
+        this.serverSocketSndBufSize = serverSocketSndBufSize;
+    }
+
+    public int getServerSocketRcvBufSize() {
+        return serverSocketRcvBufSize;
+    }
+
+    public void setServerSocketRcvBufSize(int serverSocketRcvBufSize) {
+        this.serverSocketRcvBufSize = serverSocketRcvBufSize;
+    }
+
+    public int getWriteBufferLowWaterMark() {
+        return writeBufferLowWaterMark;
+    }
+
+    public void setWriteBufferLowWaterMark(int writeBufferLowWaterMark) {
+        this.writeBufferLowWaterMark = writeBufferLowWaterMark;
+    }
+
+    public int getWriteBufferHighWaterMark() {
+        return writeBufferHighWaterMark;
+    }
+
+    public void setWriteBufferHighWaterMark(int writeBufferHighWaterMark) {
+        this.writeBufferHighWaterMark = writeBufferHighWaterMark;
+    }
+
+    public boolean isServerPooledByteBufAllocatorEnable() {
+        return serverPooledByteBufAllocatorEnable;
+    }
+
+    public void setServerPooledByteBufAllocatorEnable(boolean serverPooledByteBufAllocatorEnable) {
+        this.serverPooledByteBufAllocatorEnable = serverPooledByteBufAllocatorEnable;
+    }
+}
@@ -2,50 +2,69 @@ package com.echelon.hermes.remoting.protocol;
 
 import io.netty.buffer.ByteBuf;
 import io.netty.channel.ChannelHandlerContext;
-import io.netty.handler.codec.ByteToMessageDecoder;
-import java.util.List;
+import io.netty.handler.codec.CorruptedFrameException;
+import io.netty.handler.codec.LengthFieldBasedFrameDecoder;
 
 /**
- * 描述：rocketMq的decoder直接继承的LengthFieldBasedFrameDecoder
+ * 描述：与rocketMq的NettyDecoder一样直接继承LengthFieldBasedFrameDecoder，拆帧和解码在同一个handler中完成。
+ * 父类返回的帧是累积缓冲区的retained切片，header直接在帧上解码，body是帧的retained切片，整个过程不拷贝数据。
+ * body持有累积缓冲区的引用，由RemotingCommand负责释放
  *
  * @author jorelwang
  * @create 2025-09-18 20:22
  */
-public class CommandDecoder extends ByteToMessageDecoder {
+public class CommandDecoder extends LengthFieldBasedFrameDecoder {
+
+    // 默认的最大帧长度
+    public static final int FRAME_MAX_LENGTH = 1024 * 1024;
+
+    public CommandDecoder() {
+        this(FRAME_MAX_LENGTH);
+    }
+
+    public CommandDecoder(int frameMaxLength) {
+        // lengthFieldOffset=0, lengthFieldLength=4, initialBytesToStrip=4，帧中不包含总长度字段
+        super(frameMaxLength, 0, 4, 0, 4);
+    }
 
     /**
-     * Decode the from one {@link ByteBuf} to an other. This method will be called till either the input
-     * {@link ByteBuf} has nothing to read when return from this method or till nothing was read from the input
-     * {@link ByteBuf}.
+     * 帧的内容为: Header长度(4字节) + Header内容 + Body内容
      *
-     * @param ctx the {@link ChannelHandlerContext} which this {@link ByteToMessageDecoder} belongs to
+     * @param ctx the {@link ChannelHandlerContext} which this {@link LengthFieldBasedFrameDecoder} belongs to
      * @param in the {@link ByteBuf} from which to read data
-     * @param out the {@link List} to which decoded messages should be added
+     * @return 解码出的RemotingCommand，数据不足一帧时返回null
      * @throws Exception is thrown if an error occurs
      */
     @Override
-    protected void decode(ChannelHandlerContext ctx, ByteBuf in, List<Object> out) throws Exception {
-        // 我们在LengthFieldBasedFrameDecoder中设置了lengthFieldOffset=0, lengthFieldLength=4
-        // 所以Netty传入的in ByteBuf已经是去掉了“总长度”字段的、完整的包体。
-        // 即 in ByteBuf 的内容为: Header长度(4字节) + Header内容 + Body内容
-
-        // 1、读取header长度
-        int headerLength = in.readInt();
-
-        // 2、读取并解码header
-        byte[] headerData = new byte[headerLength];
-        System.out.printf("headerLength: %d\n", headerLength);
-        in.readBytes(headerData);
-        RemotingCommand cmd = RemotingCommand.decodeHeader(headerData);
-
-        // 3、读取body
-        int bodyLength = in.readableBytes();
-        if (bodyLength > 0) {
-            byte[] bodyData = new byte[bodyLength];
-            in.readBytes(bodyData);
-            cmd.setBody(bodyData);
+    protected Object decode(ChannelHandlerContext ctx, ByteBuf in) throws Exception {
+        ByteBuf frame = (ByteBuf) super.decode(ctx, in);
+        if (frame == null) {
+            return null;
         }
 
-        out.add(cmd);
+        try {
+            // 1、读取header长度，最高字节是header的序列化方式
+            int oriHeaderLength = frame.readInt();
+            int headerLength = RemotingCommand.getHeaderLength(oriHeaderLength);
+            SerializeType type = RemotingCommand.getProtocolType(oriHeaderLength);
+            if (type == null) {
+                throw new CorruptedFrameException("Unknown serialize type: " + (oriHeaderLength >>> 24));
+            }
+            if (headerLength > frame.readableBytes()) {
+                throw new CorruptedFrameException("Header length " + headerLength + " exceeds frame length "
+                        + frame.readableBytes());
+            }
+
+            // 2、直接在帧上解码header
+            RemotingCommand cmd = RemotingCommand.decodeHeader(frame.readSlice(headerLength), type);
+
+            // 3、body是帧的切片，增加一次引用，帧本身在finally中释放
+            if (frame.isReadable()) {
+                cmd.setBodyBuf(frame.readRetainedSlice(frame.readableBytes()));
+            }
+            return cmd;
+        } finally {
+            frame.release();
+        }
     }
 }
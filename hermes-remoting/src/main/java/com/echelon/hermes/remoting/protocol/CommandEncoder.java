@@ -1,49 +1,71 @@
 package com.echelon.hermes.remoting.protocol;
 
 import io.netty.buffer.ByteBuf;
+import io.netty.buffer.CompositeByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.ChannelHandler.Sharable;
 import io.netty.channel.ChannelHandlerContext;
-import io.netty.handler.codec.MessageToByteEncoder;
+import io.netty.handler.codec.MessageToMessageEncoder;
+import java.util.List;
 
 /**
- * 描述：TODO...
+ * 描述：把RemotingCommand编码为一帧。
+ * 帧头写入从ctx.alloc()分配的池化缓冲区，body不拷贝，和帧头组合为CompositeByteBuf一起发送。
+ * 没有状态，所有Channel共用一个实例
  *
  * @author jorelwang
  * @create 2025-09-18 09:48
  */
-public class CommandEncoder extends MessageToByteEncoder<RemotingCommand> {
+@Sharable
+public class CommandEncoder extends MessageToMessageEncoder<RemotingCommand> {
 
     /**
      * 协议格式:
-     * 总长度(4字节) + Header长度(4字节) + Header内容 + Body内容
+     * 总长度(4字节) + Header长度(4字节，最高字节是SerializeType) + Header内容 + Body内容
      * <p>
-     * Encode a message into a {@link ByteBuf}. This method will be called for each written message that can be handled
+     * 编码完成后父类会release命令，body加入CompositeByteBuf前先retain，由CompositeByteBuf在写出后释放。
+     * Encode from one message to an other. This method will be called for each written message that can be handled
      * by this encoder.
      *</p>
-     * @param ctx the {@link ChannelHandlerContext} which this {@link MessageToByteEncoder} belongs to
+     * @param ctx the {@link ChannelHandlerContext} which this {@link MessageToMessageEncoder} belongs to
      * @param cmd the message to encode
-     * @param out the {@link ByteBuf} into which the encoded message will be written
+     * @param out the {@link List} to which the encoded message should be added
      * @throws Exception is thrown if an error occurs
      */
     @Override
-    protected void encode(ChannelHandlerContext ctx, RemotingCommand cmd, ByteBuf out) throws Exception {
+    protected void encode(ChannelHandlerContext ctx, RemotingCommand cmd, List<Object> out) throws Exception {
         // 1、编码Header
-        byte[] headerData = cmd.encodeHeader();
-        int headerLength = headerData.length;
-
-        // 2、编码body
-        byte[] bodyData = cmd.getBody();
-        int bodyLength = (bodyData != null) ?  bodyData.length : 0;
-
-        // 3、计算总长度
-        int totalLength = 4 + headerLength + bodyLength;
+        final SerializeType type = cmd.getSerializeTypeCurrentRPC();
+        ByteBuf header;
+        int headerLength;
+        if (type == SerializeType.HERMES) {
+            headerLength = HermesSerializable.calHeaderLength(cmd);
+            header = ctx.alloc().buffer(4 + 4 + headerLength);
+            header.writerIndex(8);
+            HermesSerializable.writeHeader(cmd, header);
+        } else {
+            byte[] headerData = cmd.encodeHeader();
+            headerLength = headerData.length;
+            header = ctx.alloc().buffer(4 + 4 + headerLength);
+            header.writerIndex(8);
+            header.writeBytes(headerData);
+        }
 
-        // 4、写入ByteBuf
-        out.writeInt(totalLength);
-        out.writeInt(headerLength);
-        out.writeBytes(headerData);
-        if (bodyData != null) {
-            out.writeBytes(bodyData);
+        // 2、写入总长度和Header长度
+        final int bodyLength = cmd.getBodyLength();
+        header.setInt(0, 4 + headerLength + bodyLength);
+        header.setInt(4, RemotingCommand.markProtocolType(headerLength, type));
+        if (bodyLength == 0) {
+            out.add(header);
+            return;
         }
 
+        // 3、body作为CompositeByteBuf的一部分，不拷贝
+        ByteBuf body = cmd.getBodyBuf() != null
+                ? cmd.getBodyBuf().retainedSlice()
+                : Unpooled.wrappedBuffer(cmd.getBody());
+        CompositeByteBuf frame = ctx.alloc().compositeBuffer(2);
+        frame.addComponents(true, header, body);
+        out.add(frame);
     }
 }
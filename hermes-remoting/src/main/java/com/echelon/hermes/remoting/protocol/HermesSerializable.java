@@ -0,0 +1,141 @@
+package com.echelon.hermes.remoting.protocol;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufUtil;
+import io.netty.buffer.Unpooled;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * 描述：RemotingCommand header的二进制编解码，对应SerializeType.HERMES。
+ * <pre>
+ * CODE            2
+ * LANGUAGE        1
+ * VERSION         2
+ * REQUESTID       4
+ * REMARK          4 + remark长度，长度为0表示null
+ * EXTFIELDS       4 + 扩展字段长度，格式为[keyLength(2) + key + valueLength(4) + value]*
+ * </pre>
+ * 字符串都是UTF-8编码。编码时直接写入目标ByteBuf，不经过反射，也不产生中间数组
+ *
+ * @author jorelwang
+ * @create 2026-10-16 22:30
+ */
+public class HermesSerializable {
+
+    // 定长字段的长度：CODE + LANGUAGE + VERSION + REQUESTID
+    private static final int FIXED_LENGTH = 2 + 1 + 2 + 4;
+
+    private HermesSerializable() {
+    }
+
+    /**
+     * 把header编码为数组，用于需要单独发送帧头的场景
+     */
+    public static byte[] encode(final RemotingCommand cmd) {
+        byte[] headerData = new byte[calHeaderLength(cmd)];
+        ByteBuf out = Unpooled.wrappedBuffer(headerData);
+        out.writerIndex(0);
+        writeHeader(cmd, out);
+        return headerData;
+    }
+
+    /**
+     * 把header直接写入out
+     *
+     * @return 写入的字节数
+     */
+    public static int writeHeader(final RemotingCommand cmd, final ByteBuf out) {
+        final int start = out.writerIndex();
+        out.writeShort(cmd.getCode());
+        out.writeByte(cmd.getLanguageCode());
+        out.writeShort(cmd.getVersion());
+        out.writeInt(cmd.getRequestId());
+
+        writeString(out, cmd.getRemark(), false);
+
+        Map<String, String> extFields = cmd.getExtFields();
+        if (extFields == null || extFields.isEmpty()) {
+            out.writeInt(0);
+        } else {
+            final int lengthIndex = out.writerIndex();
+            out.writeInt(0);
+            for (Map.Entry<String, String> entry : extFields.entrySet()) {
+                if (entry.getKey() == null || entry.getValue() == null) {
+                    continue;
+                }
+                writeString(out, entry.getKey(), true);
+                writeString(out, entry.getValue(), false);
+            }
+            out.setInt(lengthIndex, out.writerIndex() - lengthIndex - 4);
+        }
+        return out.writerIndex() - start;
+    }
+
+    /**
+     * 从in中解码header，读取完成后readerIndex位于header末尾
+     */
+    public static RemotingCommand decode(final ByteBuf in) {
+        RemotingCommand cmd = new RemotingCommand();
+        cmd.setCode(in.readShort());
+        cmd.setLanguageCode(in.readByte());
+        cmd.setVersion(in.readShort());
+        cmd.setRequestId(in.readInt());
+
+        int remarkLength = in.readInt();
+        if (remarkLength > 0) {
+            cmd.setRemark(in.readCharSequence(remarkLength, StandardCharsets.UTF_8).toString());
+        }
+
+        int extFieldsLength = in.readInt();
+        if (extFieldsLength > 0) {
+            final int end = in.readerIndex() + extFieldsLength;
+            HashMap<String, String> extFields = new HashMap<>();
+            while (in.readerIndex() < end) {
+                String key = in.readCharSequence(in.readShort(), StandardCharsets.UTF_8).toString();
+                String value = in.readCharSequence(in.readInt(), StandardCharsets.UTF_8).toString();
+                extFields.put(key, value);
+            }
+            cmd.setExtFields(extFields);
+        }
+        cmd.setSerializeTypeCurrentRPC(SerializeType.HERMES);
+        return cmd;
+    }
+
+    /**
+     * 计算header编码后的长度
+     */
+    public static int calHeaderLength(final RemotingCommand cmd) {
+        int length = FIXED_LENGTH + 4 + 4;
+        if (cmd.getRemark() != null) {
+            length += ByteBufUtil.utf8Bytes(cmd.getRemark());
+        }
+        Map<String, String> extFields = cmd.getExtFields();
+        if (extFields != null) {
+            for (Map.Entry<String, String> entry : extFields.entrySet()) {
+                if (entry.getKey() == null || entry.getValue() == null) {
+                    continue;
+                }
+                length += 2 + ByteBufUtil.utf8Bytes(entry.getKey()) + 4 + ByteBufUtil.utf8Bytes(entry.getValue());
+            }
+        }
+        return length;
+    }
+
+    /**
+     * 写入长度前缀和UTF-8编码的字符串，null和空字符串的长度都是0
+     */
+    private static void writeString(final ByteBuf out, final String str, final boolean shortLength) {
+        final int length = str == null ? 0 : ByteBufUtil.utf8Bytes(str);
+        if (shortLength) {
+            out.writeShort(length);
+        } else {
+            out.writeInt(length);
+        }
+        if (length > 0) {
+            // 按实际长度预留空间，writeUtf8会按最坏情况预留，写入定长数组时会越界
+            ByteBufUtil.reserveAndWriteUtf8(out, str, length);
+        }
+    }
+}
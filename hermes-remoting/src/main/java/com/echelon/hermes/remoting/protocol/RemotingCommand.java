@@ -1,47 +1,202 @@
 package com.echelon.hermes.remoting.protocol;
 
 import com.echelon.hermes.common.RemotingCommandCode;
-import com.fasterxml.jackson.core.JsonProcessingException;
-import java.nio.charset.StandardCharsets;
-import java.util.Arrays;
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufUtil;
+import io.netty.util.ReferenceCounted;
+import java.nio.ByteBuffer;
+import java.util.HashMap;
 import java.util.concurrent.atomic.AtomicInteger;
 import lombok.Data;
 
 /**
  * 描述：网络传输的核心数据结构，请求、响应都是一个RemotingCommand对象。
+ * 从网络读到的命令，body是入站ByteBuf的一个切片（bodyBuf），不拷贝数据，命令的引用计数就是bodyBuf的引用计数。
+ * SimpleChannelInboundHandler在处理完成后会自动release，需要在其他线程中继续使用body时先retain()
  *
  * @author jorelwang
  * @create 2025-09-16 17:38
  */
 @Data
-public class RemotingCommand {
+public class RemotingCommand implements ReferenceCounted {
 
     // 序列化和ID唯一生产工具
     private static final AtomicInteger requestIdGenerator = new AtomicInteger(0);
 
+    // 通过-Dhermes.serialize.type=JSON切换本进程发出的header格式，接收时按帧中的标记解码
+    public static final String SERIALIZE_TYPE_PROPERTY = "hermes.serialize.type";
+    private static final SerializeType serializeTypeConfigInThisServer =
+            SerializeType.valueOf(System.getProperty(SERIALIZE_TYPE_PROPERTY, SerializeType.HERMES.name()));
+
     // -- header --
     private short code; // 请求、响应码
     private int requestId; // 请求ID，用于异步回调匹配
     private byte languageCode = LanguageCode.JAVA.getCode();
     private short version = 1; // 协议版本
     private String remark; // 备注信息
+    private HashMap<String, String> extFields; // 扩展字段，各个请求自己的参数
 
     // -- body --
+    @JsonIgnore
     private transient byte[] body;
 
+    // 从网络读到的body，是入站ByteBuf的切片，与body同时存在时以bodyBuf为准
+    @JsonIgnore
+    private transient ByteBuf bodyBuf;
+
+    // 本次请求使用的header格式，响应沿用请求的格式
+    @JsonIgnore
+    private transient SerializeType serializeTypeCurrentRPC = serializeTypeConfigInThisServer;
+
 
     /**
-     * 将header部分编码为JSON字符串，然后转化为byte[]
+     * 按serializeTypeCurrentRPC将header部分编码为byte[]
      */
-    public byte[] encodeHeader() throws JsonProcessingException {
+    public byte[] encodeHeader() {
+        if (this.serializeTypeCurrentRPC == SerializeType.HERMES) {
+            return HermesSerializable.encode(this);
+        }
         return RemotingSerializable.encode(this);
     }
 
     /**
-     * 将header部分的byte[]解码为RemotingCommand对象
+     * 编码帧头：总长度(4字节) + Header长度(4字节) + Header内容，格式与CommandEncoder一致。
+     * body不在返回结果中，由调用方单独发送，例如直接发送存储层映射文件中的消息，避免拷贝到堆内
+     *
+     * @param bodyLength 随后发送的body长度
+     */
+    public ByteBuffer encodeHeader(final int bodyLength) {
+        byte[] headerData = this.encodeHeader();
+        int totalLength = 4 + headerData.length + bodyLength;
+
+        ByteBuffer result = ByteBuffer.allocate(4 + 4 + headerData.length);
+        result.putInt(totalLength);
+        result.putInt(markProtocolType(headerData.length, this.serializeTypeCurrentRPC));
+        result.put(headerData);
+        result.flip();
+        return result;
+    }
+
+    /**
+     * 将header部分解码为RemotingCommand对象
+     *
+     * @param headerData 只包含header内容的缓冲区
+     * @param type       帧中标记的序列化方式
      */
-    public static RemotingCommand decodeHeader(byte[] headerData) {
-        return RemotingSerializable.decode(headerData,  RemotingCommand.class);
+    public static RemotingCommand decodeHeader(ByteBuf headerData, SerializeType type) {
+        if (type == SerializeType.HERMES) {
+            return HermesSerializable.decode(headerData);
+        }
+        byte[] data = new byte[headerData.readableBytes()];
+        headerData.readBytes(data);
+        RemotingCommand cmd = RemotingSerializable.decode(data, RemotingCommand.class);
+        cmd.setSerializeTypeCurrentRPC(SerializeType.JSON);
+        return cmd;
+    }
+
+    /**
+     * 以数组形式返回body。body来自网络时第一次调用会拷贝一次，之后不再依赖bodyBuf
+     */
+    public byte[] getBody() {
+        if (this.body == null && this.bodyBuf != null) {
+            this.body = ByteBufUtil.getBytes(this.bodyBuf);
+        }
+        return this.body;
+    }
+
+    /**
+     * 设置body，之前持有的bodyBuf会被释放
+     */
+    public void setBody(byte[] body) {
+        if (this.bodyBuf != null) {
+            this.bodyBuf.release();
+            this.bodyBuf = null;
+        }
+        this.body = body;
+    }
+
+    @JsonIgnore
+    public int getBodyLength() {
+        if (this.bodyBuf != null) {
+            return this.bodyBuf.readableBytes();
+        }
+        return this.body == null ? 0 : this.body.length;
+    }
+
+    @Override
+    public int refCnt() {
+        return this.bodyBuf == null ? 1 : this.bodyBuf.refCnt();
+    }
+
+    @Override
+    public RemotingCommand retain() {
+        if (this.bodyBuf != null) {
+            this.bodyBuf.retain();
+        }
+        return this;
+    }
+
+    @Override
+    public RemotingCommand retain(int increment) {
+        if (this.bodyBuf != null) {
+            this.bodyBuf.retain(increment);
+        }
+        return this;
+    }
+
+    @Override
+    public RemotingCommand touch() {
+        if (this.bodyBuf != null) {
+            this.bodyBuf.touch();
+        }
+        return this;
+    }
+
+    @Override
+    public RemotingCommand touch(Object hint) {
+        if (this.bodyBuf != null) {
+            this.bodyBuf.touch(hint);
+        }
+        return this;
+    }
+
+    /**
+     * 释放bodyBuf，没有bodyBuf时什么都不做
+     */
+    @Override
+    public boolean release() {
+        return this.bodyBuf != null && this.bodyBuf.release();
+    }
+
+    @Override
+    public boolean release(int decrement) {
+        return this.bodyBuf != null && this.bodyBuf.release(decrement);
+    }
+
+    /**
+     * header长度字段的最高字节是序列化方式，低24位是header长度
+     */
+    public static int markProtocolType(int headerLength, SerializeType type) {
+        return (type.getCode() << 24) | (headerLength & 0x00FFFFFF);
+    }
+
+    public static int getHeaderLength(int length) {
+        return length & 0x00FFFFFF;
+    }
+
+    /**
+     * 从header长度字段中取出序列化方式，不认识的值返回null
+     */
+    public static SerializeType getProtocolType(int length) {
+        return SerializeType.valueOf((byte) ((length >> 24) & 0xFF));
+    }
+
+    public void addExtField(String key, String value) {
+        if (this.extFields == null) {
+            this.extFields = new HashMap<>();
+        }
+        this.extFields.put(key, value);
     }
 
     public static RemotingCommand createRequestCommand(short code) {
@@ -79,7 +234,9 @@ public class RemotingCommand {
                 ", requestId=" + requestId +
                 ", languageCode=" + languageCode +
                 ", version=" + version
-                + ", remark=" + remark + "]";
+                + ", remark=" + remark
+                + ", extFields=" + extFields
+                + ", serializeTypeCurrentRPC=" + serializeTypeCurrentRPC + "]";
     }
 
 
@@ -0,0 +1,34 @@
+package com.echelon.hermes.remoting.protocol;
+
+/**
+ * 描述：RemotingCommand header的序列化方式，写在header长度字段的最高字节中，
+ * 接收方按这个字节选择解码方式，不同序列化方式的两端可以互通
+ *
+ * @author jorelwang
+ * @create 2026-10-16 22:30
+ */
+public enum SerializeType {
+    // Jackson JSON，便于调试和其他语言的客户端接入
+    JSON((byte) 0),
+    // 定长字段直接写为基本类型，变长字段带长度前缀，见HermesSerializable
+    HERMES((byte) 1);
+
+    private final byte code;
+
+    SerializeType(byte code) {
+        this.code = code;
+    }
+
+    public static SerializeType valueOf(byte code) {
+        for (SerializeType serializeType : SerializeType.values()) {
+            if (serializeType.getCode() == code) {
+                return serializeType;
+            }
+        }
+        return null;
+    }
+
+    public byte getCode() {
+        return code;
+    }
+}
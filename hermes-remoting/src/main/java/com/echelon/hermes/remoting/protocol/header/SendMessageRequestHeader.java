@@ -0,0 +1,61 @@
+package com.echelon.hermes.remoting.protocol.header;
+
+import com.echelon.hermes.remoting.protocol.RemotingCommand;
+import java.util.Map;
+import lombok.Data;
+
+/**
+ * 描述：发送消息请求的参数，保存在RemotingCommand的extFields中。
+ * 请求的body由两部分组成：前propertiesLength个字节是编码后的消息属性块（格式见MessageProperties），之后是消息体，
+ * 属性块从客户端到存储都保持同一种格式，broker不需要解码再编码
+ *
+ * @author jorelwang
+ * @create 2026-10-16 23:50
+ */
+@Data
+public class SendMessageRequestHeader {
+
+    private static final String TOPIC = "topic";
+    private static final String QUEUE_ID = "queueId";
+    private static final String SYS_FLAG = "sysFlag";
+    private static final String BORN_TIMESTAMP = "bornTimestamp";
+    private static final String PROPERTIES_LENGTH = "propertiesLength";
+
+    private String topic;
+    private int queueId;
+    private int sysFlag;
+    private long bornTimestamp;
+    // body中属性块的长度
+    private int propertiesLength;
+
+    public void writeTo(RemotingCommand cmd) {
+        cmd.addExtField(TOPIC, this.topic);
+        cmd.addExtField(QUEUE_ID, String.valueOf(this.queueId));
+        cmd.addExtField(SYS_FLAG, String.valueOf(this.sysFlag));
+        cmd.addExtField(BORN_TIMESTAMP, String.valueOf(this.bornTimestamp));
+        cmd.addExtField(PROPERTIES_LENGTH, String.valueOf(this.propertiesLength));
+    }
+
+    /**
+     * 从请求中解码参数
+     *
+     * @return 请求参数，缺少topic或数字格式错误时返回null
+     */
+    public static SendMessageRequestHeader decode(RemotingCommand cmd) {
+        Map<String, String> fields = cmd.getExtFields();
+        if (fields == null || fields.get(TOPIC) == null) {
+            return null;
+        }
+        try {
+            SendMessageRequestHeader header = new SendMessageRequestHeader();
+            header.setTopic(fields.get(TOPIC));
+            header.setQueueId(Integer.parseInt(fields.getOrDefault(QUEUE_ID, "0")));
+            header.setSysFlag(Integer.parseInt(fields.getOrDefault(SYS_FLAG, "0")));
+            header.setBornTimestamp(Long.parseLong(fields.getOrDefault(BORN_TIMESTAMP, "0")));
+            header.setPropertiesLength(Integer.parseInt(fields.getOrDefault(PROPERTIES_LENGTH, "0")));
+            return header;
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+}
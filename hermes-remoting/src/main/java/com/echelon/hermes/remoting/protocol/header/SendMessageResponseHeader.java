@@ -0,0 +1,44 @@
+package com.echelon.hermes.remoting.protocol.header;
+
+import com.echelon.hermes.remoting.protocol.RemotingCommand;
+import java.util.Map;
+import lombok.Data;
+
+/**
+ * 描述：发送消息响应的参数，保存在RemotingCommand的extFields中，只有发送成功时才有
+ *
+ * @author jorelwang
+ * @create 2026-10-16 23:50
+ */
+@Data
+public class SendMessageResponseHeader {
+
+    private static final String MSG_ID = "msgId";
+    private static final String QUEUE_ID = "queueId";
+    private static final String QUEUE_OFFSET = "queueOffset";
+
+    private String msgId;
+    private int queueId;
+    private long queueOffset;
+
+    public void writeTo(RemotingCommand cmd) {
+        cmd.addExtField(MSG_ID, this.msgId);
+        cmd.addExtField(QUEUE_ID, String.valueOf(this.queueId));
+        cmd.addExtField(QUEUE_OFFSET, String.valueOf(this.queueOffset));
+    }
+
+    /**
+     * 从响应中解码参数，响应中没有参数时返回null
+     */
+    public static SendMessageResponseHeader decode(RemotingCommand cmd) {
+        Map<String, String> fields = cmd.getExtFields();
+        if (fields == null || fields.get(MSG_ID) == null) {
+            return null;
+        }
+        SendMessageResponseHeader header = new SendMessageResponseHeader();
+        header.setMsgId(fields.get(MSG_ID));
+        header.setQueueId(Integer.parseInt(fields.get(QUEUE_ID)));
+        header.setQueueOffset(Long.parseLong(fields.get(QUEUE_OFFSET)));
+        return header;
+    }
+}
@@ -0,0 +1,222 @@
+package com.echelon.hermes.remoting;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.echelon.hermes.common.RemotingCommandCode;
+import com.echelon.hermes.remoting.protocol.CommandDecoder;
+import com.echelon.hermes.remoting.protocol.CommandEncoder;
+import com.echelon.hermes.remoting.protocol.RemotingCommand;
+import com.echelon.hermes.remoting.protocol.SerializeType;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.PooledByteBufAllocator;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.embedded.EmbeddedChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+/**
+ * 描述：服务端测试，请求经过服务端的pipeline后解码出响应，检查响应格式、处理器线程池的分发和过载时的拒绝
+ *
+ * @author jorelwang
+ * @create 2026-10-16 10:20
+ */
+public class NettyRemotingServerTest {
+
+    private static final short PROCESSOR_CODE = 1001;
+
+    private NettyRemotingServer server;
+    private ExecutorService executor;
+    private EmbeddedChannel serverChannel;
+
+    @BeforeEach
+    public void setUp() {
+        server = new NettyRemotingServer(new NettyServerConfig());
+        executor = Executors.newSingleThreadExecutor();
+        // 处理器返回的响应使用本机配置的序列化方式，由服务端改成请求的序列化方式
+        server.registerProcessor(RemotingCommandCode.SEND_MESSAGE, (ctx, request) ->
+                RemotingCommand.createResponseCommand(RemotingCommandCode.SUCCESS, "OK", 0), executor);
+        serverChannel = new EmbeddedChannel(new CommandEncoder(), new CommandDecoder(), server.new ServerHandler());
+    }
+
+    @AfterEach
+    public void tearDown() {
+        serverChannel.finishAndReleaseAll();
+        executor.shutdown();
+        server.shutdown();
+    }
+
+    @Test
+    public void testResponseUseRequestSerializeType() throws Exception {
+        for (SerializeType type : SerializeType.values()) {
+            RemotingCommand pong = call(RemotingCommand.createPingRequest(), type);
+            assertEquals(RemotingCommandCode.SUCCESS, pong.getCode());
+            assertEquals(type, pong.getSerializeTypeCurrentRPC());
+
+            RemotingCommand response = call(RemotingCommand.createRequestCommand(RemotingCommandCode.SEND_MESSAGE),
+                    type);
+            assertEquals(RemotingCommandCode.SUCCESS, response.getCode());
+            assertEquals("OK", response.getRemark());
+            assertEquals(type, response.getSerializeTypeCurrentRPC());
+
+            RemotingCommand notSupported = call(RemotingCommand.createRequestCommand((short) 12345), type);
+            assertEquals(RemotingCommandCode.REQUEST_CODE_NOT_SUPPORTED, notSupported.getCode());
+            assertEquals(type, notSupported.getSerializeTypeCurrentRPC());
+        }
+    }
+
+    @Test
+    public void testProcessOnRegisteredExecutor() throws Exception {
+        final String threadName = "ProcessorTestThread";
+        ExecutorService processorExecutor = Executors.newSingleThreadExecutor(r -> new Thread(r, threadName));
+        AtomicReference<Thread> processThread = new AtomicReference<>();
+        server.registerProcessor(PROCESSOR_CODE, (ctx, request) -> {
+            processThread.set(Thread.currentThread());
+            return RemotingCommand.createResponseCommand(RemotingCommandCode.SUCCESS, null, 0);
+        }, processorExecutor);
+        try {
+            RemotingCommand response = call(createRequestWithBody(PROCESSOR_CODE), SerializeType.HERMES);
+            assertEquals(RemotingCommandCode.SUCCESS, response.getCode());
+            // 在注册的线程池中执行，没有占用读取请求的线程
+            assertEquals(threadName, processThread.get().getName());
+            assertNotSame(Thread.currentThread(), processThread.get());
+        } finally {
+            processorExecutor.shutdown();
+        }
+    }
+
+    @Test
+    public void testSystemBusyWhenExecutorFull() throws Exception {
+        // 一个线程、队列长度为1，线程被阻塞后第二个请求进入队列，第三个请求被拒绝
+        ThreadPoolExecutor processorExecutor = new ThreadPoolExecutor(1, 1, 60, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(1));
+        CountDownLatch blocked = new CountDownLatch(1);
+        CountDownLatch unblock = new CountDownLatch(1);
+        server.registerProcessor(PROCESSOR_CODE, (ctx, request) -> {
+            blocked.countDown();
+            unblock.await();
+            return RemotingCommand.createResponseCommand(RemotingCommandCode.SUCCESS, null, 0);
+        }, processorExecutor);
+        try {
+            ByteBuf running = send(createRequestWithBody(PROCESSOR_CODE), SerializeType.HERMES);
+            assertTrue(blocked.await(5, TimeUnit.SECONDS));
+            ByteBuf queued = send(createRequestWithBody(PROCESSOR_CODE), SerializeType.HERMES);
+            // 排队中的请求持有body
+            assertEquals(1, queued.refCnt());
+
+            RemotingCommand rejected = createRequestWithBody(PROCESSOR_CODE);
+            ByteBuf rejectedFrame = send(rejected, SerializeType.HERMES);
+            RemotingCommand busy = readResponse(rejected);
+            assertEquals(RemotingCommandCode.SYSTEM_BUSY, busy.getCode());
+            assertEquals(0, rejectedFrame.refCnt());
+
+            unblock.countDown();
+            assertEquals(RemotingCommandCode.SUCCESS, readResponse(null).getCode());
+            assertEquals(RemotingCommandCode.SUCCESS, readResponse(null).getCode());
+            assertEquals(0, running.refCnt());
+            assertEquals(0, queued.refCnt());
+        } finally {
+            unblock.countDown();
+            processorExecutor.shutdown();
+        }
+    }
+
+    @Test
+    public void testSystemBusyWhenProcessorRejectRequest() throws Exception {
+        AtomicInteger processed = new AtomicInteger();
+        server.registerProcessor(PROCESSOR_CODE, new NettyRequestProcessor() {
+            @Override
+            public RemotingCommand processRequest(ChannelHandlerContext ctx, RemotingCommand request) {
+                processed.incrementAndGet();
+                return RemotingCommand.createResponseCommand(RemotingCommandCode.SUCCESS, null, 0);
+            }
+
+            @Override
+            public boolean rejectRequest() {
+                return true;
+            }
+        }, executor);
+
+        RemotingCommand request = createRequestWithBody(PROCESSOR_CODE);
+        ByteBuf requestFrame = send(request, SerializeType.HERMES);
+        assertEquals(RemotingCommandCode.SYSTEM_BUSY, readResponse(request).getCode());
+        assertEquals(0, requestFrame.refCnt());
+        assertEquals(0, processed.get());
+    }
+
+    @Test
+    public void testRequestCodeNotSupported() throws Exception {
+        RemotingCommand request = createRequestWithBody((short) 12345);
+        ByteBuf requestFrame = send(request, SerializeType.HERMES);
+        assertEquals(RemotingCommandCode.REQUEST_CODE_NOT_SUPPORTED, readResponse(request).getCode());
+        assertEquals(0, requestFrame.refCnt());
+    }
+
+    private static RemotingCommand createRequestWithBody(final short code) {
+        RemotingCommand request = RemotingCommand.createRequestCommand(code);
+        request.setBody("body".getBytes(StandardCharsets.UTF_8));
+        return request;
+    }
+
+    /**
+     * 按指定的序列化方式编码请求，交给服务端处理，返回解码后的响应
+     */
+    private RemotingCommand call(RemotingCommand request, SerializeType type) throws Exception {
+        send(request, type);
+        return readResponse(request);
+    }
+
+    /**
+     * 编码请求并写入服务端，返回请求帧。
+     * 帧拷贝到连续的缓冲区中，解码器直接把它作为累积缓冲区，请求的body是它的切片，服务端释放请求后它的引用计数为0
+     */
+    private ByteBuf send(RemotingCommand request, SerializeType type) {
+        request.setSerializeTypeCurrentRPC(type);
+        EmbeddedChannel clientEncoder = new EmbeddedChannel(new CommandEncoder());
+        clientEncoder.writeOutbound(request);
+        ByteBuf encoded = clientEncoder.readOutbound();
+        ByteBuf requestFrame = PooledByteBufAllocator.DEFAULT.buffer(encoded.readableBytes()).writeBytes(encoded);
+        encoded.release();
+        serverChannel.writeInbound(requestFrame);
+        return requestFrame;
+    }
+
+    /**
+     * 等待并解码下一个响应，request不为null时检查响应的requestId
+     */
+    private RemotingCommand readResponse(RemotingCommand request) throws Exception {
+        // 处理器在线程池中执行，响应的写操作提交回channel的事件循环
+        ByteBuf responseFrame = null;
+        long deadline = System.currentTimeMillis() + 5000;
+        while (responseFrame == null && System.currentTimeMillis() < deadline) {
+            serverChannel.runPendingTasks();
+            responseFrame = serverChannel.readOutbound();
+            if (responseFrame == null) {
+                Thread.sleep(1);
+            }
+        }
+        assertNotNull(responseFrame);
+
+        EmbeddedChannel clientDecoder = new EmbeddedChannel(new CommandDecoder());
+        clientDecoder.writeInbound(responseFrame);
+        RemotingCommand response = clientDecoder.readInbound();
+        assertNotNull(response);
+        if (request != null) {
+            assertEquals(request.getRequestId(), response.getRequestId());
+        }
+        response.release();
+        return response;
+    }
+}
@@ -0,0 +1,158 @@
+package com.echelon.hermes.remoting.protocol;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.echelon.hermes.common.RemotingCommandCode;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufUtil;
+import io.netty.buffer.CompositeByteBuf;
+import io.netty.buffer.PooledByteBufAllocator;
+import io.netty.channel.embedded.EmbeddedChannel;
+import io.netty.util.ResourceLeakDetector;
+import java.nio.charset.StandardCharsets;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+/**
+ * 描述：编解码的引用计数测试。解码出的body是累积缓冲区的切片，编码时body不拷贝，
+ * 每个缓冲区都必须正好释放一次，泄漏检测设置为PARANOID
+ *
+ * @author jorelwang
+ * @create 2026-10-17 09:30
+ */
+public class CommandCodecTest {
+
+    private static final byte[] BODY = "hermes message body".getBytes(StandardCharsets.UTF_8);
+
+    private ResourceLeakDetector.Level originalLevel;
+
+    @BeforeEach
+    public void setUp() {
+        originalLevel = ResourceLeakDetector.getLevel();
+        ResourceLeakDetector.setLevel(ResourceLeakDetector.Level.PARANOID);
+    }
+
+    @AfterEach
+    public void tearDown() {
+        ResourceLeakDetector.setLevel(originalLevel);
+    }
+
+    @Test
+    public void testBodySliceOutlivesCumulation() {
+        RemotingCommand request = createRequest(SerializeType.HERMES);
+        byte[] frame = encode(request);
+
+        // 一帧分两次到达，解码器把两段合并到累积缓冲区
+        int half = frame.length / 2;
+        ByteBuf first = PooledByteBufAllocator.DEFAULT.buffer().writeBytes(frame, 0, half);
+        ByteBuf second = PooledByteBufAllocator.DEFAULT.buffer().writeBytes(frame, half, frame.length - half);
+        EmbeddedChannel channel = new EmbeddedChannel(new CommandDecoder());
+        assertFalse(channel.writeInbound(first));
+        assertTrue(channel.writeInbound(second));
+        RemotingCommand cmd = channel.readInbound();
+        assertNotNull(cmd);
+
+        // 关闭channel后解码器释放了累积缓冲区，body切片仍然可用。
+        // 第一段通常直接作为累积缓冲区，只由body切片持有
+        assertFalse(channel.finish());
+        assertEquals(0, second.refCnt());
+        ByteBuf bodyBuf = cmd.getBodyBuf();
+        assertEquals(1, bodyBuf.refCnt());
+        assertArrayEquals(BODY, ByteBufUtil.getBytes(bodyBuf));
+
+        assertTrue(cmd.release());
+        assertEquals(0, bodyBuf.refCnt());
+        assertEquals(0, first.refCnt());
+    }
+
+    @Test
+    public void testReleaseBodyOnce() {
+        ByteBuf bodyBuf = PooledByteBufAllocator.DEFAULT.buffer().writeBytes(BODY);
+        RemotingCommand cmd = RemotingCommand.createRequestCommand(RemotingCommandCode.SEND_MESSAGE);
+        cmd.setBodyBuf(bodyBuf);
+        assertEquals(1, cmd.refCnt());
+
+        cmd.retain();
+        assertEquals(2, bodyBuf.refCnt());
+        assertFalse(cmd.release());
+        assertEquals(1, bodyBuf.refCnt());
+        assertTrue(cmd.release());
+        assertEquals(0, bodyBuf.refCnt());
+
+        // setBody替换bodyBuf时释放原来的缓冲区，之后release不会再释放一次
+        ByteBuf replaced = PooledByteBufAllocator.DEFAULT.buffer().writeBytes(BODY);
+        RemotingCommand other = RemotingCommand.createRequestCommand(RemotingCommandCode.SEND_MESSAGE);
+        other.setBodyBuf(replaced);
+        other.setBody(BODY);
+        assertEquals(0, replaced.refCnt());
+        assertFalse(other.release());
+        assertEquals(0, replaced.refCnt());
+        assertArrayEquals(BODY, other.getBody());
+    }
+
+    @Test
+    public void testEncodeAndDecode() {
+        for (SerializeType type : SerializeType.values()) {
+            RemotingCommand request = createRequest(type);
+            ByteBuf bodyBuf = PooledByteBufAllocator.DEFAULT.buffer().writeBytes(BODY);
+            request.setBodyBuf(bodyBuf);
+
+            EmbeddedChannel encoder = new EmbeddedChannel(new CommandEncoder());
+            assertTrue(encoder.writeOutbound(request));
+            ByteBuf frame = encoder.readOutbound();
+            assertTrue(frame instanceof CompositeByteBuf);
+            // 编码后请求已经释放，body由帧持有
+            assertEquals(1, bodyBuf.refCnt());
+            assertFalse(encoder.finish());
+
+            // 帧由多个部分组成，解码器把它合并到新的累积缓冲区后释放，帧中的body随之释放
+            EmbeddedChannel decoder = new EmbeddedChannel(new CommandDecoder());
+            assertTrue(decoder.writeInbound(frame));
+            RemotingCommand decoded = decoder.readInbound();
+            assertFalse(decoder.finish());
+            assertEquals(0, frame.refCnt());
+            assertEquals(0, bodyBuf.refCnt());
+
+            assertEquals(request.getCode(), decoded.getCode());
+            assertEquals(request.getRequestId(), decoded.getRequestId());
+            assertEquals(request.getRemark(), decoded.getRemark());
+            assertEquals(request.getExtFields(), decoded.getExtFields());
+            assertEquals(type, decoded.getSerializeTypeCurrentRPC());
+            ByteBuf decodedBody = decoded.getBodyBuf();
+            assertEquals(1, decodedBody.refCnt());
+            assertArrayEquals(BODY, ByteBufUtil.getBytes(decodedBody));
+
+            // 解码出的body只由命令持有，释放一次后累积缓冲区也被释放
+            assertTrue(decoded.release());
+            assertEquals(0, decodedBody.refCnt());
+        }
+    }
+
+    private static RemotingCommand createRequest(final SerializeType type) {
+        RemotingCommand request = RemotingCommand.createRequestCommand(RemotingCommandCode.SEND_MESSAGE);
+        request.setSerializeTypeCurrentRPC(type);
+        request.setRemark("remark");
+        request.addExtField("topic", "TopicTest");
+        request.addExtField("queueId", "1");
+        return request;
+    }
+
+    /**
+     * 用堆内的body编码出一个完整的帧
+     */
+    private static byte[] encode(final RemotingCommand request) {
+        request.setBody(BODY);
+        EmbeddedChannel encoder = new EmbeddedChannel(new CommandEncoder());
+        encoder.writeOutbound(request);
+        ByteBuf frame = encoder.readOutbound();
+        byte[] data = ByteBufUtil.getBytes(frame);
+        frame.release();
+        encoder.finish();
+        return data;
+    }
+}
@@ -0,0 +1,261 @@
+package com.echelon.hermes.store;
+
+import com.echelon.hermes.common.ServiceThread;
+import java.io.File;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * 描述：后台预创建MappedFile的服务。
+ * 切换文件时同时提交下一个和下下个文件的创建请求，调用方只等待下一个文件，
+ * 下下个文件在后台提前创建并映射好，下次切换时只需要取出已经准备好的文件。
+ * 等待超时后调用方会自己同步创建文件，这时请求被撤回，后台线程之后创建出的同一个文件只释放映射，不会被删除。
+ *
+ * @author jorelwang
+ * @create 2026-10-16 14:40
+ */
+public class AllocateMappedFileService extends ServiceThread {
+    private static final Logger log = LoggerFactory.getLogger(AllocateMappedFileService.class);
+
+    // 等待文件创建的超时时间，单位毫秒
+    private static final int WAIT_TIMEOUT = 1000 * 5;
+
+    private final long waitTimeout;
+
+    private final ConcurrentMap<String, AllocateRequest> requestTable = new ConcurrentHashMap<>();
+    // 按文件起始偏移量排序，偏移量小的先创建
+    private final PriorityBlockingQueue<AllocateRequest> requestQueue = new PriorityBlockingQueue<>();
+
+    private final MessageStoreConfig messageStoreConfig;
+    private final TransientStorePool transientStorePool;
+
+    private volatile boolean hasException = false;
+
+    public AllocateMappedFileService(final MessageStoreConfig messageStoreConfig,
+            final TransientStorePool transientStorePool) {
+        this(messageStoreConfig, transientStorePool, WAIT_TIMEOUT);
+    }
+
+    AllocateMappedFileService(final MessageStoreConfig messageStoreConfig,
+            final TransientStorePool transientStorePool, final long waitTimeout) {
+        this.messageStoreConfig = messageStoreConfig;
+        this.transientStorePool = transientStorePool;
+        this.waitTimeout = waitTimeout;
+    }
+
+    @Override
+    public String getServiceName() {
+        return AllocateMappedFileService.class.getSimpleName();
+    }
+
+    /**
+     * 提交下一个和下下个文件的创建请求，并等待下一个文件创建完成
+     *
+     * @return 下一个文件，创建失败或超时返回null，超时时请求被撤回，由调用方自己创建
+     */
+    public MappedFile putRequestAndReturnMappedFile(final String nextFilePath, final String nextNextFilePath,
+            final int fileSize) {
+        AllocateRequest nextReq = new AllocateRequest(nextFilePath, fileSize);
+        if (this.requestTable.putIfAbsent(nextFilePath, nextReq) == null) {
+            this.requestQueue.offer(nextReq);
+        }
+
+        // 瞬态存储池的缓冲区不够时，不提前创建下下个文件，避免它拿不到写缓冲区
+        if (this.transientStorePool == null
+                || this.transientStorePool.availableBufferNums() - this.requestQueue.size() > 1) {
+            AllocateRequest nextNextReq = new AllocateRequest(nextNextFilePath, fileSize);
+            if (this.requestTable.putIfAbsent(nextNextFilePath, nextNextReq) == null) {
+                this.requestQueue.offer(nextNextReq);
+            }
+        }
+
+        if (this.hasException) {
+            log.warn("{} service has exception. so return null", getServiceName());
+            return null;
+        }
+
+        AllocateRequest result = this.requestTable.get(nextFilePath);
+        try {
+            if (result != null) {
+                boolean waitOK = result.getCountDownLatch().await(this.waitTimeout, TimeUnit.MILLISECONDS);
+                if (!waitOK && withdraw(result)) {
+                    log.warn("Create mapped file timeout {} {}", result.getFilePath(), result.getFileSize());
+                    return null;
+                }
+                this.requestTable.remove(nextFilePath);
+                return result.getMappedFile();
+            } else {
+                log.error("Find preallocate mapped file failed, this should never happen");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            log.warn("{} service has exception.", getServiceName(), e);
+        }
+        return null;
+    }
+
+    /**
+     * 等待超时后撤回请求，调用方会自己创建同一个文件。
+     * 和后台线程发布结果互斥：撤回之前文件已经创建好时不撤回，调用方直接使用它
+     *
+     * @return 是否撤回成功
+     */
+    private boolean withdraw(final AllocateRequest req) {
+        synchronized (req) {
+            if (req.getMappedFile() != null) {
+                return false;
+            }
+            this.requestTable.remove(req.getFilePath(), req);
+            return true;
+        }
+    }
+
+    /**
+     * 发布创建好的文件。请求已经被撤回时，调用方已经或者即将自己创建同一个文件，
+     * 这里只释放映射和写缓冲区，不能删除文件
+     */
+    private void publish(final AllocateRequest req, final MappedFile mappedFile) {
+        synchronized (req) {
+            if (this.requestTable.get(req.getFilePath()) == req) {
+                req.setMappedFile(mappedFile);
+                req.getCountDownLatch().countDown();
+                return;
+            }
+        }
+        log.warn("Request withdrawn after the mapped file created, release it, {}", req.getFilePath());
+        mappedFile.shutdown(0);
+    }
+
+    @Override
+    public void shutdown() {
+        super.shutdown();
+        // 删除已经预创建但没有被使用的文件，还没有处理的请求一起撤回
+        for (AllocateRequest req : this.requestTable.values()) {
+            synchronized (req) {
+                this.requestTable.remove(req.getFilePath(), req);
+                if (req.getMappedFile() != null) {
+                    log.info("Delete pre allocated mapped file, {}", req.getFilePath());
+                    req.getMappedFile().deleteFile();
+                }
+            }
+        }
+        this.requestQueue.clear();
+    }
+
+    @Override
+    public void run() {
+        log.info("{} service started", getServiceName());
+
+        while (!this.isStopped() && this.mmapOperation()) {
+            // 循环处理请求
+        }
+        log.info("{} service end", getServiceName());
+    }
+
+    /**
+     * 处理一个创建请求，只有被中断时才返回false
+     */
+    private boolean mmapOperation() {
+        AllocateRequest req = null;
+        try {
+            // 带超时地等待，保证shutdown时能退出
+            req = this.requestQueue.poll(1000, TimeUnit.MILLISECONDS);
+            if (req == null) {
+                return true;
+            }
+
+            AllocateRequest expectedRequest = this.requestTable.get(req.getFilePath());
+            if (expectedRequest != req) {
+                log.warn("Request from queue not matched with request table, {}", req.getFilePath());
+                return true;
+            }
+
+            if (req.getMappedFile() == null) {
+                long beginTime = System.currentTimeMillis();
+                MappedFile mappedFile = new MappedFile(req.getFilePath(), req.getFileSize(), this.transientStorePool);
+                long elapsedTime = System.currentTimeMillis() - beginTime;
+                if (elapsedTime > 10) {
+                    log.warn("Create mapped file spent time(ms) {} queue size {} {}", elapsedTime,
+                            this.requestQueue.size(), req.getFilePath());
+                }
+
+                // 预热新文件，提前触发缺页
+                if (this.messageStoreConfig.isWarmMappedFileEnable()) {
+                    mappedFile.warmMappedFile(this.messageStoreConfig.getFlushDiskType(),
+                            this.messageStoreConfig.getFlushLeastPagesWhenWarmMappedFile(),
+                            this.messageStoreConfig.isWarmMappedFileMlockEnable());
+                }
+
+                this.hasException = false;
+                publish(req, mappedFile);
+            }
+        } catch (InterruptedException e) {
+            log.warn("{} interrupted, possibly by shutdown.", getServiceName());
+            this.hasException = true;
+            return false;
+        } catch (Exception e) {
+            log.warn("{} service has exception.", getServiceName(), e);
+            this.hasException = true;
+            if (req != null) {
+                // 失败的请求重新入队，稍后重试
+                this.requestQueue.offer(req);
+                try {
+                    Thread.sleep(1);
+                } catch (InterruptedException ignored) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * 文件创建请求
+     */
+    static class AllocateRequest implements Comparable<AllocateRequest> {
+        private final String filePath;
+        private final int fileSize;
+        private final CountDownLatch countDownLatch = new CountDownLatch(1);
+        private volatile MappedFile mappedFile = null;
+
+        AllocateRequest(String filePath, int fileSize) {
+            this.filePath = filePath;
+            this.fileSize = fileSize;
+        }
+
+        public String getFilePath() {
+            return filePath;
+        }
+
+        public int getFileSize() {
+            return fileSize;
+        }
+
+        public CountDownLatch getCountDownLatch() {
+            return countDownLatch;
+        }
+
+        public MappedFile getMappedFile() {
+            return mappedFile;
+        }
+
+        public void setMappedFile(MappedFile mappedFile) {
+            this.mappedFile = mappedFile;
+        }
+
+        /**
+         * 文件名是起始偏移量，偏移量小的优先创建
+         */
+        @Override
+        public int compareTo(AllocateRequest other) {
+            long mName = Long.parseLong(new File(this.filePath).getName());
+            long oName = Long.parseLong(new File(other.filePath).getName());
+            return Long.compare(mName, oName);
+        }
+    }
+}
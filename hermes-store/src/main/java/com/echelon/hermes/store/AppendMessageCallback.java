@@ -0,0 +1,26 @@
+package com.echelon.hermes.store;
+
+import java.nio.ByteBuffer;
+
+/**
+ * 描述：消息追加回调。
+ * MappedFile只负责管理写入位置，具体如何把消息编码进映射缓冲区由回调决定，
+ * 这样消息可以直接编码到MappedFile中，而不需要先序列化成中间的byte[]。
+ *
+ * @author jorelwang
+ * @create 2026-10-16 09:20
+ */
+public interface AppendMessageCallback {
+
+    /**
+     * 将消息编码写入byteBuffer
+     *
+     * @param fileFromOffset 当前文件的起始偏移量
+     * @param byteBuffer     映射缓冲区的切片，position为当前写入位置
+     * @param maxBlank       当前文件剩余的可写空间
+     * @param msg            要写入的消息
+     * @return 写入结果
+     */
+    AppendMessageResult doAppend(final long fileFromOffset, final ByteBuffer byteBuffer, final int maxBlank,
+            final MessageExt msg);
+}
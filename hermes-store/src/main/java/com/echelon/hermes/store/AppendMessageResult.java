@@ -0,0 +1,67 @@
+package com.echelon.hermes.store;
+
+/**
+ * 描述：单次向MappedFile追加消息的结果
+ *
+ * @author jorelwang
+ * @create 2026-10-16 09:14
+ */
+public class AppendMessageResult {
+    // 写入状态
+    private final AppendMessageStatus status;
+    // 消息的起始物理偏移量
+    private final long wroteOffset;
+    // 本次实际写入的字节数（END_OF_FILE时为填充的空白长度）
+    private final int wroteBytes;
+    // 消息ID
+    private final String msgId;
+    // 消息的存储时间戳
+    private final long storeTimestamp;
+
+    public AppendMessageResult(AppendMessageStatus status) {
+        this(status, 0, 0, null, 0);
+    }
+
+    public AppendMessageResult(AppendMessageStatus status, long wroteOffset, int wroteBytes, String msgId,
+            long storeTimestamp) {
+        this.status = status;
+        this.wroteOffset = wroteOffset;
+        this.wroteBytes = wroteBytes;
+        this.msgId = msgId;
+        this.storeTimestamp = storeTimestamp;
+    }
+
+    public boolean isOk() {
+        return this.status == AppendMessageStatus.PUT_OK;
+    }
+
+    public AppendMessageStatus getStatus() {
+        return status;
+    }
+
+    public long getWroteOffset() {
+        return wroteOffset;
+    }
+
+    public int getWroteBytes() {
+        return wroteBytes;
+    }
+
+    public String getMsgId() {
+        return msgId;
+    }
+
+    public long getStoreTimestamp() {
+        return storeTimestamp;
+    }
+
+    @Override
+    public String toString() {
+        return "AppendMessageResult{" +
+                "status=" + status +
+                ", wroteOffset=" + wroteOffset +
+                ", wroteBytes=" + wroteBytes +
+                ", msgId='" + msgId + '\'' +
+                '}';
+    }
+}
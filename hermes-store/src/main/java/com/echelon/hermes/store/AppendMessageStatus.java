@@ -0,0 +1,16 @@
+package com.echelon.hermes.store;
+
+/**
+ * 描述：单次向MappedFile追加消息的结果状态
+ *
+ * @author jorelwang
+ * @create 2026-10-16 09:12
+ */
+public enum AppendMessageStatus {
+    PUT_OK,
+    // 当前文件剩余空间不足，已写入文件结束标记，需要切换到下一个文件
+    END_OF_FILE,
+    MESSAGE_SIZE_EXCEEDED,
+    PROPERTIES_SIZE_EXCEEDED,
+    UNKNOWN_ERROR,
+}
@@ -0,0 +1,78 @@
+package com.echelon.hermes.store;
+
+import com.echelon.hermes.common.ServiceThread;
+import com.echelon.hermes.common.utils.StoreUtil;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * 描述：CommitLog清理服务，定期从最早的文件开始删除。
+ * 超过fileReservedTime的文件会被删除；磁盘使用率超过diskMaxUsedSpaceRatio时不论是否过期都删除。
+ * 每删除一个文件休眠deleteCommitLogFilesInterval，每次最多删除deleteFileBatchMax个文件，避免集中删除造成IO抖动。
+ * 还被读取方持有的文件先关闭，等引用释放后在下一次检查时删除，超过destroyMappedFileIntervalForcibly后强制删除。
+ *
+ * @author jorelwang
+ * @create 2026-10-16 18:20
+ */
+public class CleanCommitLogService extends ServiceThread {
+    private static final Logger log = LoggerFactory.getLogger(CleanCommitLogService.class);
+
+    private final MessageStoreConfig messageStoreConfig;
+    private final CommitLog commitLog;
+
+    public CleanCommitLogService(final MessageStoreConfig messageStoreConfig, final CommitLog commitLog) {
+        this.messageStoreConfig = messageStoreConfig;
+        this.commitLog = commitLog;
+    }
+
+    @Override
+    public String getServiceName() {
+        return CleanCommitLogService.class.getSimpleName();
+    }
+
+    @Override
+    public void run() {
+        log.info("{} service started", getServiceName());
+
+        while (!this.isStopped()) {
+            try {
+                this.waitForRunning(this.messageStoreConfig.getCleanResourceInterval());
+                this.deleteExpiredFiles();
+            } catch (Throwable e) {
+                log.warn("{} service has exception.", getServiceName(), e);
+            }
+        }
+
+        log.info("{} service end", getServiceName());
+    }
+
+    private void deleteExpiredFiles() {
+        final long fileReservedTime = this.messageStoreConfig.getFileReservedTime() * 60L * 60 * 1000;
+        final boolean cleanImmediately = this.isSpaceFull();
+
+        int deleteCount = this.commitLog.deleteExpiredFile(fileReservedTime,
+                this.messageStoreConfig.getDeleteCommitLogFilesInterval(),
+                this.messageStoreConfig.getDestroyMappedFileIntervalForcibly(), cleanImmediately,
+                this.messageStoreConfig.getDeleteFileBatchMax());
+        if (deleteCount > 0) {
+            log.info("Delete {} expired commit log files, cleanImmediately: {}, min offset now: {}", deleteCount,
+                    cleanImmediately, this.commitLog.getMinOffset());
+        }
+    }
+
+    /**
+     * CommitLog所在的任意一个磁盘的使用率是否超过了diskMaxUsedSpaceRatio
+     */
+    private boolean isSpaceFull() {
+        double maxRatio = this.messageStoreConfig.getDiskMaxUsedSpaceRatio() / 100.0;
+        for (String storePath : this.commitLog.getMappedFileQueue().getStorePaths()) {
+            double ratio = StoreUtil.getDiskPartitionSpaceUsedPercent(storePath);
+            if (ratio > maxRatio) {
+                log.warn("Disk space used ratio {} of {} is over {}, clean commit log immediately", ratio, storePath,
+                        maxRatio);
+                return true;
+            }
+        }
+        return false;
+    }
+}
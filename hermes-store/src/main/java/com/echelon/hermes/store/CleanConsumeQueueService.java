@@ -0,0 +1,80 @@
+package com.echelon.hermes.store;
+
+import com.echelon.hermes.common.ServiceThread;
+import java.util.concurrent.ConcurrentMap;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * 描述：ConsumeQueue清理服务。
+ * CommitLog的最小偏移量前进后，删除所有索引都指向已删除消息的ConsumeQueue文件，并修正每个队列的最小逻辑偏移量；
+ * 同时删除过期的IndexFile。
+ *
+ * @author jorelwang
+ * @create 2026-10-16 18:25
+ */
+public class CleanConsumeQueueService extends ServiceThread {
+    private static final Logger log = LoggerFactory.getLogger(CleanConsumeQueueService.class);
+
+    private final ConcurrentMap<String, ConcurrentMap<Integer, ConsumeQueue>> consumeQueueTable;
+    private final MessageStoreConfig messageStoreConfig;
+    private final CommitLog commitLog;
+    private final IndexService indexService;
+
+    // 上一次清理时CommitLog的最小偏移量
+    private long lastPhysicalMinOffset = 0;
+
+    public CleanConsumeQueueService(final ConcurrentMap<String, ConcurrentMap<Integer, ConsumeQueue>> consumeQueueTable,
+            final MessageStoreConfig messageStoreConfig, final CommitLog commitLog, final IndexService indexService) {
+        this.consumeQueueTable = consumeQueueTable;
+        this.messageStoreConfig = messageStoreConfig;
+        this.commitLog = commitLog;
+        this.indexService = indexService;
+    }
+
+    @Override
+    public String getServiceName() {
+        return CleanConsumeQueueService.class.getSimpleName();
+    }
+
+    @Override
+    public void run() {
+        log.info("{} service started", getServiceName());
+
+        while (!this.isStopped()) {
+            try {
+                this.waitForRunning(this.messageStoreConfig.getCleanResourceInterval());
+                this.deleteExpiredFiles();
+            } catch (Throwable e) {
+                log.warn("{} service has exception.", getServiceName(), e);
+            }
+        }
+
+        log.info("{} service end", getServiceName());
+    }
+
+    private void deleteExpiredFiles() {
+        final long minOffset = this.commitLog.getMinOffset();
+        if (minOffset <= this.lastPhysicalMinOffset) {
+            return;
+        }
+        this.lastPhysicalMinOffset = minOffset;
+
+        final int deleteInterval = this.messageStoreConfig.getDeleteConsumeQueueFilesInterval();
+        for (ConcurrentMap<Integer, ConsumeQueue> queues : this.consumeQueueTable.values()) {
+            for (ConsumeQueue consumeQueue : queues.values()) {
+                int deleteCount = consumeQueue.deleteExpiredFile(minOffset);
+                if (deleteCount > 0 && deleteInterval > 0) {
+                    try {
+                        Thread.sleep(deleteInterval);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        return;
+                    }
+                }
+            }
+        }
+
+        this.indexService.deleteExpiredFile(minOffset);
+    }
+}
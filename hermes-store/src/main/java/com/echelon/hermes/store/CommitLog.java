@@ -1,11 +1,19 @@
 package com.echelon.hermes.store;
 
-import java.io.ByteArrayInputStream;
-import java.io.ByteArrayOutputStream;
+import com.echelon.hermes.common.message.MessageProperties;
+import com.echelon.hermes.common.utils.TopicValidator;
 import java.io.IOException;
-import java.io.ObjectInputStream;
-import java.io.ObjectOutputStream;
 import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.locks.ReentrantLock;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -32,11 +40,71 @@ public class CommitLog {
     // 这对于保证消息的顺序性和内部数据结构（如MappedFileQueue）的一致性至关重要。
     protected final ReentrantLock putMessageLock = new ReentrantLock();
 
+    // 消息编码回调，负责把消息直接写入映射缓冲区
+    private final DefaultAppendMessageCallback appendMessageCallback;
+
+    // 存储配置
+    private final MessageStoreConfig messageStoreConfig;
+
+    // 刷盘服务
+    private final FlushCommitLogService flushCommitLogService;
+
+    // 瞬态存储池及其提交服务，未开启时为null
+    private final TransientStorePool transientStorePool;
+    private final CommitRealTimeService commitRealTimeService;
+
+    // 后台预创建文件的服务，未开启时为null
+    private final AllocateMappedFileService allocateMappedFileService;
+
+    // 组提交模式下等待写入的请求
+    private final ConcurrentLinkedQueue<PutMessageRequest> putRequestQueue = new ConcurrentLinkedQueue<>();
+
+    // 每个队列下一条消息的逻辑偏移量，key为topic-queueId，写入时分配并写进消息记录
+    private final ConcurrentHashMap<String, AtomicLong> topicQueueTable = new ConcurrentHashMap<>();
+
+    // 最近追加的消息的读缓存，由ReputMessageService写入，未开启时为null
+    private final HotMessageCache hotMessageCache;
+
 
     public  CommitLog(String storePath, int mappedFileSize) {
-        this.storePath = storePath;
-        this.mappedFileSize = mappedFileSize;
-        this.mappedFileQueue = new MappedFileQueue(storePath, mappedFileSize);
+        this(buildConfig(storePath, mappedFileSize));
+    }
+
+    public CommitLog(final MessageStoreConfig messageStoreConfig) {
+        this.messageStoreConfig = messageStoreConfig;
+        this.storePath = messageStoreConfig.getStorePathCommitLog();
+        this.mappedFileSize = messageStoreConfig.getMappedFileSizeCommitLog();
+        if (messageStoreConfig.isTransientStorePoolEnable()) {
+            this.transientStorePool = new TransientStorePool(messageStoreConfig.getTransientStorePoolSize(),
+                    mappedFileSize);
+            this.transientStorePool.init();
+        } else {
+            this.transientStorePool = null;
+        }
+        this.allocateMappedFileService = messageStoreConfig.isAllocateMappedFileServiceEnable()
+                ? new AllocateMappedFileService(messageStoreConfig, this.transientStorePool)
+                : null;
+        this.mappedFileQueue = new MappedFileQueue(storePath, mappedFileSize, this.transientStorePool,
+                this.allocateMappedFileService, messageStoreConfig.getStorePathPolicy(),
+                messageStoreConfig.getDiskMaxUsedSpaceRatio() / 100.0);
+        // 单条消息最多占满一个文件，并为结束标记预留空间
+        this.appendMessageCallback = new DefaultAppendMessageCallback(
+                mappedFileSize - MessageDecoder.END_FILE_MIN_BLANK_LENGTH);
+        this.flushCommitLogService = new FlushCommitLogService(this.mappedFileQueue, messageStoreConfig);
+        this.commitRealTimeService = this.transientStorePool != null
+                ? new CommitRealTimeService(this.mappedFileQueue, messageStoreConfig, this.flushCommitLogService)
+                : null;
+        this.hotMessageCache = messageStoreConfig.isHotMessageCacheEnable()
+                ? new HotMessageCache(messageStoreConfig.getHotMessageCacheMaxBytes(),
+                        messageStoreConfig.getHotMessageCacheEvictPolicy())
+                : null;
+    }
+
+    private static MessageStoreConfig buildConfig(String storePath, int mappedFileSize) {
+        MessageStoreConfig config = new MessageStoreConfig();
+        config.setStorePathCommitLog(storePath);
+        config.setMappedFileSizeCommitLog(mappedFileSize);
+        return config;
     }
 
     /**
@@ -46,56 +114,312 @@ public class CommitLog {
         return this.mappedFileQueue.load();
     }
 
+    public void start() {
+        if (this.allocateMappedFileService != null) {
+            this.allocateMappedFileService.start();
+        }
+        this.flushCommitLogService.start();
+        if (this.commitRealTimeService != null) {
+            this.commitRealTimeService.start();
+        }
+    }
+
     public void shutdown() {
+        // 先提交再刷盘，两个服务退出前都会把剩余数据处理完
+        if (this.commitRealTimeService != null) {
+            this.commitRealTimeService.shutdown();
+        }
+        this.flushCommitLogService.shutdown();
+        if (this.allocateMappedFileService != null) {
+            this.allocateMappedFileService.shutdown();
+        }
         this.mappedFileQueue.destroy();
+        if (this.transientStorePool != null) {
+            this.transientStorePool.destroy();
+        }
     }
 
     /**
-     * 对外提供的唯一写入接口
+     * 同步写入，等待asyncPutMessage完成
      * @param msg       内部消息对象
      * @return          写入结果
      */
     public PutMessageResult putMessage(final MessageExt msg) {
+        return asyncPutMessage(msg).join();
+    }
+
+    /**
+     * 异步写入。消息追加到文件后不等待刷盘，返回的future在刷盘完成（或超时）后完成，
+     * 组提交模式下没有抢到锁的线程也不等待，由leader写入后完成future。
+     * future可能在刷盘线程中完成，回调里不能做阻塞操作
+     * @param msg       内部消息对象
+     * @return          写入结果
+     */
+    public CompletableFuture<PutMessageResult> asyncPutMessage(final MessageExt msg) {
         // 设置存储时间
         msg.setStoreTimestamp(System.currentTimeMillis());
 
-        try {
-            // 序列化消息
-            byte[] messageData = serializeMessage(msg);
-            final int messageLength = messageData.length;
+        // 校验放在锁外面，尽量缩短临界区
+        // 主题名会作为ConsumeQueue的目录名，只接受合法字符
+        if (!TopicValidator.isValid(msg.getTopic())) {
+            log.warn("Put message failed, illegal topic: {}", msg.getTopic());
+            return CompletableFuture.completedFuture(new PutMessageResult(PutMessageStatus.MESSAGE_ILLEGAL, -1));
+        }
+        if (msg.getQueueId() < 0) {
+            log.warn("Put message failed, illegal queueId: {}", msg.getQueueId());
+            return CompletableFuture.completedFuture(new PutMessageResult(PutMessageStatus.MESSAGE_ILLEGAL, -1));
+        }
+
+        // 压缩是CPU密集的操作，同样放在锁外面
+        if (this.messageStoreConfig.isCompressMessageBodyEnable()) {
+            compressMessageBody(msg);
+        }
 
-            // todo 加锁
+        CompletableFuture<PutMessageResult> putFuture;
+        if (this.messageStoreConfig.isPutMessageLockFreeEnable()) {
+            putFuture = CompletableFuture.completedFuture(lockFreePutMessage(msg));
+        } else if (this.messageStoreConfig.isPutMessageGroupCommitEnable()) {
+            putFuture = groupPutMessage(msg);
+        } else {
             this.putMessageLock.lock();
+            try {
+                putFuture = CompletableFuture.completedFuture(doPutMessage(msg));
+            } finally {
+                // 释放锁
+                this.putMessageLock.unlock();
+            }
+        }
+
+        // 刷盘在锁外进行，不阻塞其他写入线程
+        return putFuture.thenCompose(result -> handleDiskFlush(result, msg));
+    }
+
+    /**
+     * 压缩消息体，压缩失败时按原始消息体写入
+     */
+    private void compressMessageBody(final MessageExt msg) {
+        try {
+            MessageDecoder.compressBody(msg, this.messageStoreConfig.getCompressionType(),
+                    this.messageStoreConfig.getCompressionLevel(),
+                    this.messageStoreConfig.getCompressMsgBodyOverHowmuch());
+        } catch (IOException e) {
+            log.warn("Compress message body failed, topic: {}, store it uncompressed", msg.getTopic(), e);
+        }
+    }
+
+    /**
+     * 按刷盘策略等待消息落盘，超过syncFlushTimeout没有落盘时返回FLUSH_DISK_TIMEOUT
+     */
+    private CompletableFuture<PutMessageResult> handleDiskFlush(final PutMessageResult result, final MessageExt msg) {
+        if (result.getStatus() != PutMessageStatus.PUT_OK) {
+            return CompletableFuture.completedFuture(result);
+        }
 
-            // 获取最后一个能容纳本条消息的文件
-            MappedFile lastMappedFile = this.mappedFileQueue.getLastMappedFile(messageLength);
+        if (this.commitRealTimeService != null) {
+            // 数据还在写缓冲区中，唤醒提交服务
+            this.commitRealTimeService.wakeup();
+        }
+
+        // 组刷盘时每个请求有自己的future，超时完成不会影响其他请求
+        CompletableFuture<Boolean> flushFuture =
+                this.flushCommitLogService.handleDiskFlush(result.getOffset() + msg.getStoreSize());
+        return flushFuture
+                .completeOnTimeout(false, this.messageStoreConfig.getSyncFlushTimeout(), TimeUnit.MILLISECONDS)
+                .exceptionally(e -> {
+                    log.warn("Wait for flush failed, offset: {}", result.getOffset(), e);
+                    return false;
+                })
+                .thenApply(flushOK -> {
+                    if (flushOK) {
+                        return result;
+                    }
+                    log.error("Do sync flush failed, offset: {}", result.getOffset());
+                    return new PutMessageResult(PutMessageStatus.FLUSH_DISK_TIMEOUT, result.getOffset());
+                });
+    }
+
+    /**
+     * 无锁写入：在当前文件上CAS预留空间，各线程并行地把消息编码到自己的区间，再按顺序发布。
+     * 文件空间不足时，只有认领到文件尾部的线程写结束标记，切换文件由MappedFileQueue保证只创建一次。
+     */
+    private PutMessageResult lockFreePutMessage(final MessageExt msg) {
+        // 编码长度在预留之前就要确定
+        final byte[] topicData = msg.getTopic().getBytes(StandardCharsets.UTF_8);
+        final byte[] propertiesData = msg.getPropertiesData();
+        final int msgLength = this.appendMessageCallback.calMsgLength(msg, topicData, propertiesData);
+        AppendMessageResult illegal = this.appendMessageCallback.checkMessageLength(propertiesData.length,
+                msgLength);
+        if (illegal != null) {
+            log.warn("Put message failed, {}", illegal);
+            return new PutMessageResult(PutMessageStatus.MESSAGE_ILLEGAL, -1);
+        }
+
+        final AtomicLong queueOffset = getQueueOffset(msg);
+        for (;;) {
+            MappedFile lastMappedFile = this.mappedFileQueue.getLastMappedFile();
             if (lastMappedFile == null) {
                 log.error("Failed to load last mapped file");
                 return new PutMessageResult(PutMessageStatus.CREATE_MAP_FILE_FAILED, 0);
             }
 
-            // 获取写入前的起始位置，就是该消息的物理偏移量
-            long startOffset = lastMappedFile.getFileFromOffset() + lastMappedFile.getWrotePosition();
+            // 同一个队列的预留和分配逻辑偏移量必须是原子的，保证队列内的逻辑顺序与物理顺序一致
+            int pos;
+            synchronized (queueOffset) {
+                pos = lastMappedFile.reserve(msgLength, MessageDecoder.END_FILE_MIN_BLANK_LENGTH);
+                if (pos >= 0) {
+                    msg.setQueueOffset(queueOffset.getAndIncrement());
+                }
+            }
+            if (pos >= 0) {
+                final long wroteOffset = lastMappedFile.getFileFromOffset() + pos;
+                try {
+                    ByteBuffer byteBuffer = lastMappedFile.sliceByteBuffer();
+                    byteBuffer.position(pos);
+                    this.appendMessageCallback.encode(byteBuffer, wroteOffset, msg, topicData, propertiesData,
+                            msgLength);
+                } catch (Throwable e) {
+                    // 区间已经预留，不能留下写了一半的记录：写入跳过记录后发布，读取和恢复时按长度跳过
+                    log.error("Encode message failed, write a skip record at offset {}, size: {}", wroteOffset,
+                            msgLength, e);
+                    ByteBuffer byteBuffer = lastMappedFile.sliceByteBuffer();
+                    byteBuffer.position(pos);
+                    this.appendMessageCallback.writeSkip(byteBuffer, msgLength);
+                    lastMappedFile.publish(pos, msgLength);
+                    // 逻辑偏移量还没有被其他消息使用时收回，避免ConsumeQueue出现空洞
+                    synchronized (queueOffset) {
+                        queueOffset.compareAndSet(msg.getQueueOffset() + 1, msg.getQueueOffset());
+                    }
+                    return new PutMessageResult(PutMessageStatus.UNKNOWN_ERROR, -1);
+                }
+                // 前面的写入线程都发布之后才能发布，否则后面的写入线程会一直等待
+                lastMappedFile.publish(pos, msgLength);
 
-            // 追加消息到文件
-            boolean success = lastMappedFile.appendMessage(messageData);
+                msg.setCommitLogOffset(wroteOffset);
+                msg.setMsgId(MessageDecoder.createMessageId(wroteOffset));
+                msg.setStoreSize(msgLength);
+                return new PutMessageResult(PutMessageStatus.PUT_OK, wroteOffset);
+            }
 
-            if (success) {
-                return new PutMessageResult(PutMessageStatus.PUT_OK, startOffset);
-            } else {
-                return new PutMessageResult(PutMessageStatus.MESSAGE_ILLEGAL, 0);
+            // 空间不足，尝试认领文件尾部并写入结束标记；认领失败说明其他线程已经处理
+            int tailPos = lastMappedFile.reserveTail();
+            if (tailPos >= 0) {
+                final int maxBlank = lastMappedFile.getFileSize() - tailPos;
+                try {
+                    ByteBuffer byteBuffer = lastMappedFile.sliceByteBuffer();
+                    byteBuffer.position(tailPos);
+                    this.appendMessageCallback.writeBlank(byteBuffer, maxBlank);
+                } finally {
+                    lastMappedFile.publish(tailPos, maxBlank);
+                }
             }
+        }
+    }
 
-        } catch (IOException e) {
-            // 如果重试后仍然失败，说明消息太大了
-            log.error("Failed to serialize message", e);
-            return new PutMessageResult(PutMessageStatus.MESSAGE_ILLEGAL, -1);
-        } finally {
-            // 释放锁
-            this.putMessageLock.unlock();
+    /**
+     * 组提交写入：请求先入队，抢到锁的线程成为leader，在一次临界区内把队列中的请求全部写入，
+     * 其他线程不再竞争锁，直接返回自己的future。
+     * 每个持有过锁的线程在释放锁后都会重新检查队列，
+     * 所以tryLock失败的请求一定会被当前持有锁的线程（或它之后的leader）处理，不会被遗漏。
+     */
+    private CompletableFuture<PutMessageResult> groupPutMessage(final MessageExt msg) {
+        final PutMessageRequest request = new PutMessageRequest(msg);
+        this.putRequestQueue.offer(request);
+
+        while (!this.putRequestQueue.isEmpty() && this.putMessageLock.tryLock()) {
+            List<PutMessageRequest> batch;
+            try {
+                batch = drainPutRequests();
+            } finally {
+                this.putMessageLock.unlock();
+            }
+            // 在锁外唤醒等待的线程，避免回调在临界区内执行
+            for (PutMessageRequest done : batch) {
+                done.getFuture().complete(done.getResult());
+            }
+        }
+
+        return request.getFuture();
+    }
+
+    /**
+     * 在持有锁的情况下批量写入队列中的请求
+     */
+    private List<PutMessageRequest> drainPutRequests() {
+        final int maxBatch = this.messageStoreConfig.getPutMessageGroupCommitMaxBatch();
+        List<PutMessageRequest> batch = new ArrayList<>(Math.min(maxBatch, 16));
+        PutMessageRequest request;
+        while (batch.size() < maxBatch && (request = this.putRequestQueue.poll()) != null) {
+            PutMessageResult result;
+            try {
+                result = doPutMessage(request.getMsg());
+            } catch (Throwable e) {
+                log.error("Group put message failed", e);
+                result = new PutMessageResult(PutMessageStatus.UNKNOWN_ERROR, -1);
+            }
+            request.setResult(result);
+            batch.add(request);
         }
+        return batch;
+    }
+
+    /**
+     * 把消息追加到最后一个文件，调用方必须持有putMessageLock
+     */
+    private PutMessageResult doPutMessage(final MessageExt msg) {
+        // 获取最后一个文件，如果已写满会创建新的文件
+        MappedFile lastMappedFile = this.mappedFileQueue.getLastMappedFile();
+        if (lastMappedFile == null) {
+            log.error("Failed to load last mapped file");
+            return new PutMessageResult(PutMessageStatus.CREATE_MAP_FILE_FAILED, 0);
+        }
+
+        // 在锁内分配队列的逻辑偏移量，写入成功后才递增
+        AtomicLong queueOffset = getQueueOffset(msg);
+        msg.setQueueOffset(queueOffset.get());
+
+        // 消息直接编码到映射缓冲区中
+        AppendMessageResult result = lastMappedFile.appendMessage(msg, this.appendMessageCallback);
+        if (result.getStatus() == AppendMessageStatus.END_OF_FILE) {
+            // 当前文件剩余空间不足，已填充结束标记，切换到新文件重新写入
+            lastMappedFile = this.mappedFileQueue.getLastMappedFile();
+            if (lastMappedFile == null) {
+                log.error("Failed to create mapped file");
+                return new PutMessageResult(PutMessageStatus.CREATE_MAP_FILE_FAILED, 0);
+            }
+            result = lastMappedFile.appendMessage(msg, this.appendMessageCallback);
+        }
+
+        switch (result.getStatus()) {
+            case PUT_OK:
+                queueOffset.incrementAndGet();
+                msg.setCommitLogOffset(result.getWroteOffset());
+                msg.setMsgId(result.getMsgId());
+                msg.setStoreSize(result.getWroteBytes());
+                return new PutMessageResult(PutMessageStatus.PUT_OK, result.getWroteOffset());
+            case MESSAGE_SIZE_EXCEEDED:
+            case PROPERTIES_SIZE_EXCEEDED:
+                log.warn("Put message failed, {}", result);
+                return new PutMessageResult(PutMessageStatus.MESSAGE_ILLEGAL, -1);
+            default:
+                log.error("Put message failed, {}", result);
+                return new PutMessageResult(PutMessageStatus.UNKNOWN_ERROR, -1);
+        }
+    }
+
+    private AtomicLong getQueueOffset(final MessageExt msg) {
+        String key = msg.getTopic() + "-" + msg.getQueueId();
+        return this.topicQueueTable.computeIfAbsent(key, k -> new AtomicLong(0));
     }
 
+    /**
+     * 用ConsumeQueue中的最大偏移量恢复每个队列的下一个逻辑偏移量，在启动时调用
+     *
+     * @param table key为topic-queueId，value为队列中下一条消息的逻辑偏移量
+     */
+    public void setTopicQueueTable(final Map<String, Long> table) {
+        this.topicQueueTable.clear();
+        table.forEach((key, offset) -> this.topicQueueTable.put(key, new AtomicLong(offset)));
+    }
 
     /**
      * 根据物理偏移量读取消息
@@ -103,65 +427,577 @@ public class CommitLog {
      * @return          消息对象
      */
     public MessageExt getMessage(final long offset) {
+        ByteBuffer cached = this.getCachedMessage(offset);
+        if (cached != null) {
+            return MessageDecoder.decode(cached, true);
+        }
+
         MappedFile mappedFile = this.mappedFileQueue.findMappedFileByOffset(offset);
         if (mappedFile != null) {
-            int pos = (int) (offset% this.mappedFileSize);
+            int pos = (int) (offset % this.mappedFileSize);
+            // 切片范围是从pos到已写入位置，未写入的区域不可读
+            SelectMappedBufferResult result = mappedFile.selectMappedBuffer(pos);
+            if (result == null) {
+                return null;
+            }
             try {
-                // 先读取消息总长度，规定是4个字节
-                ByteBuffer sizeBuffer = mappedFile.selectMappedBuffer(pos, 4);
-                int messageSize = sizeBuffer.getInt();
-
-                ByteBuffer dataBuffer = mappedFile.selectMappedBuffer(pos, messageSize);
-                byte[] data = new byte[messageSize];
-                dataBuffer.get(data);
-
-                // 反序列化
-                return deserializeMessage(data);
+                if (this.isCrcVerifyOnRead()
+                        && !MessageDecoder.verifyRecordCrc(result.getByteBuffer(), 0)) {
+                    log.error("Found a message with wrong crc when reading, offset: {}", offset);
+                    return null;
+                }
+                // 直接在映射缓冲区上解码，不再拷贝整条记录
+                return MessageDecoder.decode(result.getByteBuffer(), true);
             } catch (Exception ex) {
                 log.error("Failed to getMessage", ex);
+            } finally {
+                result.release();
             }
         }
         return null;
     }
 
     /**
-     * 简易的java原生序列化方案
-     * 格式：总长度（4字节） + MessageExt序列化内容
-     * @param msg   消息
+     * 根据物理偏移量和长度获取一条消息的原始数据，不解码也不拷贝，可以直接发送到网络。
+     * 返回结果持有文件的引用，使用完后必须调用release()
+     *
+     * @param offset 物理偏移量
+     * @param size   消息长度
+     * @return 消息数据，不存在时返回null
      */
-    private byte[] serializeMessage(final MessageExt msg) throws IOException {
-        ByteArrayOutputStream bos = new ByteArrayOutputStream();
-        ObjectOutputStream oos = new ObjectOutputStream(bos);
-        oos.writeObject(msg);
-        oos.flush();
-        byte[] data = bos.toByteArray();
+    public SelectMappedBufferResult getMessage(final long offset, final int size) {
+        ByteBuffer cached = this.getCachedMessage(offset);
+        if (cached != null && cached.remaining() == size) {
+            // 缓存中的数据不属于任何文件，release时没有引用需要归还
+            return new SelectMappedBufferResult(offset, cached, size, null);
+        }
 
-        ByteBuffer buffer = ByteBuffer.allocate(4 + data.length);
-        buffer.putInt(4 + data.length);
-        buffer.put(data);
-        return buffer.array();
+        MappedFile mappedFile = this.mappedFileQueue.findMappedFileByOffset(offset);
+        if (mappedFile != null) {
+            int pos = (int) (offset % this.mappedFileSize);
+            if (pos + size <= mappedFile.getReadPosition()) {
+                SelectMappedBufferResult result = mappedFile.selectMappedBuffer(pos, size);
+                if (result != null && this.isCrcVerifyOnRead()
+                        && !MessageDecoder.verifyRecordCrc(result.getByteBuffer(), 0)) {
+                    log.error("Found a message with wrong crc when reading, offset: {} size: {}", offset, size);
+                    result.release();
+                    return null;
+                }
+                return result;
+            }
+        }
+        return null;
     }
 
     /**
-     * java自身的反序列化方案
-     * @param fullData      字节数组
+     * 从startOffset开始顺序批量读取消息，可以跨越文件。
+     * 每个文件只查找和切片一次，之后在映射缓冲区上按记录头中的长度逐条切分，不解码消息也不拷贝数据。
+     * 至少返回一条消息（如果存在），即使它超过了maxBytes，保证调用方能继续向后读取
+     *
+     * @param startOffset 起始物理偏移量，必须是一条消息的开头
+     * @param maxBytes    最多读取的字节数
+     * @param maxCount    最多读取的消息条数
+     * @return 读取结果，使用完后必须调用release()
      */
-    private MessageExt deserializeMessage(final byte[] fullData) throws IOException, ClassNotFoundException {
-        ByteBuffer buffer = ByteBuffer.wrap(fullData);
-        // 跳过总长度字段
-        buffer.getInt();
+    public GetMessageResult getMessages(final long startOffset, final int maxBytes, final int maxCount) {
+        GetMessageResult getResult = new GetMessageResult();
+        long offset = startOffset;
+        boolean stop = false;
+        while (!stop && getResult.getMessageCount() < maxCount) {
+            ByteBuffer cached = this.getCachedMessage(offset);
+            if (cached != null) {
+                if (getResult.getMessageCount() > 0
+                        && getResult.getBufferTotalSize() + cached.remaining() > maxBytes) {
+                    break;
+                }
+                getResult.addMessage(cached);
+                offset += cached.remaining();
+                continue;
+            }
 
-        int dataLength = fullData.length - 4;
-        byte[] data = new byte[dataLength];
-        buffer.get(data);
+            MappedFile mappedFile = this.mappedFileQueue.findMappedFileByOffset(offset);
+            if (mappedFile == null) {
+                break;
+            }
+            SelectMappedBufferResult mappedResult =
+                    mappedFile.selectMappedBuffer((int) (offset % this.mappedFileSize));
+            if (mappedResult == null) {
+                break;
+            }
+
+            final ByteBuffer byteBuffer = mappedResult.getByteBuffer();
+            final int countBefore = getResult.getMessageCount();
+            // 分层存储中的文件每次只返回一个预读窗口，读完窗口后从下一条记录重新读取
+            final boolean partialWindow = mappedResult.getStartOffset() + mappedResult.getSize()
+                    < mappedFile.getFileFromOffset() + mappedFile.getReadPosition();
+            boolean endOfFile = false;
+            while (getResult.getMessageCount() < maxCount) {
+                final int pos = byteBuffer.position();
+                if (byteBuffer.limit() - pos < MessageDecoder.END_FILE_MIN_BLANK_LENGTH) {
+                    // 已经读到文件的可读位置
+                    stop = !partialWindow;
+                    break;
+                }
+
+                final int totalSize = byteBuffer.getInt(pos);
+                final int magicCode = byteBuffer.getInt(pos + 4);
+                if (magicCode == MessageDecoder.BLANK_MAGIC_CODE) {
+                    endOfFile = true;
+                    break;
+                }
+                if (magicCode == MessageDecoder.SKIP_MAGIC_CODE && totalSize >= MessageDecoder.END_FILE_MIN_BLANK_LENGTH
+                        && totalSize <= byteBuffer.limit() - pos) {
+                    byteBuffer.position(pos + totalSize);
+                    offset += totalSize;
+                    continue;
+                }
+                if (partialWindow && magicCode == MessageDecoder.MESSAGE_MAGIC_CODE
+                        && totalSize > byteBuffer.limit() - pos) {
+                    break;
+                }
+                if (magicCode != MessageDecoder.MESSAGE_MAGIC_CODE || totalSize < MessageDecoder.MESSAGE_HEADER_LENGTH
+                        || totalSize > byteBuffer.limit() - pos) {
+                    log.warn("Found an illegal message when batch reading, magic code: {} total size: {} "
+                            + "offset: {}", magicCode, totalSize, offset);
+                    stop = true;
+                    break;
+                }
+                if (getResult.getMessageCount() > 0 && getResult.getBufferTotalSize() + totalSize > maxBytes) {
+                    stop = true;
+                    break;
+                }
+                if (this.isCrcVerifyOnRead() && !MessageDecoder.verifyRecordCrc(byteBuffer, pos)) {
+                    log.error("Found a message with wrong crc when batch reading, offset: {}", offset);
+                    stop = true;
+                    break;
+                }
+
+                ByteBuffer messageBuffer = byteBuffer.slice();
+                messageBuffer.limit(totalSize);
+                getResult.addMessage(messageBuffer);
+                byteBuffer.position(pos + totalSize);
+                offset += totalSize;
+            }
+
+            // 有消息的文件区域由结果持有，释放时统一归还引用
+            if (getResult.getMessageCount() > countBefore) {
+                getResult.addMappedResult(mappedResult);
+            } else {
+                mappedResult.release();
+            }
 
-        ByteArrayInputStream bis = new ByteArrayInputStream(data);
-        ObjectInputStream ois = new ObjectInputStream(bis);
-        return (MessageExt) ois.readObject();
+            if (endOfFile) {
+                offset = this.rollNextFile(offset);
+            }
+        }
+
+        getResult.setNextBeginOffset(offset);
+        return getResult;
     }
 
+    /**
+     * 从热消息缓存中读取一条消息，未开启缓存、未命中或CRC校验失败时返回null，由调用方从文件中读取
+     */
+    private ByteBuffer getCachedMessage(final long offset) {
+        if (this.hotMessageCache == null) {
+            return null;
+        }
+        ByteBuffer cached = this.hotMessageCache.get(offset);
+        if (cached != null && this.isCrcVerifyOnRead() && !MessageDecoder.verifyRecordCrc(cached, 0)) {
+            log.error("Found a cached message with wrong crc, offset: {}", offset);
+            return null;
+        }
+        return cached;
+    }
+
+    /**
+     * 根据crcVerifyMode决定本次读取是否校验CRC。
+     * reput读取的是刚写入的数据，恢复时已经校验过CRC，都不经过这里
+     */
+    private boolean isCrcVerifyOnRead() {
+        switch (this.messageStoreConfig.getCrcVerifyMode()) {
+            case ALWAYS:
+                return true;
+            case SAMPLED:
+                int sampleRate = this.messageStoreConfig.getCrcVerifySampleRate();
+                return sampleRate <= 1 || ThreadLocalRandom.current().nextInt(sampleRate) == 0;
+            default:
+                return false;
+        }
+    }
+
+    /**
+     * 获取从offset开始到所在文件可读位置的数据，供ReputMessageService顺序解析。
+     * 返回结果持有文件的引用，使用完后必须调用release()
+     */
+    public SelectMappedBufferResult getData(final long offset) {
+        MappedFile mappedFile = this.mappedFileQueue.findMappedFileByOffset(offset, offset == 0);
+        if (mappedFile != null) {
+            int pos = (int) (offset % this.mappedFileSize);
+            return mappedFile.selectMappedBuffer(pos);
+        }
+        return null;
+    }
+
+    /**
+     * 从byteBuffer的当前位置解析一条消息的位置信息，不读取消息体，解析完成后position位于该消息末尾
+     *
+     * @param checkCRC 是否校验CRC，恢复时需要校验以识别写了一半的记录
+     * @return 解析结果，读到文件结束标记时msgSize为0；读到跳过记录时skip为true；
+     *         读到未写入的区域或损坏的记录时success为false
+     */
+    public DispatchRequest checkMessageAndReturnSize(final ByteBuffer byteBuffer, final boolean checkCRC) {
+        if (byteBuffer.remaining() < MessageDecoder.END_FILE_MIN_BLANK_LENGTH) {
+            return new DispatchRequest(-1, false);
+        }
+
+        final int start = byteBuffer.position();
+        final int totalSize = byteBuffer.getInt();
+        final int magicCode = byteBuffer.getInt();
+        if (magicCode == MessageDecoder.BLANK_MAGIC_CODE) {
+            return new DispatchRequest(0, true);
+        }
+        if (magicCode == MessageDecoder.SKIP_MAGIC_CODE && totalSize >= MessageDecoder.END_FILE_MIN_BLANK_LENGTH
+                && totalSize <= byteBuffer.limit() - start) {
+            byteBuffer.position(start + totalSize);
+            return new DispatchRequest(totalSize, true, true);
+        }
+        if (totalSize == 0 && magicCode == 0) {
+            // 未写入的区域，有效数据到此为止
+            return new DispatchRequest(-1, false);
+        }
+        if (magicCode != MessageDecoder.MESSAGE_MAGIC_CODE || totalSize < MessageDecoder.MESSAGE_HEADER_LENGTH
+                || totalSize > byteBuffer.limit() - start) {
+            log.warn("Found an illegal message, magic code: {} total size: {} position: {}", magicCode,
+                    totalSize, start);
+            return new DispatchRequest(-1, false);
+        }
+
+        final int recordCrc = byteBuffer.getInt();
+        if (checkCRC && recordCrc != MessageDecoder.calRecordCrc(byteBuffer, start, totalSize)) {
+            log.warn("Found a message with wrong crc, total size: {} position: {}", totalSize, start);
+            return new DispatchRequest(-1, false);
+        }
+
+        final int queueId = byteBuffer.getInt();
+        // 跳过SYSFLAG
+        byteBuffer.getInt();
+        final long queueOffset = byteBuffer.getLong();
+        final long physicOffset = byteBuffer.getLong();
+        // 跳过BORNTIMESTAMP
+        byteBuffer.getLong();
+        final long storeTimestamp = byteBuffer.getLong();
+
+        final byte[] topicData = new byte[byteBuffer.get()];
+        byteBuffer.get(topicData);
+        final String topic = new String(topicData, StandardCharsets.UTF_8);
+
+        long tagsCode = 0;
+        String keys = null;
+        final short propertiesLength = byteBuffer.getShort();
+        final int propertiesPos = byteBuffer.position();
+        if (propertiesLength > 0 && propertiesPos + propertiesLength <= start + totalSize) {
+            // 只取出标签和业务键，不解码整个属性块
+            String tags = MessageProperties.getProperty(byteBuffer, propertiesPos, propertiesLength,
+                    MessageExt.PROPERTY_TAGS);
+            if (tags != null && !tags.isEmpty()) {
+                tagsCode = tags.hashCode();
+            }
+            keys = MessageProperties.getProperty(byteBuffer, propertiesPos, propertiesLength,
+                    MessageExt.PROPERTY_KEYS);
+        }
+
+        byteBuffer.position(start + totalSize);
+        return new DispatchRequest(topic, queueId, physicOffset, totalSize, tagsCode, storeTimestamp,
+                queueOffset, keys);
+    }
+
+    /**
+     * 启动时恢复CommitLog的写入位置。
+     * 从checkpoint记录的已落盘位置开始逐条扫描，校验长度、CRC以及记录中的物理偏移量，第一条无效记录之后的数据全部截断并清零。
+     * checkpoint之前的数据已经落盘，不需要扫描，所以即使数据量很大也能快速启动。
+     *
+     * @param checkpointOffset 上次记录的已落盘位置，没有checkpoint时为0
+     */
+    public void recover(final long checkpointOffset) {
+        final List<MappedFile> mappedFiles = this.mappedFileQueue.getMappedFiles();
+        if (mappedFiles.isEmpty()) {
+            this.mappedFileQueue.setFlushedWhere(0);
+            this.mappedFileQueue.setCommittedWhere(0);
+            return;
+        }
+
+        MappedFile mappedFile = this.mappedFileQueue.findMappedFileByOffset(checkpointOffset);
+        long processOffset = checkpointOffset;
+        if (mappedFile == null || checkpointOffset <= 0) {
+            // 没有可用的checkpoint，从最后三个文件开始扫描
+            mappedFile = mappedFiles.get(Math.max(0, mappedFiles.size() - 3));
+            processOffset = mappedFile.getFileFromOffset();
+        } else if (!this.isRecordBoundary(mappedFile, processOffset)) {
+            // checkpoint不在记录边界上，从所在文件的开头扫描
+            processOffset = mappedFile.getFileFromOffset();
+        }
+        log.info("Recover commit log from offset {}, checkpoint: {}", processOffset, checkpointOffset);
+
+        int index = mappedFiles.indexOf(mappedFile);
+        SelectMappedBufferResult result = mappedFile.selectMappedBuffer(0, this.mappedFileSize);
+        ByteBuffer byteBuffer = result.getByteBuffer();
+        byteBuffer.position((int) (processOffset - mappedFile.getFileFromOffset()));
+        try {
+            while (true) {
+                DispatchRequest request = this.checkMessageAndReturnSize(byteBuffer, true);
+                if (request.isSuccess() && request.getMsgSize() > 0) {
+                    if (!request.isSkip() && request.getCommitLogOffset() != processOffset) {
+                        // 长度和CRC都正确，但记录不是写在这个位置的，是截断之前残留的旧数据
+                        log.warn("Found a message at wrong position, physic offset: {} position: {}",
+                                request.getCommitLogOffset(), processOffset);
+                        break;
+                    }
+                    processOffset += request.getMsgSize();
+                    continue;
+                }
+
+                if (request.isSuccess() && index + 1 < mappedFiles.size()) {
+                    // 读到文件结束标记，继续扫描下一个文件
+                    index++;
+                    mappedFile = mappedFiles.get(index);
+                    result.release();
+                    result = mappedFile.selectMappedBuffer(0, this.mappedFileSize);
+                    byteBuffer = result.getByteBuffer();
+                    processOffset = mappedFile.getFileFromOffset();
+                    log.info("Recover next physics file, {}", mappedFile.getFileName());
+                    continue;
+                }
+
+                if (request.isSuccess()) {
+                    // 最后一个文件已经写满
+                    processOffset = mappedFile.getFileFromOffset() + this.mappedFileSize;
+                }
+                break;
+            }
+        } finally {
+            result.release();
+        }
+
+        log.info("Recover commit log end, max physic offset: {}", processOffset);
+        this.mappedFileQueue.setFlushedWhere(processOffset);
+        this.mappedFileQueue.setCommittedWhere(processOffset);
+        this.mappedFileQueue.truncateDirtyFiles(processOffset);
+    }
+
+    /**
+     * offset处是否是一条有效记录的开头，或者是文件中有效数据的末尾
+     */
+    private boolean isRecordBoundary(final MappedFile mappedFile, final long offset) {
+        int pos = (int) (offset - mappedFile.getFileFromOffset());
+        SelectMappedBufferResult result = mappedFile.selectMappedBuffer(pos, this.mappedFileSize - pos);
+        if (result == null) {
+            return true;
+        }
+        try {
+            final ByteBuffer byteBuffer = result.getByteBuffer();
+            final int totalSize = byteBuffer.getInt(0);
+            final int magicCode = byteBuffer.getInt(4);
+            if (magicCode == MessageDecoder.BLANK_MAGIC_CODE || magicCode == MessageDecoder.SKIP_MAGIC_CODE
+                    || (totalSize == 0 && magicCode == 0)) {
+                return true;
+            }
+            return magicCode == MessageDecoder.MESSAGE_MAGIC_CODE
+                    && byteBuffer.getLong(MessageDecoder.PHYSICAL_OFFSET_POSITION) == offset;
+        } finally {
+            result.release();
+        }
+    }
+
+    /**
+     * 删除过期的文件，参数见MappedFileQueue#deleteExpiredFileByTime
+     *
+     * @return 删除的文件数
+     */
+    public int deleteExpiredFile(final long expiredTime, final int deleteFilesInterval, final long intervalForcibly,
+            final boolean cleanImmediately, final int deleteFileBatchMax) {
+        int deleteCount = this.mappedFileQueue.deleteExpiredFileByTime(expiredTime, deleteFilesInterval,
+                intervalForcibly, cleanImmediately, deleteFileBatchMax);
+        if (deleteCount > 0 && this.hotMessageCache != null) {
+            this.hotMessageCache.invalidateBefore(this.getMinOffset());
+        }
+        return deleteCount;
+    }
+
+    /**
+     * offset所在文件的下一个文件的起始偏移量
+     */
+    public long rollNextFile(final long offset) {
+        return offset + this.mappedFileSize - offset % this.mappedFileSize;
+    }
+
+    /**
+     * 当前最小的物理偏移量
+     */
+    public long getMinOffset() {
+        return this.mappedFileQueue.getMinOffset();
+    }
+
+    /**
+     * 当前最大可读的物理偏移量
+     */
+    public long getMaxOffset() {
+        return this.mappedFileQueue.getMaxOffset();
+    }
+
+    /**
+     * 当前的刷盘位置
+     */
+    public long getFlushedWhere() {
+        return this.mappedFileQueue.getFlushedWhere();
+    }
+
+    public HotMessageCache getHotMessageCache() {
+        return hotMessageCache;
+    }
+
+    public MappedFileQueue getMappedFileQueue() {
+        return mappedFileQueue;
+    }
+
+    /**
+     * 默认的消息编码回调，按照MessageDecoder中定义的格式将消息写入映射缓冲区
+     */
+    class DefaultAppendMessageCallback implements AppendMessageCallback {
+
+        // 单条消息的最大长度
+        private final int maxMessageSize;
+
+        DefaultAppendMessageCallback(final int maxMessageSize) {
+            this.maxMessageSize = maxMessageSize;
+        }
+
+        @Override
+        public AppendMessageResult doAppend(final long fileFromOffset, final ByteBuffer byteBuffer,
+                final int maxBlank, final MessageExt msg) {
+            // 消息的物理偏移量
+            final long wroteOffset = fileFromOffset + byteBuffer.position();
+
+            final byte[] topicData = msg.getTopic().getBytes(StandardCharsets.UTF_8);
+            final byte[] propertiesData = msg.getPropertiesData();
+            final int msgLength = calMsgLength(msg, topicData, propertiesData);
+            AppendMessageResult illegal = checkMessageLength(propertiesData.length, msgLength);
+            if (illegal != null) {
+                return illegal;
+            }
+
+            // 剩余空间不足，写入结束标记，由调用方切换到新文件
+            if (msgLength + MessageDecoder.END_FILE_MIN_BLANK_LENGTH > maxBlank) {
+                writeBlank(byteBuffer, maxBlank);
+                return new AppendMessageResult(AppendMessageStatus.END_OF_FILE, wroteOffset, maxBlank, null,
+                        msg.getStoreTimestamp());
+            }
+
+            encode(byteBuffer, wroteOffset, msg, topicData, propertiesData, msgLength);
+            return new AppendMessageResult(AppendMessageStatus.PUT_OK, wroteOffset, msgLength,
+                    MessageDecoder.createMessageId(wroteOffset), msg.getStoreTimestamp());
+        }
+
+        int calMsgLength(final MessageExt msg, final byte[] topicData, final byte[] propertiesData) {
+            final int bodyLength = msg.getBody() == null ? 0 : msg.getBody().length;
+            return MessageDecoder.calMsgLength(topicData.length, propertiesData.length, bodyLength);
+        }
+
+        /**
+         * 检查消息长度，合法时返回null
+         */
+        AppendMessageResult checkMessageLength(final int propertiesLength, final int msgLength) {
+            if (propertiesLength > MessageDecoder.MAX_PROPERTIES_LENGTH) {
+                log.warn("Put message properties length too long, length: {}", propertiesLength);
+                return new AppendMessageResult(AppendMessageStatus.PROPERTIES_SIZE_EXCEEDED);
+            }
+            if (msgLength > this.maxMessageSize) {
+                log.warn("Message size exceeded, msg total size: {}, maxMessageSize: {}", msgLength,
+                        this.maxMessageSize);
+                return new AppendMessageResult(AppendMessageStatus.MESSAGE_SIZE_EXCEEDED);
+            }
+            return null;
+        }
+
+        /**
+         * 在byteBuffer的当前位置写入文件结束标记
+         */
+        void writeBlank(final ByteBuffer byteBuffer, final int maxBlank) {
+            byteBuffer.putInt(maxBlank);
+            byteBuffer.putInt(MessageDecoder.BLANK_MAGIC_CODE);
+        }
+
+        /**
+         * 在byteBuffer的当前位置写入跳过记录，占满预留的size字节
+         */
+        void writeSkip(final ByteBuffer byteBuffer, final int size) {
+            byteBuffer.putInt(size);
+            byteBuffer.putInt(MessageDecoder.SKIP_MAGIC_CODE);
+        }
+
+        /**
+         * 在byteBuffer的当前位置写入一条完整的消息记录
+         */
+        void encode(final ByteBuffer byteBuffer, final long wroteOffset, final MessageExt msg,
+                final byte[] topicData, final byte[] propertiesData, final int msgLength) {
+            final int bodyLength = msg.getBody() == null ? 0 : msg.getBody().length;
+            final int start = byteBuffer.position();
+            byteBuffer.putInt(msgLength);
+            byteBuffer.putInt(MessageDecoder.MESSAGE_MAGIC_CODE);
+            // CRC先占位，写完整条记录后回填
+            byteBuffer.putInt(0);
+            byteBuffer.putInt(msg.getQueueId());
+            byteBuffer.putInt(msg.getSysFlag());
+            byteBuffer.putLong(msg.getQueueOffset());
+            byteBuffer.putLong(wroteOffset);
+            byteBuffer.putLong(msg.getBornTimestamp());
+            byteBuffer.putLong(msg.getStoreTimestamp());
+            byteBuffer.put((byte) topicData.length);
+            byteBuffer.put(topicData);
+            byteBuffer.putShort((short) propertiesData.length);
+            byteBuffer.put(propertiesData);
+            byteBuffer.putInt(bodyLength);
+            if (bodyLength > 0) {
+                byteBuffer.put(msg.getBody());
+            }
+
+            // 直接在映射缓冲区上计算CRC32C
+            byteBuffer.putInt(start + MessageDecoder.RECORD_CRC_POSITION,
+                    MessageDecoder.calRecordCrc(byteBuffer, start, msgLength));
+        }
+    }
+
+
+    /**
+     * 组提交模式下排队的写入请求
+     */
+    static class PutMessageRequest {
+        private final MessageExt msg;
+        private final CompletableFuture<PutMessageResult> future = new CompletableFuture<>();
+        private PutMessageResult result;
+
+        PutMessageRequest(MessageExt msg) {
+            this.msg = msg;
+        }
+
+        public MessageExt getMsg() {
+            return msg;
+        }
+
+        public CompletableFuture<PutMessageResult> getFuture() {
+            return future;
+        }
+
+        public PutMessageResult getResult() {
+            return result;
+        }
+
+        public void setResult(PutMessageResult result) {
+            this.result = result;
+        }
+    }
 
-    class PutMessageResult {
+    public static class PutMessageResult {
         private PutMessageStatus status;
         // 消息的起始偏移量
         private long offset;
@@ -180,9 +1016,12 @@ public class CommitLog {
 
     }
 
-    enum PutMessageStatus {
+    public enum PutMessageStatus {
         PUT_OK,
         CREATE_MAP_FILE_FAILED,
         MESSAGE_ILLEGAL,
+        // 消息已写入，但在超时时间内没有落盘
+        FLUSH_DISK_TIMEOUT,
+        UNKNOWN_ERROR,
     }
 }
@@ -0,0 +1,18 @@
+package com.echelon.hermes.store;
+
+/**
+ * 描述：CommitLog中每追加一条消息，ReputMessageService都会调用一次dispatch，
+ * 用于构建ConsumeQueue等依赖CommitLog的数据结构
+ *
+ * @author jorelwang
+ * @create 2026-10-16 15:52
+ */
+public interface CommitLogDispatcher {
+
+    /**
+     * 分发一条消息，只会被ReputMessageService线程调用
+     *
+     * @param request 消息的位置信息
+     */
+    void dispatch(final DispatchRequest request);
+}
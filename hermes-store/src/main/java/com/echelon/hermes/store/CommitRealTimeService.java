@@ -0,0 +1,72 @@
+package com.echelon.hermes.store;
+
+import com.echelon.hermes.common.ServiceThread;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * 描述：开启transientStorePool时，把写缓冲区中的数据批量提交到FileChannel，
+ * 提交成功后唤醒刷盘服务。
+ *
+ * @author jorelwang
+ * @create 2026-10-16 14:10
+ */
+public class CommitRealTimeService extends ServiceThread {
+    private static final Logger log = LoggerFactory.getLogger(CommitRealTimeService.class);
+
+    // 关闭时最多重试的提交次数
+    private static final int RETRY_TIMES_OVER = 10;
+
+    private final MappedFileQueue mappedFileQueue;
+    private final MessageStoreConfig messageStoreConfig;
+    private final FlushCommitLogService flushCommitLogService;
+
+    // 上一次彻底提交的时间
+    private long lastCommitTimestamp = 0;
+
+    public CommitRealTimeService(final MappedFileQueue mappedFileQueue, final MessageStoreConfig messageStoreConfig,
+            final FlushCommitLogService flushCommitLogService) {
+        this.mappedFileQueue = mappedFileQueue;
+        this.messageStoreConfig = messageStoreConfig;
+        this.flushCommitLogService = flushCommitLogService;
+    }
+
+    @Override
+    public String getServiceName() {
+        return CommitRealTimeService.class.getSimpleName();
+    }
+
+    @Override
+    public void run() {
+        log.info("{} service started", getServiceName());
+
+        while (!this.isStopped()) {
+            int commitLeastPages = this.messageStoreConfig.getCommitCommitLogLeastPages();
+
+            // 距离上次彻底提交超过间隔，忽略页数限制
+            long now = System.currentTimeMillis();
+            if (now >= this.lastCommitTimestamp + this.messageStoreConfig.getCommitCommitLogThoroughInterval()) {
+                this.lastCommitTimestamp = now;
+                commitLeastPages = 0;
+            }
+
+            try {
+                boolean result = this.mappedFileQueue.commit(commitLeastPages);
+                if (!result) {
+                    // 有新的数据提交，唤醒刷盘服务
+                    this.flushCommitLogService.wakeup();
+                }
+                this.waitForRunning(this.messageStoreConfig.getCommitIntervalCommitLog());
+            } catch (Throwable e) {
+                log.error("{} service has exception.", getServiceName(), e);
+            }
+        }
+
+        boolean result = false;
+        for (int i = 0; i < RETRY_TIMES_OVER && !result; i++) {
+            result = this.mappedFileQueue.commit(0);
+            log.info("{} service shutdown, retry {} times {}", getServiceName(), i + 1, result ? "OK" : "Not OK");
+        }
+        log.info("{} service end", getServiceName());
+    }
+}
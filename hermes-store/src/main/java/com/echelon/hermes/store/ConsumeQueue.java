@@ -0,0 +1,344 @@
+package com.echelon.hermes.store;
+
+import java.io.File;
+import java.nio.ByteBuffer;
+import java.util.List;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * 描述：消费队列，每个topic的每个队列对应一个ConsumeQueue，是CommitLog的定长索引。
+ * <pre>
+ * 每条索引固定20个字节：
+ * COMMITLOG_OFFSET  8  消息在commitLog中的物理偏移量
+ * SIZE              4  消息长度
+ * TAGS_CODE         8  消息标签的哈希值
+ * </pre>
+ * 队列中第N条消息的索引位于 N * CQ_STORE_UNIT_SIZE，不需要扫描即可定位。
+ * 索引只由ReputMessageService线程写入。
+ *
+ * @author jorelwang
+ * @create 2026-10-16 15:55
+ */
+public class ConsumeQueue {
+    private static final Logger log = LoggerFactory.getLogger(ConsumeQueue.class);
+
+    // 每条索引的长度
+    public static final int CQ_STORE_UNIT_SIZE = 20;
+
+    // 文件开头的占位索引，队列不是从0开始时用它填充
+    private static final int BLANK_UNIT_SIZE = Integer.MAX_VALUE;
+
+    private final String topic;
+    private final int queueId;
+    private final int mappedFileSize;
+    private final MappedFileQueue mappedFileQueue;
+
+    // 写索引时复用的缓冲区，只有reput线程会使用
+    private final byte[] indexData = new byte[CQ_STORE_UNIT_SIZE];
+    private final ByteBuffer byteBufferIndex = ByteBuffer.wrap(indexData);
+
+    // 最后一条索引对应的消息末尾在commitLog中的偏移量，用于确定reput的起点
+    private volatile long maxPhysicOffset = -1;
+
+    // 第一条有效索引的逻辑偏移量（字节）
+    private volatile long minLogicOffset = 0;
+
+    public ConsumeQueue(final String topic, final int queueId, final String storePath, final int mappedFileSize) {
+        this.topic = topic;
+        this.queueId = queueId;
+        this.mappedFileSize = mappedFileSize;
+        String queueDir = storePath + File.separator + topic + File.separator + queueId;
+        this.mappedFileQueue = new MappedFileQueue(queueDir, mappedFileSize);
+    }
+
+    public boolean load() {
+        boolean result = this.mappedFileQueue.load();
+        log.info("Load consume queue {}-{} {}", this.topic, this.queueId, result ? "OK" : "Failed");
+        return result;
+    }
+
+    /**
+     * 从最后三个文件开始扫描，找到最后一条有效索引，之后的数据全部丢弃
+     */
+    public void recover() {
+        final List<MappedFile> mappedFiles = this.mappedFileQueue.getMappedFiles();
+        if (mappedFiles.isEmpty()) {
+            return;
+        }
+
+        this.correctMinOffset(0);
+
+        int index = Math.max(0, mappedFiles.size() - 3);
+        MappedFile mappedFile = mappedFiles.get(index);
+        SelectMappedBufferResult result = mappedFile.selectMappedBuffer(0, this.mappedFileSize);
+        long processOffset = mappedFile.getFileFromOffset();
+        long mappedFileOffset = 0;
+        try {
+            while (true) {
+                ByteBuffer byteBuffer = result.getByteBuffer();
+                for (int i = 0; i < this.mappedFileSize; i += CQ_STORE_UNIT_SIZE) {
+                    long offset = byteBuffer.getLong();
+                    int size = byteBuffer.getInt();
+                    byteBuffer.getLong();
+
+                    if (offset >= 0 && size > 0) {
+                        mappedFileOffset = i + CQ_STORE_UNIT_SIZE;
+                        if (size != BLANK_UNIT_SIZE) {
+                            this.maxPhysicOffset = offset + size;
+                        }
+                    } else {
+                        break;
+                    }
+                }
+
+                // 当前文件已写满，继续扫描下一个文件
+                if (mappedFileOffset == this.mappedFileSize && index + 1 < mappedFiles.size()) {
+                    index++;
+                    mappedFile = mappedFiles.get(index);
+                    result.release();
+                    result = mappedFile.selectMappedBuffer(0, this.mappedFileSize);
+                    processOffset = mappedFile.getFileFromOffset();
+                    mappedFileOffset = 0;
+                } else {
+                    break;
+                }
+            }
+        } finally {
+            result.release();
+        }
+
+        processOffset += mappedFileOffset;
+        this.mappedFileQueue.setFlushedWhere(processOffset);
+        this.mappedFileQueue.setCommittedWhere(processOffset);
+        this.mappedFileQueue.truncateDirtyFiles(processOffset);
+        log.info("Recover consume queue {}-{}, max offset in queue: {}, max physic offset: {}", this.topic,
+                this.queueId, getMaxOffsetInQueue(), this.maxPhysicOffset);
+    }
+
+    /**
+     * CommitLog恢复后，删除指向phyOffset之后的索引
+     *
+     * @param phyOffset CommitLog中有效数据的末尾
+     */
+    public void truncateDirtyLogicFiles(final long phyOffset) {
+        if (this.maxPhysicOffset <= phyOffset) {
+            return;
+        }
+
+        this.maxPhysicOffset = -1;
+        while (true) {
+            MappedFile mappedFile = this.mappedFileQueue.getLastMappedFileOrNull();
+            if (mappedFile == null) {
+                return;
+            }
+
+            SelectMappedBufferResult result = mappedFile.selectMappedBuffer(0, this.mappedFileSize);
+            int validPosition = 0;
+            try {
+                ByteBuffer byteBuffer = result.getByteBuffer();
+                for (int i = 0; i < mappedFile.getWrotePosition(); i += CQ_STORE_UNIT_SIZE) {
+                    long offset = byteBuffer.getLong();
+                    int size = byteBuffer.getInt();
+                    byteBuffer.getLong();
+                    if (size != BLANK_UNIT_SIZE) {
+                        if (offset + size > phyOffset) {
+                            break;
+                        }
+                        this.maxPhysicOffset = offset + size;
+                    }
+                    validPosition = i + CQ_STORE_UNIT_SIZE;
+                }
+            } finally {
+                result.release();
+            }
+
+            if (validPosition > 0) {
+                long where = mappedFile.getFileFromOffset() + validPosition;
+                mappedFile.setWrotePosition(validPosition);
+                mappedFile.setFlushedPosition(validPosition);
+                this.mappedFileQueue.setFlushedWhere(Math.min(this.mappedFileQueue.getFlushedWhere(), where));
+                this.mappedFileQueue.setCommittedWhere(Math.min(this.mappedFileQueue.getCommittedWhere(), where));
+                return;
+            }
+
+            // 整个文件的索引都无效，删除后继续检查前一个文件
+            this.mappedFileQueue.getMappedFiles().remove(mappedFile);
+            mappedFile.deleteFile();
+            log.info("Truncate dirty logic file {}", mappedFile.getFileName());
+        }
+    }
+
+    /**
+     * 删除所有索引都指向phyMinOffset之前的文件，并修正队列的最小逻辑偏移量
+     *
+     * @param phyMinOffset CommitLog中的最小物理偏移量
+     * @return 删除的文件数
+     */
+    public int deleteExpiredFile(final long phyMinOffset) {
+        int count = this.mappedFileQueue.deleteExpiredFileByOffset(phyMinOffset, CQ_STORE_UNIT_SIZE);
+        this.correctMinOffset(phyMinOffset);
+        return count;
+    }
+
+    /**
+     * 在第一个文件中找到第一条指向phyMinOffset及之后的索引，作为队列的最小逻辑偏移量。
+     * 开头的占位索引和指向已删除消息的索引都会被跳过
+     *
+     * @param phyMinOffset CommitLog中的最小物理偏移量
+     */
+    public void correctMinOffset(final long phyMinOffset) {
+        MappedFile mappedFile = this.mappedFileQueue.getFirstMappedFile();
+        if (mappedFile == null) {
+            return;
+        }
+        SelectMappedBufferResult result = mappedFile.selectMappedBuffer(0, this.mappedFileSize);
+        if (result == null) {
+            return;
+        }
+        try {
+            ByteBuffer byteBuffer = result.getByteBuffer();
+            for (int i = 0; i < this.mappedFileSize; i += CQ_STORE_UNIT_SIZE) {
+                long offset = byteBuffer.getLong();
+                int size = byteBuffer.getInt();
+                byteBuffer.getLong();
+                if (size <= 0) {
+                    // 之后还没有写入索引，队列从这里开始
+                    this.minLogicOffset = mappedFile.getFileFromOffset() + i;
+                    return;
+                }
+                if (size != BLANK_UNIT_SIZE && offset >= phyMinOffset) {
+                    this.minLogicOffset = mappedFile.getFileFromOffset() + i;
+                    return;
+                }
+            }
+        } finally {
+            result.release();
+        }
+    }
+
+    /**
+     * 根据分发请求追加一条索引
+     */
+    public boolean putMessagePositionInfoWrapper(final DispatchRequest request) {
+        return putMessagePositionInfo(request.getCommitLogOffset(), request.getMsgSize(), request.getTagsCode(),
+                request.getConsumeQueueOffset());
+    }
+
+    /**
+     * 追加一条索引
+     *
+     * @param offset   消息的物理偏移量
+     * @param size     消息长度
+     * @param tagsCode 消息标签的哈希值
+     * @param cqOffset 消息在队列中的逻辑偏移量
+     * @return 是否写入成功，重复的索引直接返回true
+     */
+    private boolean putMessagePositionInfo(final long offset, final int size, final long tagsCode,
+            final long cqOffset) {
+        // 重启后reput可能从较早的位置开始，已经构建过的索引直接跳过
+        if (offset + size <= this.maxPhysicOffset) {
+            log.warn("Maybe try to build consume queue repeatedly, maxPhysicOffset={} phyOffset={}",
+                    this.maxPhysicOffset, offset);
+            return true;
+        }
+
+        final long expectLogicOffset = cqOffset * CQ_STORE_UNIT_SIZE;
+        MappedFile mappedFile = this.mappedFileQueue.getLastMappedFile(expectLogicOffset);
+        if (mappedFile == null) {
+            log.error("Create consume queue file failed, topic: {} queueId: {}", this.topic, this.queueId);
+            return false;
+        }
+
+        // 队列的第一个文件，且第一条索引不是文件的开头，用占位索引填充前面的空间
+        if (mappedFile.getWrotePosition() == 0 && this.mappedFileQueue.getMappedFiles().size() == 1
+                && expectLogicOffset != mappedFile.getFileFromOffset()) {
+            this.minLogicOffset = expectLogicOffset;
+            this.fillPreBlank(mappedFile, expectLogicOffset);
+            this.mappedFileQueue.setFlushedWhere(expectLogicOffset);
+            this.mappedFileQueue.setCommittedWhere(expectLogicOffset);
+            log.info("Fill pre blank space {} {}", mappedFile.getFileName(), expectLogicOffset);
+        }
+
+        if (cqOffset != 0) {
+            long currentLogicOffset = mappedFile.getFileFromOffset() + mappedFile.getWrotePosition();
+            if (expectLogicOffset < currentLogicOffset) {
+                log.warn("Build consume queue repeatedly, expectLogicOffset: {} currentLogicOffset: {} topic: {} "
+                        + "queueId: {}", expectLogicOffset, currentLogicOffset, this.topic, this.queueId);
+                return true;
+            }
+            if (expectLogicOffset != currentLogicOffset) {
+                log.error("Logic queue order maybe wrong, expectLogicOffset: {} currentLogicOffset: {} topic: {} "
+                        + "queueId: {}", expectLogicOffset, currentLogicOffset, this.topic, this.queueId);
+            }
+        }
+
+        this.byteBufferIndex.clear();
+        this.byteBufferIndex.putLong(offset);
+        this.byteBufferIndex.putInt(size);
+        this.byteBufferIndex.putLong(tagsCode);
+        this.maxPhysicOffset = offset + size;
+        return mappedFile.appendMessage(this.indexData);
+    }
+
+    private void fillPreBlank(final MappedFile mappedFile, final long untilWhere) {
+        ByteBuffer byteBuffer = ByteBuffer.allocate(CQ_STORE_UNIT_SIZE);
+        byteBuffer.putLong(0L);
+        byteBuffer.putInt(BLANK_UNIT_SIZE);
+        byteBuffer.putLong(0L);
+
+        int until = (int) (untilWhere % this.mappedFileSize);
+        for (int i = 0; i < until; i += CQ_STORE_UNIT_SIZE) {
+            mappedFile.appendMessage(byteBuffer.array());
+        }
+    }
+
+    /**
+     * 获取从startIndex开始的索引数据，直到所在文件的可读位置
+     *
+     * @param startIndex 队列中的逻辑偏移量
+     * @return 索引数据，不存在时返回null；返回结果持有文件的引用，使用完后必须调用release()
+     */
+    public SelectMappedBufferResult getIndexBuffer(final long startIndex) {
+        long offset = startIndex * CQ_STORE_UNIT_SIZE;
+        if (offset < this.minLogicOffset) {
+            return null;
+        }
+        MappedFile mappedFile = this.mappedFileQueue.findMappedFileByOffset(offset);
+        if (mappedFile != null) {
+            return mappedFile.selectMappedBuffer((int) (offset % this.mappedFileSize));
+        }
+        return null;
+    }
+
+    public boolean flush(final int flushLeastPages) {
+        return this.mappedFileQueue.flush(flushLeastPages);
+    }
+
+    public void destroy() {
+        this.mappedFileQueue.destroy();
+    }
+
+    /**
+     * 队列中下一条消息的逻辑偏移量
+     */
+    public long getMaxOffsetInQueue() {
+        return this.mappedFileQueue.getMaxOffset() / CQ_STORE_UNIT_SIZE;
+    }
+
+    public long getMinOffsetInQueue() {
+        return this.minLogicOffset / CQ_STORE_UNIT_SIZE;
+    }
+
+    public long getMaxPhysicOffset() {
+        return maxPhysicOffset;
+    }
+
+    public String getTopic() {
+        return topic;
+    }
+
+    public int getQueueId() {
+        return queueId;
+    }
+}
@@ -0,0 +1,16 @@
+package com.echelon.hermes.store;
+
+/**
+ * 描述：读取消息时校验记录CRC的策略，启动恢复时总是校验
+ *
+ * @author jorelwang
+ * @create 2026-10-16 19:10
+ */
+public enum CrcVerifyMode {
+    // 每次读取都校验
+    ALWAYS,
+    // 按crcVerifySampleRate抽样校验，用较小的开销发现静默损坏
+    SAMPLED,
+    // 只在启动恢复时校验，读取时不校验
+    RECOVERY_ONLY,
+}
@@ -0,0 +1,403 @@
+package com.echelon.hermes.store;
+
+import com.echelon.hermes.store.CommitLog.PutMessageResult;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * 描述：消息存储的门面，组合CommitLog和ConsumeQueue。
+ * 消息先写入CommitLog，ReputMessageService在后台把新消息分发到对应的ConsumeQueue，
+ * 读取时先通过ConsumeQueue定位物理偏移量，再从CommitLog中读取消息；也可以通过IndexFile按业务键查询消息。
+ *
+ * @author jorelwang
+ * @create 2026-10-16 16:15
+ */
+public class DefaultMessageStore {
+    private static final Logger log = LoggerFactory.getLogger(DefaultMessageStore.class);
+
+    private final MessageStoreConfig messageStoreConfig;
+
+    private final CommitLog commitLog;
+
+    // topic -> queueId -> ConsumeQueue
+    private final ConcurrentMap<String, ConcurrentMap<Integer, ConsumeQueue>> consumeQueueTable =
+            new ConcurrentHashMap<>();
+
+    private final List<CommitLogDispatcher> dispatcherList = new ArrayList<>();
+
+    private final ReputMessageService reputMessageService;
+
+    private final FlushConsumeQueueService flushConsumeQueueService;
+
+    private final StoreCheckpoint storeCheckpoint;
+
+    private final CleanCommitLogService cleanCommitLogService;
+
+    private final CleanConsumeQueueService cleanConsumeQueueService;
+
+    private final IndexService indexService;
+
+    // 分层存储服务，未开启时为null
+    private final TieredStoreService tieredStoreService;
+
+    // 恢复时删除了包含脏数据的IndexFile，需要从这个位置开始重新分发以补齐索引
+    private long indexRebuildFromOffset = Long.MAX_VALUE;
+
+    public DefaultMessageStore(final MessageStoreConfig messageStoreConfig) throws IOException {
+        this.messageStoreConfig = messageStoreConfig;
+        this.commitLog = new CommitLog(messageStoreConfig);
+        this.indexService = new IndexService(messageStoreConfig);
+        this.dispatcherList.add(new CommitLogDispatcherBuildConsumeQueue());
+        if (messageStoreConfig.isMessageIndexEnable()) {
+            this.dispatcherList.add(new CommitLogDispatcherBuildIndex());
+        }
+        this.reputMessageService = new ReputMessageService(this.commitLog, this.dispatcherList);
+        this.storeCheckpoint = new StoreCheckpoint(messageStoreConfig.getStoreCheckpoint());
+        this.flushConsumeQueueService = new FlushConsumeQueueService(this.consumeQueueTable, messageStoreConfig,
+                this.commitLog, this.storeCheckpoint);
+        this.cleanCommitLogService = new CleanCommitLogService(messageStoreConfig, this.commitLog);
+        this.cleanConsumeQueueService = new CleanConsumeQueueService(this.consumeQueueTable, messageStoreConfig,
+                this.commitLog, this.indexService);
+        this.tieredStoreService = messageStoreConfig.isTieredStoreEnable()
+                ? new TieredStoreService(messageStoreConfig, this.commitLog, this.reputMessageService)
+                : null;
+    }
+
+    /**
+     * 加载CommitLog和ConsumeQueue，并通过扫描恢复它们的写入位置
+     */
+    public boolean load() {
+        boolean result = this.commitLog.load();
+        // 分层存储中的文件在本地文件之前，恢复ConsumeQueue的最小偏移量时需要计算在内
+        if (this.tieredStoreService != null) {
+            result = result && this.tieredStoreService.load();
+        }
+        result = result && this.loadConsumeQueue();
+        result = result && this.indexService.load();
+        if (result) {
+            this.recover();
+        }
+        log.info("Load message store {}", result ? "OK" : "Failed");
+        return result;
+    }
+
+    public void start() {
+        // 从ConsumeQueue中最后一条索引对应的位置开始分发，之前的消息都已经构建过索引
+        long maxPhysicalPosInLogicQueue = Math.max(this.commitLog.getMinOffset(), 0);
+        for (ConcurrentMap<Integer, ConsumeQueue> queues : this.consumeQueueTable.values()) {
+            for (ConsumeQueue consumeQueue : queues.values()) {
+                maxPhysicalPosInLogicQueue = Math.max(maxPhysicalPosInLogicQueue, consumeQueue.getMaxPhysicOffset());
+            }
+        }
+        if (this.indexRebuildFromOffset < maxPhysicalPosInLogicQueue) {
+            // ConsumeQueue会跳过已经构建过的消息，只补齐被删除的索引
+            maxPhysicalPosInLogicQueue = Math.max(this.indexRebuildFromOffset, this.commitLog.getMinOffset());
+        }
+        log.info("Set reputFromOffset to {}", maxPhysicalPosInLogicQueue);
+        this.reputMessageService.setReputFromOffset(maxPhysicalPosInLogicQueue);
+        this.reputMessageService.start();
+
+        // 等待已有的消息全部分发完成，之后才能用ConsumeQueue恢复每个队列的下一个逻辑偏移量
+        while (this.reputMessageService.behind() > 0) {
+            try {
+                Thread.sleep(1);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+        }
+        this.recoverTopicQueueTable();
+
+        this.commitLog.start();
+        this.flushConsumeQueueService.start();
+        this.cleanCommitLogService.start();
+        this.cleanConsumeQueueService.start();
+        if (this.tieredStoreService != null) {
+            this.tieredStoreService.start();
+        }
+        log.info("Message store started");
+    }
+
+    public void shutdown() {
+        this.cleanCommitLogService.shutdown();
+        this.cleanConsumeQueueService.shutdown();
+        if (this.tieredStoreService != null) {
+            this.tieredStoreService.shutdown();
+        }
+        // reput线程会读取CommitLog的映射缓冲区，必须在CommitLog释放文件之前停止
+        this.reputMessageService.shutdown();
+        this.commitLog.shutdown();
+        this.flushConsumeQueueService.shutdown();
+        this.storeCheckpoint.shutdown();
+        this.indexService.shutdown();
+        for (ConcurrentMap<Integer, ConsumeQueue> queues : this.consumeQueueTable.values()) {
+            for (ConsumeQueue consumeQueue : queues.values()) {
+                consumeQueue.destroy();
+            }
+        }
+        log.info("Message store shutdown");
+    }
+
+    public PutMessageResult putMessage(final MessageExt msg) {
+        return this.commitLog.putMessage(msg);
+    }
+
+    /**
+     * 异步写入消息，返回的future在消息按刷盘策略落盘后完成，见CommitLog#asyncPutMessage
+     */
+    public CompletableFuture<PutMessageResult> asyncPutMessage(final MessageExt msg) {
+        return this.commitLog.asyncPutMessage(msg);
+    }
+
+    /**
+     * 读取队列中指定逻辑偏移量的消息
+     *
+     * @param topic    主题
+     * @param queueId  队列ID
+     * @param offset   消息在队列中的逻辑偏移量
+     * @return 消息对象，不存在或还没有分发到ConsumeQueue时返回null
+     */
+    public MessageExt getMessage(final String topic, final int queueId, final long offset) {
+        ConsumeQueue consumeQueue = this.getConsumeQueue(topic, queueId);
+        if (consumeQueue == null) {
+            return null;
+        }
+        SelectMappedBufferResult result = consumeQueue.getIndexBuffer(offset);
+        if (result == null) {
+            return null;
+        }
+
+        long offsetPy;
+        try {
+            offsetPy = result.getByteBuffer().getLong();
+        } finally {
+            result.release();
+        }
+        return this.commitLog.getMessage(offsetPy);
+    }
+
+    /**
+     * 读取队列中指定逻辑偏移量的消息的原始数据，不解码也不拷贝，供网络层直接发送。
+     * 返回结果持有CommitLog文件的引用，发送完成后必须调用release()
+     *
+     * @param topic    主题
+     * @param queueId  队列ID
+     * @param offset   消息在队列中的逻辑偏移量
+     * @return 消息数据，不存在或还没有分发到ConsumeQueue时返回null
+     */
+    public SelectMappedBufferResult selectOneMessage(final String topic, final int queueId, final long offset) {
+        ConsumeQueue consumeQueue = this.getConsumeQueue(topic, queueId);
+        if (consumeQueue == null) {
+            return null;
+        }
+        SelectMappedBufferResult result = consumeQueue.getIndexBuffer(offset);
+        if (result == null) {
+            return null;
+        }
+
+        long offsetPy;
+        int sizePy;
+        try {
+            ByteBuffer byteBuffer = result.getByteBuffer();
+            offsetPy = byteBuffer.getLong();
+            sizePy = byteBuffer.getInt();
+        } finally {
+            result.release();
+        }
+        return this.commitLog.getMessage(offsetPy, sizePy);
+    }
+
+    /**
+     * 根据物理偏移量和长度读取一条消息的原始数据，返回结果使用完后必须调用release()
+     */
+    public SelectMappedBufferResult selectOneMessageByOffset(final long commitLogOffset, final int size) {
+        return this.commitLog.getMessage(commitLogOffset, size);
+    }
+
+    /**
+     * 按业务键查询消息，只查找存储时间在[begin, end]之间的消息
+     *
+     * @param topic  主题
+     * @param key    业务键
+     * @param maxNum 最多返回的消息数
+     * @param begin  存储时间的下限，单位毫秒
+     * @param end    存储时间的上限，单位毫秒
+     * @return 消息列表，按存储时间从新到旧排列
+     */
+    public List<MessageExt> queryMessage(final String topic, final String key, final int maxNum, final long begin,
+            final long end) {
+        List<MessageExt> messages = new ArrayList<>();
+        List<Long> phyOffsets = this.indexService.queryOffset(topic, key, maxNum, begin, end);
+        for (Long phyOffset : phyOffsets) {
+            MessageExt msg = this.commitLog.getMessage(phyOffset);
+            // 哈希冲突或者索引指向的消息已经被删除时，读到的不是要找的消息
+            if (msg != null && msg.getCommitLogOffset() == phyOffset && topic.equals(msg.getTopic())
+                    && msg.getStoreTimestamp() >= begin && msg.getStoreTimestamp() <= end
+                    && containsKey(msg.getKeys(), key)) {
+                messages.add(msg);
+            }
+        }
+        return messages;
+    }
+
+    private static boolean containsKey(final String keys, final String key) {
+        if (keys == null) {
+            return false;
+        }
+        for (String k : keys.split(MessageExt.KEY_SEPARATOR)) {
+            if (k.equals(key)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 队列中下一条消息的逻辑偏移量
+     */
+    public long getMaxOffsetInQueue(final String topic, final int queueId) {
+        ConsumeQueue consumeQueue = this.getConsumeQueue(topic, queueId);
+        return consumeQueue != null ? consumeQueue.getMaxOffsetInQueue() : 0;
+    }
+
+    /**
+     * 队列中第一条消息的逻辑偏移量
+     */
+    public long getMinOffsetInQueue(final String topic, final int queueId) {
+        ConsumeQueue consumeQueue = this.getConsumeQueue(topic, queueId);
+        return consumeQueue != null ? consumeQueue.getMinOffsetInQueue() : 0;
+    }
+
+    /**
+     * 查找已经存在的ConsumeQueue，不存在时返回null，供读取路径使用。
+     * 读取不存在的主题或队列不会创建ConsumeQueue，否则客户端随便传入的主题都会在内存和磁盘上留下空队列
+     */
+    public ConsumeQueue getConsumeQueue(final String topic, final int queueId) {
+        ConcurrentMap<Integer, ConsumeQueue> queues = this.consumeQueueTable.get(topic);
+        return queues != null ? queues.get(queueId) : null;
+    }
+
+    /**
+     * 查找ConsumeQueue，不存在时创建，只在加载和分发消息时调用
+     */
+    public ConsumeQueue findConsumeQueue(final String topic, final int queueId) {
+        ConcurrentMap<Integer, ConsumeQueue> queues =
+                this.consumeQueueTable.computeIfAbsent(topic, k -> new ConcurrentHashMap<>());
+        return queues.computeIfAbsent(queueId, k -> new ConsumeQueue(topic, queueId,
+                this.messageStoreConfig.getStorePathConsumeQueue(),
+                this.messageStoreConfig.getMappedFileSizeConsumeQueue()));
+    }
+
+    /**
+     * 加载ConsumeQueue，目录结构为 storePathConsumeQueue/topic/queueId/
+     */
+    private boolean loadConsumeQueue() {
+        File[] topicDirs = new File(this.messageStoreConfig.getStorePathConsumeQueue()).listFiles();
+        if (topicDirs == null) {
+            return true;
+        }
+
+        for (File topicDir : topicDirs) {
+            File[] queueDirs = topicDir.listFiles();
+            if (queueDirs == null) {
+                continue;
+            }
+            for (File queueDir : queueDirs) {
+                int queueId;
+                try {
+                    queueId = Integer.parseInt(queueDir.getName());
+                } catch (NumberFormatException e) {
+                    continue;
+                }
+                ConsumeQueue consumeQueue = this.findConsumeQueue(topicDir.getName(), queueId);
+                if (!consumeQueue.load()) {
+                    return false;
+                }
+            }
+        }
+        log.info("Load logics queue all over, OK");
+        return true;
+    }
+
+    /**
+     * 先恢复ConsumeQueue，再从检查点开始恢复CommitLog，最后删除指向CommitLog有效数据之后的索引。
+     * 缺少的索引在启动后由ReputMessageService补齐
+     */
+    private void recover() {
+        for (ConcurrentMap<Integer, ConsumeQueue> queues : this.consumeQueueTable.values()) {
+            for (ConsumeQueue consumeQueue : queues.values()) {
+                consumeQueue.recover();
+            }
+        }
+
+        this.commitLog.recover(this.storeCheckpoint.getPhysicOffset());
+
+        final long maxPhyOffset = this.commitLog.getMaxOffset();
+        for (ConcurrentMap<Integer, ConsumeQueue> queues : this.consumeQueueTable.values()) {
+            for (ConsumeQueue consumeQueue : queues.values()) {
+                consumeQueue.truncateDirtyLogicFiles(maxPhyOffset);
+                // 删除CommitLog文件后可能还没来得及清理ConsumeQueue
+                consumeQueue.correctMinOffset(this.commitLog.getMinOffset());
+            }
+        }
+        this.indexRebuildFromOffset = this.indexService.truncateDirtyFiles(maxPhyOffset);
+    }
+
+    private void recoverTopicQueueTable() {
+        Map<String, Long> table = new HashMap<>();
+        for (ConcurrentMap<Integer, ConsumeQueue> queues : this.consumeQueueTable.values()) {
+            for (ConsumeQueue consumeQueue : queues.values()) {
+                table.put(consumeQueue.getTopic() + "-" + consumeQueue.getQueueId(),
+                        consumeQueue.getMaxOffsetInQueue());
+            }
+        }
+        this.commitLog.setTopicQueueTable(table);
+    }
+
+    public CommitLog getCommitLog() {
+        return commitLog;
+    }
+
+    public MessageStoreConfig getMessageStoreConfig() {
+        return messageStoreConfig;
+    }
+
+    public TieredStoreService getTieredStoreService() {
+        return tieredStoreService;
+    }
+
+    /**
+     * 根据CommitLog中的消息构建ConsumeQueue
+     */
+    class CommitLogDispatcherBuildConsumeQueue implements CommitLogDispatcher {
+
+        @Override
+        public void dispatch(final DispatchRequest request) {
+            ConsumeQueue consumeQueue = findConsumeQueue(request.getTopic(), request.getQueueId());
+            if (!consumeQueue.putMessagePositionInfoWrapper(request)) {
+                log.error("Build consume queue failed, {}", request);
+            }
+        }
+    }
+
+    /**
+     * 根据CommitLog中的消息按业务键构建IndexFile
+     */
+    class CommitLogDispatcherBuildIndex implements CommitLogDispatcher {
+
+        @Override
+        public void dispatch(final DispatchRequest request) {
+            indexService.buildIndex(request);
+        }
+    }
+}
@@ -0,0 +1,110 @@
+package com.echelon.hermes.store;
+
+/**
+ * 描述：从CommitLog中解析出的一条消息的位置信息，由ReputMessageService分发给各个CommitLogDispatcher
+ *
+ * @author jorelwang
+ * @create 2026-10-16 15:50
+ */
+public class DispatchRequest {
+    private final String topic;
+    private final int queueId;
+    // 消息在commitLog中的物理偏移量
+    private final long commitLogOffset;
+    // 消息在commitLog中占用的字节数，0表示读到了文件末尾
+    private final int msgSize;
+    // 消息标签的哈希值
+    private final long tagsCode;
+    private final long storeTimestamp;
+    // 消息在所属队列中的逻辑偏移量
+    private final long consumeQueueOffset;
+    // 消息的业务键，多个键用空格分隔，没有时为null
+    private final String keys;
+    // 是否解析成功
+    private final boolean success;
+    // 是否是跳过记录，跳过记录只占用msgSize字节，没有消息
+    private final boolean skip;
+
+    public DispatchRequest(final String topic, final int queueId, final long commitLogOffset, final int msgSize,
+            final long tagsCode, final long storeTimestamp, final long consumeQueueOffset, final String keys) {
+        this.topic = topic;
+        this.queueId = queueId;
+        this.commitLogOffset = commitLogOffset;
+        this.msgSize = msgSize;
+        this.tagsCode = tagsCode;
+        this.storeTimestamp = storeTimestamp;
+        this.consumeQueueOffset = consumeQueueOffset;
+        this.keys = keys;
+        this.success = true;
+        this.skip = false;
+    }
+
+    public DispatchRequest(final int msgSize, final boolean success) {
+        this(msgSize, success, false);
+    }
+
+    public DispatchRequest(final int msgSize, final boolean success, final boolean skip) {
+        this.topic = "";
+        this.queueId = 0;
+        this.commitLogOffset = 0;
+        this.msgSize = msgSize;
+        this.tagsCode = 0;
+        this.storeTimestamp = 0;
+        this.consumeQueueOffset = 0;
+        this.keys = null;
+        this.success = success;
+        this.skip = skip;
+    }
+
+    public String getTopic() {
+        return topic;
+    }
+
+    public int getQueueId() {
+        return queueId;
+    }
+
+    public long getCommitLogOffset() {
+        return commitLogOffset;
+    }
+
+    public int getMsgSize() {
+        return msgSize;
+    }
+
+    public long getTagsCode() {
+        return tagsCode;
+    }
+
+    public long getStoreTimestamp() {
+        return storeTimestamp;
+    }
+
+    public long getConsumeQueueOffset() {
+        return consumeQueueOffset;
+    }
+
+    public String getKeys() {
+        return keys;
+    }
+
+    public boolean isSuccess() {
+        return success;
+    }
+
+    @Override
+    public String toString() {
+        return "DispatchRequest{" +
+                "topic='" + topic + '\'' +
+                ", queueId=" + queueId +
+                ", commitLogOffset=" + commitLogOffset +
+                ", msgSize=" + msgSize +
+                ", consumeQueueOffset=" + consumeQueueOffset +
+                ", success=" + success +
+                '}';
+    }
+
+    public boolean isSkip() {
+        return skip;
+    }
+}
@@ -0,0 +1,178 @@
+package com.echelon.hermes.store;
+
+import com.echelon.hermes.common.ServiceThread;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * 描述：CommitLog刷盘服务，支持三种刷盘策略：
+ * ASYNC_FLUSH：按间隔刷盘，脏页不足flushCommitLogLeastPages时跳过，定期做一次彻底刷盘；
+ * SYNC_FLUSH、GROUP_SYNC_FLUSH：写入线程只提交请求，后台线程把等待中的请求合并成一次force，数据落盘后future才完成。
+ * 写入线程从不执行force，异步写入的调用方不会因为刷盘而阻塞。
+ *
+ * @author jorelwang
+ * @create 2026-10-16 11:25
+ */
+public class FlushCommitLogService extends ServiceThread {
+    private static final Logger log = LoggerFactory.getLogger(FlushCommitLogService.class);
+
+    // 关闭时最多重试的刷盘次数
+    private static final int RETRY_TIMES_OVER = 10;
+
+    private final MappedFileQueue mappedFileQueue;
+    private final MessageStoreConfig messageStoreConfig;
+    private final FlushDiskType flushDiskType;
+
+    // 同步刷盘的请求，写入线程往requestsWrite中添加，刷盘线程交换后处理requestsRead
+    private final Object requestsLock = new Object();
+    private List<GroupCommitRequest> requestsWrite = new ArrayList<>();
+    private List<GroupCommitRequest> requestsRead = new ArrayList<>();
+
+    // 上一次彻底刷盘的时间
+    private long lastFlushTimestamp = 0;
+
+    public FlushCommitLogService(final MappedFileQueue mappedFileQueue, final MessageStoreConfig messageStoreConfig) {
+        this.mappedFileQueue = mappedFileQueue;
+        this.messageStoreConfig = messageStoreConfig;
+        this.flushDiskType = messageStoreConfig.getFlushDiskType();
+    }
+
+    @Override
+    public String getServiceName() {
+        return FlushCommitLogService.class.getSimpleName();
+    }
+
+    /**
+     * 消息写入成功后调用，根据刷盘策略处理
+     *
+     * @param nextOffset 消息末尾的物理偏移量，刷盘位置到达这里才算落盘
+     * @return 落盘结果，异步刷盘时立即完成
+     */
+    public CompletableFuture<Boolean> handleDiskFlush(final long nextOffset) {
+        switch (this.flushDiskType) {
+            case SYNC_FLUSH:
+            case GROUP_SYNC_FLUSH:
+                GroupCommitRequest request = new GroupCommitRequest(nextOffset);
+                synchronized (this.requestsLock) {
+                    this.requestsWrite.add(request);
+                }
+                this.wakeup();
+                return request.getFuture();
+            case ASYNC_FLUSH:
+            default:
+                return CompletableFuture.completedFuture(true);
+        }
+    }
+
+    @Override
+    public void run() {
+        log.info("{} service started, flushDiskType: {}", getServiceName(), this.flushDiskType);
+
+        while (!this.isStopped()) {
+            try {
+                if (this.isSyncFlush()) {
+                    this.waitForRunning(10);
+                    this.doGroupCommit();
+                } else {
+                    this.waitForRunning(this.messageStoreConfig.getFlushIntervalCommitLog());
+                    this.doAsyncFlush();
+                }
+            } catch (Throwable e) {
+                log.warn("{} service has exception.", getServiceName(), e);
+            }
+        }
+
+        // 正常关闭时保证所有数据刷盘
+        boolean result = false;
+        for (int i = 0; i < RETRY_TIMES_OVER && !result; i++) {
+            result = this.mappedFileQueue.flush(0);
+            log.info("{} service shutdown, retry {} times {}", getServiceName(), i + 1, result ? "OK" : "Not OK");
+        }
+        if (this.isSyncFlush()) {
+            this.swapRequests();
+            this.doGroupCommit();
+            this.swapRequests();
+            this.doGroupCommit();
+        }
+
+        log.info("{} service end", getServiceName());
+    }
+
+    private boolean isSyncFlush() {
+        return this.flushDiskType == FlushDiskType.SYNC_FLUSH || this.flushDiskType == FlushDiskType.GROUP_SYNC_FLUSH;
+    }
+
+    private void doAsyncFlush() {
+        int flushLeastPages = this.messageStoreConfig.getFlushCommitLogLeastPages();
+
+        // 距离上次彻底刷盘超过间隔，忽略脏页数量限制
+        long now = System.currentTimeMillis();
+        if (now >= this.lastFlushTimestamp + this.messageStoreConfig.getFlushCommitLogThoroughInterval()) {
+            this.lastFlushTimestamp = now;
+            flushLeastPages = 0;
+        }
+
+        this.mappedFileQueue.flush(flushLeastPages);
+    }
+
+    private void swapRequests() {
+        synchronized (this.requestsLock) {
+            List<GroupCommitRequest> tmp = this.requestsWrite;
+            this.requestsWrite = this.requestsRead;
+            this.requestsRead = tmp;
+        }
+    }
+
+    @Override
+    protected void onWaitEnd() {
+        if (this.isSyncFlush()) {
+            this.swapRequests();
+        }
+    }
+
+    private void doGroupCommit() {
+        if (!this.requestsRead.isEmpty()) {
+            for (GroupCommitRequest request : this.requestsRead) {
+                // 第一个请求触发的刷盘通常已经覆盖了后面所有的请求，合并为一次force
+                request.getFuture().complete(flushUntil(request.getNextOffset()));
+            }
+            this.requestsRead = new ArrayList<>();
+        } else {
+            // 没有等待中的请求也刷盘，避免数据长时间停留在page cache中
+            this.mappedFileQueue.flush(0);
+        }
+    }
+
+    /**
+     * 刷盘直到刷盘位置不小于nextOffset，消息可能跨越文件边界，所以最多刷两次
+     */
+    private boolean flushUntil(final long nextOffset) {
+        for (int i = 0; i < 2 && this.mappedFileQueue.getFlushedWhere() < nextOffset; i++) {
+            this.mappedFileQueue.flush(0);
+        }
+        return this.mappedFileQueue.getFlushedWhere() >= nextOffset;
+    }
+
+    /**
+     * 同步刷盘请求
+     */
+    static class GroupCommitRequest {
+        private final long nextOffset;
+        private final CompletableFuture<Boolean> future = new CompletableFuture<>();
+
+        GroupCommitRequest(long nextOffset) {
+            this.nextOffset = nextOffset;
+        }
+
+        public long getNextOffset() {
+            return nextOffset;
+        }
+
+        public CompletableFuture<Boolean> getFuture() {
+            return future;
+        }
+    }
+}
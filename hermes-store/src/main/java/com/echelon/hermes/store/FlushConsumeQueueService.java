@@ -0,0 +1,85 @@
+package com.echelon.hermes.store;
+
+import com.echelon.hermes.common.ServiceThread;
+import java.util.concurrent.ConcurrentMap;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * 描述：ConsumeQueue刷盘服务，按间隔刷盘，脏页不足flushConsumeQueueLeastPages时跳过，定期做一次彻底刷盘。
+ * ConsumeQueue可以由CommitLog重建，所以只做异步刷盘。
+ * 每次刷盘后把CommitLog的落盘位置写入检查点。
+ *
+ * @author jorelwang
+ * @create 2026-10-16 16:10
+ */
+public class FlushConsumeQueueService extends ServiceThread {
+    private static final Logger log = LoggerFactory.getLogger(FlushConsumeQueueService.class);
+
+    // 关闭时最多重试的刷盘次数
+    private static final int RETRY_TIMES_OVER = 10;
+
+    private final ConcurrentMap<String, ConcurrentMap<Integer, ConsumeQueue>> consumeQueueTable;
+    private final MessageStoreConfig messageStoreConfig;
+    private final CommitLog commitLog;
+    private final StoreCheckpoint storeCheckpoint;
+
+    // 上一次彻底刷盘的时间
+    private long lastFlushTimestamp = 0;
+
+    public FlushConsumeQueueService(final ConcurrentMap<String, ConcurrentMap<Integer, ConsumeQueue>> consumeQueueTable,
+            final MessageStoreConfig messageStoreConfig, final CommitLog commitLog,
+            final StoreCheckpoint storeCheckpoint) {
+        this.consumeQueueTable = consumeQueueTable;
+        this.messageStoreConfig = messageStoreConfig;
+        this.commitLog = commitLog;
+        this.storeCheckpoint = storeCheckpoint;
+    }
+
+    @Override
+    public String getServiceName() {
+        return FlushConsumeQueueService.class.getSimpleName();
+    }
+
+    @Override
+    public void run() {
+        log.info("{} service started", getServiceName());
+
+        while (!this.isStopped()) {
+            try {
+                this.waitForRunning(this.messageStoreConfig.getFlushIntervalConsumeQueue());
+                this.doFlush(1);
+            } catch (Throwable e) {
+                log.warn("{} service has exception.", getServiceName(), e);
+            }
+        }
+
+        // 正常关闭时保证所有数据刷盘
+        this.doFlush(RETRY_TIMES_OVER);
+        log.info("{} service end", getServiceName());
+    }
+
+    private void doFlush(final int retryTimes) {
+        int flushLeastPages = this.messageStoreConfig.getFlushConsumeQueueLeastPages();
+
+        // 关闭时，或者距离上次彻底刷盘超过间隔，忽略脏页数量限制
+        long now = System.currentTimeMillis();
+        if (retryTimes == RETRY_TIMES_OVER
+                || now >= this.lastFlushTimestamp + this.messageStoreConfig.getFlushConsumeQueueThoroughInterval()) {
+            this.lastFlushTimestamp = now;
+            flushLeastPages = 0;
+        }
+
+        for (ConcurrentMap<Integer, ConsumeQueue> queues : this.consumeQueueTable.values()) {
+            for (ConsumeQueue consumeQueue : queues.values()) {
+                boolean result = false;
+                for (int i = 0; i < retryTimes && !result; i++) {
+                    result = consumeQueue.flush(flushLeastPages);
+                }
+            }
+        }
+
+        this.storeCheckpoint.setPhysicOffset(this.commitLog.getFlushedWhere());
+        this.storeCheckpoint.flush();
+    }
+}
@@ -0,0 +1,16 @@
+package com.echelon.hermes.store;
+
+/**
+ * 描述：CommitLog刷盘策略
+ *
+ * @author jorelwang
+ * @create 2026-10-16 11:20
+ */
+public enum FlushDiskType {
+    // 异步刷盘：后台线程按间隔刷盘，写入不等待
+    ASYNC_FLUSH,
+    // 同步刷盘：数据落盘后写入结果才完成。刷盘由后台线程执行，写入线程只提交请求，不执行force
+    SYNC_FLUSH,
+    // 组同步刷盘：和SYNC_FLUSH一样由后台线程刷盘，等待中的请求合并为一次刷盘
+    GROUP_SYNC_FLUSH,
+}
@@ -0,0 +1,70 @@
+package com.echelon.hermes.store;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 描述：批量读取消息的结果。
+ * 每条消息是映射缓冲区上的一个切片，不拷贝数据；同一个文件中的消息共用一个SelectMappedBufferResult，
+ * 只持有一次文件引用。使用完后必须调用release()
+ *
+ * @author jorelwang
+ * @create 2026-10-16 18:05
+ */
+public class GetMessageResult {
+
+    // 读取过的文件区域，每个文件一个
+    private final List<SelectMappedBufferResult> messageMappedList = new ArrayList<>();
+
+    // 每条消息的完整记录
+    private final List<ByteBuffer> messageBufferList = new ArrayList<>();
+
+    // 所有消息的总字节数
+    private int bufferTotalSize = 0;
+
+    // 下一次读取的起始物理偏移量
+    private long nextBeginOffset;
+
+    public void addMappedResult(final SelectMappedBufferResult mappedResult) {
+        this.messageMappedList.add(mappedResult);
+    }
+
+    public void addMessage(final ByteBuffer messageBuffer) {
+        this.messageBufferList.add(messageBuffer);
+        this.bufferTotalSize += messageBuffer.remaining();
+    }
+
+    /**
+     * 释放对所有文件的引用，之后不能再读取消息
+     */
+    public void release() {
+        for (SelectMappedBufferResult mappedResult : this.messageMappedList) {
+            mappedResult.release();
+        }
+    }
+
+    public List<ByteBuffer> getMessageBufferList() {
+        return messageBufferList;
+    }
+
+    public List<SelectMappedBufferResult> getMessageMappedList() {
+        return messageMappedList;
+    }
+
+    public int getMessageCount() {
+        return this.messageBufferList.size();
+    }
+
+    public int getBufferTotalSize() {
+        return bufferTotalSize;
+    }
+
+    public long getNextBeginOffset() {
+        return nextBeginOffset;
+    }
+
+    public void setNextBeginOffset(long nextBeginOffset) {
+        this.nextBeginOffset = nextBeginOffset;
+    }
+}
@@ -0,0 +1,15 @@
+package com.echelon.hermes.store;
+
+/**
+ * 描述：热消息缓存的淘汰策略
+ *
+ * @author jorelwang
+ * @create 2026-10-16 21:30
+ */
+public enum HotCacheEvictPolicy {
+    // 淘汰最久未访问的消息，适合所有消费者都在尾部读取的场景
+    LRU,
+    // 新消息先进入窗口区，淘汰出窗口时与主区的淘汰候选比较访问频率，频率更高的留下；
+    // 偶尔的回溯读取不会把被多个消费组反复读取的消息挤出缓存
+    TINY_LFU,
+}
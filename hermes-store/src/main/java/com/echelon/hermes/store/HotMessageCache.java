@@ -0,0 +1,348 @@
+package com.echelon.hermes.store;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 描述：最近追加的消息的读缓存，key是消息在CommitLog中的物理偏移量，value是完整记录的堆内拷贝。
+ * ReputMessageService分发消息时写入缓存，尾部读取的消费者直接从缓存中读取，不需要再访问映射文件，
+ * 页缓存被回收后也不会读盘。缓存按字节数限制容量，超出时按HotCacheEvictPolicy淘汰。
+ * 缓存按偏移量分成多个段，每个段有自己的锁和容量，读取只锁住消息所在的段，并发的读取和写入分散在不同的段上。
+ * 返回的缓冲区是只读视图，淘汰后由GC回收，正在使用的读取方不受影响。
+ * <p>
+ * 缓存放在堆内而不是堆外，占用的内存计入-Xmx：LRU和TinyLFU会淘汰任意位置的消息，被淘汰的消息可能仍被读取方持有，
+ * 堆外的大块内存无法安全地复用其中的空间；逐条allocateDirect又要预留堆外内存并登记Cleaner，开销比堆内分配大得多。
+ * 堆内缓冲区由GC在最后一个读取方释放后回收，不需要引用计数。
+ * </p>
+ *
+ * @author jorelwang
+ * @create 2026-10-16 21:30
+ */
+public class HotMessageCache {
+
+    // TinyLFU策略下窗口区占总容量的比例。消息在窗口区中被读取后才能赢得进入主区的资格，
+    // 尾部读取的消费者通常在几秒内读到新消息，窗口区要足够容纳这段时间内追加的消息
+    private static final int WINDOW_PERCENT = 20;
+
+    // 最多的段数，以及每个段至少的容量；容量较小时段太多会让较大的消息放不进任何一个段
+    private static final int MAX_SEGMENTS = 16;
+    private static final long MIN_SEGMENT_BYTES = 16L * 1024 * 1024;
+
+    private final HotCacheEvictPolicy evictPolicy;
+
+    private final Segment[] segments;
+    private final int segmentMask;
+
+    private final AtomicLong hitCount = new AtomicLong(0);
+    private final AtomicLong missCount = new AtomicLong(0);
+    private final AtomicLong evictCount = new AtomicLong(0);
+
+    public HotMessageCache(final long maxBytes, final HotCacheEvictPolicy evictPolicy) {
+        this.evictPolicy = evictPolicy;
+        int segmentCount = 1;
+        while (segmentCount < MAX_SEGMENTS && maxBytes / (segmentCount * 2) >= MIN_SEGMENT_BYTES) {
+            segmentCount <<= 1;
+        }
+        this.segments = new Segment[segmentCount];
+        for (int i = 0; i < segmentCount; i++) {
+            this.segments[i] = new Segment(maxBytes / segmentCount);
+        }
+        this.segmentMask = segmentCount - 1;
+    }
+
+    /**
+     * 缓存一条消息，拷贝record中从position到limit的数据
+     *
+     * @param offset 消息的物理偏移量
+     * @param record 完整的消息记录
+     * @return 是否放入了缓存，超过段容量的消息不缓存
+     */
+    public boolean put(final long offset, final ByteBuffer record) {
+        final Segment segment = this.segmentFor(offset);
+        final int size = record.remaining();
+        if (size > segment.maxRecordBytes()) {
+            return false;
+        }
+
+        // 分配和拷贝在锁外进行
+        ByteBuffer data = ByteBuffer.allocate(size);
+        data.put(record.duplicate());
+        data.flip();
+        return segment.put(offset, data);
+    }
+
+    /**
+     * 从缓存中读取一条消息
+     *
+     * @param offset 消息的物理偏移量
+     * @return 消息记录的只读视图，position为0；未命中时返回null
+     */
+    public ByteBuffer get(final long offset) {
+        ByteBuffer data = this.segmentFor(offset).get(offset);
+        if (data == null) {
+            this.missCount.incrementAndGet();
+            return null;
+        }
+        this.hitCount.incrementAndGet();
+        return data.asReadOnlyBuffer();
+    }
+
+    /**
+     * 删除物理偏移量小于offset的消息，CommitLog文件被删除时调用
+     */
+    public void invalidateBefore(final long offset) {
+        for (Segment segment : this.segments) {
+            segment.invalidateBefore(offset);
+        }
+    }
+
+    /**
+     * 相邻消息的偏移量只相差消息长度，先打散再取段号，避免集中在少数几个段上
+     */
+    private Segment segmentFor(final long offset) {
+        long hash = offset * 0x9E3779B97F4A7C15L;
+        return this.segments[(int) (hash >>> 32) & this.segmentMask];
+    }
+
+    public HotCacheEvictPolicy getEvictPolicy() {
+        return evictPolicy;
+    }
+
+    public long getHitCount() {
+        return hitCount.get();
+    }
+
+    public long getMissCount() {
+        return missCount.get();
+    }
+
+    public long getEvictCount() {
+        return evictCount.get();
+    }
+
+    public long getCachedBytes() {
+        long cachedBytes = 0;
+        for (Segment segment : this.segments) {
+            cachedBytes += segment.getCachedBytes();
+        }
+        return cachedBytes;
+    }
+
+    public int getCachedMessages() {
+        int cachedMessages = 0;
+        for (Segment segment : this.segments) {
+            cachedMessages += segment.getCachedMessages();
+        }
+        return cachedMessages;
+    }
+
+    /**
+     * 缓存的一个段，所有访问都在段对象上加锁
+     */
+    private final class Segment {
+
+        // 窗口区和主区的容量，LRU策略下只使用主区
+        private final long windowMaxBytes;
+        private final long mainMaxBytes;
+
+        // 两个区都按访问顺序排列，最前面的是淘汰候选
+        private final LinkedHashMap<Long, ByteBuffer> window = new LinkedHashMap<>(16, 0.75f, true);
+        private final LinkedHashMap<Long, ByteBuffer> main = new LinkedHashMap<>(16, 0.75f, true);
+        private long windowBytes = 0;
+        private long mainBytes = 0;
+
+        // 访问频率的估计，LRU策略下为null
+        private final FrequencySketch sketch;
+
+        Segment(final long maxBytes) {
+            if (evictPolicy == HotCacheEvictPolicy.TINY_LFU) {
+                this.windowMaxBytes = Math.max(maxBytes * WINDOW_PERCENT / 100, 1);
+                this.mainMaxBytes = maxBytes - this.windowMaxBytes;
+                // 按平均每条消息1KB估计缓存的消息数
+                this.sketch = new FrequencySketch(maxBytes / 1024);
+            } else {
+                this.windowMaxBytes = 0;
+                this.mainMaxBytes = maxBytes;
+                this.sketch = null;
+            }
+        }
+
+        long maxRecordBytes() {
+            return this.sketch != null ? this.windowMaxBytes : this.mainMaxBytes;
+        }
+
+        synchronized boolean put(final long offset, final ByteBuffer data) {
+            if (this.window.containsKey(offset) || this.main.containsKey(offset)) {
+                return false;
+            }
+            final int size = data.capacity();
+            if (this.sketch == null) {
+                this.main.put(offset, data);
+                this.mainBytes += size;
+                while (this.mainBytes > this.mainMaxBytes) {
+                    this.evictEldest();
+                }
+                return true;
+            }
+
+            this.sketch.increment(offset);
+            this.window.put(offset, data);
+            this.windowBytes += size;
+            while (this.windowBytes > this.windowMaxBytes) {
+                Map.Entry<Long, ByteBuffer> candidate = this.window.entrySet().iterator().next();
+                this.window.remove(candidate.getKey());
+                this.windowBytes -= candidate.getValue().capacity();
+                this.admit(candidate.getKey(), candidate.getValue());
+            }
+            return true;
+        }
+
+        synchronized ByteBuffer get(final long offset) {
+            ByteBuffer data = this.window.get(offset);
+            if (data == null) {
+                data = this.main.get(offset);
+            }
+            if (this.sketch != null) {
+                this.sketch.increment(offset);
+            }
+            return data;
+        }
+
+        synchronized void invalidateBefore(final long offset) {
+            this.windowBytes -= removeBefore(this.window, offset);
+            this.mainBytes -= removeBefore(this.main, offset);
+        }
+
+        /**
+         * 淘汰出窗口区的消息尝试进入主区。主区放不下时，只有访问频率高于所有需要淘汰的消息才能进入，否则直接丢弃
+         */
+        private void admit(final long offset, final ByteBuffer data) {
+            final int size = data.capacity();
+            if (size > this.mainMaxBytes) {
+                evictCount.incrementAndGet();
+                return;
+            }
+
+            final int frequency = this.sketch.frequency(offset);
+            final List<Long> victims = new ArrayList<>();
+            long freeBytes = this.mainMaxBytes - this.mainBytes;
+            Iterator<Map.Entry<Long, ByteBuffer>> it = this.main.entrySet().iterator();
+            while (freeBytes < size && it.hasNext()) {
+                Map.Entry<Long, ByteBuffer> victim = it.next();
+                if (this.sketch.frequency(victim.getKey()) >= frequency) {
+                    evictCount.incrementAndGet();
+                    return;
+                }
+                victims.add(victim.getKey());
+                freeBytes += victim.getValue().capacity();
+            }
+
+            for (Long victim : victims) {
+                this.mainBytes -= this.main.remove(victim).capacity();
+                evictCount.incrementAndGet();
+            }
+            this.main.put(offset, data);
+            this.mainBytes += size;
+        }
+
+        private void evictEldest() {
+            Iterator<ByteBuffer> it = this.main.values().iterator();
+            this.mainBytes -= it.next().capacity();
+            it.remove();
+            evictCount.incrementAndGet();
+        }
+
+        synchronized long getCachedBytes() {
+            return this.windowBytes + this.mainBytes;
+        }
+
+        synchronized int getCachedMessages() {
+            return this.window.size() + this.main.size();
+        }
+    }
+
+    private static long removeBefore(final Map<Long, ByteBuffer> entries, final long offset) {
+        long removed = 0;
+        Iterator<Map.Entry<Long, ByteBuffer>> it = entries.entrySet().iterator();
+        while (it.hasNext()) {
+            Map.Entry<Long, ByteBuffer> entry = it.next();
+            if (entry.getKey() < offset) {
+                removed += entry.getValue().capacity();
+                it.remove();
+            }
+        }
+        return removed;
+    }
+
+    /**
+     * Count-Min Sketch，用4行4位的计数器估计每个偏移量的访问次数。
+     * 累计增加的次数达到样本数时所有计数减半，让过去的热点逐渐冷却
+     */
+    private static final class FrequencySketch {
+
+        private static final int DEPTH = 4;
+        private static final int MAX_COUNT = 15;
+        private static final long[] SEEDS = {
+                0x97CB3127E4F1A2D5L, 0xC2B2AE3D27D4EB4FL, 0x165667B19E3779F9L, 0x9E3779B97F4A7C15L};
+
+        // 每个long存放16个4位计数器
+        private final long[][] table;
+        private final int mask;
+        private final int sampleSize;
+        private int additions = 0;
+
+        FrequencySketch(final long expectedEntries) {
+            int counters = Integer.highestOneBit((int) Math.max(Math.min(expectedEntries, 1 << 24), 64) - 1) << 1;
+            this.table = new long[DEPTH][counters / 16];
+            this.mask = counters - 1;
+            this.sampleSize = counters * 10;
+        }
+
+        int frequency(final long key) {
+            int frequency = MAX_COUNT;
+            for (int i = 0; i < DEPTH; i++) {
+                frequency = Math.min(frequency, this.get(i, this.indexOf(key, i)));
+            }
+            return frequency;
+        }
+
+        void increment(final long key) {
+            boolean added = false;
+            for (int i = 0; i < DEPTH; i++) {
+                int index = this.indexOf(key, i);
+                if (this.get(i, index) < MAX_COUNT) {
+                    this.table[i][index >>> 4] += 1L << ((index & 15) << 2);
+                    added = true;
+                }
+            }
+            if (added && ++this.additions >= this.sampleSize) {
+                this.reset();
+            }
+        }
+
+        private int get(final int row, final int index) {
+            return (int) ((this.table[row][index >>> 4] >>> ((index & 15) << 2)) & 0xFL);
+        }
+
+        private int indexOf(final long key, final int row) {
+            long hash = (key + SEEDS[row]) * SEEDS[row];
+            hash ^= hash >>> 32;
+            return (int) hash & this.mask;
+        }
+
+        private void reset() {
+            for (long[] row : this.table) {
+                for (int i = 0; i < row.length; i++) {
+                    // 每个4位计数器右移一位，清掉从高位计数器移下来的最低位
+                    row[i] = (row[i] >>> 1) & 0x7777777777777777L;
+                }
+            }
+            this.additions /= 2;
+        }
+    }
+}
@@ -0,0 +1,248 @@
+package com.echelon.hermes.store;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.List;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * 描述：消息索引文件，按业务键查找消息的物理偏移量。
+ * <pre>
+ * 文件头      40字节，见IndexHeader
+ * 哈希槽      hashSlotNum * 4字节，保存落在该槽的最后一条索引的序号
+ * 索引        indexNum * 20字节，每条索引：
+ *   KEY_HASH     4  业务键的哈希值
+ *   PHY_OFFSET   8  消息的物理偏移量
+ *   TIME_DIFF    4  消息存储时间与文件头beginTimestamp的差，单位秒
+ *   PREV_INDEX   4  同一个哈希槽中前一条索引的序号，0表示没有
+ * </pre>
+ * 同一个槽中的索引通过PREV_INDEX串成链表，查询只需要遍历一个槽的链表，与文件中的索引总数无关。
+ * 索引按写入顺序追加，时间越往前的索引在链表中越靠后，查询时间范围时遇到更早的索引即可停止。
+ * 索引只由ReputMessageService线程写入。
+ *
+ * @author jorelwang
+ * @create 2026-10-16 18:45
+ */
+public class IndexFile {
+    private static final Logger log = LoggerFactory.getLogger(IndexFile.class);
+
+    private static final int HASH_SLOT_SIZE = 4;
+    private static final int INDEX_SIZE = 20;
+    // 无效的索引序号
+    private static final int INVALID_INDEX = 0;
+
+    private final int hashSlotNum;
+    private final int indexNum;
+    private final MappedFile mappedFile;
+    private final ByteBuffer mappedByteBuffer;
+    private final IndexHeader indexHeader;
+
+    public IndexFile(final String fileName, final int hashSlotNum, final int indexNum, final long endPhyOffset,
+            final long endTimestamp) throws IOException {
+        int fileTotalSize = IndexHeader.INDEX_HEADER_SIZE + (hashSlotNum * HASH_SLOT_SIZE) + (indexNum * INDEX_SIZE);
+        this.mappedFile = new MappedFile(fileName, fileTotalSize);
+        this.mappedByteBuffer = this.mappedFile.sliceByteBuffer();
+        this.hashSlotNum = hashSlotNum;
+        this.indexNum = indexNum;
+        this.indexHeader = new IndexHeader(this.mappedByteBuffer);
+
+        // 新文件从上一个文件的末尾开始
+        if (endPhyOffset > 0) {
+            this.indexHeader.setBeginPhyOffset(endPhyOffset);
+            this.indexHeader.setEndPhyOffset(endPhyOffset);
+        }
+        if (endTimestamp > 0) {
+            this.indexHeader.setBeginTimestamp(endTimestamp);
+            this.indexHeader.setEndTimestamp(endTimestamp);
+        }
+    }
+
+    public String getFileName() {
+        return this.mappedFile.getFileName();
+    }
+
+    public void load() {
+        this.indexHeader.load();
+    }
+
+    public void flush() {
+        long beginTime = System.currentTimeMillis();
+        this.indexHeader.updateByteBuffer();
+        this.mappedFile.force();
+        log.info("flush index file elapsed time(ms) {}", System.currentTimeMillis() - beginTime);
+    }
+
+    public boolean isWriteFull() {
+        return this.indexHeader.getIndexCount() >= this.indexNum;
+    }
+
+    /**
+     * 写入一条索引
+     *
+     * @param key            业务键
+     * @param phyOffset      消息的物理偏移量
+     * @param storeTimestamp 消息的存储时间
+     * @param endPhyOffset   消息末尾的物理偏移量
+     * @return 文件已写满时返回false
+     */
+    public boolean putKey(final String key, final long phyOffset, final long storeTimestamp,
+            final long endPhyOffset) {
+        if (this.indexHeader.getIndexCount() >= this.indexNum) {
+            log.warn("Over index file capacity: index count = {}; index max num = {}",
+                    this.indexHeader.getIndexCount(), this.indexNum);
+            return false;
+        }
+
+        int keyHash = indexKeyHashMethod(key);
+        int slotPos = keyHash % this.hashSlotNum;
+        int absSlotPos = IndexHeader.INDEX_HEADER_SIZE + slotPos * HASH_SLOT_SIZE;
+
+        int slotValue = this.mappedByteBuffer.getInt(absSlotPos);
+        if (slotValue <= INVALID_INDEX || slotValue > this.indexHeader.getIndexCount()) {
+            slotValue = INVALID_INDEX;
+        }
+
+        // 文件头的beginTimestamp在第一条索引写入时才确定
+        long beginTimestamp = this.indexHeader.getIndexCount() <= 1 && this.indexHeader.getBeginTimestamp() <= 0
+                ? storeTimestamp : this.indexHeader.getBeginTimestamp();
+        long timeDiff = (storeTimestamp - beginTimestamp) / 1000;
+        if (timeDiff > Integer.MAX_VALUE) {
+            timeDiff = Integer.MAX_VALUE;
+        } else if (timeDiff < 0) {
+            timeDiff = 0;
+        }
+
+        int absIndexPos = IndexHeader.INDEX_HEADER_SIZE + this.hashSlotNum * HASH_SLOT_SIZE
+                + this.indexHeader.getIndexCount() * INDEX_SIZE;
+        this.mappedByteBuffer.putInt(absIndexPos, keyHash);
+        this.mappedByteBuffer.putLong(absIndexPos + 4, phyOffset);
+        this.mappedByteBuffer.putInt(absIndexPos + 4 + 8, (int) timeDiff);
+        this.mappedByteBuffer.putInt(absIndexPos + 4 + 8 + 4, slotValue);
+
+        // 索引写完之后再更新哈希槽，查询线程不会读到写了一半的索引
+        this.mappedByteBuffer.putInt(absSlotPos, this.indexHeader.getIndexCount());
+
+        if (this.indexHeader.getIndexCount() <= 1) {
+            this.indexHeader.setBeginPhyOffset(phyOffset);
+            this.indexHeader.setBeginTimestamp(beginTimestamp);
+        }
+        if (slotValue == INVALID_INDEX) {
+            this.indexHeader.incHashSlotCount();
+        }
+        this.indexHeader.incIndexCount();
+        this.indexHeader.setEndPhyOffset(endPhyOffset);
+        this.indexHeader.setEndTimestamp(storeTimestamp);
+        return true;
+    }
+
+    /**
+     * 业务键的哈希值，保证非负
+     */
+    public static int indexKeyHashMethod(final String key) {
+        int keyHash = key.hashCode();
+        int keyHashPositive = Math.abs(keyHash);
+        if (keyHashPositive < 0) {
+            keyHashPositive = 0;
+        }
+        return keyHashPositive;
+    }
+
+    /**
+     * 文件中的消息是否与时间范围[begin, end]有交集
+     */
+    public boolean isTimeMatched(final long begin, final long end) {
+        return begin <= this.indexHeader.getEndTimestamp() && end >= this.indexHeader.getBeginTimestamp();
+    }
+
+    /**
+     * 查找业务键对应的物理偏移量，只遍历键所在哈希槽的链表。
+     * 不同的键可能有相同的哈希值，调用方需要读取消息后再次比较业务键
+     *
+     * @param phyOffsets 查询结果，按写入顺序从新到旧追加
+     * @param key        业务键
+     * @param maxNum     phyOffsets最多包含的结果数
+     * @param begin      消息存储时间的下限，单位毫秒
+     * @param end        消息存储时间的上限，单位毫秒
+     */
+    public void selectPhyOffset(final List<Long> phyOffsets, final String key, final int maxNum, final long begin,
+            final long end) {
+        if (!this.mappedFile.hold()) {
+            return;
+        }
+
+        try {
+            int keyHash = indexKeyHashMethod(key);
+            int slotPos = keyHash % this.hashSlotNum;
+            int absSlotPos = IndexHeader.INDEX_HEADER_SIZE + slotPos * HASH_SLOT_SIZE;
+
+            int indexCount = this.indexHeader.getIndexCount();
+            int slotValue = this.mappedByteBuffer.getInt(absSlotPos);
+            if (slotValue <= INVALID_INDEX || slotValue >= indexCount) {
+                return;
+            }
+
+            // 时间差只精确到秒，timeRead不晚于消息的真实存储时间且相差不到1秒，调用方读取消息后再精确比较
+            final long beginTimestamp = this.indexHeader.getBeginTimestamp();
+            for (int nextIndexToRead = slotValue; phyOffsets.size() < maxNum; ) {
+                int absIndexPos = IndexHeader.INDEX_HEADER_SIZE + this.hashSlotNum * HASH_SLOT_SIZE
+                        + nextIndexToRead * INDEX_SIZE;
+
+                int keyHashRead = this.mappedByteBuffer.getInt(absIndexPos);
+                long phyOffsetRead = this.mappedByteBuffer.getLong(absIndexPos + 4);
+                long timeDiff = this.mappedByteBuffer.getInt(absIndexPos + 4 + 8);
+                int prevIndexRead = this.mappedByteBuffer.getInt(absIndexPos + 4 + 8 + 4);
+
+                long timeRead = beginTimestamp + timeDiff * 1000L;
+                boolean beforeBegin = timeRead + 1000 <= begin;
+                if (keyHash == keyHashRead && !beforeBegin && timeRead <= end) {
+                    phyOffsets.add(phyOffsetRead);
+                }
+
+                // 链表中越往后的索引越早写入，已经早于时间下限时不需要再遍历
+                if (prevIndexRead <= INVALID_INDEX || prevIndexRead >= nextIndexToRead || beforeBegin) {
+                    break;
+                }
+                nextIndexToRead = prevIndexRead;
+            }
+        } finally {
+            this.mappedFile.release();
+        }
+    }
+
+    public long getBeginTimestamp() {
+        return this.indexHeader.getBeginTimestamp();
+    }
+
+    public long getEndTimestamp() {
+        return this.indexHeader.getEndTimestamp();
+    }
+
+    public long getBeginPhyOffset() {
+        return this.indexHeader.getBeginPhyOffset();
+    }
+
+    public long getEndPhyOffset() {
+        return this.indexHeader.getEndPhyOffset();
+    }
+
+    public int getIndexCount() {
+        return this.indexHeader.getIndexCount();
+    }
+
+    /**
+     * 关闭并删除文件，还被查询线程持有时超过intervalForcibly后强制删除
+     */
+    public boolean destroy(final long intervalForcibly) {
+        return this.mappedFile.deleteFile(intervalForcibly);
+    }
+
+    /**
+     * 刷盘后关闭文件，不删除
+     */
+    public void shutdown() {
+        this.indexHeader.updateByteBuffer();
+        this.mappedFile.force();
+        this.mappedFile.destroy();
+    }
+}
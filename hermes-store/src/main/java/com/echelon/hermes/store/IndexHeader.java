@@ -0,0 +1,126 @@
+package com.echelon.hermes.store;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 描述：IndexFile的文件头，固定40个字节。
+ * <pre>
+ * BEGIN_TIMESTAMP   8  第一条索引对应消息的存储时间
+ * END_TIMESTAMP     8  最后一条索引对应消息的存储时间
+ * BEGIN_PHYOFFSET   8  第一条索引对应消息的物理偏移量
+ * END_PHYOFFSET     8  最后一条索引对应消息末尾的物理偏移量
+ * HASH_SLOT_COUNT   4  已经使用的哈希槽数量
+ * INDEX_COUNT       4  已经写入的索引条数加1，第0条索引不使用
+ * </pre>
+ *
+ * @author jorelwang
+ * @create 2026-10-16 18:40
+ */
+public class IndexHeader {
+
+    public static final int INDEX_HEADER_SIZE = 40;
+
+    private static final int BEGIN_TIMESTAMP_INDEX = 0;
+    private static final int END_TIMESTAMP_INDEX = 8;
+    private static final int BEGIN_PHYOFFSET_INDEX = 16;
+    private static final int END_PHYOFFSET_INDEX = 24;
+    private static final int HASH_SLOT_COUNT_INDEX = 32;
+    private static final int INDEX_COUNT_INDEX = 36;
+
+    private final ByteBuffer byteBuffer;
+
+    private final AtomicLong beginTimestamp = new AtomicLong(0);
+    private final AtomicLong endTimestamp = new AtomicLong(0);
+    private final AtomicLong beginPhyOffset = new AtomicLong(0);
+    private final AtomicLong endPhyOffset = new AtomicLong(0);
+    private final AtomicInteger hashSlotCount = new AtomicInteger(0);
+    private final AtomicInteger indexCount = new AtomicInteger(1);
+
+    public IndexHeader(final ByteBuffer byteBuffer) {
+        this.byteBuffer = byteBuffer;
+    }
+
+    /**
+     * 从文件中读取文件头
+     */
+    public void load() {
+        this.beginTimestamp.set(this.byteBuffer.getLong(BEGIN_TIMESTAMP_INDEX));
+        this.endTimestamp.set(this.byteBuffer.getLong(END_TIMESTAMP_INDEX));
+        this.beginPhyOffset.set(this.byteBuffer.getLong(BEGIN_PHYOFFSET_INDEX));
+        this.endPhyOffset.set(this.byteBuffer.getLong(END_PHYOFFSET_INDEX));
+        this.hashSlotCount.set(this.byteBuffer.getInt(HASH_SLOT_COUNT_INDEX));
+        this.indexCount.set(this.byteBuffer.getInt(INDEX_COUNT_INDEX));
+
+        if (this.indexCount.get() <= 0) {
+            this.indexCount.set(1);
+        }
+    }
+
+    /**
+     * 把文件头写回文件
+     */
+    public void updateByteBuffer() {
+        this.byteBuffer.putLong(BEGIN_TIMESTAMP_INDEX, this.beginTimestamp.get());
+        this.byteBuffer.putLong(END_TIMESTAMP_INDEX, this.endTimestamp.get());
+        this.byteBuffer.putLong(BEGIN_PHYOFFSET_INDEX, this.beginPhyOffset.get());
+        this.byteBuffer.putLong(END_PHYOFFSET_INDEX, this.endPhyOffset.get());
+        this.byteBuffer.putInt(HASH_SLOT_COUNT_INDEX, this.hashSlotCount.get());
+        this.byteBuffer.putInt(INDEX_COUNT_INDEX, this.indexCount.get());
+    }
+
+    public long getBeginTimestamp() {
+        return beginTimestamp.get();
+    }
+
+    public void setBeginTimestamp(long beginTimestamp) {
+        this.beginTimestamp.set(beginTimestamp);
+        this.byteBuffer.putLong(BEGIN_TIMESTAMP_INDEX, beginTimestamp);
+    }
+
+    public long getEndTimestamp() {
+        return endTimestamp.get();
+    }
+
+    public void setEndTimestamp(long endTimestamp) {
+        this.endTimestamp.set(endTimestamp);
+        this.byteBuffer.putLong(END_TIMESTAMP_INDEX, endTimestamp);
+    }
+
+    public long getBeginPhyOffset() {
+        return beginPhyOffset.get();
+    }
+
+    public void setBeginPhyOffset(long beginPhyOffset) {
+        this.beginPhyOffset.set(beginPhyOffset);
+        this.byteBuffer.putLong(BEGIN_PHYOFFSET_INDEX, beginPhyOffset);
+    }
+
+    public long getEndPhyOffset() {
+        return endPhyOffset.get();
+    }
+
+    public void setEndPhyOffset(long endPhyOffset) {
+        this.endPhyOffset.set(endPhyOffset);
+        this.byteBuffer.putLong(END_PHYOFFSET_INDEX, endPhyOffset);
+    }
+
+    public int getHashSlotCount() {
+        return hashSlotCount.get();
+    }
+
+    public void incHashSlotCount() {
+        int value = this.hashSlotCount.incrementAndGet();
+        this.byteBuffer.putInt(HASH_SLOT_COUNT_INDEX, value);
+    }
+
+    public int getIndexCount() {
+        return indexCount.get();
+    }
+
+    public void incIndexCount() {
+        int value = this.indexCount.incrementAndGet();
+        this.byteBuffer.putInt(INDEX_COUNT_INDEX, value);
+    }
+}
@@ -0,0 +1,286 @@
+package com.echelon.hermes.store;
+
+import java.io.File;
+import java.io.IOException;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * 描述：管理所有IndexFile，按消息的业务键建立索引，支持按业务键和时间范围查询消息。
+ * 索引由ReputMessageService分发时构建，当前文件写满后创建新文件，文件名是创建时间。
+ *
+ * @author jorelwang
+ * @create 2026-10-16 18:55
+ */
+public class IndexService {
+    private static final Logger log = LoggerFactory.getLogger(IndexService.class);
+
+    // 创建文件失败时的最大重试次数
+    private static final int MAX_TRY_IDX_CREATE = 3;
+
+    private final String storePath;
+    private final int hashSlotNum;
+    private final int indexNum;
+
+    private final List<IndexFile> indexFileList = new ArrayList<>();
+    private final ReadWriteLock readWriteLock = new ReentrantReadWriteLock();
+
+    public IndexService(final MessageStoreConfig messageStoreConfig) {
+        this.storePath = messageStoreConfig.getStorePathIndex();
+        this.hashSlotNum = messageStoreConfig.getMaxHashSlotNum();
+        this.indexNum = messageStoreConfig.getMaxIndexNum();
+    }
+
+    public boolean load() {
+        File[] files = new File(this.storePath).listFiles();
+        if (files == null) {
+            return true;
+        }
+
+        // 按文件名（创建时间）排序
+        Arrays.sort(files);
+        for (File file : files) {
+            try {
+                IndexFile indexFile = new IndexFile(file.getPath(), this.hashSlotNum, this.indexNum, 0, 0);
+                indexFile.load();
+                this.indexFileList.add(indexFile);
+                log.info("Load index file OK, {}", indexFile.getFileName());
+            } catch (Exception e) {
+                log.error("Load index file {} failed", file.getPath(), e);
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * CommitLog恢复后，删除包含了有效数据之后的索引的文件。
+     * 链表结构的索引无法部分回退，只能删除整个文件，被删除的索引需要从返回的位置开始重新分发
+     *
+     * @param phyOffset CommitLog中有效数据的末尾
+     * @return 需要重新构建索引的起始物理偏移量，没有删除文件时返回Long.MAX_VALUE
+     */
+    public long truncateDirtyFiles(final long phyOffset) {
+        long rebuildFromOffset = Long.MAX_VALUE;
+        this.readWriteLock.writeLock().lock();
+        try {
+            while (!this.indexFileList.isEmpty()) {
+                IndexFile last = this.indexFileList.get(this.indexFileList.size() - 1);
+                if (last.getEndPhyOffset() <= phyOffset) {
+                    break;
+                }
+                rebuildFromOffset = Math.min(rebuildFromOffset, last.getBeginPhyOffset());
+                this.indexFileList.remove(this.indexFileList.size() - 1);
+                boolean result = last.destroy(0);
+                log.info("Truncate dirty index file {}, end phy offset: {}, destroy {}", last.getFileName(),
+                        last.getEndPhyOffset(), result ? "OK" : "Failed");
+            }
+        } finally {
+            this.readWriteLock.writeLock().unlock();
+        }
+        return rebuildFromOffset;
+    }
+
+    /**
+     * 删除所有索引都指向offset之前的文件，最后一个文件不会被删除
+     *
+     * @param offset CommitLog中的最小物理偏移量
+     */
+    public void deleteExpiredFile(final long offset) {
+        List<IndexFile> files = new ArrayList<>();
+        this.readWriteLock.readLock().lock();
+        try {
+            for (int i = 0; i < this.indexFileList.size() - 1; i++) {
+                IndexFile indexFile = this.indexFileList.get(i);
+                if (indexFile.getEndPhyOffset() >= offset) {
+                    break;
+                }
+                files.add(indexFile);
+            }
+        } finally {
+            this.readWriteLock.readLock().unlock();
+        }
+
+        if (files.isEmpty()) {
+            return;
+        }
+
+        this.readWriteLock.writeLock().lock();
+        try {
+            for (IndexFile indexFile : files) {
+                if (!indexFile.destroy(3000)) {
+                    log.warn("Delete expired index file {} failed, retry later", indexFile.getFileName());
+                    break;
+                }
+                this.indexFileList.remove(indexFile);
+                log.info("Delete expired index file {}", indexFile.getFileName());
+            }
+        } finally {
+            this.readWriteLock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * 查询业务键对应的物理偏移量，从最新的文件开始查找。
+     * 不同的键可能有相同的哈希值，调用方需要读取消息后再次比较业务键
+     *
+     * @param topic  主题
+     * @param key    业务键
+     * @param maxNum 最多返回的结果数
+     * @param begin  消息存储时间的下限，单位毫秒
+     * @param end    消息存储时间的上限，单位毫秒
+     * @return 物理偏移量，按存储时间从新到旧排列
+     */
+    public List<Long> queryOffset(final String topic, final String key, final int maxNum, final long begin,
+            final long end) {
+        List<Long> phyOffsets = new ArrayList<>(Math.min(maxNum, 64));
+        final String indexKey = buildKey(topic, key);
+        this.readWriteLock.readLock().lock();
+        try {
+            for (int i = this.indexFileList.size(); i > 0; i--) {
+                IndexFile indexFile = this.indexFileList.get(i - 1);
+                if (indexFile.isTimeMatched(begin, end)) {
+                    indexFile.selectPhyOffset(phyOffsets, indexKey, maxNum, begin, end);
+                }
+
+                // 更早的文件中不会有时间范围内的消息
+                if (indexFile.getBeginTimestamp() < begin || phyOffsets.size() >= maxNum) {
+                    break;
+                }
+            }
+        } finally {
+            this.readWriteLock.readLock().unlock();
+        }
+        return phyOffsets;
+    }
+
+    /**
+     * 为一条消息的所有业务键建立索引，只会被ReputMessageService线程调用
+     */
+    public void buildIndex(final DispatchRequest request) {
+        final String keys = request.getKeys();
+        if (keys == null || keys.isEmpty()) {
+            return;
+        }
+
+        IndexFile indexFile = this.retryGetAndCreateIndexFile();
+        if (indexFile == null) {
+            log.error("Build index error, get or create index file failed, {}", request);
+            return;
+        }
+
+        // 重启后reput可能从较早的位置开始，已经建立过索引的消息直接跳过
+        if (request.getCommitLogOffset() < indexFile.getEndPhyOffset()) {
+            return;
+        }
+
+        final long endPhyOffset = request.getCommitLogOffset() + request.getMsgSize();
+        for (String key : keys.split(MessageExt.KEY_SEPARATOR)) {
+            if (key.isEmpty()) {
+                continue;
+            }
+            final String indexKey = buildKey(request.getTopic(), key);
+            while (!indexFile.putKey(indexKey, request.getCommitLogOffset(), request.getStoreTimestamp(),
+                    endPhyOffset)) {
+                log.warn("Index file {} is full, create a new one", indexFile.getFileName());
+                indexFile = this.retryGetAndCreateIndexFile();
+                if (indexFile == null) {
+                    log.error("Build index error, create index file failed, {}", request);
+                    return;
+                }
+            }
+        }
+    }
+
+    private IndexFile retryGetAndCreateIndexFile() {
+        IndexFile indexFile = null;
+        for (int times = 0; indexFile == null && times < MAX_TRY_IDX_CREATE; times++) {
+            indexFile = this.getAndCreateLastIndexFile();
+            if (indexFile == null) {
+                try {
+                    Thread.sleep(1000);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    break;
+                }
+            }
+        }
+        return indexFile;
+    }
+
+    /**
+     * 获取最后一个没有写满的文件，没有时创建新文件，新文件从上一个文件的末尾开始
+     */
+    private IndexFile getAndCreateLastIndexFile() {
+        IndexFile prevIndexFile = null;
+        this.readWriteLock.readLock().lock();
+        try {
+            if (!this.indexFileList.isEmpty()) {
+                IndexFile last = this.indexFileList.get(this.indexFileList.size() - 1);
+                if (!last.isWriteFull()) {
+                    return last;
+                }
+                prevIndexFile = last;
+            }
+        } finally {
+            this.readWriteLock.readLock().unlock();
+        }
+
+        long lastUpdateEndPhyOffset = prevIndexFile != null ? prevIndexFile.getEndPhyOffset() : 0;
+        long lastUpdateIndexTimestamp = prevIndexFile != null ? prevIndexFile.getEndTimestamp() : 0;
+        IndexFile indexFile;
+        this.readWriteLock.writeLock().lock();
+        try {
+            String fileName = this.storePath + File.separator + this.nextFileName(prevIndexFile);
+            indexFile = new IndexFile(fileName, this.hashSlotNum, this.indexNum, lastUpdateEndPhyOffset,
+                    lastUpdateIndexTimestamp);
+            this.indexFileList.add(indexFile);
+        } catch (IOException e) {
+            log.error("Create index file failed", e);
+            return null;
+        } finally {
+            this.readWriteLock.writeLock().unlock();
+        }
+
+        // 写满的文件不会再修改，刷盘后即可丢失page cache
+        if (prevIndexFile != null) {
+            prevIndexFile.flush();
+        }
+        return indexFile;
+    }
+
+    /**
+     * 文件名是创建时间，格式为yyyyMMddHHmmssSSS，保证比上一个文件的文件名大
+     */
+    private String nextFileName(final IndexFile prevIndexFile) {
+        long fileName = Long.parseLong(new SimpleDateFormat("yyyyMMddHHmmssSSS").format(new Date()));
+        if (prevIndexFile != null) {
+            long prevFileName = Long.parseLong(new File(prevIndexFile.getFileName()).getName());
+            fileName = Math.max(fileName, prevFileName + 1);
+        }
+        return String.valueOf(fileName);
+    }
+
+    public static String buildKey(final String topic, final String key) {
+        return topic + "#" + key;
+    }
+
+    public void shutdown() {
+        this.readWriteLock.writeLock().lock();
+        try {
+            for (IndexFile indexFile : this.indexFileList) {
+                indexFile.shutdown();
+            }
+            this.indexFileList.clear();
+        } finally {
+            this.readWriteLock.writeLock().unlock();
+        }
+    }
+}
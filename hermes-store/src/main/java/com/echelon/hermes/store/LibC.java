@@ -0,0 +1,27 @@
+package com.echelon.hermes.store;
+
+import com.sun.jna.Library;
+import com.sun.jna.Native;
+import com.sun.jna.NativeLong;
+import com.sun.jna.Platform;
+import com.sun.jna.Pointer;
+
+/**
+ * 描述：通过JNA调用的libc函数，用于锁定内存、给内核提示内存的访问方式
+ *
+ * @author jorelwang
+ * @create 2026-10-16 13:40
+ */
+public interface LibC extends Library {
+
+    LibC INSTANCE = Native.load(Platform.isWindows() ? "msvcrt" : "c", LibC.class);
+
+    // 即将访问，内核提前把页读入内存
+    int MADV_WILLNEED = 3;
+
+    int mlock(Pointer address, NativeLong size);
+
+    int munlock(Pointer address, NativeLong size);
+
+    int madvise(Pointer address, NativeLong size, int advice);
+}
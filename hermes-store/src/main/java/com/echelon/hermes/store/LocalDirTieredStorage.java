@@ -0,0 +1,104 @@
+package com.echelon.hermes.store;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * 描述：用本地目录模拟对象存储的TieredStorage实现，目录可以挂载在廉价的大容量磁盘或网络文件系统上。
+ * 上传时先拷贝到临时文件再原子重命名，保证对象要么完整可见，要么不存在。
+ *
+ * @author jorelwang
+ * @create 2026-10-16 20:10
+ */
+public class LocalDirTieredStorage implements TieredStorage {
+    private static final Logger log = LoggerFactory.getLogger(LocalDirTieredStorage.class);
+
+    // 上传过程中临时文件的后缀，list时忽略
+    private static final String TMP_SUFFIX = ".tmp";
+
+    private final File dir;
+
+    public LocalDirTieredStorage(final MessageStoreConfig messageStoreConfig) {
+        this.dir = new File(messageStoreConfig.getTieredStorePath());
+        MappedFile.ensureDirOK(this.dir.getPath());
+    }
+
+    @Override
+    public void upload(final String objectName, final File file) throws IOException {
+        Path target = new File(this.dir, objectName).toPath();
+        Path tmp = new File(this.dir, objectName + TMP_SUFFIX).toPath();
+        Files.copy(file.toPath(), tmp, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.COPY_ATTRIBUTES);
+        Files.move(tmp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        log.info("Upload {} to {}", file.getPath(), target);
+    }
+
+    @Override
+    public void read(final String objectName, final long position, final ByteBuffer dest) throws IOException {
+        try (FileChannel channel = FileChannel.open(new File(this.dir, objectName).toPath(),
+                StandardOpenOption.READ)) {
+            long pos = position;
+            while (dest.hasRemaining()) {
+                int read = channel.read(dest, pos);
+                if (read < 0) {
+                    throw new IOException("Read " + objectName + " beyond the end, position: " + pos);
+                }
+                pos += read;
+            }
+        }
+    }
+
+    @Override
+    public boolean exists(final String objectName) {
+        return new File(this.dir, objectName).exists();
+    }
+
+    @Override
+    public long getSize(final String objectName) {
+        File file = new File(this.dir, objectName);
+        return file.exists() ? file.length() : -1;
+    }
+
+    @Override
+    public long getLastModifiedTimestamp(final String objectName) {
+        return new File(this.dir, objectName).lastModified();
+    }
+
+    @Override
+    public boolean delete(final String objectName) {
+        File file = new File(this.dir, objectName);
+        boolean result = !file.exists() || file.delete();
+        log.info("Delete tiered object {} {}", objectName, result ? "OK" : "Failed");
+        return result;
+    }
+
+    @Override
+    public List<String> list() throws IOException {
+        File[] files = this.dir.listFiles();
+        if (files == null) {
+            throw new IOException("List tiered storage dir failed: " + this.dir);
+        }
+        List<String> names = new ArrayList<>();
+        for (File file : files) {
+            if (!file.getName().endsWith(TMP_SUFFIX)) {
+                names.add(file.getName());
+            }
+        }
+        Collections.sort(names);
+        return names;
+    }
+
+    @Override
+    public void shutdown() {
+    }
+}
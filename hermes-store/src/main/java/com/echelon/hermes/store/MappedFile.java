@@ -1,5 +1,9 @@
 package com.echelon.hermes.store;
 
+import com.sun.jna.Native;
+import com.sun.jna.NativeLong;
+import com.sun.jna.Platform;
+import com.sun.jna.Pointer;
 import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.IOException;
@@ -13,6 +17,7 @@ import java.nio.channels.FileChannel.MapMode;
 import java.security.AccessController;
 import java.security.PrivilegedAction;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import sun.misc.Unsafe;
@@ -20,14 +25,18 @@ import sun.misc.Unsafe;
 /**
  * 描述：对单个内存映射文件的封装。
  * 这是CommitLog和ConsumeQueue的基础存储单元。
+ * 读取返回的SelectMappedBufferResult持有文件的引用，所有引用释放之前映射缓冲区不会被unmap。
  *
  * @author jorelwang
  * @create 2025-09-21 12:36
  */
-public class MappedFile {
+public class MappedFile extends ReferenceResource {
 
     private static final Logger log = LoggerFactory.getLogger(MappedFile.class);
 
+    // 操作系统页大小
+    public static final int OS_PAGE_SIZE = 1024 * 4;
+
 
     // 单个文件的大小，例如1GB
     private final int fileSize;
@@ -50,10 +59,28 @@ public class MappedFile {
     // 核心的内存映射缓冲区
     private final MappedByteBuffer mappedByteBuffer;
 
+    // 从瞬态存储池借来的写缓冲区，开启transientStorePool时消息先写到这里，再commit到FileChannel
+    // 全部commit之后或者cleanup时归还给池，两者可能在不同线程中同时发生，只有把它换成null的一方归还
+    private final AtomicReference<ByteBuffer> writeBuffer;
+
+    // 瞬态存储池，未开启时为null
+    private final TransientStorePool transientStorePool;
+
+    // 映射缓冲区是否被mlock锁定
+    private volatile boolean locked = false;
+
     // 当前文件已经写入的位置
     // wrotePosition会有刷盘线程（Flush Thread）进行读取，所以需要保持可见性，设置为AtomicInteger
     private final AtomicInteger wrotePosition;
 
+    // 已经发布的位置，该位置之前的数据都已完整写入，可以被读取和刷盘
+    // 加锁写入时与wrotePosition一致；无锁写入时wrotePosition只是预留位置，
+    // 各写入线程按预留顺序推进publishedPosition
+    private final AtomicInteger publishedPosition;
+
+    // 已经从writeBuffer提交到FileChannel的位置，只在使用writeBuffer时有意义
+    private final AtomicInteger committedPosition;
+
     // 已经刷盘的位置
     private final AtomicInteger flushedPosition;
 
@@ -84,6 +111,14 @@ public class MappedFile {
     }
 
     public MappedFile(final String fileName, final int fileSize) throws IOException {
+        this(fileName, fileSize, null);
+    }
+
+    /**
+     * @param transientStorePool 瞬态存储池，为null或池中没有可用缓冲区时直接写入映射缓冲区
+     */
+    public MappedFile(final String fileName, final int fileSize, final TransientStorePool transientStorePool)
+            throws IOException {
         this.fileName = fileName;
         this.fileSize = fileSize;
         this.file = new File(fileName);
@@ -123,8 +158,32 @@ public class MappedFile {
 
         // 初始化为0
         this.wrotePosition = new AtomicInteger(0);
+        this.publishedPosition = new AtomicInteger(0);
+        this.committedPosition = new AtomicInteger(0);
         this.flushedPosition = new AtomicInteger(0);
 
+        ByteBuffer borrowed = transientStorePool != null ? transientStorePool.borrowBuffer() : null;
+        this.writeBuffer = new AtomicReference<>(borrowed);
+        this.transientStorePool = borrowed != null ? transientStorePool : null;
+    }
+
+    /**
+     * 供没有本地映射的子类使用，例如已经卸载到分层存储的文件。
+     * 文件内容已经全部写入并落盘，所有位置都在文件末尾
+     */
+    protected MappedFile(final File file, final int fileSize) {
+        this.fileName = file.getPath();
+        this.fileSize = fileSize;
+        this.file = file;
+        this.fileFromOffset = Long.parseLong(file.getName());
+        this.fileChannel = null;
+        this.mappedByteBuffer = null;
+        this.writeBuffer = new AtomicReference<>(null);
+        this.transientStorePool = null;
+        this.wrotePosition = new AtomicInteger(fileSize);
+        this.publishedPosition = new AtomicInteger(fileSize);
+        this.committedPosition = new AtomicInteger(fileSize);
+        this.flushedPosition = new AtomicInteger(fileSize);
     }
 
     public static void ensureDirOK(final String dirName) {
@@ -150,63 +209,353 @@ public class MappedFile {
         // 先写入数据，再进行位置更新，这样能够保证数据恢复的一致性，避免脏数据污染
         if (currentPos + data.length <=  this.fileSize) {
             // 1. 获取一个临时的ByteBuffer切片，从当前写入位置开始
-            ByteBuffer byteBuffer = this.mappedByteBuffer.slice();
+            ByteBuffer byteBuffer = sliceByteBuffer();
             byteBuffer.position(currentPos);
 
             // 2. 将数据写入到这个切片中
             byteBuffer.put(data);
 
             // 3. 只有在数据成功写入后，才原子地更新全局的写入位置
-            this.wrotePosition.addAndGet(data.length);
+            this.publishedPosition.set(this.wrotePosition.addAndGet(data.length));
             return true;
         }
         // 如果空间不足，返回false
         return false;
     }
 
+    /**
+     * 通过回调将消息直接编码到映射缓冲区中
+     * @param msg   要写入的消息
+     * @param cb    消息编码回调
+     * @return      写入结果
+     */
+    public AppendMessageResult appendMessage(final MessageExt msg, final AppendMessageCallback cb) {
+        int currentPos = this.wrotePosition.get();
+
+        if (currentPos < this.fileSize) {
+            ByteBuffer byteBuffer = sliceByteBuffer();
+            byteBuffer.position(currentPos);
+            AppendMessageResult result = cb.doAppend(this.fileFromOffset, byteBuffer,
+                    this.fileSize - currentPos, msg);
+            // 与appendMessage(byte[])一样，数据写入后再更新写入位置
+            this.publishedPosition.set(this.wrotePosition.addAndGet(result.getWroteBytes()));
+            return result;
+        }
+
+        log.error("MappedFile.appendMessage return null, wrotePosition: {} fileSize: {}", currentPos, this.fileSize);
+        return new AppendMessageResult(AppendMessageStatus.UNKNOWN_ERROR);
+    }
+
+    /**
+     * 无锁写入第一步：通过CAS在wrotePosition上预留一段空间。
+     * 预留成功后调用方可以与其他线程并行地向自己的区间写数据，写完后必须调用publish。
+     *
+     * @param size          要预留的字节数
+     * @param reservedTail  文件末尾需要保留的空间（用于写结束标记）
+     * @return 预留区间的起始位置，空间不足时返回-1
+     */
+    public int reserve(final int size, final int reservedTail) {
+        for (;;) {
+            int currentPos = this.wrotePosition.get();
+            if (currentPos + size + reservedTail > this.fileSize) {
+                return -1;
+            }
+            if (this.wrotePosition.compareAndSet(currentPos, currentPos + size)) {
+                return currentPos;
+            }
+        }
+    }
+
+    /**
+     * 无锁写入时空间不足，认领文件剩余的全部空间。
+     * CAS保证只有一个线程能认领成功，由它写入结束标记并publish。
+     *
+     * @return 剩余空间的起始位置，文件已经被写满（被其他线程认领）时返回-1
+     */
+    public int reserveTail() {
+        for (;;) {
+            int currentPos = this.wrotePosition.get();
+            if (currentPos >= this.fileSize) {
+                return -1;
+            }
+            if (this.wrotePosition.compareAndSet(currentPos, this.fileSize)) {
+                return currentPos;
+            }
+        }
+    }
+
+    /**
+     * 无锁写入第二步：发布[pos, pos + size)区间。
+     * 只有前面的区间都发布之后才能发布当前区间，保证publishedPosition之前没有空洞。
+     */
+    public void publish(final int pos, final int size) {
+        int spins = 0;
+        while (this.publishedPosition.get() != pos) {
+            if (++spins < 1000) {
+                Thread.onSpinWait();
+            } else {
+                Thread.yield();
+            }
+        }
+        this.publishedPosition.set(pos + size);
+    }
+
+    /**
+     * 返回整个写入缓冲区的切片，无锁写入时各线程在自己的预留区间内写数据
+     */
+    public ByteBuffer sliceByteBuffer() {
+        ByteBuffer buffer = this.writeBuffer.get();
+        return buffer != null ? buffer.slice() : this.mappedByteBuffer.slice();
+    }
+
+    /**
+     * 把writeBuffer中已发布的数据写入FileChannel
+     * @param commitLeastPages  至少积累多少个页才提交，0表示只要有新数据就提交
+     * @return  提交后的位置
+     */
+    public int commit(final int commitLeastPages) {
+        if (this.writeBuffer.get() == null) {
+            // 没有使用writeBuffer，数据已经在映射缓冲区中，不需要提交
+            return getReadPosition();
+        }
+
+        if (this.isAbleToCommit(commitLeastPages)) {
+            // 持有引用，提交过程中cleanup不会把缓冲区归还给池
+            if (this.hold()) {
+                try {
+                    commit0();
+                } finally {
+                    this.release();
+                }
+            } else {
+                log.warn("in commit, hold failed, commit offset = {}", this.committedPosition.get());
+            }
+        }
+
+        // 全部提交之后归还缓冲区
+        if (this.fileSize == this.committedPosition.get()) {
+            this.returnWriteBuffer();
+        }
+
+        return this.committedPosition.get();
+    }
+
+    /**
+     * 把写缓冲区归还给瞬态存储池，commit和cleanup中先把writeBuffer换成null的一方负责归还，缓冲区不会被归还两次
+     */
+    private void returnWriteBuffer() {
+        ByteBuffer buffer = this.writeBuffer.getAndSet(null);
+        if (buffer != null) {
+            this.transientStorePool.returnBuffer(buffer);
+        }
+    }
+
+    private void commit0() {
+        int writePos = this.publishedPosition.get();
+        int lastCommittedPosition = this.committedPosition.get();
+        ByteBuffer buffer = this.writeBuffer.get();
+
+        if (buffer != null && writePos > lastCommittedPosition) {
+            try {
+                ByteBuffer byteBuffer = buffer.slice();
+                byteBuffer.position(lastCommittedPosition);
+                byteBuffer.limit(writePos);
+                // 一次大块的顺序写
+                this.fileChannel.position(lastCommittedPosition);
+                while (byteBuffer.hasRemaining()) {
+                    this.fileChannel.write(byteBuffer);
+                }
+                this.committedPosition.set(writePos);
+            } catch (Throwable e) {
+                log.error("Error occurred when commit data to FileChannel.", e);
+            }
+        }
+    }
+
+    private boolean isAbleToCommit(final int commitLeastPages) {
+        int commit = this.committedPosition.get();
+        int write = this.publishedPosition.get();
+
+        if (write == this.fileSize) {
+            return write > commit;
+        }
+
+        if (commitLeastPages > 0) {
+            return ((write / OS_PAGE_SIZE) - (commit / OS_PAGE_SIZE)) >= commitLeastPages;
+        }
+
+        return write > commit;
+    }
+
     /**
      * 将内存中的数据刷盘
      * @return  返回本次刷盘后的位置
      */
     public int flush() {
-        int value = this.wrotePosition.get();
-        if (value > this.flushedPosition.get()) {
-            // 使用 FileChannel 的 force 方法进行刷盘
+        return flush(0);
+    }
+
+    /**
+     * 将内存中的数据刷盘
+     * @param flushLeastPages   至少积累多少个脏页才刷盘，0表示只要有新数据就刷盘
+     * @return  返回本次刷盘后的位置
+     */
+    public int flush(final int flushLeastPages) {
+        if (this.isAbleToFlush(flushLeastPages)) {
+            // 持有引用，防止刷盘过程中文件被释放
+            if (this.hold()) {
+                int value = getReadPosition();
+                try {
+                    if (this.transientStorePool != null) {
+                        // 数据通过FileChannel写入
+                        this.fileChannel.force(false);
+                    } else {
+                        // 数据通过内存映射写入，使用MappedByteBuffer的force刷盘
+                        this.mappedByteBuffer.force();
+                    }
+                } catch (Exception e) {
+                    log.error("Error occurred when force data to disk.", e);
+                    return this.flushedPosition.get();
+                } finally {
+                    this.release();
+                }
+
+                // 只有在force()成功后，才更新flushedPosition；多个线程可能同时刷盘，只允许前进
+                int flushed;
+                while ((flushed = this.flushedPosition.get()) < value
+                        && !this.flushedPosition.compareAndSet(flushed, value)) {
+                    // 重试
+                }
+            } else {
+                log.warn("in flush, hold failed, flush offset = {}", this.flushedPosition.get());
+            }
+        }
+        return this.flushedPosition.get();
+    }
+
+    /**
+     * 不考虑写入位置，把整个映射缓冲区刷盘。
+     * 用于不通过appendMessage写入、写入位置没有意义的文件，例如IndexFile
+     */
+    public void force() {
+        if (this.hold()) {
             try {
-                this.fileChannel.force(false);
-            } catch (Exception e) {
-                log.error("Error occurred when force data to disk.", e);
+                this.mappedByteBuffer.force();
+            } finally {
+                this.release();
             }
+        }
+    }
 
-            // 只有在force()成功后，才更新flushedPosition
-            this.flushedPosition.set(value);
+    private boolean isAbleToFlush(final int flushLeastPages) {
+        int flush = this.flushedPosition.get();
+        int write = getReadPosition();
+
+        // 文件已经写满，剩余的数据必须刷盘
+        if (write == this.fileSize) {
+            return write > flush;
         }
-        return this.flushedPosition.get();
+
+        if (flushLeastPages > 0) {
+            return ((write / OS_PAGE_SIZE) - (flush / OS_PAGE_SIZE)) >= flushLeastPages;
+        }
+
+        return write > flush;
     }
 
     /**
-     * 从文件的指定位置读取指定大小的数据。
+     * 从文件的指定位置读取指定大小的数据，返回的是映射缓冲区的切片，不拷贝数据。
+     * 返回结果持有文件的引用，使用完后必须调用release()
      * @param pos  读取的起始位置 (文件内的相对位置)
      * @param size 读取的大小
-     * @return 一个包含所读取数据的ByteBuffer
+     * @return 读取结果，超出文件范围或文件已经关闭时返回null
      */
-    public ByteBuffer selectMappedBuffer(int pos, int size) {
-        if (pos < this.fileSize && pos + size <= this.fileSize) {
-            ByteBuffer byteBuffer = this.mappedByteBuffer.slice();
-            byteBuffer.position(pos);
-            ByteBuffer byteBufferNew = byteBuffer.slice();
-            byteBufferNew.limit(size);
-            return byteBufferNew;
+    public SelectMappedBufferResult selectMappedBuffer(int pos, int size) {
+        if (pos >= 0 && pos < this.fileSize && pos + size <= this.fileSize) {
+            if (this.hold()) {
+                ByteBuffer byteBuffer = this.mappedByteBuffer.slice();
+                byteBuffer.position(pos);
+                ByteBuffer byteBufferNew = byteBuffer.slice();
+                byteBufferNew.limit(size);
+                return new SelectMappedBufferResult(this.fileFromOffset + pos, byteBufferNew, size, this);
+            } else {
+                log.warn("matched, but hold failed, request pos: {}, fileFromOffset: {}", pos, this.fileFromOffset);
+            }
+        }
+        return null;
+    }
+
+    /**
+     * 从文件的指定位置一直读取到当前写入位置
+     * @param pos  读取的起始位置 (文件内的相对位置)
+     * @return 读取结果，如果pos超出已写入范围则返回null
+     */
+    public SelectMappedBufferResult selectMappedBuffer(int pos) {
+        int readPosition = getReadPosition();
+        if (pos < readPosition && pos >= 0) {
+            return selectMappedBuffer(pos, readPosition - pos);
         }
         return null;
     }
 
     /**
-     * 安全地销毁文件资源，包括 unmap buffer 和关闭 channel。
+     * 提交剩余数据并刷盘，然后释放初始引用。
+     * 还有读取方持有引用时，映射缓冲区在最后一个引用释放后才会unmap
      */
     public void destroy() {
+        if (this.writeBuffer.get() != null) {
+            this.commit(0);
+        }
+        this.flush();
+        this.shutdown(0);
+    }
+
+    /**
+     * 关闭文件并删除，还有读取方持有引用时不删除
+     */
+    public boolean deleteFile() {
+        return this.deleteFile(0);
+    }
+
+    /**
+     * 关闭文件并删除，还有读取方持有引用时不会立即删除。
+     * 第一次调用之后超过intervalForcibly再次调用，会强制释放映射缓冲区并删除
+     *
+     * @param intervalForcibly 强制删除前等待读取方释放引用的时间，单位毫秒
+     * @return 文件是否已经删除
+     */
+    public boolean deleteFile(final long intervalForcibly) {
+        this.shutdown(intervalForcibly);
+        if (!this.isCleanupOver()) {
+            log.warn("Delete file {} failed, still held by readers, refCount: {}", this.fileName,
+                    this.getRefCount());
+            return false;
+        }
+
+        boolean result = this.file.delete();
+        log.info("Delete file {} {}", this.fileName, result ? "OK" : "Failed");
+        return result;
+    }
+
+    /**
+     * 引用全部释放后，归还写缓冲区、解除内存锁定、unmap并关闭文件通道
+     */
+    @Override
+    public boolean cleanup(final long currentRef) {
+        if (this.isAvailable()) {
+            log.error("this file[REF:{}] {} have not shutdown, stop unmapping.", currentRef, this.fileName);
+            return false;
+        }
+
+        if (this.isCleanupOver()) {
+            log.warn("this file[REF:{}] {} have cleanup, do not do it again.", currentRef, this.fileName);
+            return true;
+        }
+
+        // 文件没有写满，缓冲区也要归还
+        this.returnWriteBuffer();
         if (this.fileChannel != null) {
-            this.flush();
+            this.munlock();
             try {
                 // 安全地 unmap MappedByteBuffer
                 unmap(this.mappedByteBuffer);
@@ -216,6 +565,91 @@ public class MappedFile {
                 log.error("Error occurred when closing file:{} channel.", this.fileName, e);
             }
         }
+        log.info("unmap file[REF:{}] {} OK", currentRef, this.fileName);
+        return true;
+    }
+
+    /**
+     * 预热文件：按页写入0，提前触发缺页，把整个文件加载到page cache中，
+     * 避免第一次写入每个页时产生缺页中断。
+     * 同步刷盘时每写入flushLeastPages个页就刷一次盘，避免预热结束后积累大量脏页一次性刷盘。
+     * 最后通过mlock锁定内存，并用MADV_WILLNEED提示内核预读。
+     *
+     * @param flushDiskType   刷盘策略
+     * @param flushLeastPages 同步刷盘时每多少个页刷一次盘
+     * @param mlock           是否锁定内存
+     */
+    public void warmMappedFile(final FlushDiskType flushDiskType, final int flushLeastPages, final boolean mlock) {
+        long beginTime = System.currentTimeMillis();
+        ByteBuffer byteBuffer = this.mappedByteBuffer.slice();
+        int flush = 0;
+        for (int i = 0, j = 0; i < this.fileSize; i += OS_PAGE_SIZE, j++) {
+            byteBuffer.put(i, (byte) 0);
+            // 同步刷盘时分段刷盘
+            if (flushDiskType != FlushDiskType.ASYNC_FLUSH && (i / OS_PAGE_SIZE) - (flush / OS_PAGE_SIZE)
+                    >= flushLeastPages) {
+                flush = i;
+                this.mappedByteBuffer.force();
+            }
+
+            // 长时间占用CPU会影响其他线程，定期让出
+            if (j % 1000 == 0) {
+                Thread.yield();
+            }
+        }
+
+        // 预热结束后把剩余的部分刷盘
+        if (flushDiskType != FlushDiskType.ASYNC_FLUSH) {
+            this.mappedByteBuffer.force();
+        }
+        log.info("Mapped file warm-up done. file: {}, cost time(ms): {}", this.fileName,
+                System.currentTimeMillis() - beginTime);
+
+        if (mlock) {
+            this.mlock();
+        }
+    }
+
+    /**
+     * 锁定文件对应的内存，防止被换出，并提示内核预读
+     */
+    public void mlock() {
+        if (Platform.isWindows()) {
+            return;
+        }
+        final long beginTime = System.currentTimeMillis();
+        try {
+            Pointer pointer = Native.getDirectBufferPointer(this.mappedByteBuffer);
+            int ret = LibC.INSTANCE.mlock(pointer, new NativeLong(this.fileSize));
+            log.info("mlock {} {} {} ret = {} time consuming = {}", this.fileName, Pointer.nativeValue(pointer),
+                    this.fileSize, ret, System.currentTimeMillis() - beginTime);
+
+            ret = LibC.INSTANCE.madvise(pointer, new NativeLong(this.fileSize), LibC.MADV_WILLNEED);
+            log.info("madvise {} {} {} ret = {} time consuming = {}", this.fileName, Pointer.nativeValue(pointer),
+                    this.fileSize, ret, System.currentTimeMillis() - beginTime);
+            this.locked = true;
+        } catch (Throwable e) {
+            log.warn("mlock mapped file {} failed", this.fileName, e);
+        }
+    }
+
+    /**
+     * 解除内存锁定
+     */
+    public void munlock() {
+        if (!this.locked) {
+            return;
+        }
+        final long beginTime = System.currentTimeMillis();
+        try {
+            Pointer pointer = Native.getDirectBufferPointer(this.mappedByteBuffer);
+            int ret = LibC.INSTANCE.munlock(pointer, new NativeLong(this.fileSize));
+            log.info("munlock {} {} {} ret = {} time consuming = {}", this.fileName, Pointer.nativeValue(pointer),
+                    this.fileSize, ret, System.currentTimeMillis() - beginTime);
+            this.locked = false;
+        } catch (Throwable e) {
+            log.warn("munlock mapped file {} failed", this.fileName, e);
+        }
     }
 
     /**
@@ -273,7 +707,7 @@ public class MappedFile {
      * 支持java9+版本
      */
     public static void unmap(final ByteBuffer byteBuffer) {
-        if (byteBuffer != null) {
+        if (byteBuffer == null) {
             return;
         }
 
@@ -314,18 +748,79 @@ public class MappedFile {
         return wrotePosition.get();
     }
 
+    /**
+     * 可读的位置，该位置之前的数据都已完整写入。
+     * 使用transientStorePool时，只有提交到FileChannel的数据才能从映射缓冲区中读到
+     */
+    public int getReadPosition() {
+        return this.transientStorePool == null ? publishedPosition.get() : committedPosition.get();
+    }
+
+    public int getCommittedPosition() {
+        return committedPosition.get();
+    }
+
     public int getFlushedPosition() {
         return flushedPosition.get();
     }
 
+    /**
+     * 把写入位置回退到position，并清零之后残留的数据。
+     * 截断点之后可能还有崩溃前写完的记录，新记录恰好在旧记录的边界上结束时，下次恢复会把旧记录当作有效数据。
+     * 只改写含有非零数据的页，文件中没有写过的空洞不会因此被分配磁盘空间
+     */
+    public void truncate(final int position) {
+        if (this.mappedByteBuffer != null) {
+            ByteBuffer byteBuffer = this.mappedByteBuffer.slice();
+            boolean dirty = false;
+            int pageStart = position;
+            while (pageStart < this.fileSize) {
+                int pageEnd = Math.min((pageStart / OS_PAGE_SIZE + 1) * OS_PAGE_SIZE, this.fileSize);
+                if (!isZero(byteBuffer, pageStart, pageEnd)) {
+                    for (int i = pageStart; i < pageEnd; i++) {
+                        byteBuffer.put(i, (byte) 0);
+                    }
+                    dirty = true;
+                }
+                pageStart = pageEnd;
+            }
+            if (dirty) {
+                this.mappedByteBuffer.force();
+            }
+        }
+        this.setWrotePosition(position);
+        this.setFlushedPosition(position);
+    }
+
+    private static boolean isZero(final ByteBuffer byteBuffer, final int from, final int to) {
+        int i = from;
+        for (; i + 8 <= to; i += 8) {
+            if (byteBuffer.getLong(i) != 0) {
+                return false;
+            }
+        }
+        for (; i < to; i++) {
+            if (byteBuffer.get(i) != 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
     public void setWrotePosition(int position) {
         wrotePosition.set(position);
+        publishedPosition.set(position);
+        committedPosition.set(position);
     }
 
     public void setFlushedPosition(int position) {
         flushedPosition.set(position);
     }
 
+    public String getFileName() {
+        return fileName;
+    }
+
     public long getFileFromOffset() {
         return fileFromOffset;
     }
@@ -334,6 +829,13 @@ public class MappedFile {
         return fileSize;
     }
 
+    /**
+     * 文件最后修改的时间，用于判断文件是否过期
+     */
+    public long getLastModifiedTimestamp() {
+        return this.file.lastModified();
+    }
+
     public boolean isFull() {
         return this.fileSize == this.wrotePosition.get();
     }
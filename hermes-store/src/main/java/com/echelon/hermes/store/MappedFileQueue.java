@@ -2,14 +2,21 @@ package com.echelon.hermes.store;
 
 import com.echelon.hermes.common.utils.StoreUtil;
 import java.io.File;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.CopyOnWriteArrayList;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 /**
- * 描述：文件队列管理器
+ * 描述：文件队列管理器。
+ * storePath可以是用分号分隔的多个目录，通常位于不同的磁盘上，新文件按StorePathPolicy分散到各个目录，
+ * 写入带宽随磁盘数量增长。使用率超过上限的目录不再放新文件，创建文件失败的目录在重启之前不再使用。
+ * 读取时每个文件记录了自己的完整路径，不需要区分目录。
  *
  * @author jorelwang
  * @create 2025-09-24 12:12
@@ -18,27 +25,87 @@ public class MappedFileQueue {
 
     private static final Logger log = LoggerFactory.getLogger(MappedFileQueue.class);
 
+    // 多个存储目录之间的分隔符
+    public static final String MULTI_PATH_SPLITTER = ";";
+
     // 存储目录路径
-    private final String storePath;
+    private final String[] storePaths;
+    // 新文件放在哪个目录
+    private final StorePathPolicy storePathPolicy;
+    // 目录所在磁盘的使用率超过这个比例时不再放新文件，0到1之间
+    private final double diskMaxUsedSpaceRatio;
+    // 创建文件失败的目录，认为磁盘已经故障
+    private final Set<String> unavailablePaths = ConcurrentHashMap.newKeySet();
+    // 已经为尚未创建的文件选好的目录，key为文件起始偏移量，保证预创建的下下个文件和真正使用时在同一个目录
+    private final ConcurrentMap<Long, String> plannedPaths = new ConcurrentHashMap<>();
     // 单个MappedFile的大小
     private final int mappedFileSize;
     // 存储所有MappedFile实例的线程安全列表
     private final CopyOnWriteArrayList<MappedFile> mappedFiles = new CopyOnWriteArrayList<>();
+    // 切换文件时使用的锁，无锁写入时多个线程可能同时发现文件已满，只允许一个线程创建新文件
+    private final Object rollLock = new Object();
+
+    // 全局的刷盘位置，该位置之前的数据都已经落盘
+    private volatile long flushedWhere = 0;
+
+    // 全局的提交位置，只在开启transientStorePool时有意义
+    private volatile long committedWhere = 0;
+
+    // 瞬态存储池，新建的文件从池中借用写缓冲区
+    private final TransientStorePool transientStorePool;
+
+    // 后台预创建文件的服务，为null或未启动时同步创建
+    private final AllocateMappedFileService allocateMappedFileService;
 
     public MappedFileQueue(final String storePath, final int mappedFileSize) {
-        this.storePath = storePath;
+        this(storePath, mappedFileSize, null, null);
+    }
+
+    public MappedFileQueue(final String storePath, final int mappedFileSize,
+            final TransientStorePool transientStorePool,
+            final AllocateMappedFileService allocateMappedFileService) {
+        this(storePath, mappedFileSize, transientStorePool, allocateMappedFileService, StorePathPolicy.ROUND_ROBIN,
+                1.0);
+    }
+
+    /**
+     * @param storePath             存储目录，多个目录用分号分隔
+     * @param storePathPolicy       新文件放在哪个目录
+     * @param diskMaxUsedSpaceRatio 磁盘使用率超过这个比例的目录不再放新文件，0到1之间
+     */
+    public MappedFileQueue(final String storePath, final int mappedFileSize,
+            final TransientStorePool transientStorePool,
+            final AllocateMappedFileService allocateMappedFileService, final StorePathPolicy storePathPolicy,
+            final double diskMaxUsedSpaceRatio) {
+        this.storePaths = storePath.trim().split("\\s*" + MULTI_PATH_SPLITTER + "\\s*");
+        this.storePathPolicy = storePathPolicy;
+        this.diskMaxUsedSpaceRatio = diskMaxUsedSpaceRatio;
         this.mappedFileSize = mappedFileSize;
+        this.transientStorePool = transientStorePool;
+        this.allocateMappedFileService = allocateMappedFileService;
     }
 
     /**
      * 加载存储目录下的所有文件，在broker启动时调用
      */
     public boolean load() {
-        File dir = new File(storePath);
-        File[] files = dir.listFiles();
-        if (files != null) {
-            // 按文件名（起始偏移量）排序
-            Arrays.sort(files);
+        List<File> files = new ArrayList<>();
+        for (String storePath : this.storePaths) {
+            File[] dirFiles = new File(storePath).listFiles();
+            if (dirFiles != null) {
+                files.addAll(Arrays.asList(dirFiles));
+            }
+        }
+        if (!files.isEmpty()) {
+            // 多个目录中的文件按文件名（起始偏移量）排序
+            files.sort((f1, f2) -> f1.getName().compareTo(f2.getName()));
+            for (int i = 1; i < files.size(); i++) {
+                if (files.get(i).getName().equals(files.get(i - 1).getName())) {
+                    log.error("File {} exists in more than one store path: {}, {}", files.get(i).getName(),
+                            files.get(i - 1).getParent(), files.get(i).getParent());
+                    return false;
+                }
+            }
             for (File file : files) {
                 // 必须是数字文件名，且文件大小与配置一致
                 if (file.length() != this.mappedFileSize) {
@@ -69,82 +136,439 @@ public class MappedFileQueue {
      * @return MappedFile实例
      */
     public MappedFile getLastMappedFile() {
-        MappedFile lastMappedFile = null;
+        return getLastMappedFile(0);
+    }
 
-        if (!this.mappedFiles.isEmpty()) {
-            lastMappedFile = this.mappedFiles.get(this.mappedFiles.size() - 1);
+    /**
+     * 获取目录下的最后一个MappedFile，列表为空时创建startOffset所在的文件
+     *
+     * @param startOffset 列表为空时，新文件需要包含的偏移量
+     * @return MappedFile实例
+     */
+    public MappedFile getLastMappedFile(final long startOffset) {
+        MappedFile lastMappedFile = getLastMappedFileOrNull();
+        if (lastMappedFile != null && !lastMappedFile.isFull()) {
+            return lastMappedFile;
         }
 
-        if (lastMappedFile == null || lastMappedFile.isFull()) {
-            lastMappedFile = createNewMappedFile(lastMappedFile);
+        synchronized (this.rollLock) {
+            // 双重检查，其他线程可能已经完成了切换
+            lastMappedFile = getLastMappedFileOrNull();
+            if (lastMappedFile == null) {
+                lastMappedFile = createNewMappedFile(startOffset - startOffset % this.mappedFileSize);
+            } else if (lastMappedFile.isFull()) {
+                lastMappedFile = createNewMappedFile(lastMappedFile.getFileFromOffset() + this.mappedFileSize);
+            }
+            return lastMappedFile;
         }
-        return lastMappedFile;
+    }
 
+    /**
+     * 获取最后一个MappedFile，不会创建新文件
+     */
+    public MappedFile getLastMappedFileOrNull() {
+        // CopyOnWriteArrayList在size()和get()之间可能被修改，这里捕获越界异常
+        while (!this.mappedFiles.isEmpty()) {
+            try {
+                return this.mappedFiles.get(this.mappedFiles.size() - 1);
+            } catch (IndexOutOfBoundsException e) {
+                // 列表在读取过程中被修改，重试
+            }
+        }
+        return null;
     }
 
-    public MappedFile getLastMappedFile(final int needSize) {
-        // 如果期望写入的长度大于单个文件大小，直接返回null，表示无法处理
-        if (needSize > this.mappedFileSize) {
-            log.warn("Message size {} is larger than mapped file size {}, can not be written.",
-                    needSize, this.mappedFileSize);
-            return null;
+    /**
+     * 创建新的mappedFile对象
+     * 有AllocateMappedFileService时由它在后台提前创建，这里只是取出已经准备好的文件
+     *
+     * @param startOffset 新文件的起始偏移量
+     * @return mappedFile对象
+     */
+    private MappedFile createNewMappedFile(final long startOffset) {
+        // 创建失败时把目录标记为不可用，换一个目录重试
+        for (int i = 0; i < this.storePaths.length; i++) {
+            String storePath = this.chooseStorePath(startOffset);
+            String nextFileName = storePath + File.separator + StoreUtil.offsetToFileName(startOffset);
+            String nextNextFileName = this.chooseStorePath(startOffset + this.mappedFileSize) + File.separator
+                    + StoreUtil.offsetToFileName(startOffset + this.mappedFileSize);
+            try {
+                MappedFile mappedFile = null;
+                if (this.allocateMappedFileService != null && this.allocateMappedFileService.isRunning()) {
+                    mappedFile = this.allocateMappedFileService.putRequestAndReturnMappedFile(nextFileName,
+                            nextNextFileName, this.mappedFileSize);
+                }
+                if (mappedFile == null) {
+                    mappedFile = new MappedFile(nextFileName, this.mappedFileSize, this.transientStorePool);
+                }
+                this.plannedPaths.remove(startOffset);
+                this.mappedFiles.add(mappedFile);
+                return mappedFile;
+            } catch (Exception e) {
+                log.error("Error while creating new mappedFile {}, {}", nextFileName, e.getMessage());
+                if (this.storePaths.length > 1) {
+                    log.error("Mark store path {} unavailable", storePath);
+                    this.unavailablePaths.add(storePath);
+                    this.plannedPaths.remove(startOffset);
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * 为起始偏移量为offset的新文件选择目录，同一个文件多次调用返回同一个目录
+     */
+    private String chooseStorePath(final long offset) {
+        if (this.storePaths.length == 1) {
+            return this.storePaths[0];
+        }
+        String planned = this.plannedPaths.get(offset);
+        if (planned != null && !this.unavailablePaths.contains(planned)) {
+            return planned;
         }
 
-        MappedFile lastMappedFile = null;
-        if (!this.mappedFiles.isEmpty()) {
-            lastMappedFile = this.mappedFiles.get(this.mappedFiles.size() - 1);
+        List<String> candidates = new ArrayList<>();
+        List<String> available = new ArrayList<>();
+        for (String storePath : this.storePaths) {
+            if (this.unavailablePaths.contains(storePath)) {
+                continue;
+            }
+            available.add(storePath);
+            if (StoreUtil.getDiskPartitionSpaceUsedPercent(storePath) <= this.diskMaxUsedSpaceRatio) {
+                candidates.add(storePath);
+            }
+        }
+        if (candidates.isEmpty()) {
+            // 所有磁盘都超过了使用率上限，由清理服务释放空间，这里仍然要保证能写入
+            candidates = available.isEmpty() ? Arrays.asList(this.storePaths) : available;
         }
 
-        // 如果没有文件，或者最后一个文件剩余空间不足
-        if (lastMappedFile == null ||
-                lastMappedFile.getFileSize() - lastMappedFile.getWrotePosition() < needSize) {
-            return createNewMappedFile(lastMappedFile);
+        String storePath;
+        if (this.storePathPolicy == StorePathPolicy.MOST_FREE_SPACE) {
+            storePath = candidates.get(0);
+            for (String candidate : candidates) {
+                if (new File(candidate).getUsableSpace() > new File(storePath).getUsableSpace()) {
+                    storePath = candidate;
+                }
+            }
+        } else {
+            storePath = candidates.get((int) ((offset / this.mappedFileSize) % candidates.size()));
         }
+        this.plannedPaths.put(offset, storePath);
+        return storePath;
+    }
 
-        return lastMappedFile;
+
+    /**
+     * 根据全局物理偏移量查找对应的MappedFile
+     *
+     * @param offset 全局物理偏移量
+     * @return 对应的MappedFile，如果找不到则返回null
+     */
+    public MappedFile findMappedFileByOffset(final long offset) {
+        return findMappedFileByOffset(offset, false);
     }
 
     /**
-     * 创建新的mappedFile对象
-     * rocketMq中是专门有一个线程负责创建新mappedFile实例
+     * 根据全局物理偏移量查找对应的MappedFile。
+     * 文件大小固定且文件名就是起始偏移量，所以直接用 (offset - 第一个文件的起始偏移量) / 文件大小 计算下标，
+     * 不需要遍历整个列表。头部文件被并发删除时下标可能失效，此时退化为遍历查找。
      *
-     * @param oldMappedFile 当前目录下已存在的最新的mappedFile
-     * @return mappedFile对象
+     * @param offset                全局物理偏移量
+     * @param returnFirstOnNotFound 找不到时是否返回第一个文件
+     * @return 对应的MappedFile
      */
-    private MappedFile createNewMappedFile(MappedFile oldMappedFile) {
-        long startOffset = 0;
-        if (oldMappedFile != null) {
-            startOffset = oldMappedFile.getFileFromOffset() + this.mappedFileSize;
+    public MappedFile findMappedFileByOffset(final long offset, final boolean returnFirstOnNotFound) {
+        MappedFile firstMappedFile = this.getFirstMappedFile();
+        MappedFile lastMappedFile = this.getLastMappedFileOrNull();
+        if (firstMappedFile == null || lastMappedFile == null) {
+            return null;
+        }
+
+        if (offset >= firstMappedFile.getFileFromOffset()
+                && offset < lastMappedFile.getFileFromOffset() + this.mappedFileSize) {
+            int index = (int) ((offset / this.mappedFileSize)
+                    - (firstMappedFile.getFileFromOffset() / this.mappedFileSize));
+            MappedFile targetFile = null;
+            try {
+                targetFile = this.mappedFiles.get(index);
+            } catch (IndexOutOfBoundsException e) {
+                // 列表在读取过程中被修改，下面遍历查找
+            }
+            if (targetFile != null && offset >= targetFile.getFileFromOffset()
+                    && offset < targetFile.getFileFromOffset() + this.mappedFileSize) {
+                return targetFile;
+            }
+
+            for (MappedFile mappedFile : this.mappedFiles) {
+                if (offset >= mappedFile.getFileFromOffset()
+                        && offset < mappedFile.getFileFromOffset() + this.mappedFileSize) {
+                    return mappedFile;
+                }
+            }
         }
 
-        String nextFileName = this.storePath + File.separator + StoreUtil.offsetToFileName(startOffset);
-        try {
-            MappedFile mappedFile = new MappedFile(nextFileName, this.mappedFileSize);
-            this.mappedFiles.add(mappedFile);
-            return mappedFile;
-        } catch (Exception e) {
-            log.error("Error while creating new mappedFile {}, {}", nextFileName, e.getMessage());
+        if (returnFirstOnNotFound) {
+            return firstMappedFile;
         }
         return null;
     }
 
+    /**
+     * 从当前刷盘位置所在的文件开始刷盘，每次只处理一个文件
+     *
+     * @param flushLeastPages 至少积累多少个脏页才刷盘
+     * @return 刷盘位置没有变化时返回true
+     */
+    public synchronized boolean flush(final int flushLeastPages) {
+        boolean result = true;
+        MappedFile mappedFile = this.findMappedFileByOffset(this.flushedWhere, this.flushedWhere == 0);
+        if (mappedFile != null) {
+            int offset = mappedFile.flush(flushLeastPages);
+            long where = mappedFile.getFileFromOffset() + offset;
+            result = where == this.flushedWhere;
+            this.flushedWhere = where;
+            if (offset == mappedFile.getFileSize()) {
+                // 文件已经写满并落盘，不再需要锁定在内存中
+                mappedFile.munlock();
+            }
+        }
+        return result;
+    }
 
     /**
-     * 根据全局物理偏移量查找对应的MappedFile
+     * 从当前提交位置所在的文件开始，把writeBuffer中的数据提交到FileChannel，每次只处理一个文件
      *
-     * @param offset 全局物理偏移量
-     * @return 对应的MappedFile，如果找不到则返回null
+     * @param commitLeastPages 至少积累多少个页才提交
+     * @return 提交位置没有变化时返回true
      */
-    public MappedFile findMappedFileByOffset(final long offset) {
+    public synchronized boolean commit(final int commitLeastPages) {
+        boolean result = true;
+        MappedFile mappedFile = this.findMappedFileByOffset(this.committedWhere, this.committedWhere == 0);
+        if (mappedFile != null) {
+            int offset = mappedFile.commit(commitLeastPages);
+            long where = mappedFile.getFileFromOffset() + offset;
+            result = where == this.committedWhere;
+            this.committedWhere = where;
+        }
+        return result;
+    }
+
+    /**
+     * 删除offset之后的数据：offset所在的文件把写入位置回退到offset并清零之后的数据，之后的文件直接删除
+     *
+     * @param offset 有效数据的末尾
+     */
+    public void truncateDirtyFiles(final long offset) {
+        List<MappedFile> willRemoveFiles = new ArrayList<>();
         for (MappedFile mappedFile : this.mappedFiles) {
-            if (offset >= mappedFile.getFileFromOffset() &&
-                    offset < mappedFile.getFileFromOffset() + this.mappedFileSize) {
-                return mappedFile;
+            long fileTailOffset = mappedFile.getFileFromOffset() + this.mappedFileSize;
+            if (fileTailOffset > offset) {
+                if (offset >= mappedFile.getFileFromOffset()) {
+                    mappedFile.truncate((int) (offset % this.mappedFileSize));
+                } else {
+                    mappedFile.deleteFile();
+                    willRemoveFiles.add(mappedFile);
+                }
+            }
+        }
+        this.mappedFiles.removeAll(willRemoveFiles);
+    }
+
+    /**
+     * 从第一个文件开始删除过期的文件，最后一个文件正在写入，不会被删除。
+     * 文件必须按顺序删除，遇到没有过期或者还被读取方持有的文件就停止，下次检查时再重试
+     *
+     * @param expiredTime         文件保留时间，单位毫秒
+     * @param deleteFilesInterval 连续删除两个文件之间的间隔，单位毫秒
+     * @param intervalForcibly    文件还被持有时，等待多久后强制释放，单位毫秒
+     * @param cleanImmediately    是否不论是否过期都删除，磁盘空间不足时使用
+     * @param deleteFileBatchMax  本次最多删除的文件数
+     * @return 删除的文件数
+     */
+    public int deleteExpiredFileByTime(final long expiredTime, final int deleteFilesInterval,
+            final long intervalForcibly, final boolean cleanImmediately, final int deleteFileBatchMax) {
+        Object[] mfs = this.mappedFiles.toArray();
+        if (mfs.length <= 1) {
+            return 0;
+        }
+
+        List<MappedFile> files = new ArrayList<>();
+        for (int i = 0; i < mfs.length - 1 && files.size() < deleteFileBatchMax; i++) {
+            MappedFile mappedFile = (MappedFile) mfs[i];
+            long liveMaxTimestamp = mappedFile.getLastModifiedTimestamp() + expiredTime;
+            if (System.currentTimeMillis() < liveMaxTimestamp && !cleanImmediately) {
+                break;
+            }
+            if (!mappedFile.deleteFile(intervalForcibly)) {
+                break;
+            }
+
+            files.add(mappedFile);
+            if (deleteFilesInterval > 0 && i + 1 < mfs.length - 1 && files.size() < deleteFileBatchMax) {
+                try {
+                    Thread.sleep(deleteFilesInterval);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    break;
+                }
+            }
+        }
+
+        // 与replaceMappedFile互斥，避免替换时下标错位
+        synchronized (this.mappedFiles) {
+            this.mappedFiles.removeAll(files);
+        }
+        return files.size();
+    }
+
+    /**
+     * 删除ConsumeQueue中所有索引都指向offset之前的文件，最后一个文件不会被删除
+     *
+     * @param offset   CommitLog中的最小物理偏移量
+     * @param unitSize 每条索引的长度
+     * @return 删除的文件数
+     */
+    public int deleteExpiredFileByOffset(final long offset, final int unitSize) {
+        Object[] mfs = this.mappedFiles.toArray();
+        if (mfs.length <= 1) {
+            return 0;
+        }
+
+        List<MappedFile> files = new ArrayList<>();
+        for (int i = 0; i < mfs.length - 1; i++) {
+            MappedFile mappedFile = (MappedFile) mfs[i];
+            boolean destroy;
+            SelectMappedBufferResult result = mappedFile.selectMappedBuffer(this.mappedFileSize - unitSize);
+            if (result != null) {
+                // 文件中最后一条索引指向的物理偏移量
+                long maxOffsetInLogicQueue;
+                try {
+                    maxOffsetInLogicQueue = result.getByteBuffer().getLong();
+                } finally {
+                    result.release();
+                }
+                destroy = maxOffsetInLogicQueue < offset;
+            } else if (!mappedFile.isAvailable()) {
+                // 上次已经关闭但还没有删除
+                destroy = true;
+            } else {
+                log.warn("This mapped file {} is not full, skip deleting", mappedFile.getFileName());
+                break;
+            }
+
+            if (!destroy || !mappedFile.deleteFile(1000 * 60)) {
+                break;
+            }
+            files.add(mappedFile);
+        }
+
+        this.mappedFiles.removeAll(files);
+        return files.size();
+    }
+
+    /**
+     * 用replacement替换列表中的mappedFile，两者的起始偏移量必须相同，用于把冷文件替换为分层存储中的文件
+     *
+     * @return mappedFile已经不在列表中（例如已经过期删除）时返回false
+     */
+    public boolean replaceMappedFile(final MappedFile mappedFile, final MappedFile replacement) {
+        synchronized (this.mappedFiles) {
+            int index = this.mappedFiles.indexOf(mappedFile);
+            if (index < 0) {
+                return false;
+            }
+            this.mappedFiles.set(index, replacement);
+            return true;
+        }
+    }
+
+    /**
+     * 把起始偏移量小于第一个本地文件的文件按顺序加到列表头部，启动时用于加载分层存储中的文件
+     *
+     * @param files 按起始偏移量升序排列的文件
+     * @return 加入的文件数
+     */
+    public int prependMappedFiles(final List<MappedFile> files) {
+        synchronized (this.mappedFiles) {
+            MappedFile firstMappedFile = getFirstMappedFile();
+            List<MappedFile> prepend = new ArrayList<>();
+            for (MappedFile mappedFile : files) {
+                if (firstMappedFile == null || mappedFile.getFileFromOffset() < firstMappedFile.getFileFromOffset()) {
+                    prepend.add(mappedFile);
+                }
+            }
+            this.mappedFiles.addAll(0, prepend);
+            return prepend.size();
+        }
+    }
+
+    /**
+     * 获取第一个MappedFile，列表为空时返回null
+     */
+    public MappedFile getFirstMappedFile() {
+        // 与getLastMappedFileOrNull一样，文件可能在读取过程中被删除
+        while (!this.mappedFiles.isEmpty()) {
+            try {
+                return this.mappedFiles.get(0);
+            } catch (IndexOutOfBoundsException e) {
+                // 列表在读取过程中被修改，重试
             }
         }
         return null;
     }
 
+    /**
+     * 当前最小的物理偏移量，即第一个文件的起始偏移量
+     */
+    public long getMinOffset() {
+        MappedFile mappedFile = getFirstMappedFile();
+        if (mappedFile != null) {
+            return mappedFile.getFileFromOffset();
+        }
+        return -1;
+    }
+
+    /**
+     * 当前最大可读的物理偏移量
+     */
+    public long getMaxOffset() {
+        MappedFile mappedFile = getLastMappedFileOrNull();
+        if (mappedFile != null) {
+            return mappedFile.getFileFromOffset() + mappedFile.getReadPosition();
+        }
+        return 0;
+    }
+
+    public List<MappedFile> getMappedFiles() {
+        return mappedFiles;
+    }
+
+    public int getMappedFileSize() {
+        return mappedFileSize;
+    }
+
+    public String[] getStorePaths() {
+        return storePaths;
+    }
+
+    public long getCommittedWhere() {
+        return committedWhere;
+    }
+
+    public void setCommittedWhere(long committedWhere) {
+        this.committedWhere = committedWhere;
+    }
+
+    public long getFlushedWhere() {
+        return flushedWhere;
+    }
+
+    public void setFlushedWhere(long flushedWhere) {
+        this.flushedWhere = flushedWhere;
+    }
+
     /**
      * 销毁所有文件
      */
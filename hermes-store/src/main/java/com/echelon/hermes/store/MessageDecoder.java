@@ -0,0 +1,314 @@
+package com.echelon.hermes.store;
+
+import com.echelon.hermes.common.compression.CompressionType;
+import com.echelon.hermes.common.compression.CompressorFactory;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.zip.CRC32C;
+
+/**
+ * 描述：CommitLog中消息记录的二进制格式定义及编解码工具。
+ * <pre>
+ * 记录格式（定长头部 + 变长部分）：
+ * TOTALSIZE       4  消息总长度
+ * MAGICCODE       4  魔数，同时标识格式版本
+ * RECORDCRC       4  从QUEUEID开始到记录末尾的CRC32C
+ * QUEUEID         4
+ * SYSFLAG         4
+ * QUEUEOFFSET     8
+ * PHYSICALOFFSET  8
+ * BORNTIMESTAMP   8
+ * STORETIMESTAMP  8
+ * TOPIC           1 + 主题长度
+ * PROPERTIES      2 + 属性块长度
+ * BODY            4 + 消息体长度
+ * </pre>
+ * 文件末尾剩余空间不足时，写入一个 TOTALSIZE + BLANK_MAGIC_CODE 的结束标记；
+ * 无锁写入时已经预留的区间没能写入消息，则写入一个 TOTALSIZE + SKIP_MAGIC_CODE 的跳过记录，读取时按TOTALSIZE跳过。
+ * 批量消息的BODY由多条消息编码而成：[sysFlag(4) + bodyLength(4) + body + propertiesLength(2) + properties]*，
+ * 每条消息保留自己的sysFlag，已经压缩过的消息体按原样放入批量；压缩时整个BODY再一起压缩，SYSFLAG的定义见MessageSysFlag。
+ *
+ * @author jorelwang
+ * @create 2026-10-16 09:30
+ */
+public class MessageDecoder {
+
+    // 消息魔数，"HRM1"，格式变化时需要升级版本
+    public static final int MESSAGE_MAGIC_CODE = 0x48524D31;
+    // 文件结束标记的魔数
+    public static final int BLANK_MAGIC_CODE = 0x48524D00;
+    // 跳过记录的魔数，记录中没有消息，不分发也不返回给消费者
+    public static final int SKIP_MAGIC_CODE = 0x48524DFF;
+
+    // 文件末尾至少要预留的空间，用于写入结束标记（TOTALSIZE + MAGICCODE）
+    public static final int END_FILE_MIN_BLANK_LENGTH = 4 + 4;
+
+    // 定长头部中各字段的位置
+    public static final int TOTAL_SIZE_POSITION = 0;
+    public static final int MAGIC_CODE_POSITION = 4;
+    public static final int RECORD_CRC_POSITION = 8;
+    public static final int QUEUE_ID_POSITION = 12;
+    public static final int SYS_FLAG_POSITION = 16;
+    public static final int QUEUE_OFFSET_POSITION = 20;
+    public static final int PHYSICAL_OFFSET_POSITION = 28;
+    public static final int BORN_TIMESTAMP_POSITION = 36;
+    public static final int STORE_TIMESTAMP_POSITION = 44;
+    // 定长头部的长度，变长部分从这里开始
+    public static final int MESSAGE_HEADER_LENGTH = 52;
+
+    // 主题长度用1个字节表示
+    public static final int MAX_TOPIC_LENGTH = Byte.MAX_VALUE;
+    // 属性块长度用2个字节表示
+    public static final int MAX_PROPERTIES_LENGTH = Short.MAX_VALUE;
+
+    private MessageDecoder() {
+    }
+
+    /**
+     * 计算一条消息编码后的总长度
+     */
+    public static int calMsgLength(final int topicLength, final int propertiesLength, final int bodyLength) {
+        return MESSAGE_HEADER_LENGTH
+                + 1 + topicLength
+                + 2 + propertiesLength
+                + 4 + bodyLength;
+    }
+
+    /**
+     * 计算从start开始、长度为totalSize的记录的CRC32C，覆盖从QUEUEID开始到记录末尾的部分。
+     * 在duplicate上计算，不影响byteBuffer的position和limit
+     */
+    public static int calRecordCrc(final ByteBuffer byteBuffer, final int start, final int totalSize) {
+        ByteBuffer crcBuffer = byteBuffer.duplicate();
+        crcBuffer.limit(start + totalSize);
+        crcBuffer.position(start + QUEUE_ID_POSITION);
+        CRC32C crc32c = new CRC32C();
+        crc32c.update(crcBuffer);
+        return (int) crc32c.getValue();
+    }
+
+    /**
+     * 校验从start开始的一条记录的CRC，不影响byteBuffer的position和limit
+     *
+     * @return 长度合法且CRC一致时返回true
+     */
+    public static boolean verifyRecordCrc(final ByteBuffer byteBuffer, final int start) {
+        if (byteBuffer.limit() - start < MESSAGE_HEADER_LENGTH) {
+            return false;
+        }
+        final int totalSize = byteBuffer.getInt(start + TOTAL_SIZE_POSITION);
+        if (totalSize < MESSAGE_HEADER_LENGTH || totalSize > byteBuffer.limit() - start) {
+            return false;
+        }
+        return byteBuffer.getInt(start + RECORD_CRC_POSITION) == calRecordCrc(byteBuffer, start, totalSize);
+    }
+
+    /**
+     * 由物理偏移量生成消息ID，16位十六进制字符串
+     */
+    public static String createMessageId(final long physicalOffset) {
+        return String.format("%016X", physicalOffset);
+    }
+
+    /**
+     * 从byteBuffer的当前位置解码一条消息，解码完成后position位于该消息末尾。
+     * 数据直接从映射缓冲区中读取，不再整体拷贝到中间数组。
+     *
+     * @param byteBuffer 消息所在的缓冲区
+     * @param readBody   是否读取消息体
+     * @return 消息对象，如果不是一条有效消息则返回null
+     */
+    public static MessageExt decode(final ByteBuffer byteBuffer, final boolean readBody) {
+        int start = byteBuffer.position();
+        int totalSize = byteBuffer.getInt();
+        int magicCode = byteBuffer.getInt();
+        if (magicCode != MESSAGE_MAGIC_CODE) {
+            return null;
+        }
+
+        MessageExt msg = new MessageExt();
+        // 跳过CRC
+        byteBuffer.getInt();
+        msg.setQueueId(byteBuffer.getInt());
+        msg.setSysFlag(byteBuffer.getInt());
+        msg.setQueueOffset(byteBuffer.getLong());
+        msg.setCommitLogOffset(byteBuffer.getLong());
+        msg.setBornTimestamp(byteBuffer.getLong());
+        msg.setStoreTimestamp(byteBuffer.getLong());
+
+        msg.setTopic(readString(byteBuffer, byteBuffer.get()));
+
+        msg.setPropertiesData(readBytes(byteBuffer, byteBuffer.getShort()));
+
+        int bodyLength = byteBuffer.getInt();
+        if (bodyLength > 0) {
+            if (readBody) {
+                byte[] body = new byte[bodyLength];
+                byteBuffer.get(body);
+                msg.setBody(body);
+            }
+        }
+
+        msg.setStoreSize(totalSize);
+        msg.setMsgId(createMessageId(msg.getCommitLogOffset()));
+        byteBuffer.position(start + totalSize);
+        return msg;
+    }
+
+    /**
+     * 压缩消息体并设置SYSFLAG，消息体小于threshold、已经压缩过或压缩后没有变小时保持原样
+     *
+     * @return 是否压缩了消息体
+     */
+    public static boolean compressBody(final MessageExt msg, final CompressionType type, final int level,
+            final int threshold) throws IOException {
+        final byte[] body = msg.getBody();
+        if (body == null || body.length < threshold || MessageSysFlag.isCompressed(msg.getSysFlag())) {
+            return false;
+        }
+        byte[] compressed = CompressorFactory.getCompressor(type).compress(body, level);
+        if (compressed.length >= body.length) {
+            return false;
+        }
+        msg.setBody(compressed);
+        msg.setSysFlag(MessageSysFlag.setCompressed(msg.getSysFlag(), type));
+        return true;
+    }
+
+    /**
+     * 解压消息体并清除压缩标记，未压缩的消息保持原样。
+     * 存储和Broker始终按压缩后的格式传递消息，只有消费方真正用到消息体时才解压
+     */
+    public static void decompressBody(final MessageExt msg) throws IOException {
+        if (!MessageSysFlag.isCompressed(msg.getSysFlag())) {
+            return;
+        }
+        if (msg.getBody() != null) {
+            CompressionType type = MessageSysFlag.getCompressionType(msg.getSysFlag());
+            msg.setBody(CompressorFactory.getCompressor(type).decompress(msg.getBody()));
+        }
+        msg.setSysFlag(MessageSysFlag.clearCompressed(msg.getSysFlag()));
+    }
+
+    /**
+     * 把同一主题的多条消息编码为一条批量消息，主题、队列和生产时间取第一条消息的值。
+     * 各消息的业务键合并到批量消息上，使批量消息能被IndexFile按键查到
+     */
+    public static MessageExt encodeBatch(final List<MessageExt> messages) {
+        if (messages == null || messages.isEmpty()) {
+            throw new IllegalArgumentException("Batch messages can not be empty");
+        }
+
+        final MessageExt first = messages.get(0);
+        int length = 0;
+        byte[][] propertiesData = new byte[messages.size()][];
+        Set<String> keys = new LinkedHashSet<>();
+        for (int i = 0; i < messages.size(); i++) {
+            MessageExt msg = messages.get(i);
+            if (!first.getTopic().equals(msg.getTopic())) {
+                throw new IllegalArgumentException("Batch messages must have the same topic");
+            }
+            if (MessageSysFlag.isBatch(msg.getSysFlag())) {
+                throw new IllegalArgumentException("Nested batch is not supported");
+            }
+            propertiesData[i] = msg.getPropertiesData();
+            if (propertiesData[i].length > MAX_PROPERTIES_LENGTH) {
+                throw new IllegalArgumentException("Properties too long, length: " + propertiesData[i].length);
+            }
+            if (msg.getKeys() != null) {
+                Collections.addAll(keys, msg.getKeys().split(MessageExt.KEY_SEPARATOR));
+            }
+            final int bodyLength = msg.getBody() == null ? 0 : msg.getBody().length;
+            length += 4 + 4 + bodyLength + 2 + propertiesData[i].length;
+        }
+
+        ByteBuffer buffer = ByteBuffer.allocate(length);
+        for (int i = 0; i < messages.size(); i++) {
+            byte[] body = messages.get(i).getBody();
+            // 消息体可能已经被compressBody压缩，解码时按各自的sysFlag解压
+            buffer.putInt(messages.get(i).getSysFlag());
+            buffer.putInt(body == null ? 0 : body.length);
+            if (body != null) {
+                buffer.put(body);
+            }
+            buffer.putShort((short) propertiesData[i].length);
+            buffer.put(propertiesData[i]);
+        }
+
+        MessageExt batch = new MessageExt();
+        batch.setTopic(first.getTopic());
+        batch.setQueueId(first.getQueueId());
+        batch.setBornTimestamp(first.getBornTimestamp());
+        batch.setSysFlag(MessageSysFlag.BATCH_FLAG);
+        batch.setBody(buffer.array());
+        if (!keys.isEmpty()) {
+            batch.setKeys(String.join(MessageExt.KEY_SEPARATOR, keys));
+        }
+        return batch;
+    }
+
+    /**
+     * 把一条记录还原为消息列表，压缩过的消息体先解压，批量中单独压缩过的消息再按各自的sysFlag解压；
+     * 不是批量消息时返回只有它自己的列表。
+     * 批量中的消息共享批量消息的主题、队列、偏移量和时间戳
+     */
+    public static List<MessageExt> decodeBatch(final MessageExt msg) throws IOException {
+        decompressBody(msg);
+        if (!MessageSysFlag.isBatch(msg.getSysFlag())) {
+            return Collections.singletonList(msg);
+        }
+
+        List<MessageExt> messages = new ArrayList<>();
+        if (msg.getBody() == null) {
+            return messages;
+        }
+        ByteBuffer buffer = ByteBuffer.wrap(msg.getBody());
+        while (buffer.hasRemaining()) {
+            MessageExt inner = new MessageExt();
+            inner.setMsgId(msg.getMsgId());
+            inner.setTopic(msg.getTopic());
+            inner.setQueueId(msg.getQueueId());
+            inner.setQueueOffset(msg.getQueueOffset());
+            inner.setCommitLogOffset(msg.getCommitLogOffset());
+            inner.setBornTimestamp(msg.getBornTimestamp());
+            inner.setStoreTimestamp(msg.getStoreTimestamp());
+
+            inner.setSysFlag(buffer.getInt());
+            byte[] body = new byte[buffer.getInt()];
+            buffer.get(body);
+            inner.setBody(body);
+            inner.setPropertiesData(readBytes(buffer, buffer.getShort()));
+            decompressBody(inner);
+            messages.add(inner);
+        }
+        return messages;
+    }
+
+    /**
+     * 属性块原样拷贝出来，读取属性时再按需解析
+     */
+    private static byte[] readBytes(final ByteBuffer byteBuffer, final int length) {
+        if (length <= 0) {
+            return null;
+        }
+        byte[] data = new byte[length];
+        byteBuffer.get(data);
+        return data;
+    }
+
+    private static String readString(final ByteBuffer byteBuffer, final int length) {
+        if (length <= 0) {
+            return "";
+        }
+        byte[] data = new byte[length];
+        byteBuffer.get(data);
+        return new String(data, StandardCharsets.UTF_8);
+    }
+
+}
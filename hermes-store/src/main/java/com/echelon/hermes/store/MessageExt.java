@@ -1,7 +1,6 @@
 package com.echelon.hermes.store;
 
-import java.io.Serializable;
-import java.util.HashMap;
+import com.echelon.hermes.common.message.MessageProperties;
 import java.util.Map;
 
 /**
@@ -10,9 +9,16 @@ import java.util.Map;
  * @author jorelwang
  * @create 2025-09-21 00:29
  */
-public class MessageExt implements Serializable {
+public class MessageExt {
 
-    private static final long serialVersionUID = -800418382728218903L;
+    // 消息标签对应的属性名，ConsumeQueue中保存标签的哈希值
+    public static final String PROPERTY_TAGS = "TAGS";
+
+    // 消息业务键对应的属性名，多个键用空格分隔，IndexFile按键建立索引
+    public static final String PROPERTY_KEYS = "KEYS";
+
+    // 多个业务键之间的分隔符
+    public static final String KEY_SEPARATOR = " ";
 
     // 消息的全局唯一ID
     private String msgId;
@@ -20,11 +26,17 @@ public class MessageExt implements Serializable {
     // 消息主题
     private String topic;
 
+    // 消息所在的队列ID
+    private int queueId;
+
+    // 系统标记位
+    private int sysFlag;
+
     // 消息体
     private byte[] body;
 
-    // 用户自定义属性
-    private Map<String, String> properties;
+    // 用户自定义属性，以编码后的属性块保存，没有属性时为null
+    private MessageProperties properties;
 
     // 消息在客户端的创建时间戳
     private long bornTimestamp;
@@ -35,9 +47,11 @@ public class MessageExt implements Serializable {
     // 消息在commitLog中的物理偏移量
     private long commitLogOffset;
 
-    public MessageExt() {
-        this.properties = new HashMap<>();
-    }
+    // 消息在所属队列中的逻辑偏移量
+    private long queueOffset;
+
+    // 消息在commitLog中占用的字节数
+    private int storeSize;
 
     // --- Getters and Setters ---
     public String getMsgId() {
@@ -56,6 +70,22 @@ public class MessageExt implements Serializable {
         this.topic = topic;
     }
 
+    public int getQueueId() {
+        return queueId;
+    }
+
+    public void setQueueId(int queueId) {
+        this.queueId = queueId;
+    }
+
+    public int getSysFlag() {
+        return sysFlag;
+    }
+
+    public void setSysFlag(int sysFlag) {
+        this.sysFlag = sysFlag;
+    }
+
     public byte[] getBody() {
         return body;
     }
@@ -64,21 +94,66 @@ public class MessageExt implements Serializable {
         this.body = body;
     }
 
+    /**
+     * 以Map形式返回所有属性，第一次调用时解码属性块，对返回的Map的修改会写回消息。
+     * 只读取个别属性时应该使用getProperty
+     */
     public Map<String, String> getProperties() {
-        return properties;
+        if (this.properties == null) {
+            this.properties = new MessageProperties();
+        }
+        return this.properties.toMap();
     }
 
     public void setProperties(Map<String, String> properties) {
-        this.properties = properties;
+        this.properties = properties == null ? null : MessageProperties.of(properties);
+    }
+
+    /**
+     * 读取一个属性，直接在属性块上查找，不解码为Map
+     */
+    public String getProperty(String key) {
+        return this.properties == null ? null : this.properties.get(key);
     }
 
     public void putProperty(String key, String value) {
         if (this.properties == null) {
-            this.properties = new HashMap<>();
+            this.properties = new MessageProperties();
         }
         this.properties.put(key, value);
     }
 
+    /**
+     * 编码后的属性块，没有属性时返回空数组
+     */
+    public byte[] getPropertiesData() {
+        return this.properties == null ? new byte[0] : this.properties.encode();
+    }
+
+    /**
+     * 设置编码后的属性块，不拷贝数据
+     */
+    public void setPropertiesData(byte[] propertiesData) {
+        this.properties = propertiesData == null || propertiesData.length == 0
+                ? null : MessageProperties.wrap(propertiesData);
+    }
+
+    public String getTags() {
+        return getProperty(PROPERTY_TAGS);
+    }
+
+    public void setTags(String tags) {
+        putProperty(PROPERTY_TAGS, tags);
+    }
+
+    public String getKeys() {
+        return getProperty(PROPERTY_KEYS);
+    }
+
+    public void setKeys(String keys) {
+        putProperty(PROPERTY_KEYS, keys);
+    }
+
     public long getBornTimestamp() {
         return bornTimestamp;
     }
@@ -103,11 +178,29 @@ public class MessageExt implements Serializable {
         this.commitLogOffset = commitLogOffset;
     }
 
+    public long getQueueOffset() {
+        return queueOffset;
+    }
+
+    public void setQueueOffset(long queueOffset) {
+        this.queueOffset = queueOffset;
+    }
+
+    public int getStoreSize() {
+        return storeSize;
+    }
+
+    public void setStoreSize(int storeSize) {
+        this.storeSize = storeSize;
+    }
+
     @Override
     public String toString() {
         return "MessageExt{" +
                 "msgId='" + msgId + '\'' +
                 ", topic='" + topic + '\'' +
+                ", queueId=" + queueId +
+                ", queueOffset=" + queueOffset +
                 ", commitLogOffset=" + commitLogOffset +
                 '}';
     }
@@ -0,0 +1,628 @@
+package com.echelon.hermes.store;
+
+import com.echelon.hermes.common.compression.CompressionType;
+import java.io.File;
+
+/**
+ * 描述：消息存储相关的配置项
+ *
+ * @author jorelwang
+ * @create 2026-10-16 10:05
+ */
+public class MessageStoreConfig {
+
+    // CommitLog存储路径，多个目录（通常在不同的磁盘上）用分号分隔
+    private String storePathCommitLog = System.getProperty("user.home") + File.separator + "store"
+            + File.separator + "commitlog";
+
+    // CommitLog单个文件大小，默认1GB
+    private int mappedFileSizeCommitLog = 1024 * 1024 * 1024;
+
+    // 配置了多个CommitLog存储目录时，新文件放在哪个目录
+    private StorePathPolicy storePathPolicy = StorePathPolicy.ROUND_ROBIN;
+
+    // ConsumeQueue存储路径
+    private String storePathConsumeQueue = System.getProperty("user.home") + File.separator + "store"
+            + File.separator + "consumequeue";
+
+    // 存储检查点文件的路径
+    private String storeCheckpoint = System.getProperty("user.home") + File.separator + "store"
+            + File.separator + "checkpoint";
+
+    // IndexFile存储路径
+    private String storePathIndex = System.getProperty("user.home") + File.separator + "store"
+            + File.separator + "index";
+
+    // 是否按消息的业务键建立索引
+    private boolean messageIndexEnable = true;
+
+    // 单个IndexFile的哈希槽数量
+    private int maxHashSlotNum = 5000000;
+
+    // 单个IndexFile最多保存的索引条数
+    private int maxIndexNum = 5000000 * 4;
+
+    // ConsumeQueue单个文件大小，默认保存30万条索引
+    private int mappedFileSizeConsumeQueue = 300000 * ConsumeQueue.CQ_STORE_UNIT_SIZE;
+
+    // ConsumeQueue刷盘的间隔，单位毫秒
+    private int flushIntervalConsumeQueue = 1000;
+
+    // ConsumeQueue至少积累多少个脏页才刷盘
+    private int flushConsumeQueueLeastPages = 2;
+
+    // ConsumeQueue彻底刷盘（忽略脏页数量）的间隔，单位毫秒
+    private int flushConsumeQueueThoroughInterval = 1000 * 60;
+
+    // 文件保留时间，超过后被删除，单位小时
+    private int fileReservedTime = 72;
+
+    // 磁盘使用率超过该比例时，不论是否过期都从最早的文件开始删除，单位百分比
+    private int diskMaxUsedSpaceRatio = 75;
+
+    // 检查是否需要删除文件的间隔，单位毫秒
+    private int cleanResourceInterval = 10000;
+
+    // 连续删除两个CommitLog文件之间的间隔，避免集中删除造成IO抖动，单位毫秒
+    private int deleteCommitLogFilesInterval = 100;
+
+    // 连续删除两个ConsumeQueue文件之间的间隔，单位毫秒
+    private int deleteConsumeQueueFilesInterval = 100;
+
+    // 每次检查最多删除的文件数
+    private int deleteFileBatchMax = 10;
+
+    // 文件还被读取方持有时，等待多久后强制释放，单位毫秒
+    private int destroyMappedFileIntervalForcibly = 1000 * 120;
+
+    // 读取消息时校验记录CRC的策略
+    private CrcVerifyMode crcVerifyMode = CrcVerifyMode.RECOVERY_ONLY;
+
+    // 抽样校验时，平均每多少次读取校验一次
+    private int crcVerifySampleRate = 64;
+
+    // 是否在写入时压缩消息体，生产者已经压缩过的消息不会再次压缩
+    private boolean compressMessageBodyEnable = false;
+
+    // 消息体超过多少字节才压缩，太小的消息压缩收益低
+    private int compressMsgBodyOverHowmuch = 1024 * 4;
+
+    // 消息体的压缩算法
+    private CompressionType compressionType = CompressionType.LZ4;
+
+    // 压缩级别，LZ4会忽略
+    private int compressionLevel = 3;
+
+    // 是否把已经写满的冷CommitLog文件卸载到分层存储，卸载后删除本地文件
+    private boolean tieredStoreEnable = false;
+
+    // TieredStorage的实现类，需要有一个参数为MessageStoreConfig的公开构造函数
+    private String tieredStorageClass = LocalDirTieredStorage.class.getName();
+
+    // LocalDirTieredStorage的存储目录
+    private String tieredStorePath = System.getProperty("user.home") + File.separator + "store"
+            + File.separator + "tiered";
+
+    // 最新的多少个CommitLog文件始终保留在本地，启动恢复最多扫描最后三个文件
+    private int tieredHotFileNum = 3;
+
+    // 检查冷文件的间隔，单位毫秒
+    private int tieredStoreInterval = 10000;
+
+    // 分层存储读缓存的块大小
+    private int tieredBlockSize = 1024 * 1024;
+
+    // 读缓存未命中时一次预读的块数
+    private int tieredReadAheadBlocks = 4;
+
+    // 读缓存最多缓存的块数
+    private int tieredBlockCacheMaxBlocks = 256;
+
+    // 是否开启热消息缓存，把最近追加的消息拷贝到堆内存中，尾部读取时不再访问映射文件
+    private boolean hotMessageCacheEnable = false;
+
+    // 热消息缓存的容量，单位字节。缓存在堆内，这部分内存计入-Xmx，开启时-Xmx需要在原来的基础上加上这个值
+    private long hotMessageCacheMaxBytes = 256L * 1024 * 1024;
+
+    // 热消息缓存的淘汰策略
+    private HotCacheEvictPolicy hotMessageCacheEvictPolicy = HotCacheEvictPolicy.LRU;
+
+    // 是否开启组提交：并发的写入请求排队，由抢到锁的线程一次性批量写入
+    private boolean putMessageGroupCommitEnable = false;
+
+    // 组提交时，leader线程单次最多处理的请求数，避免leader长时间持有锁
+    private int putMessageGroupCommitMaxBatch = 256;
+
+    // 是否开启无锁写入：写入线程通过CAS预留空间后并行写入同一个文件，优先于组提交
+    private boolean putMessageLockFreeEnable = false;
+
+    // 刷盘策略
+    private FlushDiskType flushDiskType = FlushDiskType.ASYNC_FLUSH;
+
+    // 异步刷盘的间隔，单位毫秒
+    private int flushIntervalCommitLog = 500;
+
+    // 异步刷盘时至少积累多少个脏页才刷盘
+    private int flushCommitLogLeastPages = 4;
+
+    // 异步刷盘时彻底刷盘（忽略脏页数量）的间隔，单位毫秒
+    private int flushCommitLogThoroughInterval = 1000 * 10;
+
+    // 同步刷盘时等待落盘的超时时间，单位毫秒
+    private long syncFlushTimeout = 1000 * 5;
+
+    // 是否开启瞬态存储池，只在异步刷盘时生效
+    private boolean transientStorePoolEnable = false;
+
+    // 瞬态存储池中缓冲区的数量
+    private int transientStorePoolSize = 5;
+
+    // 提交writeBuffer的间隔，单位毫秒
+    private int commitIntervalCommitLog = 200;
+
+    // 至少积累多少个页才提交
+    private int commitCommitLogLeastPages = 4;
+
+    // 彻底提交（忽略页数）的间隔，单位毫秒
+    private int commitCommitLogThoroughInterval = 200;
+
+    // 是否预创建CommitLog文件，切换文件时不再同步创建和映射
+    private boolean allocateMappedFileServiceEnable = true;
+
+    // 是否预热新创建的文件
+    private boolean warmMappedFileEnable = false;
+
+    // 同步刷盘时，预热过程中每写入多少个页刷一次盘，默认16MB
+    private int flushLeastPagesWhenWarmMappedFile = 1024 / 4 * 16;
+
+    // 预热后是否mlock锁定文件内存，文件写满并落盘后解除锁定
+    private boolean warmMappedFileMlockEnable = true;
+
+    public String getStorePathCommitLog() {
+        return storePathCommitLog;
+    }
+
+    public void setStorePathCommitLog(String storePathCommitLog) {
+        this.storePathCommitLog = storePathCommitLog;
+    }
+
+    public StorePathPolicy getStorePathPolicy() {
+        return storePathPolicy;
+    }
+
+    public void setStorePathPolicy(StorePathPolicy storePathPolicy) {
+        this.storePathPolicy = storePathPolicy;
+    }
+
+    public int getMappedFileSizeCommitLog() {
+        return mappedFileSizeCommitLog;
+    }
+
+    public void setMappedFileSizeCommitLog(int mappedFileSizeCommitLog) {
+        this.mappedFileSizeCommitLog = mappedFileSizeCommitLog;
+    }
+
+    public String getStorePathConsumeQueue() {
+        return storePathConsumeQueue;
+    }
+
+    public void setStorePathConsumeQueue(String storePathConsumeQueue) {
+        this.storePathConsumeQueue = storePathConsumeQueue;
+    }
+
+    public String getStoreCheckpoint() {
+        return storeCheckpoint;
+    }
+
+    public void setStoreCheckpoint(String storeCheckpoint) {
+        this.storeCheckpoint = storeCheckpoint;
+    }
+
+    public String getStorePathIndex() {
+        return storePathIndex;
+    }
+
+    public void setStorePathIndex(String storePathIndex) {
+        this.storePathIndex = storePathIndex;
+    }
+
+    public boolean isMessageIndexEnable() {
+        return messageIndexEnable;
+    }
+
+    public void setMessageIndexEnable(boolean messageIndexEnable) {
+        this.messageIndexEnable = messageIndexEnable;
+    }
+
+    public int getMaxHashSlotNum() {
+        return maxHashSlotNum;
+    }
+
+    public void setMaxHashSlotNum(int maxHashSlotNum) {
+        this.maxHashSlotNum = maxHashSlotNum;
+    }
+
+    public int getMaxIndexNum() {
+        return maxIndexNum;
+    }
+
+    public void setMaxIndexNum(int maxIndexNum) {
+        this.maxIndexNum = maxIndexNum;
+    }
+
+    /**
+     * 文件大小必须是索引长度的整数倍
+     */
+    public int getMappedFileSizeConsumeQueue() {
+        int factor = (int) Math.ceil(this.mappedFileSizeConsumeQueue / (ConsumeQueue.CQ_STORE_UNIT_SIZE * 1.0));
+        return factor * ConsumeQueue.CQ_STORE_UNIT_SIZE;
+    }
+
+    public void setMappedFileSizeConsumeQueue(int mappedFileSizeConsumeQueue) {
+        this.mappedFileSizeConsumeQueue = mappedFileSizeConsumeQueue;
+    }
+
+    public int getFlushIntervalConsumeQueue() {
+        return flushIntervalConsumeQueue;
+    }
+
+    public void setFlushIntervalConsumeQueue(int flushIntervalConsumeQueue) {
+        this.flushIntervalConsumeQueue = flushIntervalConsumeQueue;
+    }
+
+    public int getFlushConsumeQueueLeastPages() {
+        return flushConsumeQueueLeastPages;
+    }
+
+    public void setFlushConsumeQueueLeastPages(int flushConsumeQueueLeastPages) {
+        this.flushConsumeQueueLeastPages = flushConsumeQueueLeastPages;
+    }
+
+    public int getFlushConsumeQueueThoroughInterval() {
+        return flushConsumeQueueThoroughInterval;
+    }
+
+    public void setFlushConsumeQueueThoroughInterval(int flushConsumeQueueThoroughInterval) {
+        this.flushConsumeQueueThoroughInterval = flushConsumeQueueThoroughInterval;
+    }
+
+    public boolean isPutMessageGroupCommitEnable() {
+        return putMessageGroupCommitEnable;
+    }
+
+    public void setPutMessageGroupCommitEnable(boolean putMessageGroupCommitEnable) {
+        this.putMessageGroupCommitEnable = putMessageGroupCommitEnable;
+    }
+
+    public boolean isPutMessageLockFreeEnable() {
+        return putMessageLockFreeEnable;
+    }
+
+    public void setPutMessageLockFreeEnable(boolean putMessageLockFreeEnable) {
+        this.putMessageLockFreeEnable = putMessageLockFreeEnable;
+    }
+
+    public int getPutMessageGroupCommitMaxBatch() {
+        return putMessageGroupCommitMaxBatch;
+    }
+
+    public void setPutMessageGroupCommitMaxBatch(int putMessageGroupCommitMaxBatch) {
+        this.putMessageGroupCommitMaxBatch = putMessageGroupCommitMaxBatch;
+    }
+
+    public FlushDiskType getFlushDiskType() {
+        return flushDiskType;
+    }
+
+    public void setFlushDiskType(FlushDiskType flushDiskType) {
+        this.flushDiskType = flushDiskType;
+    }
+
+    public int getFlushIntervalCommitLog() {
+        return flushIntervalCommitLog;
+    }
+
+    public void setFlushIntervalCommitLog(int flushIntervalCommitLog) {
+        this.flushIntervalCommitLog = flushIntervalCommitLog;
+    }
+
+    public int getFlushCommitLogLeastPages() {
+        return flushCommitLogLeastPages;
+    }
+
+    public void setFlushCommitLogLeastPages(int flushCommitLogLeastPages) {
+        this.flushCommitLogLeastPages = flushCommitLogLeastPages;
+    }
+
+    public int getFlushCommitLogThoroughInterval() {
+        return flushCommitLogThoroughInterval;
+    }
+
+    public void setFlushCommitLogThoroughInterval(int flushCommitLogThoroughInterval) {
+        this.flushCommitLogThoroughInterval = flushCommitLogThoroughInterval;
+    }
+
+    public long getSyncFlushTimeout() {
+        return syncFlushTimeout;
+    }
+
+    public void setSyncFlushTimeout(long syncFlushTimeout) {
+        this.syncFlushTimeout = syncFlushTimeout;
+    }
+
+    /**
+     * 同步刷盘要求数据写入后立即可刷盘，与先写缓冲区再提交的方式冲突，所以只在异步刷盘时开启
+     */
+    public boolean isTransientStorePoolEnable() {
+        return transientStorePoolEnable && this.flushDiskType == FlushDiskType.ASYNC_FLUSH;
+    }
+
+    public void setTransientStorePoolEnable(boolean transientStorePoolEnable) {
+        this.transientStorePoolEnable = transientStorePoolEnable;
+    }
+
+    public int getTransientStorePoolSize() {
+        return transientStorePoolSize;
+    }
+
+    public void setTransientStorePoolSize(int transientStorePoolSize) {
+        this.transientStorePoolSize = transientStorePoolSize;
+    }
+
+    public int getCommitIntervalCommitLog() {
+        return commitIntervalCommitLog;
+    }
+
+    public void setCommitIntervalCommitLog(int commitIntervalCommitLog) {
+        this.commitIntervalCommitLog = commitIntervalCommitLog;
+    }
+
+    public int getCommitCommitLogLeastPages() {
+        return commitCommitLogLeastPages;
+    }
+
+    public void setCommitCommitLogLeastPages(int commitCommitLogLeastPages) {
+        this.commitCommitLogLeastPages = commitCommitLogLeastPages;
+    }
+
+    public int getCommitCommitLogThoroughInterval() {
+        return commitCommitLogThoroughInterval;
+    }
+
+    public void setCommitCommitLogThoroughInterval(int commitCommitLogThoroughInterval) {
+        this.commitCommitLogThoroughInterval = commitCommitLogThoroughInterval;
+    }
+
+    public boolean isAllocateMappedFileServiceEnable() {
+        return allocateMappedFileServiceEnable;
+    }
+
+    public void setAllocateMappedFileServiceEnable(boolean allocateMappedFileServiceEnable) {
+        this.allocateMappedFileServiceEnable = allocateMappedFileServiceEnable;
+    }
+
+    public boolean isWarmMappedFileEnable() {
+        return warmMappedFileEnable;
+    }
+
+    public void setWarmMappedFileEnable(boolean warmMappedFileEnable) {
+        this.warmMappedFileEnable = warmMappedFileEnable;
+    }
+
+    public int getFlushLeastPagesWhenWarmMappedFile() {
+        return flushLeastPagesWhenWarmMappedFile;
+    }
+
+    public void setFlushLeastPagesWhenWarmMappedFile(int flushLeastPagesWhenWarmMappedFile) {
+        this.flushLeastPagesWhenWarmMappedFile = flushLeastPagesWhenWarmMappedFile;
+    }
+
+    public boolean isWarmMappedFileMlockEnable() {
+        return warmMappedFileMlockEnable;
+    }
+
+    public void setWarmMappedFileMlockEnable(boolean warmMappedFileMlockEnable) {
+        this.warmMappedFileMlockEnable = warmMappedFileMlockEnable;
+    }
+
+    public int getFileReservedTime() {
+        return fileReservedTime;
+    }
+
+    public void setFileReservedTime(int fileReservedTime) {
+        this.fileReservedTime = fileReservedTime;
+    }
+
+    /**
+     * 比例限制在10%到95%之间
+     */
+    public int getDiskMaxUsedSpaceRatio() {
+        if (this.diskMaxUsedSpaceRatio < 10) {
+            return 10;
+        }
+        if (this.diskMaxUsedSpaceRatio > 95) {
+            return 95;
+        }
+        return diskMaxUsedSpaceRatio;
+    }
+
+    public void setDiskMaxUsedSpaceRatio(int diskMaxUsedSpaceRatio) {
+        this.diskMaxUsedSpaceRatio = diskMaxUsedSpaceRatio;
+    }
+
+    public int getCleanResourceInterval() {
+        return cleanResourceInterval;
+    }
+
+    public void setCleanResourceInterval(int cleanResourceInterval) {
+        this.cleanResourceInterval = cleanResourceInterval;
+    }
+
+    public int getDeleteCommitLogFilesInterval() {
+        return deleteCommitLogFilesInterval;
+    }
+
+    public void setDeleteCommitLogFilesInterval(int deleteCommitLogFilesInterval) {
+        this.deleteCommitLogFilesInterval = deleteCommitLogFilesInterval;
+    }
+
+    public int getDeleteConsumeQueueFilesInterval() {
+        return deleteConsumeQueueFilesInterval;
+    }
+
+    public void setDeleteConsumeQueueFilesInterval(int deleteConsumeQueueFilesInterval) {
+        this.deleteConsumeQueueFilesInterval = deleteConsumeQueueFilesInterval;
+    }
+
+    public int getDeleteFileBatchMax() {
+        return deleteFileBatchMax;
+    }
+
+    public void setDeleteFileBatchMax(int deleteFileBatchMax) {
+        this.deleteFileBatchMax = deleteFileBatchMax;
+    }
+
+    public int getDestroyMappedFileIntervalForcibly() {
+        return destroyMappedFileIntervalForcibly;
+    }
+
+    public void setDestroyMappedFileIntervalForcibly(int destroyMappedFileIntervalForcibly) {
+        this.destroyMappedFileIntervalForcibly = destroyMappedFileIntervalForcibly;
+    }
+
+    public CrcVerifyMode getCrcVerifyMode() {
+        return crcVerifyMode;
+    }
+
+    public void setCrcVerifyMode(CrcVerifyMode crcVerifyMode) {
+        this.crcVerifyMode = crcVerifyMode;
+    }
+
+    public int getCrcVerifySampleRate() {
+        return crcVerifySampleRate;
+    }
+
+    public void setCrcVerifySampleRate(int crcVerifySampleRate) {
+        this.crcVerifySampleRate = crcVerifySampleRate;
+    }
+
+    public boolean isCompressMessageBodyEnable() {
+        return compressMessageBodyEnable;
+    }
+
+    public void setCompressMessageBodyEnable(boolean compressMessageBodyEnable) {
+        this.compressMessageBodyEnable = compressMessageBodyEnable;
+    }
+
+    public int getCompressMsgBodyOverHowmuch() {
+        return compressMsgBodyOverHowmuch;
+    }
+
+    public void setCompressMsgBodyOverHowmuch(int compressMsgBodyOverHowmuch) {
+        this.compressMsgBodyOverHowmuch = compressMsgBodyOverHowmuch;
+    }
+
+    public CompressionType getCompressionType() {
+        return compressionType;
+    }
+
+    public void setCompressionType(CompressionType compressionType) {
+        this.compressionType = compressionType;
+    }
+
+    public int getCompressionLevel() {
+        return compressionLevel;
+    }
+
+    public void setCompressionLevel(int compressionLevel) {
+        this.compressionLevel = compressionLevel;
+    }
+
+    public boolean isTieredStoreEnable() {
+        return tieredStoreEnable;
+    }
+
+    public void setTieredStoreEnable(boolean tieredStoreEnable) {
+        this.tieredStoreEnable = tieredStoreEnable;
+    }
+
+    public String getTieredStorageClass() {
+        return tieredStorageClass;
+    }
+
+    public void setTieredStorageClass(String tieredStorageClass) {
+        this.tieredStorageClass = tieredStorageClass;
+    }
+
+    public String getTieredStorePath() {
+        return tieredStorePath;
+    }
+
+    public void setTieredStorePath(String tieredStorePath) {
+        this.tieredStorePath = tieredStorePath;
+    }
+
+    public int getTieredHotFileNum() {
+        return tieredHotFileNum;
+    }
+
+    public void setTieredHotFileNum(int tieredHotFileNum) {
+        this.tieredHotFileNum = tieredHotFileNum;
+    }
+
+    public int getTieredStoreInterval() {
+        return tieredStoreInterval;
+    }
+
+    public void setTieredStoreInterval(int tieredStoreInterval) {
+        this.tieredStoreInterval = tieredStoreInterval;
+    }
+
+    public int getTieredBlockSize() {
+        return tieredBlockSize;
+    }
+
+    public void setTieredBlockSize(int tieredBlockSize) {
+        this.tieredBlockSize = tieredBlockSize;
+    }
+
+    public int getTieredReadAheadBlocks() {
+        return tieredReadAheadBlocks;
+    }
+
+    public void setTieredReadAheadBlocks(int tieredReadAheadBlocks) {
+        this.tieredReadAheadBlocks = tieredReadAheadBlocks;
+    }
+
+    public int getTieredBlockCacheMaxBlocks() {
+        return tieredBlockCacheMaxBlocks;
+    }
+
+    public void setTieredBlockCacheMaxBlocks(int tieredBlockCacheMaxBlocks) {
+        this.tieredBlockCacheMaxBlocks = tieredBlockCacheMaxBlocks;
+    }
+
+    public boolean isHotMessageCacheEnable() {
+        return hotMessageCacheEnable;
+    }
+
+    public void setHotMessageCacheEnable(boolean hotMessageCacheEnable) {
+        this.hotMessageCacheEnable = hotMessageCacheEnable;
+    }
+
+    public long getHotMessageCacheMaxBytes() {
+        return hotMessageCacheMaxBytes;
+    }
+
+    public void setHotMessageCacheMaxBytes(long hotMessageCacheMaxBytes) {
+        this.hotMessageCacheMaxBytes = hotMessageCacheMaxBytes;
+    }
+
+    public HotCacheEvictPolicy getHotMessageCacheEvictPolicy() {
+        return hotMessageCacheEvictPolicy;
+    }
+
+    public void setHotMessageCacheEvictPolicy(HotCacheEvictPolicy hotMessageCacheEvictPolicy) {
+        this.hotMessageCacheEvictPolicy = hotMessageCacheEvictPolicy;
+    }
+}
@@ -0,0 +1,51 @@
+package com.echelon.hermes.store;
+
+import com.echelon.hermes.common.compression.CompressionType;
+
+/**
+ * 描述：记录头部SYSFLAG中各标记位的定义。
+ * <pre>
+ * bit 0     消息体已压缩
+ * bit 1     批量消息，消息体由多条消息编码而成
+ * bit 8-10  压缩算法，取值见CompressionType
+ * </pre>
+ *
+ * @author jorelwang
+ * @create 2026-10-16 19:50
+ */
+public class MessageSysFlag {
+
+    public static final int COMPRESSED_FLAG = 0x1;
+    public static final int BATCH_FLAG = 0x1 << 1;
+    public static final int COMPRESSION_TYPE_COMPARATOR = 0x7 << CompressionType.COMPRESSION_TYPE_SHIFT;
+
+    private MessageSysFlag() {
+    }
+
+    public static boolean isCompressed(final int sysFlag) {
+        return (sysFlag & COMPRESSED_FLAG) == COMPRESSED_FLAG;
+    }
+
+    public static boolean isBatch(final int sysFlag) {
+        return (sysFlag & BATCH_FLAG) == BATCH_FLAG;
+    }
+
+    public static CompressionType getCompressionType(final int sysFlag) {
+        return CompressionType.findByValue(
+                (sysFlag & COMPRESSION_TYPE_COMPARATOR) >> CompressionType.COMPRESSION_TYPE_SHIFT);
+    }
+
+    /**
+     * 设置压缩标记和压缩算法
+     */
+    public static int setCompressed(final int sysFlag, final CompressionType type) {
+        return (sysFlag & ~COMPRESSION_TYPE_COMPARATOR) | COMPRESSED_FLAG | type.getCompressionFlag();
+    }
+
+    /**
+     * 清除压缩标记和压缩算法
+     */
+    public static int clearCompressed(final int sysFlag) {
+        return sysFlag & ~COMPRESSED_FLAG & ~COMPRESSION_TYPE_COMPARATOR;
+    }
+}
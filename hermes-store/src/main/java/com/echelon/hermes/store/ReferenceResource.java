@@ -0,0 +1,95 @@
+package com.echelon.hermes.store;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 描述：带引用计数的资源。
+ * 创建时持有一个初始引用，读取方通过hold()增加引用、用完后release()；
+ * shutdown()释放初始引用，引用计数归零时才调用cleanup()真正释放资源，
+ * 保证资源不会在读取方使用过程中被释放。
+ *
+ * @author jorelwang
+ * @create 2026-10-16 17:40
+ */
+public abstract class ReferenceResource {
+
+    protected final AtomicLong refCount = new AtomicLong(1);
+
+    // 是否可用，shutdown之后不能再hold
+    protected volatile boolean available = true;
+
+    // cleanup是否已经完成
+    protected volatile boolean cleanupOver = false;
+
+    // 第一次shutdown的时间，用于超时后强制释放
+    private volatile long firstShutdownTimestamp = 0;
+
+    /**
+     * 增加一个引用
+     *
+     * @return 资源已经shutdown时返回false，此时不能使用资源
+     */
+    public synchronized boolean hold() {
+        if (this.isAvailable()) {
+            if (this.refCount.getAndIncrement() > 0) {
+                return true;
+            } else {
+                this.refCount.getAndDecrement();
+            }
+        }
+        return false;
+    }
+
+    public boolean isAvailable() {
+        return this.available;
+    }
+
+    /**
+     * 释放初始引用，之后不能再hold。
+     * 还有读取方持有引用时不会立即释放资源；再次调用且距离第一次调用超过intervalForcibly时强制释放
+     *
+     * @param intervalForcibly 强制释放前等待的时间，单位毫秒
+     */
+    public void shutdown(final long intervalForcibly) {
+        if (this.available) {
+            this.available = false;
+            this.firstShutdownTimestamp = System.currentTimeMillis();
+            this.release();
+        } else if (this.getRefCount() > 0) {
+            if ((System.currentTimeMillis() - this.firstShutdownTimestamp) >= intervalForcibly) {
+                this.refCount.set(-1000 - this.getRefCount());
+                this.release();
+            }
+        }
+    }
+
+    /**
+     * 释放一个引用，引用计数归零时释放资源
+     */
+    public void release() {
+        long value = this.refCount.decrementAndGet();
+        if (value > 0) {
+            return;
+        }
+
+        synchronized (this) {
+            this.cleanupOver = this.cleanup(value);
+        }
+    }
+
+    public long getRefCount() {
+        return this.refCount.get();
+    }
+
+    /**
+     * 真正释放资源
+     *
+     * @param currentRef 当前的引用计数
+     * @return 是否释放完成
+     */
+    public abstract boolean cleanup(final long currentRef);
+
+    public boolean isCleanupOver() {
+        return this.refCount.get() <= 0 && this.cleanupOver;
+    }
+}
@@ -0,0 +1,155 @@
+package com.echelon.hermes.store;
+
+import com.echelon.hermes.common.ServiceThread;
+import java.nio.ByteBuffer;
+import java.util.List;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * 描述：顺序读取CommitLog中新追加的消息，解析出位置信息后分发给各个CommitLogDispatcher。
+ * 只读取已经可读的数据，reputFromOffset之前的消息都已经分发完成。
+ *
+ * @author jorelwang
+ * @create 2026-10-16 16:05
+ */
+public class ReputMessageService extends ServiceThread {
+    private static final Logger log = LoggerFactory.getLogger(ReputMessageService.class);
+
+    // 关闭时最多等待的次数，每次100毫秒
+    private static final int SHUTDOWN_WAIT_TIMES = 50;
+
+    private final CommitLog commitLog;
+    private final List<CommitLogDispatcher> dispatcherList;
+
+    // 下一条待分发消息的物理偏移量
+    private volatile long reputFromOffset = 0;
+
+    public ReputMessageService(final CommitLog commitLog, final List<CommitLogDispatcher> dispatcherList) {
+        this.commitLog = commitLog;
+        this.dispatcherList = dispatcherList;
+    }
+
+    @Override
+    public String getServiceName() {
+        return ReputMessageService.class.getSimpleName();
+    }
+
+    @Override
+    public void shutdown() {
+        // 尽量把已经写入的消息分发完再退出
+        for (int i = 0; i < SHUTDOWN_WAIT_TIMES && this.isCommitLogAvailable(); i++) {
+            try {
+                Thread.sleep(100);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+        }
+
+        if (this.isCommitLogAvailable()) {
+            log.warn("Shutdown ReputMessageService, but commitlog have not finish to be dispatched, "
+                    + "commitlog: {} reputFromOffset: {}", this.commitLog.getMaxOffset(), this.reputFromOffset);
+        }
+        super.shutdown();
+    }
+
+    @Override
+    public void run() {
+        log.info("{} service started", getServiceName());
+
+        while (!this.isStopped()) {
+            try {
+                this.waitForRunning(1);
+                this.doReput();
+            } catch (Throwable e) {
+                log.warn("{} service has exception.", getServiceName(), e);
+            }
+        }
+
+        log.info("{} service end", getServiceName());
+    }
+
+    private void doReput() {
+        while (this.isCommitLogAvailable() && !this.isStopped()) {
+            SelectMappedBufferResult result = this.commitLog.getData(this.reputFromOffset);
+            if (result == null) {
+                return;
+            }
+
+            try {
+                final ByteBuffer byteBuffer = result.getByteBuffer();
+                while (byteBuffer.hasRemaining()) {
+                    final int pos = byteBuffer.position();
+                    DispatchRequest request = this.commitLog.checkMessageAndReturnSize(byteBuffer, false);
+                    if (!request.isSuccess()) {
+                        // 和恢复时一样，文件中非法记录之后的数据无法定位，跳到下一个文件继续分发。
+                        // 不跳过的话每次循环都会读到同一条记录，分发永远停在这里
+                        long nextOffset = this.commitLog.rollNextFile(this.reputFromOffset);
+                        log.error("Reput found an illegal message at offset {}, skip {} bytes to next file offset {}",
+                                this.reputFromOffset, nextOffset - this.reputFromOffset, nextOffset);
+                        this.reputFromOffset = nextOffset;
+                        break;
+                    }
+
+                    if (request.getMsgSize() == 0) {
+                        // 读到文件末尾，跳到下一个文件
+                        this.reputFromOffset = this.commitLog.rollNextFile(this.reputFromOffset);
+                        break;
+                    }
+
+                    if (request.isSkip()) {
+                        // 写入失败留下的跳过记录，没有消息需要分发
+                        this.reputFromOffset += request.getMsgSize();
+                        continue;
+                    }
+
+                    // 先放入缓存再分发，消费者通过ConsumeQueue看到消息时缓存已经就绪
+                    this.cacheMessage(byteBuffer, pos, request.getMsgSize());
+                    this.doDispatch(request);
+                    this.reputFromOffset += request.getMsgSize();
+                }
+            } finally {
+                result.release();
+            }
+        }
+    }
+
+    private void doDispatch(final DispatchRequest request) {
+        for (CommitLogDispatcher dispatcher : this.dispatcherList) {
+            dispatcher.dispatch(request);
+        }
+    }
+
+    /**
+     * 把刚分发的消息放入热消息缓存，尾部读取的消费者很快就会读到它
+     */
+    private void cacheMessage(final ByteBuffer byteBuffer, final int pos, final int size) {
+        HotMessageCache hotMessageCache = this.commitLog.getHotMessageCache();
+        if (hotMessageCache != null) {
+            ByteBuffer record = byteBuffer.duplicate();
+            record.position(pos);
+            record.limit(pos + size);
+            hotMessageCache.put(this.reputFromOffset, record);
+        }
+    }
+
+    private boolean isCommitLogAvailable() {
+        return this.reputFromOffset < this.commitLog.getMaxOffset();
+    }
+
+    /**
+     * 还有多少字节没有分发
+     */
+    public long behind() {
+        return this.commitLog.getMaxOffset() - this.reputFromOffset;
+    }
+
+    public long getReputFromOffset() {
+        return reputFromOffset;
+    }
+
+    public void setReputFromOffset(long reputFromOffset) {
+        this.reputFromOffset = reputFromOffset;
+    }
+}
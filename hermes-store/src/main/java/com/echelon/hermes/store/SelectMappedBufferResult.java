@@ -0,0 +1,64 @@
+package com.echelon.hermes.store;
+
+import java.nio.ByteBuffer;
+
+/**
+ * 描述：MappedFile中一段数据的只读视图，直接指向映射缓冲区，不拷贝数据。
+ * 创建时已经持有了MappedFile的引用，使用完后必须调用release()，否则文件无法被释放。
+ *
+ * @author jorelwang
+ * @create 2026-10-16 17:45
+ */
+public class SelectMappedBufferResult {
+
+    // 数据的起始物理偏移量
+    private final long startOffset;
+
+    private final ByteBuffer byteBuffer;
+
+    private int size;
+
+    // 数据所在的文件，release之后为null
+    private MappedFile mappedFile;
+
+    public SelectMappedBufferResult(long startOffset, ByteBuffer byteBuffer, int size, MappedFile mappedFile) {
+        this.startOffset = startOffset;
+        this.byteBuffer = byteBuffer;
+        this.size = size;
+        this.mappedFile = mappedFile;
+    }
+
+    public long getStartOffset() {
+        return startOffset;
+    }
+
+    public ByteBuffer getByteBuffer() {
+        return byteBuffer;
+    }
+
+    public int getSize() {
+        return size;
+    }
+
+    /**
+     * 只保留前size个字节
+     */
+    public void setSize(final int size) {
+        this.size = size;
+        this.byteBuffer.limit(size);
+    }
+
+    public MappedFile getMappedFile() {
+        return mappedFile;
+    }
+
+    /**
+     * 释放对MappedFile的引用，重复调用无效
+     */
+    public synchronized void release() {
+        if (this.mappedFile != null) {
+            this.mappedFile.release();
+            this.mappedFile = null;
+        }
+    }
+}
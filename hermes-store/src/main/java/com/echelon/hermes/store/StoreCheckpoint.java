@@ -0,0 +1,78 @@
+package com.echelon.hermes.store;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * 描述：存储检查点，记录CommitLog已经落盘的位置。
+ * 恢复时从这个位置开始扫描，之前的数据不需要再校验，保证大数据量时也能快速重启。
+ * <pre>
+ * PHYSIC_OFFSET  8  CommitLog已落盘的物理偏移量
+ * </pre>
+ *
+ * @author jorelwang
+ * @create 2026-10-16 17:20
+ */
+public class StoreCheckpoint {
+    private static final Logger log = LoggerFactory.getLogger(StoreCheckpoint.class);
+
+    private static final int PHYSIC_OFFSET_POSITION = 0;
+
+    private final RandomAccessFile randomAccessFile;
+    private final FileChannel fileChannel;
+    private final MappedByteBuffer mappedByteBuffer;
+
+    // CommitLog已落盘的物理偏移量
+    private volatile long physicOffset = 0;
+
+    public StoreCheckpoint(final String scpPath) throws IOException {
+        File file = new File(scpPath);
+        MappedFile.ensureDirOK(file.getParent());
+        boolean fileExists = file.exists();
+
+        this.randomAccessFile = new RandomAccessFile(file, "rw");
+        this.fileChannel = this.randomAccessFile.getChannel();
+        this.mappedByteBuffer = this.fileChannel.map(MapMode.READ_WRITE, 0, MappedFile.OS_PAGE_SIZE);
+
+        if (fileExists) {
+            log.info("Store checkpoint file exists, {}", scpPath);
+            this.physicOffset = this.mappedByteBuffer.getLong(PHYSIC_OFFSET_POSITION);
+            log.info("Store checkpoint physicOffset: {}", this.physicOffset);
+        } else {
+            log.info("Store checkpoint file not exists, {}", scpPath);
+        }
+    }
+
+    /**
+     * 把当前的检查点写入文件并落盘
+     */
+    public void flush() {
+        this.mappedByteBuffer.putLong(PHYSIC_OFFSET_POSITION, this.physicOffset);
+        this.mappedByteBuffer.force();
+    }
+
+    public void shutdown() {
+        this.flush();
+        MappedFile.unmap(this.mappedByteBuffer);
+        try {
+            this.fileChannel.close();
+            this.randomAccessFile.close();
+        } catch (IOException e) {
+            log.error("Failed to close store checkpoint file", e);
+        }
+    }
+
+    public long getPhysicOffset() {
+        return physicOffset;
+    }
+
+    public void setPhysicOffset(long physicOffset) {
+        this.physicOffset = physicOffset;
+    }
+}
@@ -0,0 +1,14 @@
+package com.echelon.hermes.store;
+
+/**
+ * 描述：配置了多个CommitLog存储目录时，新文件放在哪个目录
+ *
+ * @author jorelwang
+ * @create 2026-10-16 21:00
+ */
+public enum StorePathPolicy {
+    // 按文件起始偏移量轮流放到各个目录，相邻的文件在不同的磁盘上，顺序写入时各磁盘的负载均匀
+    ROUND_ROBIN,
+    // 放到剩余空间最多的目录，适合容量不一致的磁盘
+    MOST_FREE_SPACE,
+}
@@ -0,0 +1,132 @@
+package com.echelon.hermes.store;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 描述：分层存储的读缓存，按固定大小的块缓存冷文件的数据，超过容量时淘汰最久未访问的块。
+ * 块的key是块在CommitLog中的全局起始偏移量，块不会跨越文件，文件的最后一个块可能比blockSize短。
+ * 未命中时一次读取连续的readAheadBlocks个块，顺序消费冷数据时后续的读取都能命中。
+ *
+ * @author jorelwang
+ * @create 2026-10-16 20:20
+ */
+public class TieredBlockCache {
+
+    private final TieredStorage tieredStorage;
+    private final int blockSize;
+    private final int readAheadBlocks;
+
+    // 按访问顺序排列的LRU缓存，所有访问都要在blocks上加锁
+    private final LinkedHashMap<Long, ByteBuffer> blocks;
+
+    private final AtomicLong hitCount = new AtomicLong(0);
+    private final AtomicLong missCount = new AtomicLong(0);
+
+    public TieredBlockCache(final TieredStorage tieredStorage, final int blockSize, final int readAheadBlocks,
+            final int maxBlocks) {
+        this.tieredStorage = tieredStorage;
+        this.blockSize = blockSize;
+        this.readAheadBlocks = Math.max(readAheadBlocks, 1);
+        this.blocks = new LinkedHashMap<Long, ByteBuffer>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(final Map.Entry<Long, ByteBuffer> eldest) {
+                return size() > maxBlocks;
+            }
+        };
+    }
+
+    /**
+     * 读取冷文件中[pos, pos + size)的数据，返回一个新的堆内缓冲区
+     *
+     * @param objectName     对象名
+     * @param fileFromOffset 文件的起始偏移量
+     * @param fileSize       文件大小
+     * @param pos            文件内的起始位置
+     * @param size           读取的长度
+     */
+    public ByteBuffer read(final String objectName, final long fileFromOffset, final int fileSize, final int pos,
+            final int size) throws IOException {
+        ByteBuffer result = ByteBuffer.allocate(size);
+        int offset = pos;
+        final int end = pos + size;
+        while (offset < end) {
+            final int blockPos = offset - offset % this.blockSize;
+            ByteBuffer block = this.getBlock(objectName, fileFromOffset, fileSize, blockPos);
+            ByteBuffer src = block.duplicate();
+            src.position(offset - blockPos);
+            src.limit(Math.min(src.limit(), end - blockPos));
+            offset += src.remaining();
+            result.put(src);
+        }
+        result.flip();
+        return result;
+    }
+
+    private ByteBuffer getBlock(final String objectName, final long fileFromOffset, final int fileSize,
+            final int blockPos) throws IOException {
+        final long key = fileFromOffset + blockPos;
+        synchronized (this.blocks) {
+            ByteBuffer block = this.blocks.get(key);
+            if (block != null) {
+                this.hitCount.incrementAndGet();
+                return block;
+            }
+        }
+
+        // 读取在锁外进行，并发未命中同一个块时可能重复读取，结果是一样的
+        this.missCount.incrementAndGet();
+        final int readSize = (int) Math.min((long) this.blockSize * this.readAheadBlocks, fileSize - blockPos);
+        ByteBuffer data = ByteBuffer.allocate(readSize);
+        this.tieredStorage.read(objectName, blockPos, data);
+        data.flip();
+
+        ByteBuffer first = null;
+        synchronized (this.blocks) {
+            for (int pos = 0; pos < readSize; pos += this.blockSize) {
+                ByteBuffer block = data.duplicate();
+                block.position(pos);
+                block.limit(Math.min(pos + this.blockSize, readSize));
+                block = block.slice();
+                this.blocks.put(key + pos, block);
+                if (first == null) {
+                    first = block;
+                }
+            }
+        }
+        return first;
+    }
+
+    /**
+     * 删除一个文件的所有缓存块，文件被删除或者关闭时调用
+     */
+    public void invalidate(final long fileFromOffset, final int fileSize) {
+        synchronized (this.blocks) {
+            this.blocks.keySet().removeIf(key -> key >= fileFromOffset && key < fileFromOffset + fileSize);
+        }
+    }
+
+    /**
+     * 一次预读的大小，TieredMappedFile按这个大小返回读取窗口
+     */
+    public int getReadAheadSize() {
+        return this.blockSize * this.readAheadBlocks;
+    }
+
+    public long getHitCount() {
+        return hitCount.get();
+    }
+
+    public long getMissCount() {
+        return missCount.get();
+    }
+
+    public int getCachedBlocks() {
+        synchronized (this.blocks) {
+            return this.blocks.size();
+        }
+    }
+}
@@ -0,0 +1,112 @@
+package com.echelon.hermes.store;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * 描述：已经卸载到分层存储的CommitLog文件，在MappedFileQueue中替换原来的MappedFile，
+ * 所以按偏移量查找文件、计算最小偏移量和过期删除都不需要区分冷热文件。
+ * 读取时通过TieredBlockCache拉取数据，返回的是堆内缓冲区而不是映射缓冲区的切片；
+ * 删除时删除分层存储中的对象。
+ *
+ * @author jorelwang
+ * @create 2026-10-16 20:30
+ */
+public class TieredMappedFile extends MappedFile {
+    private static final Logger log = LoggerFactory.getLogger(TieredMappedFile.class);
+
+    private final TieredStorage tieredStorage;
+    private final TieredBlockCache blockCache;
+    private final String objectName;
+    private final long lastModifiedTimestamp;
+
+    /**
+     * @param fileName 文件在本地时的路径，文件名就是起始偏移量
+     */
+    public TieredMappedFile(final String fileName, final int fileSize, final TieredStorage tieredStorage,
+            final TieredBlockCache blockCache) {
+        super(new File(fileName), fileSize);
+        this.tieredStorage = tieredStorage;
+        this.blockCache = blockCache;
+        this.objectName = new File(fileName).getName();
+        this.lastModifiedTimestamp = tieredStorage.getLastModifiedTimestamp(this.objectName);
+    }
+
+    @Override
+    public SelectMappedBufferResult selectMappedBuffer(final int pos, final int size) {
+        if (pos >= 0 && pos < this.getFileSize() && pos + size <= this.getFileSize()) {
+            if (this.hold()) {
+                try {
+                    ByteBuffer byteBuffer = this.blockCache.read(this.objectName, this.getFileFromOffset(),
+                            this.getFileSize(), pos, size);
+                    return new SelectMappedBufferResult(this.getFileFromOffset() + pos, byteBuffer, size, this);
+                } catch (IOException e) {
+                    log.error("Read tiered file {} failed, pos: {} size: {}", this.objectName, pos, size, e);
+                    this.release();
+                }
+            } else {
+                log.warn("matched, but hold failed, request pos: {}, fileFromOffset: {}", pos,
+                        this.getFileFromOffset());
+            }
+        }
+        return null;
+    }
+
+    /**
+     * 冷文件不能像映射缓冲区一样零拷贝地返回到文件末尾，这里最多返回一个预读窗口，
+     * 但至少包含pos处的一整条记录，调用方读完窗口后从下一条记录重新读取
+     */
+    @Override
+    public SelectMappedBufferResult selectMappedBuffer(final int pos) {
+        if (pos < 0 || pos >= this.getFileSize()) {
+            return null;
+        }
+        final int remaining = this.getFileSize() - pos;
+        SelectMappedBufferResult result = this.selectMappedBuffer(pos,
+                Math.min(remaining, this.blockCache.getReadAheadSize()));
+        if (result == null || result.getSize() < MessageDecoder.END_FILE_MIN_BLANK_LENGTH) {
+            return result;
+        }
+
+        final int totalSize = result.getByteBuffer().getInt(0);
+        if (totalSize > result.getSize() && totalSize <= remaining) {
+            result.release();
+            result = this.selectMappedBuffer(pos, totalSize);
+        }
+        return result;
+    }
+
+    @Override
+    public void force() {
+        // 数据已经在分层存储中，不需要刷盘
+    }
+
+    /**
+     * 关闭文件并删除分层存储中的对象，还有读取方持有引用时不会立即删除
+     */
+    @Override
+    public boolean deleteFile(final long intervalForcibly) {
+        this.shutdown(intervalForcibly);
+        if (!this.isCleanupOver()) {
+            log.warn("Delete tiered file {} failed, still held by readers, refCount: {}", this.objectName,
+                    this.getRefCount());
+            return false;
+        }
+        return this.tieredStorage.delete(this.objectName);
+    }
+
+    @Override
+    public boolean cleanup(final long currentRef) {
+        boolean result = super.cleanup(currentRef);
+        this.blockCache.invalidate(this.getFileFromOffset(), this.getFileSize());
+        return result;
+    }
+
+    @Override
+    public long getLastModifiedTimestamp() {
+        return this.lastModifiedTimestamp;
+    }
+}
@@ -0,0 +1,58 @@
+package com.echelon.hermes.store;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.List;
+
+/**
+ * 描述：分层存储的SPI，用于保存已经写满的冷CommitLog文件，例如对象存储。
+ * 对象名就是CommitLog的文件名（20位起始偏移量），对象一旦上传就不再修改。
+ * 实现类需要提供一个参数为MessageStoreConfig的公开构造函数，通过tieredStorageClass配置。
+ *
+ * @author jorelwang
+ * @create 2026-10-16 20:10
+ */
+public interface TieredStorage {
+
+    /**
+     * 上传本地文件，上传完成之前对象不可见
+     *
+     * @param objectName 对象名
+     * @param file       本地文件
+     */
+    void upload(String objectName, File file) throws IOException;
+
+    /**
+     * 从对象的position处读取数据，直到填满dest
+     *
+     * @param objectName 对象名
+     * @param position   对象内的起始位置
+     * @param dest       目标缓冲区，读取的长度为dest.remaining()
+     */
+    void read(String objectName, long position, ByteBuffer dest) throws IOException;
+
+    boolean exists(String objectName);
+
+    /**
+     * 对象的大小，不存在时返回-1
+     */
+    long getSize(String objectName);
+
+    /**
+     * 对象的最后修改时间，与上传前本地文件的最后修改时间一致，用于判断文件是否过期
+     */
+    long getLastModifiedTimestamp(String objectName);
+
+    /**
+     * 删除对象，对象不存在时也返回true
+     */
+    boolean delete(String objectName);
+
+    /**
+     * 列出所有对象名，按名称升序排列
+     */
+    List<String> list() throws IOException;
+
+    void shutdown();
+}
@@ -0,0 +1,177 @@
+package com.echelon.hermes.store;
+
+import com.echelon.hermes.common.ServiceThread;
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * 描述：分层存储服务，定期把已经写满、落盘并且分发完成的冷CommitLog文件上传到TieredStorage，
+ * 然后在MappedFileQueue中替换为TieredMappedFile并删除本地文件。最新的tieredHotFileNum个文件始终保留在本地。
+ * 本地文件还被读取方持有时先关闭，在之后的检查中重试删除，超过destroyMappedFileIntervalForcibly后强制删除。
+ *
+ * @author jorelwang
+ * @create 2026-10-16 20:40
+ */
+public class TieredStoreService extends ServiceThread {
+    private static final Logger log = LoggerFactory.getLogger(TieredStoreService.class);
+
+    private final MessageStoreConfig messageStoreConfig;
+    private final MappedFileQueue mappedFileQueue;
+    private final ReputMessageService reputMessageService;
+    private final TieredStorage tieredStorage;
+    private final TieredBlockCache blockCache;
+
+    // 已经替换为TieredMappedFile、但本地文件还没有删除的文件
+    private final List<MappedFile> pendingEvictFiles = new ArrayList<>();
+
+    public TieredStoreService(final MessageStoreConfig messageStoreConfig, final CommitLog commitLog,
+            final ReputMessageService reputMessageService) {
+        this.messageStoreConfig = messageStoreConfig;
+        this.mappedFileQueue = commitLog.getMappedFileQueue();
+        this.reputMessageService = reputMessageService;
+        this.tieredStorage = createTieredStorage(messageStoreConfig);
+        this.blockCache = new TieredBlockCache(this.tieredStorage, messageStoreConfig.getTieredBlockSize(),
+                messageStoreConfig.getTieredReadAheadBlocks(), messageStoreConfig.getTieredBlockCacheMaxBlocks());
+    }
+
+    private static TieredStorage createTieredStorage(final MessageStoreConfig messageStoreConfig) {
+        try {
+            Class<?> clazz = Class.forName(messageStoreConfig.getTieredStorageClass());
+            return (TieredStorage) clazz.getConstructor(MessageStoreConfig.class).newInstance(messageStoreConfig);
+        } catch (ReflectiveOperationException | ClassCastException e) {
+            throw new IllegalArgumentException("Create tiered storage failed, class: "
+                    + messageStoreConfig.getTieredStorageClass(), e);
+        }
+    }
+
+    /**
+     * 加载分层存储中的文件，放在本地文件之前。必须在CommitLog加载之后、恢复之前调用
+     */
+    public boolean load() {
+        final int mappedFileSize = this.mappedFileQueue.getMappedFileSize();
+        List<MappedFile> files = new ArrayList<>();
+        try {
+            for (String objectName : this.tieredStorage.list()) {
+                if (this.tieredStorage.getSize(objectName) != mappedFileSize) {
+                    log.error("Tiered object {} size {} not matched with mappedFileSize {}", objectName,
+                            this.tieredStorage.getSize(objectName), mappedFileSize);
+                    return false;
+                }
+                files.add(this.createTieredMappedFile(objectName));
+            }
+        } catch (Exception e) {
+            log.error("Load tiered storage failed", e);
+            return false;
+        }
+
+        // 上传之后、删除本地文件之前宕机时，本地和分层存储中都有这个文件，优先使用本地文件
+        int count = this.mappedFileQueue.prependMappedFiles(files);
+        log.info("Load {} tiered commit log files, {} also exist locally", count, files.size() - count);
+        return true;
+    }
+
+    @Override
+    public String getServiceName() {
+        return TieredStoreService.class.getSimpleName();
+    }
+
+    @Override
+    public void run() {
+        log.info("{} service started", getServiceName());
+
+        while (!this.isStopped()) {
+            try {
+                this.waitForRunning(this.messageStoreConfig.getTieredStoreInterval());
+                this.offloadColdFiles();
+            } catch (Throwable e) {
+                log.warn("{} service has exception.", getServiceName(), e);
+            }
+        }
+
+        log.info("{} service end", getServiceName());
+    }
+
+    @Override
+    public void shutdown() {
+        super.shutdown();
+        this.tieredStorage.shutdown();
+    }
+
+    /**
+     * 从第一个文件开始卸载冷文件，遇到不满足条件的文件就停止
+     *
+     * @return 本次卸载的文件数
+     */
+    public synchronized int offloadColdFiles() {
+        this.evictPendingFiles();
+
+        Object[] mfs = this.mappedFileQueue.getMappedFiles().toArray();
+        final long dispatchedOffset = this.reputMessageService.getReputFromOffset();
+        int count = 0;
+        for (int i = 0; i < mfs.length - this.messageStoreConfig.getTieredHotFileNum(); i++) {
+            MappedFile mappedFile = (MappedFile) mfs[i];
+            if (mappedFile instanceof TieredMappedFile) {
+                continue;
+            }
+            // 还没有写满落盘，或者还没有分发到ConsumeQueue的文件不能卸载
+            if (!mappedFile.isFull() || mappedFile.getFlushedPosition() < mappedFile.getFileSize()
+                    || mappedFile.getFileFromOffset() + mappedFile.getFileSize() > dispatchedOffset) {
+                break;
+            }
+            if (!this.offload(mappedFile)) {
+                break;
+            }
+            count++;
+        }
+
+        this.evictPendingFiles();
+        return count;
+    }
+
+    private boolean offload(final MappedFile mappedFile) {
+        final String objectName = new File(mappedFile.getFileName()).getName();
+        try {
+            // 上一次可能已经上传完成，但还没来得及替换就宕机了
+            if (this.tieredStorage.getSize(objectName) != mappedFile.getFileSize()) {
+                this.tieredStorage.upload(objectName, new File(mappedFile.getFileName()));
+            }
+            TieredMappedFile tieredMappedFile = this.createTieredMappedFile(objectName);
+            if (!this.mappedFileQueue.replaceMappedFile(mappedFile, tieredMappedFile)) {
+                // 上传过程中文件已经过期被删除了
+                log.warn("Commit log file {} was deleted while offloading", mappedFile.getFileName());
+                this.tieredStorage.delete(objectName);
+                return false;
+            }
+            this.pendingEvictFiles.add(mappedFile);
+            log.info("Offload commit log file {} to tiered storage", mappedFile.getFileName());
+            return true;
+        } catch (Exception e) {
+            log.error("Offload commit log file {} failed", mappedFile.getFileName(), e);
+            return false;
+        }
+    }
+
+    private void evictPendingFiles() {
+        Iterator<MappedFile> iterator = this.pendingEvictFiles.iterator();
+        while (iterator.hasNext()) {
+            if (iterator.next().deleteFile(this.messageStoreConfig.getDestroyMappedFileIntervalForcibly())) {
+                iterator.remove();
+            }
+        }
+    }
+
+    private TieredMappedFile createTieredMappedFile(final String objectName) {
+        // 冷文件不在本地，路径只用来确定起始偏移量，使用第一个存储目录即可
+        String fileName = this.mappedFileQueue.getStorePaths()[0] + File.separator + objectName;
+        return new TieredMappedFile(fileName, this.mappedFileQueue.getMappedFileSize(), this.tieredStorage,
+                this.blockCache);
+    }
+
+    public TieredBlockCache getBlockCache() {
+        return blockCache;
+    }
+}
@@ -0,0 +1,103 @@
+package com.echelon.hermes.store;
+
+import com.sun.jna.Native;
+import com.sun.jna.NativeLong;
+import com.sun.jna.Pointer;
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * 描述：瞬态存储池。
+ * 启动时预先分配若干块与CommitLog文件等大的堆外内存并锁定在物理内存中，
+ * 消息先写入池中的缓冲区，再由CommitRealTimeService批量写入FileChannel，
+ * 写入路径不会直接触碰page cache，避免缺页和page cache锁竞争带来的抖动。
+ *
+ * @author jorelwang
+ * @create 2026-10-16 13:45
+ */
+public class TransientStorePool {
+    private static final Logger log = LoggerFactory.getLogger(TransientStorePool.class);
+
+    // 池中缓冲区的数量
+    private final int poolSize;
+    // 单个缓冲区的大小，与CommitLog文件大小一致
+    private final int fileSize;
+    private final Deque<ByteBuffer> availableBuffers;
+
+    public TransientStorePool(final int poolSize, final int fileSize) {
+        this.poolSize = poolSize;
+        this.fileSize = fileSize;
+        this.availableBuffers = new ArrayDeque<>(poolSize);
+    }
+
+    /**
+     * 预先分配并锁定所有缓冲区
+     */
+    public void init() {
+        for (int i = 0; i < this.poolSize; i++) {
+            ByteBuffer byteBuffer = ByteBuffer.allocateDirect(this.fileSize);
+            lock(byteBuffer);
+            this.availableBuffers.offer(byteBuffer);
+        }
+        log.info("TransientStorePool init, poolSize: {}, fileSize: {}", this.poolSize, this.fileSize);
+    }
+
+    public synchronized void destroy() {
+        for (ByteBuffer byteBuffer : this.availableBuffers) {
+            unlock(byteBuffer);
+            MappedFile.unmap(byteBuffer);
+        }
+        this.availableBuffers.clear();
+    }
+
+    /**
+     * 归还缓冲区
+     */
+    public synchronized void returnBuffer(final ByteBuffer byteBuffer) {
+        byteBuffer.position(0);
+        byteBuffer.limit(this.fileSize);
+        this.availableBuffers.offerFirst(byteBuffer);
+    }
+
+    /**
+     * 借出一个缓冲区，池已耗尽时返回null，此时MappedFile直接写入映射缓冲区
+     */
+    public synchronized ByteBuffer borrowBuffer() {
+        ByteBuffer buffer = this.availableBuffers.pollFirst();
+        if (buffer == null) {
+            log.warn("TransientStorePool has no available buffer, poolSize: {}", this.poolSize);
+        } else if (this.availableBuffers.size() < this.poolSize * 0.4) {
+            log.warn("TransientStorePool only remain {} buffers", this.availableBuffers.size());
+        }
+        return buffer;
+    }
+
+    public synchronized int availableBufferNums() {
+        return this.availableBuffers.size();
+    }
+
+    private void lock(final ByteBuffer byteBuffer) {
+        try {
+            Pointer pointer = Native.getDirectBufferPointer(byteBuffer);
+            int ret = LibC.INSTANCE.mlock(pointer, new NativeLong(this.fileSize));
+            if (ret != 0) {
+                // 通常是RLIMIT_MEMLOCK不足，缓冲区仍然可用，只是可能被换出
+                log.warn("mlock transient store buffer failed, ret: {}", ret);
+            }
+        } catch (Throwable e) {
+            log.warn("mlock transient store buffer failed", e);
+        }
+    }
+
+    private void unlock(final ByteBuffer byteBuffer) {
+        try {
+            Pointer pointer = Native.getDirectBufferPointer(byteBuffer);
+            LibC.INSTANCE.munlock(pointer, new NativeLong(this.fileSize));
+        } catch (Throwable e) {
+            log.warn("munlock transient store buffer failed", e);
+        }
+    }
+}
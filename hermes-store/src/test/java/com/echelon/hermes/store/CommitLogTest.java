@@ -2,12 +2,26 @@ package com.echelon.hermes.store;
 
 import static org.junit.jupiter.api.Assertions.assertArrayEquals;
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
+import com.echelon.hermes.common.compression.CompressionType;
 import com.echelon.hermes.store.CommitLog.PutMessageResult;
 import com.echelon.hermes.store.CommitLog.PutMessageStatus;
 import java.io.File;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
@@ -88,6 +102,567 @@ public class CommitLogTest {
 
     }
 
+    @Test
+    public void testPutMessageAcrossMappedFiles() {
+        // 使用很小的文件，让消息写满后切换到下一个文件
+        String smallStorePath = "./unittteststore/commitlog_small";
+        deleteDir(new File(smallStorePath));
+        final int fileSize = 1024;
+        CommitLog smallCommitLog = new CommitLog(smallStorePath, fileSize);
+        assertTrue(smallCommitLog.load());
+
+        long lastOffset = -1;
+        for (int i = 0; i < 20; i++) {
+            MessageExt msg = new MessageExt();
+            msg.setTopic("TestTopic");
+            msg.setQueueId(i % 4);
+            msg.setBody(("Message body " + i).getBytes());
+            msg.putProperty("index", String.valueOf(i));
+
+            PutMessageResult result = smallCommitLog.putMessage(msg);
+            assertEquals(PutMessageStatus.PUT_OK, result.getStatus());
+            assertTrue(result.getOffset() > lastOffset);
+            // 一条消息不会跨越两个文件
+            assertEquals(result.getOffset() / fileSize,
+                    (result.getOffset() + msg.getStoreSize() - 1) / fileSize);
+            lastOffset = result.getOffset();
+
+            MessageExt readMsg = smallCommitLog.getMessage(result.getOffset());
+            assertNotNull(readMsg);
+            assertEquals(i % 4, readMsg.getQueueId());
+            assertEquals(result.getOffset(), readMsg.getCommitLogOffset());
+            assertEquals(String.valueOf(i), readMsg.getProperties().get("index"));
+            assertArrayEquals(("Message body " + i).getBytes(), readMsg.getBody());
+        }
+        // 20条消息写不进一个1KB的文件
+        assertTrue(lastOffset >= fileSize);
+
+        // 超过文件大小的消息会被拒绝
+        MessageExt bigMsg = new MessageExt();
+        bigMsg.setTopic("TestTopic");
+        bigMsg.setBody(new byte[fileSize]);
+        assertEquals(PutMessageStatus.MESSAGE_ILLEGAL, smallCommitLog.putMessage(bigMsg).getStatus());
+    }
+
+    @Test
+    public void testGetMessagesAcrossMappedFiles() {
+        String batchStorePath = "./unittteststore/commitlog_batch";
+        deleteDir(new File(batchStorePath));
+        CommitLog batchCommitLog = new CommitLog(batchStorePath, 1024);
+        assertTrue(batchCommitLog.load());
+
+        List<Long> offsets = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            MessageExt msg = new MessageExt();
+            msg.setTopic("TestTopic");
+            msg.setBody(("Message body " + i).getBytes());
+            PutMessageResult result = batchCommitLog.putMessage(msg);
+            assertEquals(PutMessageStatus.PUT_OK, result.getStatus());
+            offsets.add(result.getOffset());
+        }
+
+        // 一次读出所有消息，中间跨越了多个文件
+        GetMessageResult getResult = batchCommitLog.getMessages(0, Integer.MAX_VALUE, 100);
+        try {
+            assertEquals(20, getResult.getMessageCount());
+            assertTrue(getResult.getMessageMappedList().size() > 1);
+            assertEquals(batchCommitLog.getMaxOffset(), getResult.getNextBeginOffset());
+            for (int i = 0; i < 20; i++) {
+                MessageExt readMsg = MessageDecoder.decode(getResult.getMessageBufferList().get(i), true);
+                assertEquals(offsets.get(i).longValue(), readMsg.getCommitLogOffset());
+                assertArrayEquals(("Message body " + i).getBytes(), readMsg.getBody());
+            }
+        } finally {
+            getResult.release();
+        }
+
+        // 按条数限制，从上一批的末尾继续读
+        getResult = batchCommitLog.getMessages(offsets.get(3), Integer.MAX_VALUE, 5);
+        assertEquals(5, getResult.getMessageCount());
+        assertEquals(offsets.get(8).longValue(), getResult.getNextBeginOffset());
+        getResult.release();
+
+        // 按字节数限制，至少返回一条
+        getResult = batchCommitLog.getMessages(offsets.get(3), 1, 5);
+        assertEquals(1, getResult.getMessageCount());
+        assertEquals(offsets.get(4).longValue(), getResult.getNextBeginOffset());
+        getResult.release();
+
+        // 读到末尾时没有消息
+        getResult = batchCommitLog.getMessages(batchCommitLog.getMaxOffset(), Integer.MAX_VALUE, 5);
+        assertEquals(0, getResult.getMessageCount());
+        getResult.release();
+    }
+
+    @Test
+    public void testReputSkipIllegalMessage() throws Exception {
+        String reputStorePath = "./unittteststore/commitlog_reput";
+        deleteDir(new File(reputStorePath));
+        final int fileSize = 1024;
+        CommitLog reputCommitLog = new CommitLog(reputStorePath, fileSize);
+        assertTrue(reputCommitLog.load());
+
+        List<Long> offsets = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            MessageExt msg = new MessageExt();
+            msg.setTopic("TestTopic");
+            msg.setBody(("Message body " + i).getBytes());
+            PutMessageResult result = reputCommitLog.putMessage(msg);
+            assertEquals(PutMessageStatus.PUT_OK, result.getStatus());
+            offsets.add(result.getOffset());
+        }
+        assertTrue(offsets.get(19) >= fileSize);
+
+        // 破坏第3条消息的魔数，它和同一个文件中后面的消息都无法分发
+        final long illegalOffset = offsets.get(2);
+        try (RandomAccessFile randomAccessFile = new RandomAccessFile(
+                new File(reputStorePath, String.format("%020d", 0)), "rw")) {
+            randomAccessFile.seek(illegalOffset + 4);
+            randomAccessFile.writeInt(0);
+        }
+
+        List<Long> dispatched = new ArrayList<>();
+        ReputMessageService reputMessageService = new ReputMessageService(reputCommitLog,
+                Collections.singletonList(request -> dispatched.add(request.getCommitLogOffset())));
+        reputMessageService.start();
+        try {
+            long deadline = System.currentTimeMillis() + 5000;
+            while (reputMessageService.behind() > 0 && System.currentTimeMillis() < deadline) {
+                Thread.sleep(10);
+            }
+            // 跳过第一个文件的剩余部分，继续分发后面的文件，而不是停在非法消息上
+            assertEquals(reputCommitLog.getMaxOffset(), reputMessageService.getReputFromOffset());
+        } finally {
+            reputMessageService.shutdown();
+        }
+
+        List<Long> expected = new ArrayList<>();
+        for (long offset : offsets) {
+            if (offset < illegalOffset || offset >= fileSize) {
+                expected.add(offset);
+            }
+        }
+        assertEquals(expected, dispatched);
+    }
+
+    @Test
+    public void testCrcVerifyOnRead() throws Exception {
+        String crcStorePath = "./unittteststore/commitlog_crc";
+        deleteDir(new File(crcStorePath));
+        MessageStoreConfig config = new MessageStoreConfig();
+        config.setStorePathCommitLog(crcStorePath);
+        config.setMappedFileSizeCommitLog(64 * 1024);
+        config.setCrcVerifyMode(CrcVerifyMode.ALWAYS);
+        CommitLog crcCommitLog = new CommitLog(config);
+        assertTrue(crcCommitLog.load());
+
+        MessageExt msg = new MessageExt();
+        msg.setTopic("TestTopic");
+        msg.setBody("crc body".getBytes());
+        PutMessageResult result = crcCommitLog.putMessage(msg);
+        assertEquals(PutMessageStatus.PUT_OK, result.getStatus());
+        assertNotNull(crcCommitLog.getMessage(result.getOffset()));
+
+        // 修改消息体的最后一个字节，映射缓冲区能立即看到文件的修改
+        try (RandomAccessFile file = new RandomAccessFile(new File(crcStorePath, String.format("%020d", 0)), "rw")) {
+            long pos = result.getOffset() + msg.getStoreSize() - 1;
+            file.seek(pos);
+            int b = file.read();
+            file.seek(pos);
+            file.write(b ^ 0xFF);
+        }
+
+        assertNull(crcCommitLog.getMessage(result.getOffset()));
+        assertNull(crcCommitLog.getMessage(result.getOffset(), msg.getStoreSize()));
+        GetMessageResult getResult = crcCommitLog.getMessages(result.getOffset(), Integer.MAX_VALUE, 10);
+        assertEquals(0, getResult.getMessageCount());
+        getResult.release();
+
+        // 只在恢复时校验，读取时不校验
+        config.setCrcVerifyMode(CrcVerifyMode.RECOVERY_ONLY);
+        assertNotNull(crcCommitLog.getMessage(result.getOffset()));
+    }
+
+    @Test
+    public void testCompactProperties() {
+        MessageExt msg = new MessageExt();
+        msg.setTopic("TestTopic");
+        msg.setBody("body".getBytes());
+        msg.setTags("TagA");
+        msg.setKeys("key1 key2");
+        msg.putProperty("用户", "张三");
+        msg.putProperty("empty", "");
+        // 重复设置同一个属性时以最后一次为准
+        msg.setTags("TagB");
+        PutMessageResult result = commitLog.putMessage(msg);
+        assertEquals(PutMessageStatus.PUT_OK, result.getStatus());
+
+        // 不解码属性块也能按key读取
+        MessageExt readMsg = commitLog.getMessage(result.getOffset());
+        assertEquals("TagB", readMsg.getTags());
+        assertEquals("key1 key2", readMsg.getKeys());
+        assertEquals("张三", readMsg.getProperty("用户"));
+        assertEquals("", readMsg.getProperty("empty"));
+        assertNull(readMsg.getProperty("TAG"));
+        assertNull(new MessageExt().getProperty("TAGS"));
+
+        // 解码为Map后的修改会写回消息
+        assertEquals(4, readMsg.getProperties().size());
+        readMsg.getProperties().remove("empty");
+        readMsg.putProperty("user", "test");
+        PutMessageResult result2 = commitLog.putMessage(readMsg);
+        MessageExt readMsg2 = commitLog.getMessage(result2.getOffset());
+        assertNull(readMsg2.getProperty("empty"));
+        assertEquals("test", readMsg2.getProperty("user"));
+        assertEquals("TagB", readMsg2.getTags());
+
+        // 恢复和分发时直接从属性块中取出标签和业务键
+        SelectMappedBufferResult selectResult = commitLog.getMessage(result.getOffset(), readMsg.getStoreSize());
+        DispatchRequest request = commitLog.checkMessageAndReturnSize(selectResult.getByteBuffer(), true);
+        selectResult.release();
+        assertTrue(request.isSuccess());
+        assertEquals("TagB".hashCode(), request.getTagsCode());
+        assertEquals("key1 key2", request.getKeys());
+    }
+
+    @Test
+    public void testCompressMessageBody() throws Exception {
+        String compressStorePath = "./unittteststore/commitlog_compress";
+        deleteDir(new File(compressStorePath));
+        MessageStoreConfig config = new MessageStoreConfig();
+        config.setStorePathCommitLog(compressStorePath);
+        config.setMappedFileSizeCommitLog(64 * 1024);
+        config.setCompressMessageBodyEnable(true);
+        config.setCompressionType(CompressionType.ZLIB);
+        config.setCompressMsgBodyOverHowmuch(256);
+        CommitLog compressCommitLog = new CommitLog(config);
+        assertTrue(compressCommitLog.load());
+
+        // 超过阈值的消息体被压缩
+        StringBuilder json = new StringBuilder();
+        for (int i = 0; i < 64; i++) {
+            json.append("{\"orderId\":").append(i).append(",\"status\":\"CREATED\"},");
+        }
+        byte[] body = json.toString().getBytes();
+        MessageExt msg = new MessageExt();
+        msg.setTopic("TestTopic");
+        msg.setBody(body);
+        PutMessageResult result = compressCommitLog.putMessage(msg);
+        assertEquals(PutMessageStatus.PUT_OK, result.getStatus());
+        assertTrue(msg.getStoreSize() < body.length);
+
+        // 读取时不解压，由消费方按需解压
+        MessageExt readMsg = compressCommitLog.getMessage(result.getOffset());
+        assertTrue(MessageSysFlag.isCompressed(readMsg.getSysFlag()));
+        assertEquals(CompressionType.ZLIB, MessageSysFlag.getCompressionType(readMsg.getSysFlag()));
+        MessageDecoder.decompressBody(readMsg);
+        assertFalse(MessageSysFlag.isCompressed(readMsg.getSysFlag()));
+        assertArrayEquals(body, readMsg.getBody());
+
+        // 小于阈值的消息体保持原样
+        MessageExt small = new MessageExt();
+        small.setTopic("TestTopic");
+        small.setBody("small".getBytes());
+        PutMessageResult smallResult = compressCommitLog.putMessage(small);
+        MessageExt readSmall = compressCommitLog.getMessage(smallResult.getOffset());
+        assertFalse(MessageSysFlag.isCompressed(readSmall.getSysFlag()));
+        assertArrayEquals("small".getBytes(), readSmall.getBody());
+
+        // 批量消息作为一条记录整体压缩
+        List<MessageExt> messages = new ArrayList<>();
+        for (int i = 0; i < 32; i++) {
+            MessageExt inner = new MessageExt();
+            inner.setTopic("TestTopic");
+            inner.setBody(("{\"orderId\":" + i + ",\"status\":\"CREATED\"}").getBytes());
+            inner.setKeys("order-" + i);
+            messages.add(inner);
+        }
+        MessageExt batch = MessageDecoder.encodeBatch(messages);
+        PutMessageResult batchResult = compressCommitLog.putMessage(batch);
+        assertEquals(PutMessageStatus.PUT_OK, batchResult.getStatus());
+
+        MessageExt readBatch = compressCommitLog.getMessage(batchResult.getOffset());
+        assertTrue(MessageSysFlag.isBatch(readBatch.getSysFlag()));
+        assertTrue(MessageSysFlag.isCompressed(readBatch.getSysFlag()));
+        List<MessageExt> decoded = MessageDecoder.decodeBatch(readBatch);
+        assertEquals(messages.size(), decoded.size());
+        for (int i = 0; i < messages.size(); i++) {
+            assertArrayEquals(messages.get(i).getBody(), decoded.get(i).getBody());
+            assertEquals("order-" + i, decoded.get(i).getKeys());
+            assertEquals(batchResult.getOffset(), decoded.get(i).getCommitLogOffset());
+        }
+
+        // 批量中已经单独压缩过的消息，解码后按自己的标记解压
+        MessageExt precompressed = new MessageExt();
+        precompressed.setTopic("TestTopic");
+        precompressed.setBody(body);
+        assertTrue(MessageDecoder.compressBody(precompressed, CompressionType.ZLIB, 6, 0));
+        MessageExt plain = new MessageExt();
+        plain.setTopic("TestTopic");
+        plain.setBody("plain".getBytes());
+        List<MessageExt> mixed = new ArrayList<>();
+        mixed.add(precompressed);
+        mixed.add(plain);
+        PutMessageResult mixedResult = compressCommitLog.putMessage(MessageDecoder.encodeBatch(mixed));
+        assertEquals(PutMessageStatus.PUT_OK, mixedResult.getStatus());
+        List<MessageExt> mixedDecoded = MessageDecoder.decodeBatch(
+                compressCommitLog.getMessage(mixedResult.getOffset()));
+        assertEquals(2, mixedDecoded.size());
+        assertFalse(MessageSysFlag.isCompressed(mixedDecoded.get(0).getSysFlag()));
+        assertArrayEquals(body, mixedDecoded.get(0).getBody());
+        assertArrayEquals("plain".getBytes(), mixedDecoded.get(1).getBody());
+    }
+
+    @Test
+    public void testGroupCommitConcurrentPut() throws Exception {
+        String groupStorePath = "./unittteststore/commitlog_group";
+        deleteDir(new File(groupStorePath));
+        MessageStoreConfig config = new MessageStoreConfig();
+        config.setStorePathCommitLog(groupStorePath);
+        config.setMappedFileSizeCommitLog(64 * 1024);
+        config.setPutMessageGroupCommitEnable(true);
+        concurrentPutAndVerify(config);
+    }
+
+    @Test
+    public void testLockFreeConcurrentPut() throws Exception {
+        String lockFreeStorePath = "./unittteststore/commitlog_lockfree";
+        deleteDir(new File(lockFreeStorePath));
+        MessageStoreConfig config = new MessageStoreConfig();
+        config.setStorePathCommitLog(lockFreeStorePath);
+        config.setMappedFileSizeCommitLog(64 * 1024);
+        config.setPutMessageLockFreeEnable(true);
+        concurrentPutAndVerify(config);
+    }
+
+    @Test
+    public void testLockFreeEncodeFailure() throws Exception {
+        String lockFreeStorePath = "./unittteststore/commitlog_lockfree_skip";
+        deleteDir(new File(lockFreeStorePath));
+        MessageStoreConfig config = new MessageStoreConfig();
+        config.setStorePathCommitLog(lockFreeStorePath);
+        config.setMappedFileSizeCommitLog(64 * 1024);
+        config.setPutMessageLockFreeEnable(true);
+        CommitLog lockFreeCommitLog = new CommitLog(config);
+        assertTrue(lockFreeCommitLog.load());
+
+        MessageExt first = new MessageExt();
+        first.setTopic("TestTopic");
+        first.setBody("first".getBytes());
+        PutMessageResult firstResult = lockFreeCommitLog.putMessage(first);
+        assertEquals(PutMessageStatus.PUT_OK, firstResult.getStatus());
+
+        // 预留空间之后编码失败
+        MessageExt broken = new MessageExt() {
+            @Override
+            public long getBornTimestamp() {
+                throw new IllegalStateException("encode failed");
+            }
+        };
+        broken.setTopic("TestTopic");
+        broken.setBody("broken".getBytes());
+        assertEquals(PutMessageStatus.UNKNOWN_ERROR, lockFreeCommitLog.putMessage(broken).getStatus());
+
+        MessageExt second = new MessageExt();
+        second.setTopic("TestTopic");
+        second.setBody("second".getBytes());
+        PutMessageResult secondResult = lockFreeCommitLog.putMessage(second);
+        assertEquals(PutMessageStatus.PUT_OK, secondResult.getStatus());
+        // 失败的消息占用的区间被跳过记录填充，逻辑偏移量被收回
+        assertTrue(secondResult.getOffset() > firstResult.getOffset() + first.getStoreSize());
+        assertEquals(1, second.getQueueOffset());
+
+        GetMessageResult getResult = lockFreeCommitLog.getMessages(0, Integer.MAX_VALUE, 10);
+        try {
+            assertEquals(2, getResult.getMessageCount());
+            assertEquals(lockFreeCommitLog.getMaxOffset(), getResult.getNextBeginOffset());
+            assertArrayEquals("second".getBytes(),
+                    MessageDecoder.decode(getResult.getMessageBufferList().get(1), true).getBody());
+        } finally {
+            getResult.release();
+        }
+
+        // 恢复时跳过记录不会被当作损坏的数据截断
+        CommitLog recoverCommitLog = new CommitLog(config);
+        assertTrue(recoverCommitLog.load());
+        recoverCommitLog.recover(0);
+        assertEquals(lockFreeCommitLog.getMaxOffset(), recoverCommitLog.getMaxOffset());
+    }
+
+    @Test
+    public void testSyncFlush() throws Exception {
+        for (FlushDiskType flushDiskType : new FlushDiskType[] {FlushDiskType.SYNC_FLUSH,
+                FlushDiskType.GROUP_SYNC_FLUSH}) {
+            String flushStorePath = "./unittteststore/commitlog_" + flushDiskType.name().toLowerCase();
+            deleteDir(new File(flushStorePath));
+            MessageStoreConfig config = new MessageStoreConfig();
+            config.setStorePathCommitLog(flushStorePath);
+            config.setMappedFileSizeCommitLog(64 * 1024);
+            config.setFlushDiskType(flushDiskType);
+            CommitLog flushCommitLog = new CommitLog(config);
+            assertTrue(flushCommitLog.load());
+            flushCommitLog.start();
+
+            // 同步刷盘时，写入返回之后数据一定已经落盘
+            for (int i = 0; i < 1000; i++) {
+                MessageExt msg = new MessageExt();
+                msg.setTopic("TestTopic");
+                msg.setBody(("flush-" + i).getBytes());
+                PutMessageResult result = flushCommitLog.putMessage(msg);
+                assertEquals(PutMessageStatus.PUT_OK, result.getStatus());
+                assertTrue(flushCommitLog.getFlushedWhere() >= result.getOffset() + msg.getStoreSize());
+            }
+            assertEquals(flushCommitLog.getMaxOffset(), flushCommitLog.getFlushedWhere());
+            flushCommitLog.shutdown();
+        }
+    }
+
+    @Test
+    public void testAsyncPutMessage() throws Exception {
+        String asyncStorePath = "./unittteststore/commitlog_async";
+        deleteDir(new File(asyncStorePath));
+        MessageStoreConfig config = new MessageStoreConfig();
+        config.setStorePathCommitLog(asyncStorePath);
+        config.setMappedFileSizeCommitLog(64 * 1024);
+        config.setFlushDiskType(FlushDiskType.GROUP_SYNC_FLUSH);
+        config.setPutMessageGroupCommitEnable(true);
+        CommitLog asyncCommitLog = new CommitLog(config);
+        assertTrue(asyncCommitLog.load());
+        asyncCommitLog.start();
+
+        // 一个线程连续提交，不等待刷盘
+        List<MessageExt> msgs = new ArrayList<>();
+        List<CompletableFuture<PutMessageResult>> futures = new ArrayList<>();
+        for (int i = 0; i < 1000; i++) {
+            MessageExt msg = new MessageExt();
+            msg.setTopic("TestTopic");
+            msg.setBody(("async-" + i).getBytes());
+            msgs.add(msg);
+            futures.add(asyncCommitLog.asyncPutMessage(msg));
+        }
+
+        // future完成时消息已经落盘
+        Set<Long> offsets = ConcurrentHashMap.newKeySet();
+        for (int i = 0; i < futures.size(); i++) {
+            PutMessageResult result = futures.get(i).get(10, TimeUnit.SECONDS);
+            assertEquals(PutMessageStatus.PUT_OK, result.getStatus());
+            assertTrue(asyncCommitLog.getFlushedWhere() >= result.getOffset() + msgs.get(i).getStoreSize());
+            offsets.add(result.getOffset());
+        }
+        assertEquals(futures.size(), offsets.size());
+
+        MessageExt readMsg = asyncCommitLog.getMessage(futures.get(999).get().getOffset());
+        assertNotNull(readMsg);
+        assertArrayEquals("async-999".getBytes(), readMsg.getBody());
+        asyncCommitLog.shutdown();
+    }
+
+    @Test
+    public void testSyncFlushNotOnWriterThread() throws Exception {
+        String syncStorePath = "./unittteststore/commitlog_sync_async";
+        deleteDir(new File(syncStorePath));
+        MessageStoreConfig config = new MessageStoreConfig();
+        config.setStorePathCommitLog(syncStorePath);
+        config.setMappedFileSizeCommitLog(64 * 1024);
+        config.setAllocateMappedFileServiceEnable(false);
+        config.setFlushDiskType(FlushDiskType.SYNC_FLUSH);
+        CommitLog syncCommitLog = new CommitLog(config);
+        assertTrue(syncCommitLog.load());
+
+        // 刷盘线程还没有启动，写入线程只提交刷盘请求，不自己执行force
+        MessageExt msg = new MessageExt();
+        msg.setTopic("TestTopic");
+        msg.setBody("sync-async".getBytes());
+        CompletableFuture<PutMessageResult> future = syncCommitLog.asyncPutMessage(msg);
+        assertFalse(future.isDone());
+        assertEquals(0, syncCommitLog.getFlushedWhere());
+
+        // 刷盘线程启动后完成future
+        syncCommitLog.start();
+        PutMessageResult result = future.get(5, TimeUnit.SECONDS);
+        assertEquals(PutMessageStatus.PUT_OK, result.getStatus());
+        assertTrue(syncCommitLog.getFlushedWhere() >= result.getOffset() + msg.getStoreSize());
+        syncCommitLog.shutdown();
+    }
+
+    @Test
+    public void testTransientStorePool() throws Exception {
+        String poolStorePath = "./unittteststore/commitlog_pool";
+        deleteDir(new File(poolStorePath));
+        MessageStoreConfig config = new MessageStoreConfig();
+        config.setStorePathCommitLog(poolStorePath);
+        config.setMappedFileSizeCommitLog(64 * 1024);
+        config.setTransientStorePoolEnable(true);
+        config.setTransientStorePoolSize(2);
+        CommitLog poolCommitLog = new CommitLog(config);
+        assertTrue(poolCommitLog.load());
+        poolCommitLog.start();
+
+        List<Long> offsets = new ArrayList<>();
+        long expectedMaxOffset = 0;
+        for (int i = 0; i < 3000; i++) {
+            MessageExt msg = new MessageExt();
+            msg.setTopic("TestTopic");
+            msg.setBody(("pool-" + i).getBytes());
+            PutMessageResult result = poolCommitLog.putMessage(msg);
+            assertEquals(PutMessageStatus.PUT_OK, result.getStatus());
+            offsets.add(result.getOffset());
+            expectedMaxOffset = result.getOffset() + msg.getStoreSize();
+        }
+
+        // 数据先写入池中的缓冲区，等待提交服务写入FileChannel后才可读
+        long deadline = System.currentTimeMillis() + 5000;
+        while (poolCommitLog.getMaxOffset() < expectedMaxOffset && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(expectedMaxOffset, poolCommitLog.getMaxOffset());
+
+        for (int i = 0; i < offsets.size(); i++) {
+            MessageExt readMsg = poolCommitLog.getMessage(offsets.get(i));
+            assertNotNull(readMsg);
+            assertArrayEquals(("pool-" + i).getBytes(), readMsg.getBody());
+        }
+        poolCommitLog.shutdown();
+    }
+
+    private void concurrentPutAndVerify(MessageStoreConfig config) throws Exception {
+        CommitLog concurrentCommitLog = new CommitLog(config);
+        assertTrue(concurrentCommitLog.load());
+
+        final int threadCount = 8;
+        final int msgPerThread = 500;
+        ExecutorService executor = Executors.newFixedThreadPool(threadCount);
+        Set<Long> offsets = ConcurrentHashMap.newKeySet();
+        List<Future<?>> futures = new ArrayList<>();
+        for (int t = 0; t < threadCount; t++) {
+            final int threadIndex = t;
+            futures.add(executor.submit(() -> {
+                for (int i = 0; i < msgPerThread; i++) {
+                    MessageExt msg = new MessageExt();
+                    msg.setTopic("TestTopic");
+                    msg.setQueueId(threadIndex);
+                    msg.setBody(("t" + threadIndex + "-" + i).getBytes());
+                    PutMessageResult result = concurrentCommitLog.putMessage(msg);
+                    assertEquals(PutMessageStatus.PUT_OK, result.getStatus());
+                    offsets.add(result.getOffset());
+                }
+            }));
+        }
+        for (Future<?> future : futures) {
+            future.get(30, TimeUnit.SECONDS);
+        }
+        executor.shutdown();
+
+        // 每条消息都有独立的偏移量，并且都能被正确读回
+        assertEquals(threadCount * msgPerThread, offsets.size());
+        for (Long offset : offsets) {
+            MessageExt readMsg = concurrentCommitLog.getMessage(offset);
+            assertNotNull(readMsg);
+            assertEquals(offset.longValue(), readMsg.getCommitLogOffset());
+            assertEquals("t" + readMsg.getQueueId(), new String(readMsg.getBody()).split("-")[0]);
+        }
+    }
+
     private void deleteDir(File file) {
         if (!file.exists()) {
             return;
@@ -0,0 +1,625 @@
+package com.echelon.hermes.store;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.echelon.hermes.store.CommitLog.PutMessageResult;
+import com.echelon.hermes.store.CommitLog.PutMessageStatus;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+/**
+ * 描述：DefaultMessageStore测试类，验证ConsumeQueue的构建、按队列偏移量读取以及重启后的恢复
+ *
+ * @author jorelwang
+ * @create 2026-10-16 16:30
+ */
+public class DefaultMessageStoreTest {
+
+    private static final String TOPIC = "TestTopic";
+
+    private final String storePath = "./unittteststore/messagestore";
+
+    private DefaultMessageStore messageStore;
+
+    @BeforeEach
+    public void setUp() {
+        deleteDir(new File(storePath));
+    }
+
+    @AfterEach
+    public void tearDown() {
+        if (messageStore != null) {
+            messageStore.shutdown();
+        }
+        deleteDir(new File(storePath));
+    }
+
+    @Test
+    public void testGetMessageByQueueOffset() throws Exception {
+        messageStore = createMessageStore(buildConfig());
+
+        final int queueNums = 3;
+        final int msgNumsPerQueue = 100;
+        for (int i = 0; i < queueNums * msgNumsPerQueue; i++) {
+            MessageExt msg = buildMessage(i % queueNums, "body-" + i);
+            msg.setTags("TagA");
+            assertEquals(PutMessageStatus.PUT_OK, messageStore.putMessage(msg).getStatus());
+        }
+
+        for (int queueId = 0; queueId < queueNums; queueId++) {
+            waitForDispatch(queueId, msgNumsPerQueue);
+            assertEquals(0, messageStore.getMinOffsetInQueue(TOPIC, queueId));
+            for (int offset = 0; offset < msgNumsPerQueue; offset++) {
+                MessageExt readMsg = messageStore.getMessage(TOPIC, queueId, offset);
+                assertNotNull(readMsg);
+                assertEquals(queueId, readMsg.getQueueId());
+                assertEquals(offset, readMsg.getQueueOffset());
+                assertEquals("TagA", readMsg.getTags());
+                assertArrayEquals(("body-" + (offset * queueNums + queueId)).getBytes(), readMsg.getBody());
+            }
+        }
+
+        // 超出队列范围的偏移量读不到消息
+        assertNull(messageStore.getMessage(TOPIC, 0, msgNumsPerQueue));
+
+        // 原始数据直接指向映射缓冲区，正好是一条完整的记录
+        SelectMappedBufferResult result = messageStore.selectOneMessage(TOPIC, 1, 5);
+        assertNotNull(result);
+        try {
+            assertEquals(result.getSize(), result.getByteBuffer().remaining());
+            MessageExt readMsg = MessageDecoder.decode(result.getByteBuffer(), true);
+            assertEquals(result.getStartOffset(), readMsg.getCommitLogOffset());
+            assertArrayEquals(("body-" + (5 * queueNums + 1)).getBytes(), readMsg.getBody());
+        } finally {
+            result.release();
+        }
+        assertNull(messageStore.selectOneMessage(TOPIC, 0, msgNumsPerQueue));
+
+        // 读取不存在的主题和队列不会创建ConsumeQueue
+        assertNull(messageStore.getMessage("NoSuchTopic", 0, 0));
+        assertNull(messageStore.selectOneMessage(TOPIC, queueNums, 0));
+        assertEquals(0, messageStore.getMaxOffsetInQueue("NoSuchTopic", 0));
+        assertEquals(0, messageStore.getMinOffsetInQueue(TOPIC, queueNums));
+        assertNull(messageStore.getConsumeQueue("NoSuchTopic", 0));
+        assertNull(messageStore.getConsumeQueue(TOPIC, queueNums));
+    }
+
+    @Test
+    public void testRecoverQueueOffsetAfterRestart() throws Exception {
+        messageStore = createMessageStore(buildConfig());
+        for (int i = 0; i < 10; i++) {
+            assertEquals(PutMessageStatus.PUT_OK, messageStore.putMessage(buildMessage(0, "before-" + i)).getStatus());
+        }
+        waitForDispatch(0, 10);
+        messageStore.shutdown();
+
+        // 重启后每个队列的逻辑偏移量从ConsumeQueue中恢复
+        messageStore = createMessageStore(buildConfig());
+        assertEquals(10, messageStore.getMaxOffsetInQueue(TOPIC, 0));
+
+        MessageExt msg = buildMessage(0, "after");
+        PutMessageResult result = messageStore.putMessage(msg);
+        assertEquals(PutMessageStatus.PUT_OK, result.getStatus());
+        assertEquals(10, msg.getQueueOffset());
+
+        waitForDispatch(0, 11);
+        assertArrayEquals("before-9".getBytes(), messageStore.getMessage(TOPIC, 0, 9).getBody());
+        assertArrayEquals("after".getBytes(), messageStore.getMessage(TOPIC, 0, 10).getBody());
+    }
+
+    @Test
+    public void testRecoverWritePositionAfterRestart() throws Exception {
+        MessageStoreConfig config = buildConfig();
+        messageStore = createMessageStore(config);
+        for (int i = 0; i < 10; i++) {
+            assertEquals(PutMessageStatus.PUT_OK, messageStore.putMessage(buildMessage(0, "msg-" + i)).getStatus());
+        }
+        waitForDispatch(0, 10);
+        final long maxOffset = messageStore.getCommitLog().getMaxOffset();
+        messageStore.shutdown();
+
+        // 正常关闭后检查点就是commitLog的末尾
+        StoreCheckpoint storeCheckpoint = new StoreCheckpoint(config.getStoreCheckpoint());
+        assertEquals(maxOffset, storeCheckpoint.getPhysicOffset());
+        storeCheckpoint.shutdown();
+
+        // 重启后继续写入没有写满的文件，而不是新建文件
+        messageStore = createMessageStore(buildConfig());
+        assertEquals(maxOffset, messageStore.getCommitLog().getMaxOffset());
+        PutMessageResult result = messageStore.putMessage(buildMessage(0, "after"));
+        assertEquals(PutMessageStatus.PUT_OK, result.getStatus());
+        assertEquals(maxOffset, result.getOffset());
+    }
+
+    @Test
+    public void testTruncateTornTailAfterCrash() throws Exception {
+        MessageStoreConfig config = buildConfig();
+        messageStore = createMessageStore(config);
+        List<Long> offsets = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            PutMessageResult result = messageStore.putMessage(buildMessage(0, "msg-" + i));
+            assertEquals(PutMessageStatus.PUT_OK, result.getStatus());
+            offsets.add(result.getOffset());
+        }
+        waitForDispatch(0, 10);
+        final long maxOffset = messageStore.getCommitLog().getMaxOffset();
+        messageStore.shutdown();
+
+        // 模拟崩溃：检查点只推进到第5条消息，最后一条消息只写了一半
+        StoreCheckpoint storeCheckpoint = new StoreCheckpoint(config.getStoreCheckpoint());
+        storeCheckpoint.setPhysicOffset(offsets.get(5));
+        storeCheckpoint.shutdown();
+        corruptCommitLog(config, maxOffset - 1);
+
+        messageStore = createMessageStore(buildConfig());
+        assertEquals(offsets.get(9).longValue(), messageStore.getCommitLog().getMaxOffset());
+        assertEquals(9, messageStore.getMaxOffsetInQueue(TOPIC, 0));
+        assertArrayEquals("msg-8".getBytes(), messageStore.getMessage(TOPIC, 0, 8).getBody());
+
+        // 新消息从被截断的位置开始写入，队列偏移量也接着恢复后的位置
+        MessageExt msg = buildMessage(0, "after");
+        PutMessageResult result = messageStore.putMessage(msg);
+        assertEquals(PutMessageStatus.PUT_OK, result.getStatus());
+        assertEquals(offsets.get(9).longValue(), result.getOffset());
+        assertEquals(9, msg.getQueueOffset());
+        waitForDispatch(0, 10);
+        assertArrayEquals("after".getBytes(), messageStore.getMessage(TOPIC, 0, 9).getBody());
+    }
+
+    @Test
+    public void testZeroStaleRecordsAfterTruncate() throws Exception {
+        MessageStoreConfig config = buildConfig();
+        messageStore = createMessageStore(config);
+        List<Long> offsets = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            PutMessageResult result = messageStore.putMessage(buildMessage(0, "msg-" + i));
+            assertEquals(PutMessageStatus.PUT_OK, result.getStatus());
+            offsets.add(result.getOffset());
+        }
+        waitForDispatch(0, 10);
+        final long maxOffset = messageStore.getCommitLog().getMaxOffset();
+        messageStore.shutdown();
+
+        // 模拟崩溃：第5条消息损坏，后面的消息都是完整的，恢复时从第5条开始截断
+        StoreCheckpoint storeCheckpoint = new StoreCheckpoint(config.getStoreCheckpoint());
+        storeCheckpoint.setPhysicOffset(offsets.get(2));
+        storeCheckpoint.shutdown();
+        corruptCommitLog(config, offsets.get(6) - 1);
+
+        messageStore = createMessageStore(buildConfig());
+        assertEquals(offsets.get(5).longValue(), messageStore.getCommitLog().getMaxOffset());
+        // 截断点之后残留的记录被清零
+        byte[] tail = readCommitLog(config, offsets.get(5), (int) (maxOffset - offsets.get(5)));
+        assertArrayEquals(new byte[tail.length], tail);
+
+        // 新消息和被截断的消息一样长，恰好在残留的第6条消息的位置结束，再次恢复时不会把残留的消息当作有效数据
+        PutMessageResult result = messageStore.putMessage(buildMessage(0, "new-5"));
+        assertEquals(offsets.get(5).longValue(), result.getOffset());
+        waitForDispatch(0, 6);
+        messageStore.shutdown();
+        storeCheckpoint = new StoreCheckpoint(config.getStoreCheckpoint());
+        storeCheckpoint.setPhysicOffset(offsets.get(2));
+        storeCheckpoint.shutdown();
+
+        messageStore = createMessageStore(buildConfig());
+        assertEquals(offsets.get(6).longValue(), messageStore.getCommitLog().getMaxOffset());
+        assertEquals(6, messageStore.getMaxOffsetInQueue(TOPIC, 0));
+        assertArrayEquals("new-5".getBytes(), messageStore.getMessage(TOPIC, 0, 5).getBody());
+    }
+
+    @Test
+    public void testRecoverStopAtMessageOnWrongPosition() throws Exception {
+        MessageStoreConfig config = buildConfig();
+        messageStore = createMessageStore(config);
+        List<Long> offsets = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            PutMessageResult result = messageStore.putMessage(buildMessage(0, "msg-" + i));
+            assertEquals(PutMessageStatus.PUT_OK, result.getStatus());
+            offsets.add(result.getOffset());
+        }
+        waitForDispatch(0, 10);
+        messageStore.shutdown();
+
+        // 第7条消息被完整地拷贝到第5条消息的位置，长度和CRC都正确，但物理偏移量与所在位置不符
+        StoreCheckpoint storeCheckpoint = new StoreCheckpoint(config.getStoreCheckpoint());
+        storeCheckpoint.setPhysicOffset(offsets.get(2));
+        storeCheckpoint.shutdown();
+        final int size = (int) (offsets.get(6) - offsets.get(5));
+        writeCommitLog(config, offsets.get(5), readCommitLog(config, offsets.get(7), size));
+
+        messageStore = createMessageStore(buildConfig());
+        assertEquals(offsets.get(5).longValue(), messageStore.getCommitLog().getMaxOffset());
+        assertEquals(5, messageStore.getMaxOffsetInQueue(TOPIC, 0));
+    }
+
+    @Test
+    public void testLockFreeQueueOffsetOrder() throws Exception {
+        MessageStoreConfig config = buildConfig();
+        config.setPutMessageLockFreeEnable(true);
+        messageStore = createMessageStore(config);
+
+        final int threadNums = 4;
+        final int msgNumsPerThread = 200;
+        ExecutorService executor = Executors.newFixedThreadPool(threadNums);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int t = 0; t < threadNums; t++) {
+                futures.add(executor.submit(() -> {
+                    for (int i = 0; i < msgNumsPerThread; i++) {
+                        assertEquals(PutMessageStatus.PUT_OK,
+                                messageStore.putMessage(buildMessage(0, "lock-free")).getStatus());
+                    }
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } finally {
+            executor.shutdown();
+        }
+
+        // 队列中的逻辑顺序与commitLog中的物理顺序一致
+        final int total = threadNums * msgNumsPerThread;
+        waitForDispatch(0, total);
+        long lastPhysicOffset = -1;
+        for (int offset = 0; offset < total; offset++) {
+            MessageExt readMsg = messageStore.getMessage(TOPIC, 0, offset);
+            assertNotNull(readMsg);
+            assertEquals(offset, readMsg.getQueueOffset());
+            assertTrue(readMsg.getCommitLogOffset() > lastPhysicOffset);
+            lastPhysicOffset = readMsg.getCommitLogOffset();
+        }
+    }
+
+    @Test
+    public void testQueryMessageByKey() throws Exception {
+        messageStore = createMessageStore(buildConfig());
+
+        final int total = 300;
+        for (int i = 0; i < total; i++) {
+            MessageExt msg = buildMessage(0, "body-" + i);
+            msg.setKeys("key-" + (i % 10) + MessageExt.KEY_SEPARATOR + "order-" + i);
+            assertEquals(PutMessageStatus.PUT_OK, messageStore.putMessage(msg).getStatus());
+        }
+        waitForDispatch(0, total);
+
+        List<MessageExt> messages = messageStore.queryMessage(TOPIC, "order-123", 10, 0, Long.MAX_VALUE);
+        assertEquals(1, messages.size());
+        assertArrayEquals("body-123".getBytes(), messages.get(0).getBody());
+
+        // 同一个键的消息分布在多个文件中，按存储时间从新到旧返回
+        messages = messageStore.queryMessage(TOPIC, "key-3", 64, 0, Long.MAX_VALUE);
+        assertEquals(total / 10, messages.size());
+        assertArrayEquals("body-293".getBytes(), messages.get(0).getBody());
+        assertArrayEquals("body-3".getBytes(), messages.get(messages.size() - 1).getBody());
+
+        assertEquals(5, messageStore.queryMessage(TOPIC, "key-3", 5, 0, Long.MAX_VALUE).size());
+        assertTrue(messageStore.queryMessage(TOPIC, "order-" + total, 10, 0, Long.MAX_VALUE).isEmpty());
+        assertTrue(messageStore.queryMessage("OtherTopic", "order-123", 10, 0, Long.MAX_VALUE).isEmpty());
+
+        // 时间范围之外的消息查不到
+        long future = System.currentTimeMillis() + 1000 * 60 * 60;
+        assertTrue(messageStore.queryMessage(TOPIC, "order-123", 10, future, Long.MAX_VALUE).isEmpty());
+
+        // 重启后索引仍然可用，新消息继续写入索引
+        messageStore.shutdown();
+        messageStore = createMessageStore(buildConfig());
+        MessageExt msg = buildMessage(0, "after");
+        msg.setKeys("order-123");
+        assertEquals(PutMessageStatus.PUT_OK, messageStore.putMessage(msg).getStatus());
+        waitForDispatch(0, total + 1);
+        messages = messageStore.queryMessage(TOPIC, "order-123", 10, 0, Long.MAX_VALUE);
+        assertEquals(2, messages.size());
+        assertArrayEquals("after".getBytes(), messages.get(0).getBody());
+    }
+
+    @Test
+    public void testCleanExpiredFiles() throws Exception {
+        MessageStoreConfig config = buildConfig();
+        // 文件写满即过期，只保留正在写入的文件
+        config.setFileReservedTime(0);
+        config.setCleanResourceInterval(50);
+        config.setDeleteCommitLogFilesInterval(0);
+        config.setDeleteConsumeQueueFilesInterval(0);
+        messageStore = createMessageStore(config);
+
+        final int total = 400;
+        for (int i = 0; i < total; i++) {
+            MessageExt msg = buildMessage(0, "msg-" + i);
+            msg.setBody(new byte[512]);
+            assertEquals(PutMessageStatus.PUT_OK, messageStore.putMessage(msg).getStatus());
+        }
+        waitForDispatch(0, total);
+
+        final CommitLog commitLog = messageStore.getCommitLog();
+        final int fileSize = config.getMappedFileSizeCommitLog();
+        final long lastFileFromOffset = commitLog.getMaxOffset() / fileSize * fileSize;
+        long deadline = System.currentTimeMillis() + 5000;
+        while ((commitLog.getMinOffset() != lastFileFromOffset || messageStore.getMinOffsetInQueue(TOPIC, 0) == 0)
+                && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(lastFileFromOffset, commitLog.getMinOffset());
+
+        // 队列的最小偏移量指向第一条没有被删除的消息
+        long minOffsetInQueue = messageStore.getMinOffsetInQueue(TOPIC, 0);
+        assertTrue(minOffsetInQueue > 0);
+        assertEquals(total, messageStore.getMaxOffsetInQueue(TOPIC, 0));
+        MessageExt firstMsg = messageStore.getMessage(TOPIC, 0, minOffsetInQueue);
+        assertNotNull(firstMsg);
+        assertEquals(minOffsetInQueue, firstMsg.getQueueOffset());
+        assertTrue(firstMsg.getCommitLogOffset() >= commitLog.getMinOffset());
+        assertNull(messageStore.getMessage(TOPIC, 0, minOffsetInQueue - 1));
+        assertNull(messageStore.getMessage(TOPIC, 0, 0));
+    }
+
+    @Test
+    public void testOffloadColdFilesToTieredStorage() throws Exception {
+        MessageStoreConfig config = buildConfig();
+        config.setTieredStoreEnable(true);
+        config.setTieredStorePath(storePath + File.separator + "tiered");
+        config.setTieredHotFileNum(1);
+        // 由测试手动触发卸载
+        config.setTieredStoreInterval(60 * 1000);
+        config.setTieredBlockSize(4 * 1024);
+        config.setTieredReadAheadBlocks(2);
+        config.setTieredBlockCacheMaxBlocks(8);
+        messageStore = createMessageStore(config);
+
+        final int total = 400;
+        for (int i = 0; i < total; i++) {
+            assertEquals(PutMessageStatus.PUT_OK, messageStore.putMessage(buildMessage(0, paddedBody(i))).getStatus());
+        }
+        waitForDispatch(0, total);
+
+        // 等待写满的文件落盘后全部卸载，只保留正在写入的文件
+        final CommitLog commitLog = messageStore.getCommitLog();
+        final int coldFileNum = commitLog.getMappedFileQueue().getMappedFiles().size() - 1;
+        assertTrue(coldFileNum > 1);
+        int offloaded = 0;
+        long deadline = System.currentTimeMillis() + 5000;
+        while (offloaded < coldFileNum && System.currentTimeMillis() < deadline) {
+            offloaded += messageStore.getTieredStoreService().offloadColdFiles();
+            Thread.sleep(10);
+        }
+        assertEquals(coldFileNum, offloaded);
+        assertEquals(coldFileNum, new File(config.getTieredStorePath()).listFiles().length);
+        for (int i = 0; i < coldFileNum; i++) {
+            String fileName = String.format("%020d", (long) i * config.getMappedFileSizeCommitLog());
+            assertFalse(new File(config.getStorePathCommitLog(), fileName).exists());
+            assertTrue(new File(config.getTieredStorePath(), fileName).exists());
+        }
+        assertEquals(0, commitLog.getMinOffset());
+
+        // 冷文件的读取对调用方透明
+        for (int i = 0; i < total; i++) {
+            MessageExt msg = messageStore.getMessage(TOPIC, 0, i);
+            assertNotNull(msg);
+            assertArrayEquals(paddedBody(i).getBytes(), msg.getBody());
+        }
+        TieredBlockCache blockCache = messageStore.getTieredStoreService().getBlockCache();
+        assertTrue(blockCache.getHitCount() > 0);
+        assertTrue(blockCache.getCachedBlocks() <= 8);
+
+        // 批量读取跨越预读窗口和文件
+        GetMessageResult getResult = commitLog.getMessages(0, Integer.MAX_VALUE, total);
+        assertEquals(total, getResult.getMessageCount());
+        getResult.release();
+
+        // 重启后从分层存储中加载冷文件
+        messageStore.shutdown();
+        messageStore = createMessageStore(config);
+        assertEquals(0, messageStore.getCommitLog().getMinOffset());
+        assertEquals(0, messageStore.getMinOffsetInQueue(TOPIC, 0));
+        assertArrayEquals(paddedBody(0).getBytes(), messageStore.getMessage(TOPIC, 0, 0).getBody());
+        assertArrayEquals(paddedBody(total - 1).getBytes(), messageStore.getMessage(TOPIC, 0, total - 1).getBody());
+    }
+
+    @Test
+    public void testReadFromHotMessageCache() throws Exception {
+        MessageStoreConfig config = buildConfig();
+        config.setHotMessageCacheEnable(true);
+        config.setHotMessageCacheMaxBytes(64 * 1024);
+        messageStore = createMessageStore(config);
+
+        final int total = 400;
+        for (int i = 0; i < total; i++) {
+            assertEquals(PutMessageStatus.PUT_OK, messageStore.putMessage(buildMessage(0, paddedBody(i))).getStatus());
+        }
+        waitForDispatch(0, total);
+
+        // 容量不足以缓存所有消息，最早的消息被淘汰
+        HotMessageCache cache = messageStore.getCommitLog().getHotMessageCache();
+        assertTrue(cache.getCachedBytes() <= 64 * 1024);
+        assertTrue(cache.getEvictCount() > 0);
+
+        // 尾部的消息从缓存中读取，被淘汰的消息从文件中读取，结果一致
+        for (int i = total - 50; i < total; i++) {
+            assertArrayEquals(paddedBody(i).getBytes(), messageStore.getMessage(TOPIC, 0, i).getBody());
+        }
+        assertEquals(50, cache.getHitCount());
+        assertArrayEquals(paddedBody(0).getBytes(), messageStore.getMessage(TOPIC, 0, 0).getBody());
+        assertEquals(1, cache.getMissCount());
+
+        // 缓存中的原始数据不属于任何文件
+        SelectMappedBufferResult result = messageStore.selectOneMessage(TOPIC, 0, total - 1);
+        assertNotNull(result);
+        assertNull(result.getMappedFile());
+        assertArrayEquals(paddedBody(total - 1).getBytes(),
+                MessageDecoder.decode(result.getByteBuffer(), true).getBody());
+        result.release();
+
+        // 批量读取先读文件再读缓存
+        GetMessageResult getResult = messageStore.getCommitLog().getMessages(0, Integer.MAX_VALUE, total);
+        assertEquals(total, getResult.getMessageCount());
+        getResult.release();
+
+        // TinyLFU下被反复读取的消息不会被只读取一次的新消息挤出缓存
+        HotMessageCache tinyLfu = new HotMessageCache(4096, HotCacheEvictPolicy.TINY_LFU);
+        ByteBuffer record = ByteBuffer.allocate(100);
+        tinyLfu.put(0, record.duplicate());
+        for (int i = 0; i < 5; i++) {
+            assertNotNull(tinyLfu.get(0));
+        }
+        for (int i = 1; i <= 200; i++) {
+            tinyLfu.put(i * 100L, record.duplicate());
+        }
+        assertNotNull(tinyLfu.get(0));
+        assertTrue(tinyLfu.getCachedBytes() <= 4096);
+    }
+
+    @Test
+    public void testHotMessageCacheConcurrentAccess() throws Exception {
+        // 64MB的缓存分成多个段，并发读写分散在不同的段上
+        final long maxBytes = 64L * 1024 * 1024;
+        HotMessageCache cache = new HotMessageCache(maxBytes, HotCacheEvictPolicy.LRU);
+        final int threadCount = 4;
+        final int msgPerThread = 2000;
+        final int recordSize = 1024;
+        ExecutorService executor = Executors.newFixedThreadPool(threadCount);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int t = 0; t < threadCount; t++) {
+            final int threadIndex = t;
+            futures.add(executor.submit(() -> {
+                for (int i = 0; i < msgPerThread; i++) {
+                    long offset = ((long) i * threadCount + threadIndex) * recordSize;
+                    ByteBuffer record = ByteBuffer.allocate(recordSize);
+                    record.putLong(0, offset);
+                    assertTrue(cache.put(offset, record));
+                    ByteBuffer cached = cache.get(offset);
+                    assertNotNull(cached);
+                    assertEquals(offset, cached.getLong(0));
+                    assertTrue(cached.isReadOnly());
+                }
+            }));
+        }
+        for (Future<?> future : futures) {
+            future.get();
+        }
+        executor.shutdown();
+
+        assertEquals(threadCount * msgPerThread, cache.getCachedMessages());
+        assertEquals((long) threadCount * msgPerThread * recordSize, cache.getCachedBytes());
+        assertEquals(threadCount * msgPerThread, cache.getHitCount());
+
+        cache.invalidateBefore((long) msgPerThread * recordSize);
+        assertEquals(threadCount * msgPerThread - msgPerThread, cache.getCachedMessages());
+        assertNull(cache.get(0));
+    }
+
+    private String paddedBody(int i) {
+        StringBuilder body = new StringBuilder("msg-" + i);
+        while (body.length() < 512) {
+            body.append('-').append(i);
+        }
+        return body.toString();
+    }
+
+    private MessageStoreConfig buildConfig() {
+        MessageStoreConfig config = new MessageStoreConfig();
+        config.setStorePathCommitLog(storePath + File.separator + "commitlog");
+        config.setStorePathConsumeQueue(storePath + File.separator + "consumequeue");
+        config.setStoreCheckpoint(storePath + File.separator + "checkpoint");
+        config.setStorePathIndex(storePath + File.separator + "index");
+        // 哈希槽很少，每个文件只保存100条索引，覆盖哈希冲突和切换文件的情况
+        config.setMaxHashSlotNum(16);
+        config.setMaxIndexNum(100);
+        config.setMappedFileSizeCommitLog(1024 * 64);
+        // 每个文件只保存100条索引，覆盖ConsumeQueue切换文件的情况
+        config.setMappedFileSizeConsumeQueue(100 * ConsumeQueue.CQ_STORE_UNIT_SIZE);
+        return config;
+    }
+
+    private void corruptCommitLog(MessageStoreConfig config, long offset) throws IOException {
+        final int fileSize = config.getMappedFileSizeCommitLog();
+        File file = new File(config.getStorePathCommitLog(), String.format("%020d", offset / fileSize * fileSize));
+        try (RandomAccessFile randomAccessFile = new RandomAccessFile(file, "rw")) {
+            randomAccessFile.seek(offset % fileSize);
+            int b = randomAccessFile.read();
+            randomAccessFile.seek(offset % fileSize);
+            randomAccessFile.write(b ^ 0xFF);
+        }
+    }
+
+    private byte[] readCommitLog(MessageStoreConfig config, long offset, int size) throws IOException {
+        final int fileSize = config.getMappedFileSizeCommitLog();
+        File file = new File(config.getStorePathCommitLog(), String.format("%020d", offset / fileSize * fileSize));
+        byte[] data = new byte[size];
+        try (RandomAccessFile randomAccessFile = new RandomAccessFile(file, "r")) {
+            randomAccessFile.seek(offset % fileSize);
+            randomAccessFile.readFully(data);
+        }
+        return data;
+    }
+
+    private void writeCommitLog(MessageStoreConfig config, long offset, byte[] data) throws IOException {
+        final int fileSize = config.getMappedFileSizeCommitLog();
+        File file = new File(config.getStorePathCommitLog(), String.format("%020d", offset / fileSize * fileSize));
+        try (RandomAccessFile randomAccessFile = new RandomAccessFile(file, "rw")) {
+            randomAccessFile.seek(offset % fileSize);
+            randomAccessFile.write(data);
+        }
+    }
+
+    private DefaultMessageStore createMessageStore(MessageStoreConfig config) throws IOException {
+        DefaultMessageStore store = new DefaultMessageStore(config);
+        assertTrue(store.load());
+        store.start();
+        return store;
+    }
+
+    private MessageExt buildMessage(int queueId, String body) {
+        MessageExt msg = new MessageExt();
+        msg.setTopic(TOPIC);
+        msg.setQueueId(queueId);
+        msg.setBody(body.getBytes());
+        return msg;
+    }
+
+    /**
+     * 等待ReputMessageService把消息分发到ConsumeQueue
+     */
+    private void waitForDispatch(int queueId, long expectMaxOffset) {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (messageStore.getMaxOffsetInQueue(TOPIC, queueId) < expectMaxOffset
+                && System.currentTimeMillis() < deadline) {
+            try {
+                Thread.sleep(10);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+        }
+        assertEquals(expectMaxOffset, messageStore.getMaxOffsetInQueue(TOPIC, queueId));
+    }
+
+    private void deleteDir(File file) {
+        if (!file.exists()) {
+            return;
+        }
+        if (file.isDirectory()) {
+            File[] children = file.listFiles();
+            if (children != null) {
+                for (File child : children) {
+                    deleteDir(child);
+                }
+            }
+        }
+        file.delete();
+    }
+}
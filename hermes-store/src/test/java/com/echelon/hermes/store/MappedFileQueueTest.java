@@ -0,0 +1,353 @@
+package com.echelon.hermes.store;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.echelon.hermes.common.utils.StoreUtil;
+import java.io.File;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.function.BooleanSupplier;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+/**
+ * 描述：MappedFileQueue测试类
+ *
+ * @author jorelwang
+ * @create 2026-10-16 16:50
+ */
+public class MappedFileQueueTest {
+
+    private static final int FILE_SIZE = 1024;
+
+    private final String storePath = "./unittteststore/mappedfilequeue";
+
+    private MappedFileQueue mappedFileQueue;
+
+    @BeforeEach
+    public void setUp() {
+        deleteDir(new File(storePath));
+        mappedFileQueue = new MappedFileQueue(storePath, FILE_SIZE);
+    }
+
+    @AfterEach
+    public void tearDown() {
+        mappedFileQueue.destroy();
+        deleteDir(new File(storePath));
+    }
+
+    @Test
+    public void testFindMappedFileByOffset() {
+        final int fileNums = 10;
+        createFullMappedFiles(fileNums);
+
+        for (long offset = 0; offset < (long) fileNums * FILE_SIZE; offset += 100) {
+            MappedFile mappedFile = mappedFileQueue.findMappedFileByOffset(offset);
+            assertNotNull(mappedFile);
+            assertEquals(offset / FILE_SIZE * FILE_SIZE, mappedFile.getFileFromOffset());
+        }
+
+        // 超出范围的偏移量
+        assertNull(mappedFileQueue.findMappedFileByOffset((long) fileNums * FILE_SIZE));
+        assertSame(mappedFileQueue.getFirstMappedFile(),
+                mappedFileQueue.findMappedFileByOffset((long) fileNums * FILE_SIZE, true));
+    }
+
+    @Test
+    public void testFindMappedFileByOffsetAfterHeadDeleted() {
+        final int fileNums = 10;
+        createFullMappedFiles(fileNums);
+
+        // 删除头部的三个文件
+        for (int i = 0; i < 3; i++) {
+            MappedFile head = mappedFileQueue.getFirstMappedFile();
+            mappedFileQueue.getMappedFiles().remove(head);
+            head.deleteFile();
+        }
+
+        assertNull(mappedFileQueue.findMappedFileByOffset(FILE_SIZE * 2 + 10));
+        for (long offset = FILE_SIZE * 3; offset < (long) fileNums * FILE_SIZE; offset += 100) {
+            MappedFile mappedFile = mappedFileQueue.findMappedFileByOffset(offset);
+            assertNotNull(mappedFile);
+            assertEquals(offset / FILE_SIZE * FILE_SIZE, mappedFile.getFileFromOffset());
+        }
+    }
+
+    @Test
+    public void testDeleteFileHeldByReader() {
+        createFullMappedFiles(2);
+        MappedFile head = mappedFileQueue.getFirstMappedFile();
+        SelectMappedBufferResult result = head.selectMappedBuffer(0, 100);
+        assertNotNull(result);
+        assertEquals(0, result.getStartOffset());
+
+        // 读取方还持有引用，文件不会被释放，也不能再被读取
+        mappedFileQueue.getMappedFiles().remove(head);
+        assertFalse(head.deleteFile());
+        assertFalse(head.isCleanupOver());
+        assertNull(head.selectMappedBuffer(0, 100));
+        assertEquals(0, result.getByteBuffer().get(0));
+
+        // 引用释放后才unmap，之后可以删除文件
+        result.release();
+        assertTrue(head.isCleanupOver());
+        assertTrue(head.deleteFile());
+        assertFalse(new File(head.getFileName()).exists());
+    }
+
+    @Test
+    public void testDeleteFileForcibly() throws InterruptedException {
+        createFullMappedFiles(2);
+        MappedFile head = mappedFileQueue.getFirstMappedFile();
+        SelectMappedBufferResult result = head.selectMappedBuffer(0, 100);
+        assertNotNull(result);
+
+        mappedFileQueue.getMappedFiles().remove(head);
+        assertFalse(head.deleteFile(10));
+        Thread.sleep(20);
+        // 超过等待时间后强制释放，迟到的release不会重复释放
+        assertTrue(head.deleteFile(10));
+        result.release();
+        assertTrue(head.isCleanupOver());
+    }
+
+    @Test
+    public void testWriteBufferReturnedOnce() throws Exception {
+        TransientStorePool pool = new TransientStorePool(1, FILE_SIZE);
+        pool.init();
+        try {
+            for (int i = 0; i < 200; i++) {
+                MappedFile mappedFile = new MappedFile(storePath + File.separator + String.format("%020d", 0),
+                        FILE_SIZE, pool);
+                assertTrue(mappedFile.appendMessage(new byte[FILE_SIZE]));
+
+                // 写满的文件在提交线程归还写缓冲区的同时被删除，缓冲区只能回到池中一次
+                CountDownLatch ready = new CountDownLatch(1);
+                Thread committer = new Thread(() -> {
+                    ready.countDown();
+                    mappedFile.commit(0);
+                });
+                committer.start();
+                ready.await();
+                boolean deleted = mappedFile.deleteFile(0);
+                committer.join();
+                assertTrue(deleted || mappedFile.deleteFile(0));
+                assertEquals(1, pool.availableBufferNums());
+            }
+        } finally {
+            pool.destroy();
+        }
+    }
+
+    @Test
+    public void testDeleteExpiredFileByTime() {
+        createFullMappedFiles(5);
+        MappedFile second = mappedFileQueue.getMappedFiles().get(1);
+        SelectMappedBufferResult result = second.selectMappedBuffer(0, 100);
+        assertNotNull(result);
+
+        // 第二个文件还被持有，只能删除第一个
+        assertEquals(1, mappedFileQueue.deleteExpiredFileByTime(0, 0, 1000 * 60, false, 10));
+        assertEquals(FILE_SIZE, mappedFileQueue.getMinOffset());
+
+        // 引用释放后继续删除，最后一个文件不会被删除
+        result.release();
+        assertEquals(3, mappedFileQueue.deleteExpiredFileByTime(0, 0, 1000 * 60, false, 10));
+        assertEquals(1, mappedFileQueue.getMappedFiles().size());
+        assertEquals(FILE_SIZE * 4, mappedFileQueue.getMinOffset());
+    }
+
+    @Test
+    public void testMultiStorePathRoundRobin() {
+        String disk1 = storePath + File.separator + "disk1";
+        String disk2 = storePath + File.separator + "disk2";
+        mappedFileQueue.destroy();
+        mappedFileQueue = new MappedFileQueue(disk1 + ";" + disk2, FILE_SIZE, null, null,
+                StorePathPolicy.ROUND_ROBIN, 1.0);
+        createFullMappedFiles(4);
+
+        // 文件轮流放在两个目录中
+        for (MappedFile mappedFile : mappedFileQueue.getMappedFiles()) {
+            String expected = mappedFile.getFileFromOffset() / FILE_SIZE % 2 == 0 ? disk1 : disk2;
+            assertEquals(new File(expected).getPath(), new File(mappedFile.getFileName()).getParent());
+        }
+        for (MappedFile mappedFile : mappedFileQueue.getMappedFiles()) {
+            mappedFile.shutdown(1000);
+        }
+
+        // 重新加载后按偏移量排序
+        mappedFileQueue = new MappedFileQueue(disk1 + ";" + disk2, FILE_SIZE, null, null,
+                StorePathPolicy.ROUND_ROBIN, 1.0);
+        assertTrue(mappedFileQueue.load());
+        assertEquals(4, mappedFileQueue.getMappedFiles().size());
+        for (int i = 0; i < 4; i++) {
+            assertEquals((long) i * FILE_SIZE, mappedFileQueue.getMappedFiles().get(i).getFileFromOffset());
+            assertEquals((long) i * FILE_SIZE,
+                    mappedFileQueue.findMappedFileByOffset((long) i * FILE_SIZE + 10).getFileFromOffset());
+        }
+    }
+
+    @Test
+    public void testMultiStorePathSkipUnavailable() throws Exception {
+        String disk1 = storePath + File.separator + "disk1";
+        // disk2是一个普通文件，无法在其下创建文件
+        File disk2 = new File(storePath, "disk2");
+        assertTrue(disk2.getParentFile().mkdirs() || disk2.getParentFile().isDirectory());
+        assertTrue(disk2.createNewFile());
+        mappedFileQueue.destroy();
+        mappedFileQueue = new MappedFileQueue(disk1 + ";" + disk2.getPath(), FILE_SIZE, null, null,
+                StorePathPolicy.ROUND_ROBIN, 1.0);
+        createFullMappedFiles(3);
+
+        for (MappedFile mappedFile : mappedFileQueue.getMappedFiles()) {
+            assertEquals(new File(disk1).getPath(), new File(mappedFile.getFileName()).getParent());
+        }
+    }
+
+    @Test
+    public void testPreAllocateNextMappedFile() throws Exception {
+        List<MappedFile> allocated = new CopyOnWriteArrayList<>();
+        AllocateMappedFileService service = new AllocateMappedFileService(new MessageStoreConfig(), null) {
+            @Override
+            public MappedFile putRequestAndReturnMappedFile(String nextFilePath, String nextNextFilePath,
+                    int fileSize) {
+                MappedFile mappedFile = super.putRequestAndReturnMappedFile(nextFilePath, nextNextFilePath, fileSize);
+                allocated.add(mappedFile);
+                return mappedFile;
+            }
+        };
+        service.start();
+        try {
+            mappedFileQueue.destroy();
+            mappedFileQueue = new MappedFileQueue(storePath, FILE_SIZE, null, service);
+            MappedFile first = mappedFileQueue.getLastMappedFile();
+            assertSame(allocated.get(0), first);
+
+            // 切换之前下一个文件已经在后台创建好
+            File next = new File(storePath, StoreUtil.offsetToFileName(FILE_SIZE));
+            waitFor(next::exists);
+            first.setWrotePosition(FILE_SIZE);
+            MappedFile second = mappedFileQueue.getLastMappedFile();
+            assertEquals(FILE_SIZE, second.getFileFromOffset());
+            assertSame(allocated.get(1), second);
+            assertEquals(next.getPath(), new File(second.getFileName()).getPath());
+
+            // 切换后继续预创建再下一个文件
+            waitFor(new File(storePath, StoreUtil.offsetToFileName(FILE_SIZE * 2))::exists);
+        } finally {
+            service.shutdown();
+        }
+        assertFalse(new File(storePath, StoreUtil.offsetToFileName(FILE_SIZE * 2)).exists());
+        assertEquals(2, mappedFileQueue.getMappedFiles().size());
+    }
+
+    @Test
+    public void testAllocateTimeoutFallback() throws Exception {
+        // 后台线程暂停，等待超时后由调用方同步创建
+        CountDownLatch resume = new CountDownLatch(1);
+        AllocateMappedFileService service = new AllocateMappedFileService(new MessageStoreConfig(), null, 100) {
+            @Override
+            public void run() {
+                try {
+                    resume.await();
+                } catch (InterruptedException e) {
+                    return;
+                }
+                super.run();
+            }
+        };
+        service.start();
+        try {
+            mappedFileQueue.destroy();
+            mappedFileQueue = new MappedFileQueue(storePath, FILE_SIZE, null, service);
+            MappedFile first = mappedFileQueue.getLastMappedFile();
+            assertNotNull(first);
+            assertEquals(0, first.getFileFromOffset());
+            assertTrue(first.appendMessage(new byte[]{1, 2, 3}));
+
+            // 后台线程恢复后跳过已经撤回的请求，只预创建下一个文件
+            resume.countDown();
+            waitFor(new File(storePath, StoreUtil.offsetToFileName(FILE_SIZE))::exists);
+            service.shutdown();
+
+            // 调用方创建的文件不会被当作预创建的文件删除
+            assertTrue(new File(first.getFileName()).exists());
+            assertFalse(new File(storePath, StoreUtil.offsetToFileName(FILE_SIZE)).exists());
+            assertEquals(3, first.getWrotePosition());
+            assertEquals(2, first.selectMappedBuffer(0).getByteBuffer().get(1));
+        } finally {
+            resume.countDown();
+            service.shutdown();
+        }
+    }
+
+    @Test
+    public void testShutdownReleasePreAllocatedMappedFile() throws Exception {
+        TransientStorePool pool = new TransientStorePool(3, FILE_SIZE);
+        pool.init();
+        AllocateMappedFileService service = new AllocateMappedFileService(new MessageStoreConfig(), pool);
+        service.start();
+        try {
+            mappedFileQueue.destroy();
+            mappedFileQueue = new MappedFileQueue(storePath, FILE_SIZE, pool, service);
+            MappedFile first = mappedFileQueue.getLastMappedFile();
+            assertNotNull(first);
+
+            // 预创建的文件也从池中借了一个写缓冲区
+            waitFor(() -> pool.availableBufferNums() == 1);
+            File next = new File(storePath, StoreUtil.offsetToFileName(FILE_SIZE));
+            assertTrue(next.exists());
+
+            // 没有被使用的文件在关闭时删除，写缓冲区归还
+            service.shutdown();
+            assertFalse(next.exists());
+            assertEquals(2, pool.availableBufferNums());
+            assertTrue(new File(first.getFileName()).exists());
+
+            mappedFileQueue.destroy();
+            assertEquals(3, pool.availableBufferNums());
+        } finally {
+            service.shutdown();
+            pool.destroy();
+        }
+    }
+
+    private static void waitFor(final BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (!condition.getAsBoolean()) {
+            assertTrue(System.currentTimeMillis() < deadline, "condition not met in time");
+            Thread.sleep(1);
+        }
+    }
+
+    private void createFullMappedFiles(int fileNums) {
+        for (int i = 0; i < fileNums; i++) {
+            MappedFile mappedFile = mappedFileQueue.getLastMappedFile();
+            assertNotNull(mappedFile);
+            assertEquals((long) i * FILE_SIZE, mappedFile.getFileFromOffset());
+            mappedFile.setWrotePosition(FILE_SIZE);
+        }
+    }
+
+    private void deleteDir(File file) {
+        if (!file.exists()) {
+            return;
+        }
+        if (file.isDirectory()) {
+            File[] children = file.listFiles();
+            if (children != null) {
+                for (File child : children) {
+                    deleteDir(child);
+                }
+            }
+        }
+        file.delete();
+    }
+}
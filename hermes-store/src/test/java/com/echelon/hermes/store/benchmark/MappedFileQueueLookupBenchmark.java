@@ -0,0 +1,92 @@
+package com.echelon.hermes.store.benchmark;
+
+import com.echelon.hermes.store.MappedFile;
+import com.echelon.hermes.store.MappedFileQueue;
+import java.io.File;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * 描述：对比不同文件数量下按偏移量查找文件的耗时。
+ * findMappedFileByOffset直接计算下标，耗时不随文件数量增长；linearScan是原来遍历列表的方式，作为对照。
+ * 为了能创建几千个文件，这里使用很小的文件。
+ *
+ * @author jorelwang
+ * @create 2026-10-16 17:00
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MappedFileQueueLookupBenchmark {
+
+    private static final int FILE_SIZE = 4096;
+
+    private static final String STORE_PATH = System.getProperty("java.io.tmpdir") + File.separator
+            + "hermes-benchmark" + File.separator + "lookup";
+
+    @Param({"16", "256", "4096"})
+    private int fileNums;
+
+    private MappedFileQueue mappedFileQueue;
+    private long maxOffset;
+
+    @Setup(Level.Trial)
+    public void createMappedFiles() {
+        this.mappedFileQueue = new MappedFileQueue(STORE_PATH, FILE_SIZE);
+        for (int i = 0; i < this.fileNums; i++) {
+            this.mappedFileQueue.getLastMappedFile().setWrotePosition(FILE_SIZE);
+        }
+        this.maxOffset = (long) this.fileNums * FILE_SIZE;
+    }
+
+    @TearDown(Level.Trial)
+    public void deleteMappedFiles() {
+        for (MappedFile mappedFile : this.mappedFileQueue.getMappedFiles()) {
+            mappedFile.deleteFile();
+        }
+    }
+
+    @Benchmark
+    public MappedFile findMappedFileByOffset() {
+        long offset = ThreadLocalRandom.current().nextLong(this.maxOffset);
+        return this.mappedFileQueue.findMappedFileByOffset(offset);
+    }
+
+    @Benchmark
+    public MappedFile linearScan() {
+        long offset = ThreadLocalRandom.current().nextLong(this.maxOffset);
+        for (MappedFile mappedFile : this.mappedFileQueue.getMappedFiles()) {
+            if (offset >= mappedFile.getFileFromOffset() && offset < mappedFile.getFileFromOffset() + FILE_SIZE) {
+                return mappedFile;
+            }
+        }
+        return null;
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        Options opt = new OptionsBuilder()
+                .include(MappedFileQueueLookupBenchmark.class.getSimpleName())
+                .build();
+        new Runner(opt).run();
+    }
+}
@@ -0,0 +1,82 @@
+package com.echelon.hermes.store.benchmark;
+
+import com.echelon.hermes.store.FlushDiskType;
+import com.echelon.hermes.store.MappedFile;
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * 描述：对比新文件预热与不预热时的写入耗时。
+ * 每轮迭代前创建一个新文件，迭代中用1KB的消息把文件写满，
+ * 不预热时每个页的第一次写入都会触发缺页中断。
+ *
+ * @author jorelwang
+ * @create 2026-10-16 15:30
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, batchSize = MappedFileWarmupBenchmark.MESSAGES_PER_FILE)
+@Measurement(iterations = 10, batchSize = MappedFileWarmupBenchmark.MESSAGES_PER_FILE)
+@Fork(1)
+public class MappedFileWarmupBenchmark {
+
+    private static final int MESSAGE_SIZE = 1024;
+    private static final int FILE_SIZE = 1024 * 1024 * 64;
+    static final int MESSAGES_PER_FILE = FILE_SIZE / MESSAGE_SIZE;
+
+    private static final String STORE_PATH = System.getProperty("java.io.tmpdir") + File.separator
+            + "hermes-benchmark" + File.separator + "warmup";
+
+    @Param({"false", "true"})
+    private boolean warm;
+
+    private final byte[] data = new byte[MESSAGE_SIZE];
+    private MappedFile mappedFile;
+    private long fileFromOffset = 0;
+
+    @Setup(Level.Iteration)
+    public void createMappedFile() throws IOException {
+        String fileName = STORE_PATH + File.separator + String.format("%020d", this.fileFromOffset);
+        this.fileFromOffset += FILE_SIZE;
+        this.mappedFile = new MappedFile(fileName, FILE_SIZE);
+        if (this.warm) {
+            this.mappedFile.warmMappedFile(FlushDiskType.ASYNC_FLUSH, 0, false);
+        }
+    }
+
+    @TearDown(Level.Iteration)
+    public void deleteMappedFile() {
+        this.mappedFile.deleteFile();
+    }
+
+    @Benchmark
+    public boolean append() {
+        return this.mappedFile.appendMessage(this.data);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        Options opt = new OptionsBuilder()
+                .include(MappedFileWarmupBenchmark.class.getSimpleName())
+                .build();
+        new Runner(opt).run();
+    }
+}
@@ -0,0 +1,123 @@
+package com.echelon.hermes.store.benchmark;
+
+import com.echelon.hermes.store.CommitLog;
+import com.echelon.hermes.store.MessageDecoder;
+import com.echelon.hermes.store.MessageExt;
+import com.echelon.hermes.store.MessageStoreConfig;
+import com.echelon.hermes.store.SelectMappedBufferResult;
+import java.io.File;
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * 描述：衡量写入时计算记录CRC32C的开销。
+ * putMessage是完整的写入耗时（其中已包含一次CRC计算），recordCrc只对同样大小的记录计算CRC，
+ * 两者之比就是CRC在写入路径上的占比；verifyRecordCrc是读取时开启校验的额外耗时。
+ * 每轮迭代前创建一个新的CommitLog，迭代中写入固定数量的消息。
+ *
+ * @author jorelwang
+ * @create 2026-10-16 18:30
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, batchSize = MessageCrcBenchmark.MESSAGES_PER_ITERATION)
+@Measurement(iterations = 10, batchSize = MessageCrcBenchmark.MESSAGES_PER_ITERATION)
+@Fork(1)
+public class MessageCrcBenchmark {
+
+    static final int MESSAGES_PER_ITERATION = 16 * 1024;
+    private static final int FILE_SIZE = 1024 * 1024 * 128;
+
+    private static final String STORE_PATH = System.getProperty("java.io.tmpdir") + File.separator
+            + "hermes-benchmark" + File.separator + "crc";
+
+    @Param({"128", "1024", "4096"})
+    private int bodySize;
+
+    private CommitLog commitLog;
+    private MessageExt msg;
+    private ByteBuffer record;
+
+    @Setup(Level.Iteration)
+    public void createCommitLog() {
+        deleteDir(new File(STORE_PATH));
+        MessageStoreConfig config = new MessageStoreConfig();
+        config.setStorePathCommitLog(STORE_PATH);
+        config.setMappedFileSizeCommitLog(FILE_SIZE);
+        this.commitLog = new CommitLog(config);
+        this.commitLog.load();
+
+        this.msg = new MessageExt();
+        this.msg.setTopic("BenchmarkTopic");
+        this.msg.setBody(new byte[this.bodySize]);
+
+        // 先写入一条消息，拷贝出完整的记录供recordCrc和verifyRecordCrc使用
+        this.commitLog.putMessage(this.msg);
+        SelectMappedBufferResult selectResult = this.commitLog.getMessage(this.msg.getCommitLogOffset(),
+                this.msg.getStoreSize());
+        try {
+            this.record = ByteBuffer.allocate(selectResult.getSize());
+            this.record.put(selectResult.getByteBuffer());
+            this.record.flip();
+        } finally {
+            selectResult.release();
+        }
+    }
+
+    @TearDown(Level.Iteration)
+    public void destroyCommitLog() {
+        this.commitLog.shutdown();
+        deleteDir(new File(STORE_PATH));
+    }
+
+    @Benchmark
+    public long putMessage() {
+        this.commitLog.putMessage(this.msg);
+        return this.msg.getCommitLogOffset();
+    }
+
+    @Benchmark
+    public int recordCrc() {
+        return MessageDecoder.calRecordCrc(this.record, 0, this.record.limit());
+    }
+
+    @Benchmark
+    public boolean verifyRecordCrc() {
+        return MessageDecoder.verifyRecordCrc(this.record, 0);
+    }
+
+    private static void deleteDir(File dir) {
+        File[] files = dir.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                deleteDir(file);
+            }
+        }
+        dir.delete();
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        Options opt = new OptionsBuilder()
+                .include(MessageCrcBenchmark.class.getSimpleName())
+                .build();
+        new Runner(opt).run();
+    }
+}